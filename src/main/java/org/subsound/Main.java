@@ -31,6 +31,10 @@ public class Main {
         LogUtils.setRootLogLevel(rootLogLevel);
         // Bridge/route all JUL log records to the SLF4J API.
         SLF4JBridgeHandler.install();
+        // The JDK HttpClient only exposes its pool limits as system properties, read once when the pool class loads.
+        // Keep at most a handful of idle connections around and close them after a minute, unless set on the command line.
+        setDefaultProperty("jdk.httpclient.connectionPoolSize", "8");
+        setDefaultProperty("jdk.httpclient.keepalive.timeout", "60");
     }
 
     private final Config config;
@@ -107,5 +111,10 @@ public class Main {
     public static void main(String[] args) {
         new Main(args);
     }
-}
 
+    private static void setDefaultProperty(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+}
@@ -15,16 +15,22 @@ import org.subsound.integration.ServerClient.PlaylistRemoveSongRequest;
 import org.subsound.integration.ServerClient.SongInfo;
 import org.subsound.integration.ServerClient.TranscodedStream;
 import org.subsound.persistence.CachingClient;
+import org.subsound.persistence.CircuitBreaker;
 import org.subsound.persistence.DownloadManager;
 import org.subsound.persistence.ScrobbleService;
 import org.subsound.persistence.SongCache;
 import org.subsound.persistence.SongCache.CacheSong;
+import org.subsound.persistence.SongCache.CacheResult;
 import org.subsound.persistence.SongCache.LoadSongResult;
+import org.subsound.persistence.SongCache.StreamedSong;
 import org.subsound.persistence.ThumbnailCache;
 import org.subsound.persistence.database.Database;
+import org.subsound.persistence.database.DatabaseMaintenance;
 import org.subsound.persistence.database.DatabaseServerService;
 import org.subsound.persistence.database.DownloadQueueItem;
+import org.subsound.persistence.database.Page;
 import org.subsound.persistence.database.PlayerConfig;
+import org.subsound.persistence.database.PlayQueueService;
 import org.subsound.persistence.database.PlayerConfigService;
 import org.subsound.persistence.database.PlayerStateJson;
 import org.subsound.sound.PlaybinPlayer;
@@ -32,9 +38,10 @@ import org.subsound.sound.PlaybinPlayer.AudioSource;
 import org.subsound.sound.PlaybinPlayer.Source;
 import org.subsound.ui.components.AppNavigation;
 import org.subsound.ui.models.GDownloadState;
-import org.subsound.ui.models.GQueueItem;
+import org.subsound.ui.models.GQueueListModel;
 import org.subsound.ui.models.GSongInfo;
 import org.subsound.ui.models.GSongInfo.GSongStore;
+import io.reactivex.rxjava3.disposables.Disposable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
 import io.reactivex.rxjava3.subjects.BehaviorSubject;
 import io.soabase.recordbuilder.core.RecordBuilderFull;
@@ -52,9 +59,9 @@ import java.time.Instant;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -87,7 +94,7 @@ public class AppManager {
     private final ThumbnailCache thumbnailCache;
     private final AtomicReference<CachingClient> client;
     private final BehaviorSubject<AppState> currentState;
-    private final CopyOnWriteArrayList<StateListener> listeners = new CopyOnWriteArrayList<>();
+    private final StateSlices stateSlices;
     private final GSongStore gSongStore;
     private final StarredListStore starredList;
     private final PlaylistsStore playlistsStore;
@@ -97,12 +104,21 @@ public class AppManager {
     private final DatabaseServerService dbService;
     private final PlayerConfigService playerConfigService;
     private final DownloadManager downloadManager;
+    private final DatabaseMaintenance databaseMaintenance;
     private final ScrobbleService scrobbleService;
     private final NetworkMonitoring networkMonitor;
     private final Runnable onQuit;
     private final AtomicBoolean isShutdown = new AtomicBoolean(false);
     private volatile ScheduledFuture<?> pendingPreferenceSave;
     private volatile UUID scrobbledForRequestId = null;
+    // gapless playback: the song after the current one, on disk and handed to the player, see prepareNextSource()
+    private final AtomicReference<String> nextSongId = new AtomicReference<>();
+    private final AtomicReference<PreparedSource> preparedNext = new AtomicReference<>();
+    private final PlaybackLatency playbackLatency = new PlaybackLatency();
+    // the song loaded last, until the player reports PLAYING
+    private final AtomicReference<PlaybackLatency.Trace> awaitingPlaying = new AtomicReference<>();
+    // the download of the song loaded last, done when it is cached
+    private volatile CompletableFuture<LoadSongResult> currentDownload = CompletableFuture.completedFuture(null);
 
     private ToastOverlay toastOverlay;
     private AppNavigation navigator;
@@ -157,14 +173,21 @@ public class AppManager {
                 }
         );
         this.gSongStore = new GSongStore(
-                songId -> this.useClient(c -> c.getSong(songId)),
+                // restored queue entries load their song when their row is shown, the local library is quicker
+                songId -> Optional.ofNullable(this.client.get())
+                        .flatMap(c -> c.getSongLocal(songId))
+                        .orElseGet(() -> this.useClient(c -> c.getSong(songId))),
                 this.downloadManager::getSongStatus
         );
         this.networkMonitor = new GioNetworkStatusMonitor(this::updateNetworkState);
         this.playQueue = new PlayQueue(
                 player,
                 this.gSongStore,
-                nextState -> this.setState(old -> old.withQueue(nextState)),
+                new PlayQueueService(UUID.fromString(savedServerId), this.database),
+                nextState -> {
+                    this.setState(old -> old.withQueue(nextState));
+                    this.prepareNextSource();
+                },
                 songInfo -> loadSourceAsync(new PlayerAction.PlaySong(songInfo.getSongInfo()))
         );
 
@@ -172,11 +195,23 @@ public class AppManager {
         client.ifPresent(c -> this.client.set(wrapWithCaching(c)));
 
         player.onStateChanged(next -> {
+            if (next.state() == PlaybinPlayer.PlayerStates.PLAYING) {
+                var trace = this.awaitingPlaying.getAndSet(null);
+                if (trace != null) {
+                    trace.mark(PlaybackLatency.Stage.PLAYING);
+                    this.playbackLatency.record(trace);
+                }
+            }
             this.setState(old -> old.withPlayer(next));
             this.checkScrobble(next);
         });
+        player.onSourceAdvanced(this::onSourceAdvanced);
+        // checkScrobble runs on player states, keep them coming while nothing on screen asks for the position
+        player.subscribePosition(PlaybinPlayer.PositionRate.BACKGROUND);
+        player.setIdleTeardown(Duration.ofSeconds(config.playerIdleTeardownSeconds));
 
         this.currentState = BehaviorSubject.createDefault(buildState());
+        this.stateSlices = new StateSlices(this.currentState.getValue());
         var disposable = this.currentState
                 .throttleLatest(250, TimeUnit.MILLISECONDS, true)
                 //.throttleLatest(50, TimeUnit.MILLISECONDS, true)
@@ -188,7 +223,12 @@ public class AppManager {
         this.player.setVolume(savedPlayerState.volume());
         this.player.setMute(savedPlayerState.muted());
 
-        // Restore last playing song from DB (without auto-playing)
+        // Restore the queue and the last playing song from DB (without auto-playing)
+        try {
+            this.playQueue.restore();
+        } catch (Exception e) {
+            log.warn("Failed to restore the play queue", e);
+        }
         var lastPlayback = savedPlayerState.currentPlayback();
         if (lastPlayback != null && lastPlayback.songId() != null && !lastPlayback.songId().isBlank()) {
             restoreLastPlayingSong(lastPlayback);
@@ -196,7 +236,10 @@ public class AppManager {
 
         this.starredList = new StarredListStore(this);
         this.playlistsStore = new PlaylistsStore(this);
-        this.searchResultStore = new SearchResultStore(this.client::get);
+        this.searchResultStore = new SearchResultStore(
+                this.client::get,
+                query -> Optional.ofNullable(this.client.get()).map(c -> c.searchLocal(query))
+        );
 
         client.ifPresent(c -> {
             this.starredList.refreshAsync();
@@ -207,17 +250,30 @@ public class AppManager {
                 () -> this.client.get(),
                 () -> this.getState().networkState()
         );
+        this.databaseMaintenance = new DatabaseMaintenance(this.database, this::isIdle);
     }
 
     private void updateNetworkState(Void unused) {
-        var next = this.networkMonitor.getState();
-        this.setState(appState -> appState.withNetworkState(next));
+        this.setState(appState -> appState.withNetworkState(effectiveNetworkState()));
 
         // Update CachingClient with network status
         var client = this.client.get();
         if (client != null) {
-            client.setNetworkStatus(next.status());
+            client.setNetworkStatus(this.networkMonitor.getState().status());
+        }
+    }
+
+    /**
+     * The OS connectivity combined with the server circuit breaker: when the server has been
+     * unreachable often enough to trip the breaker, the rest of the app should treat us as offline too.
+     */
+    private NetworkState effectiveNetworkState() {
+        var monitorState = this.networkMonitor.getState();
+        var client = this.client.get();
+        if (client != null && client.getCircuitBreaker().getState() == CircuitBreaker.State.OPEN) {
+            return new NetworkState(NetworkMonitoring.NetworkStatus.OFFLINE);
         }
+        return monitorState;
     }
 
     /**
@@ -258,7 +314,7 @@ public class AppManager {
         var initialServerId = this.config.serverConfig != null
                 ? ServerState.of(this.config.serverConfig.id())
                 : ServerState.empty();
-        return new AppState(Optional.empty(), this.player.getState(), this.playQueue.getState(), this.networkMonitor.getState(), initialServerId);
+        return new AppState(Optional.empty(), this.player.getState(), this.playQueue.getState(), this.networkMonitor.getState(), initialServerId, Optional.empty());
     }
 
     public AppState getState() {
@@ -275,18 +331,28 @@ public class AppManager {
     public void useClient1(Consumer<ServerClient> useFunc) {
         useFunc.accept(this.client.get());
     }
+    // for the paged lists only CachingClient has
+    public <T> T useCachingClient(Function<CachingClient, T> useFunc) {
+        return useFunc.apply(this.client.get());
+    }
 
     public Config getConfig() {
         return config;
     }
 
+    private static final java.util.List<DownloadQueueItem.DownloadStatus> DOWNLOADS_VIEW_STATUSES = java.util.List.of(
+            DownloadQueueItem.DownloadStatus.COMPLETED,
+            DownloadQueueItem.DownloadStatus.PENDING,
+            DownloadQueueItem.DownloadStatus.DOWNLOADING,
+            DownloadQueueItem.DownloadStatus.FAILED
+    );
+
     public java.util.List<DownloadQueueItem> getDownloadQueue() {
-        return dbService.listDownloadQueue(java.util.List.of(
-                DownloadQueueItem.DownloadStatus.COMPLETED,
-                DownloadQueueItem.DownloadStatus.PENDING,
-                DownloadQueueItem.DownloadStatus.DOWNLOADING,
-                DownloadQueueItem.DownloadStatus.FAILED
-        ));
+        return dbService.listDownloadQueue(DOWNLOADS_VIEW_STATUSES);
+    }
+
+    public Page<DownloadQueueItem> getDownloadQueuePage(int pageSize) {
+        return dbService.listDownloadQueue(DOWNLOADS_VIEW_STATUSES, pageSize);
     }
 
     public AppManager setToastOverlay(ToastOverlay toastOverlay) {
@@ -330,10 +396,22 @@ public class AppManager {
                 duration -> log.info("shutdown: preferenceSaveScheduler: {}ms", duration.toMillis()),
                 this.preferenceSaveScheduler::shutdown
         );
+        timeIt(
+                duration -> log.info("shutdown: playQueue: {}ms", duration.toMillis()),
+                this.playQueue::stopPersisting
+        );
         timeIt(
                 duration -> log.info("shutdown: downloadManager: {}ms", duration.toMillis()),
                 this.downloadManager::stop
         );
+        timeIt(
+                duration -> log.info("shutdown: songCache: {}ms", duration.toMillis()),
+                this.songCache::close
+        );
+        timeIt(
+                duration -> log.info("shutdown: databaseMaintenance: {}ms", duration.toMillis()),
+                this.databaseMaintenance::stop
+        );
         timeIt(
                 duration -> log.info("shutdown: scrobbleService: {}ms", duration.toMillis()),
                 this.scrobbleService::stop
@@ -342,10 +420,30 @@ public class AppManager {
         log.info("AppManager shutdown completed in %dms".formatted(elapsed));
     }
 
+    // nothing is playing or syncing, background work will not get in the way
+    private boolean isIdle() {
+        var state = this.getState();
+        var playerState = state.player().state();
+        return playerState != PlaybinPlayer.PlayerStates.PLAYING
+                && playerState != PlaybinPlayer.PlayerStates.BUFFERING
+                && state.sync().isEmpty();
+    }
+
+    public PlaybackLatency getPlaybackLatency() {
+        return this.playbackLatency;
+    }
+
     public Optional<Duration> getPlayerPosition() {
         return this.player.getCurrentPosition();
     }
 
+    /**
+     * See {@link PlaybinPlayer#subscribePosition}. Dispose the subscription when the position is not shown anymore.
+     */
+    public Disposable subscribePosition(PlaybinPlayer.PositionRate rate) {
+        return this.player.subscribePosition(rate);
+    }
+
     public SearchResultStore getSearchResultStore() {
         return this.searchResultStore;
     }
@@ -372,11 +470,22 @@ public class AppManager {
     }
 
     public void addOnStateChanged(StateListener lis) {
-        listeners.add(lis);
+        this.addOnStateChanged(StateSlices.Slice.ALL, lis);
+    }
+
+    /**
+     * @param slices the parts of the state the listener uses, it is only called when one of them changed
+     */
+    public void addOnStateChanged(Set<StateSlices.Slice> slices, StateListener lis) {
+        stateSlices.add(slices, lis);
     }
 
     public void removeOnStateChanged(StateListener lis) {
-        listeners.remove(lis);
+        stateSlices.remove(lis);
+    }
+
+    public StateSlices.Stats getStateStats() {
+        return stateSlices.stats();
     }
 
     public record BufferingProgress(long total, long count) {}
@@ -410,7 +519,9 @@ public class AppManager {
             PlaybinPlayer.PlayerState player,
             PlayQueue.PlayQueueState queue,
             NetworkState networkState,
-            ServerState serverState
+            ServerState serverState,
+            // present while a library sync is running
+            Optional<SyncService.SyncProgress> sync
     ) implements AppManagerAppStateBuilder.With {}
 
     public void enqueue(SongInfo songInfo) {
@@ -456,23 +567,25 @@ public class AppManager {
     }
 
     private LoadSongResult loadSourceSyncInner(SongInfo songInfo, boolean startPaused) {
+        var latencyTrace = this.playbackLatency.take();
         this.pause();
         UUID requestId = UUID.randomUUID();
         // resolve the songUri:
         // - authentication in the url may have been changed since it was generated
         // - transcode settings my have changed since it was generated
         var songUri = resolveStreamUri(songInfo);
+        latencyTrace.mark(PlaybackLatency.Stage.STREAM_URI_RESOLVED);
 
+        var cacheQuery = new SongCache.SongCacheQuery(
+                SERVER_ID, songInfo.id(), songInfo.transcodeInfo().streamFormat()
+        );
+        boolean isCached = songCache.isCached(cacheQuery);
+        latencyTrace.mark(PlaybackLatency.Stage.CACHE_LOOKUP);
         // If server is unreachable and song is not cached, we can't play it
-        if (songUri.isEmpty()) {
-            var cacheQuery = new SongCache.SongCacheQuery(
-                    SERVER_ID, songInfo.id(), songInfo.transcodeInfo().streamFormat()
-            );
-            if (!songCache.isCached(cacheQuery)) {
-                this.toast(new PlayerAction.Toast(new org.gnome.adw.Toast("Song not available offline")));
-                this.setState(old -> old.withNowPlaying(Optional.empty()));
-                return null;
-            }
+        if (songUri.isEmpty() && !isCached) {
+            this.toast(new PlayerAction.Toast(new org.gnome.adw.Toast("Song not available offline")));
+            this.setState(old -> old.withNowPlaying(Optional.empty()));
+            return null;
         }
 
         this.setState(old -> old.with()
@@ -494,7 +607,8 @@ public class AppManager {
                 .build()
         );
         AtomicBoolean isCancelled = new AtomicBoolean(false);
-        LoadSongResult cachedSong = songCache.getSong(new CacheSong(
+        // returns once playback can start, a song that is still downloading plays from a local stream
+        StreamedSong streamed = songCache.streamSong(new CacheSong(
                 SERVER_ID,
                 songInfo.id(),
                 songInfo.transcodeInfo(),
@@ -521,15 +635,13 @@ public class AppManager {
                     });
                 }
         ));
-        log.info("cached: result={} id={} title={}", cachedSong.result().name(), songInfo.id(), songInfo.title());
-        // Track this song as cached so it shows as available offline
-        String checksum = null;
-        try (var is = cachedSong.uri().toURL().openStream()) {
-            checksum = sha256(is);
-        } catch (Exception e) {
-            log.warn("Failed to calculate checksum for cached song: {}", songInfo.id(), e);
-        }
-        this.downloadManager.markAsCached(songInfo, checksum);
+        this.currentDownload = streamed.completed();
+        // enough to start playing: the whole file, or the first bytes of a song that plays while it downloads
+        latencyTrace.mark(PlaybackLatency.Stage.DOWNLOADED);
+        LoadSongResult cachedSong = streamed.completed().getNow(new LoadSongResult(CacheResult.MISS, streamed.playbackUri()));
+        log.info("cached: result={} id={} title={} uri={}", cachedSong.result().name(), songInfo.id(), songInfo.title(), streamed.playbackUri());
+        // hashes the whole file, not on the way to starting playback
+        streamed.completed().thenAccept(downloaded -> Utils.doAsync(() -> markCached(songInfo, downloaded)));
         AppState appState = this.currentState.getValue();
         var currentSongId = appState.nowPlaying().map(NowPlaying::song).map(SongInfo::id).orElse("");
         if (!currentSongId.equals(songInfo.id())) {
@@ -537,10 +649,17 @@ public class AppManager {
             return cachedSong;
         }
         boolean startPlaying = !startPaused;
+        // setSource drops the next source of the previous song
+        this.nextSongId.set(null);
+        this.preparedNext.set(null);
+        // swaps to the prerolled standby pipeline when this is the song prepareNextSource() prepared
         this.player.setSource(
                 new AudioSource(cachedSong.uri(), songInfo.duration()),
                 startPlaying
         );
+        latencyTrace.mark(PlaybackLatency.Stage.SET_SOURCE);
+        // completed by the player reporting PLAYING, a song loaded paused does not make a sound
+        this.awaitingPlaying.set(startPlaying ? latencyTrace : null);
 
         this.setState(old -> old.withNowPlaying(Optional.of(new NowPlaying(
                 songInfo,
@@ -549,6 +668,7 @@ public class AppManager {
                 new BufferingProgress(1000, 1000),
                 Optional.of(cachedSong)
         ))));
+        this.prepareNextSource();
 
         // block after updating UI NowPlaying state
         if (!startPlaying) {
@@ -558,6 +678,105 @@ public class AppManager {
         return cachedSong;
     }
 
+    // Track this song as cached so it shows as available offline
+    private void markCached(SongInfo songInfo, LoadSongResult cachedSong) {
+        String checksum = null;
+        try (var is = cachedSong.uri().toURL().openStream()) {
+            checksum = sha256(is);
+        } catch (Exception e) {
+            log.warn("Failed to calculate checksum for cached song: {}", songInfo.id(), e);
+        }
+        this.downloadManager.markAsCached(songInfo, checksum);
+    }
+
+    private record PreparedSource(SongInfo song, LoadSongResult cachedSong) {}
+
+    /**
+     * Downloads the next song of the queue and hands it to the player, which then continues with it without a gap
+     * when the current song ends, and prerolls it so skipping to it starts at once. Runs again on every queue change, and only downloads when the next song changed.
+     * Waits until the current song is downloaded, not just playing, so the two downloads do not compete.
+     */
+    private void prepareNextSource() {
+        var playing = this.getState().nowPlaying();
+        if (playing.isEmpty() || playing.get().state() != READY) {
+            return;
+        }
+        var download = this.currentDownload;
+        if (!download.isDone()) {
+            // the current song still streams, the next download would compete with it
+            download.whenComplete((result, throwable) -> this.prepareNextSource());
+            return;
+        }
+        var next = this.playQueue.peekNext().map(GSongInfo::getSongInfo);
+        if (next.isEmpty()) {
+            this.nextSongId.set(null);
+            this.preparedNext.set(null);
+            this.player.setNextSource(Optional.empty());
+            return;
+        }
+        var song = next.get();
+        if (song.id().equals(this.nextSongId.getAndSet(song.id()))) {
+            // prepared or preparing already
+            return;
+        }
+        this.preparedNext.set(null);
+        this.player.setNextSource(Optional.empty());
+        Utils.doAsync(() -> {
+            var cacheQuery = new SongCache.SongCacheQuery(SERVER_ID, song.id(), song.transcodeInfo().streamFormat());
+            if (!songCache.isCached(cacheQuery) && resolveStreamUri(song).isEmpty()) {
+                // offline and not cached, the player stops at the end and the queue reports it as usual
+                return;
+            }
+            var cachedSong = songCache.getSong(new CacheSong(
+                    SERVER_ID,
+                    song.id(),
+                    song.transcodeInfo(),
+                    song.suffix(),
+                    song.size(),
+                    (total, count) -> {}
+            ));
+            markCached(song, cachedSong);
+            if (!song.id().equals(this.nextSongId.get())) {
+                // the queue or the current song changed while downloading
+                return;
+            }
+            this.preparedNext.set(new PreparedSource(song, cachedSong));
+            this.player.setNextSource(Optional.of(new AudioSource(cachedSong.uri(), song.duration())));
+            log.info("prepareNextSource: next id={} title={} result={}", song.id(), song.title(), cachedSong.result().name());
+        }).exceptionally(throwable -> {
+            log.warn("prepareNextSource: failed to load next id={}", song.id(), throwable);
+            this.nextSongId.compareAndSet(song.id(), null);
+            return null;
+        });
+    }
+
+    // the player continued with the prepared song on its own, catch up the queue and now playing
+    private void onSourceAdvanced(AudioSource next) {
+        // on the STREAM_START of the next source, it plays as the previous one ends
+        this.playbackLatency.recordGapless();
+        var prepared = this.preparedNext.getAndSet(null);
+        this.nextSongId.set(null);
+        if (prepared == null || !prepared.cachedSong().uri().equals(next.uri())) {
+            log.warn("onSourceAdvanced: player continued with an unknown src={}", next.uri());
+            return;
+        }
+        var song = prepared.song();
+        log.info("onSourceAdvanced: gapless switch to id={} title={}", song.id(), song.title());
+        this.setState(old -> old.withNowPlaying(Optional.of(new NowPlaying(
+                song,
+                READY,
+                UUID.randomUUID(),
+                new BufferingProgress(1000, 1000),
+                Optional.of(prepared.cachedSong())
+        ))));
+        var queuedNext = this.playQueue.peekNext();
+        if (queuedNext.isPresent() && queuedNext.get().getId().equals(song.id())) {
+            // notifies the queue state, which prepares the song after this one
+            this.playQueue.advanceToNext();
+        }
+        this.prepareNextSource();
+    }
+
     private Optional<URI> resolveStreamUri(SongInfo songInfo) {
         try {
             return Optional.of(this.useClient(client -> client.getStreamUri(songInfo.id())));
@@ -603,6 +822,15 @@ public class AppManager {
     }
 
     public CompletableFuture<Void> handleAction(PlayerAction action) {
+        // the time from here to sound is measured, before waiting for an executor
+        switch (action) {
+            case PlayerAction.PlayAndReplaceQueue _ -> this.playbackLatency.begin(PlaybackLatency.Kind.PLAY);
+            case PlayPositionInQueue _ -> this.playbackLatency.begin(PlaybackLatency.Kind.PLAY);
+            case PlayerAction.PlaySong _ -> this.playbackLatency.begin(PlaybackLatency.Kind.PLAY);
+            case PlayerAction.PlayNext _ -> this.playbackLatency.begin(PlaybackLatency.Kind.SKIP);
+            case PlayerAction.PlayPrev _ -> this.playbackLatency.begin(PlaybackLatency.Kind.SKIP);
+            default -> {}
+        }
         return doAsync(() -> {
             log.info("handleAction: payload={}", action);
             switch (action) {
@@ -634,6 +862,7 @@ public class AppManager {
                 case PlayerAction.Star a -> this.starSong(a);
                 case PlayerAction.Star2 a -> this.starSong(a);
                 case PlayerAction.StarRefresh a -> this.starredList.handleRefresh(a);
+                case PlayerAction.StarLoadMore _ -> this.starredList.loadMoreAsync();
                 case PlayerAction.Unstar a -> this.unstarSong(a);
                 case PlayerAction.PlaySong playSong -> this.loadSourceAsync(playSong);
                 case PlayerAction.RefreshPlaylists _ -> this.playlistsStore.refreshListAsync();
@@ -688,14 +917,21 @@ public class AppManager {
                 case PlayerAction.OverrideNetworkStatus(var a) -> {
                     this.networkMonitor.setOverrideState(a);
                 }
-                case PlayerAction.SyncDatabase _ -> {
+                case PlayerAction.SyncDatabase sync -> {
                     var syncService = new SyncService(
-                            this.client.get(), this.dbService, UUID.fromString(SERVER_ID), this.thumbnailCache, this.songCache
+                            this.client.get(), this.dbService, UUID.fromString(SERVER_ID), this.thumbnailCache, this.songCache,
+                            this.config.syncMaxConcurrency,
+                            progress -> this.setState(s -> s.withSync(Optional.of(progress)))
                     );
-                    var stats = syncService.syncAll();
+                    SyncService.SyncStats stats;
+                    try {
+                        stats = sync.repair() ? syncService.syncAll() : syncService.syncIncremental();
+                    } finally {
+                        this.setState(s -> s.withSync(Optional.empty()));
+                    }
                     this.toast(new PlayerAction.Toast(new org.gnome.adw.Toast(
-                            "Synced %d artists, %d albums, %d songs".formatted(
-                                    stats.artists(), stats.albums(), stats.songs()
+                            "Synced %d artists, %d albums, %d songs, %d playlists (%d unchanged)".formatted(
+                                    stats.artists(), stats.albums(), stats.songs(), stats.playlists(), stats.playlistsSkipped()
                             )
                     )));
                 }
@@ -831,7 +1067,7 @@ public class AppManager {
     private void setClient(ServerClient newClient) {
         if (newClient != null) {
             var client = wrapWithCaching(newClient);
-            this.client.set(client);
+            stopClient(this.client.getAndSet(client));
             this.starredList.refreshAsync();
             this.playlistsStore.refreshListAsync();
             var newServerId = this.config.serverConfig != null
@@ -839,7 +1075,13 @@ public class AppManager {
                     : ServerState.empty();
             this.setState(old -> old.withServerState(newServerId));
         } else {
-            this.client.set(null);
+            stopClient(this.client.getAndSet(null));
+        }
+    }
+
+    private static void stopClient(CachingClient previous) {
+        if (previous != null) {
+            previous.stop();
         }
     }
 
@@ -847,9 +1089,16 @@ public class AppManager {
         // Do not force-sync the network status at creation: CachingClient defaults to ONLINE
         // so the server is tried first. The network monitor will update it once it has
         // queried the real connectivity (which in flatpak can take ~500 ms via the portal).
-        var client = new CachingClient(raw, this.dbService, SERVER_ID, this.config.dataDir);
+        var client = new CachingClient(
+                raw,
+                this.dbService,
+                SERVER_ID,
+                this.config.dataDir,
+                circuitState -> this.setState(appState -> appState.withNetworkState(effectiveNetworkState()))
+        );
         // Async DNS pre-check: if the server hostname can't be resolved within 5 seconds,
-        // flip to offline immediately so feign requests don't block on the OS DNS timeout (~30s on macOS).
+        // trip the circuit breaker immediately so requests don't block on the OS DNS timeout (~30s on macOS).
+        // The breaker keeps pinging the server in the background and closes again once it answers.
         if (this.config.serverConfig != null) {
             var host = URI.create(this.config.serverConfig.url()).getHost();
             CompletableFuture.runAsync(() -> {
@@ -857,11 +1106,11 @@ public class AppManager {
                     java.net.InetAddress.getByName(host);
                 } catch (Exception e) {
                     log.info("DNS pre-check: host {} not resolvable", host);
-                    client.setNetworkStatus(NetworkMonitoring.NetworkStatus.OFFLINE);
+                    client.getCircuitBreaker().tripOpen("DNS pre-check failed for " + host);
                 }
             }).orTimeout(5, TimeUnit.SECONDS).exceptionally(e -> {
                 log.info("DNS pre-check: timed out resolving {}, switching to offline", host);
-                client.setNetworkStatus(NetworkMonitoring.NetworkStatus.OFFLINE);
+                client.getCircuitBreaker().tripOpen("DNS pre-check timed out for " + host);
                 return null;
             });
         }
@@ -979,8 +1228,8 @@ public class AppManager {
         return this.playlistsStore.playlistsListStore();
     }
 
-    public ListStore<GQueueItem> getPlayQueueListStore() {
-        return this.playQueue.getListStore();
+    public GQueueListModel getPlayQueueListModel() {
+        return this.playQueue.getListModel();
     }
 
     private final Lock lock = new ReentrantLock();
@@ -1063,12 +1312,8 @@ public class AppManager {
         }
     }
 
+    // runs on the single thread observing currentState, so listeners see the states in order
     private void notifyListeners() {
-        var state = this.currentState.getValue();
-        Thread.startVirtualThread(() -> {
-            for (StateListener stateListener : listeners) {
-                stateListener.onStateChanged(state);
-            }
-        });
+        stateSlices.publish(this.currentState.getValue());
     }
 }
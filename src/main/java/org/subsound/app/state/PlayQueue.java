@@ -3,26 +3,34 @@ package org.subsound.app.state;
 import org.subsound.app.state.PlayerAction.PlayMode;
 import org.subsound.integration.ServerClient.ObjectIdentifier;
 import org.subsound.integration.ServerClient.SongInfo;
+import org.subsound.persistence.database.PlayQueueRow;
+import org.subsound.persistence.database.PlayQueueService;
+import org.subsound.persistence.database.PlayQueueStateRow;
 import org.subsound.sound.PlaybinPlayer;
 import org.subsound.sound.PlaybinPlayer.Source;
 import org.subsound.sound.Player;
 import org.subsound.ui.models.GQueueItem;
+import org.subsound.ui.models.GQueueListModel;
 import org.subsound.ui.models.GSongInfo;
 import org.subsound.ui.models.GSongInfo.GSongStore;
 import org.subsound.ui.views.PlaylistListViewV2;
 import org.subsound.utils.Utils;
-import org.gnome.gio.ListStore;
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static org.subsound.sound.PlaybinPlayer.PlayerStates.END_OF_STREAM;
@@ -38,9 +46,14 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
     private final Player player;
     private final Consumer<PlayQueueState> onStateChanged;
     private final Consumer<GSongInfo> onPlay;
-    private final ListStore<GQueueItem> listStore = new ListStore<>(GQueueItem.gtype);
+    private final GQueueListModel listModel = GQueueListModel.newInstance();
     private final GSongStore songstore;
-    private Optional<ObjectIdentifier> playContext;
+    // null when the queue is not persisted
+    private final @Nullable PlayQueueService queueService;
+    // writes the changes to the database in the order they happened, off the caller's thread
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("play-queue-writer").factory());
+    private final AtomicLong nextEntryId = new AtomicLong(1);
+    private Optional<ObjectIdentifier> playContext = Optional.empty();
     private Optional<Integer> position = Optional.empty();
     private PlayMode playMode = PlayMode.NORMAL;
 
@@ -49,23 +62,99 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
             GSongStore songStore,
             Consumer<PlayQueueState> onStateChanged,
             Consumer<GSongInfo> onPlay
+    ) {
+        this(player, songStore, null, onStateChanged, onPlay);
+    }
+
+    public PlayQueue(
+            Player player,
+            GSongStore songStore,
+            @Nullable PlayQueueService queueService,
+            Consumer<PlayQueueState> onStateChanged,
+            Consumer<GSongInfo> onPlay
     ) {
         this.player = player;
         this.songstore = songStore;
+        this.queueService = queueService;
         this.onStateChanged = onStateChanged;
         this.onPlay = onPlay;
         this.player.onStateChanged(this);
     }
 
-    public ListStore<GQueueItem> getListStore() {
-        return this.listStore;
+    public GQueueListModel getListModel() {
+        return this.listModel;
+    }
+
+    /**
+     * Restores the queue saved by a previous run, without playing it. Only the entries are created, their songs
+     * are loaded the first time they are used.
+     */
+    public void restore() {
+        var service = this.queueService;
+        if (service == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        var saved = service.load();
+        var items = new GQueueItem[saved.items().size()];
+        long maxEntryId = 0;
+        for (int i = 0; i < items.length; i++) {
+            var row = saved.items().get(i);
+            var kind = row.userAdded() ? GQueueItem.QueueKind.USER_ADDED : GQueueItem.QueueKind.AUTOMATIC;
+            items[i] = GQueueItem.newLazy(row.entryId(), row.queueItemId(), row.songId(), kind, row.sortKey(), songstore::getSongById);
+            maxEntryId = Math.max(maxEntryId, row.entryId());
+        }
+        Optional<Integer> restoredPosition;
+        synchronized (lock) {
+            this.nextEntryId.set(maxEntryId + 1);
+            saved.state().ifPresent(state -> {
+                this.position = state.position().filter(p -> p >= 0 && p < items.length);
+                this.playMode = parsePlayMode(state.playMode());
+                this.playContext = toPlayContext(state);
+            });
+            // saved in unshuffled order, the saved order shuffles them
+            var order = saved.shuffleOrder();
+            if (order != null && !isOrderOf(order, items.length)) {
+                log.warn("restore: ignoring an invalid shuffle order of {} for {} entries", order.length, items.length);
+                order = null;
+            }
+            if (this.playMode == PlayMode.SHUFFLE && order == null && items.length > 1) {
+                // the position is in an order that is lost
+                this.playMode = PlayMode.NORMAL;
+                this.position = Optional.empty();
+            }
+            this.listModel.setItems(items, order);
+            restoredPosition = this.position;
+            // the same state is in the database already
+            this.onStateChanged.accept(getState());
+        }
+        log.info("restore: restored {} entries in {}ms", items.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        restoredPosition.ifPresent(pos -> Utils.doAsync(() -> {
+            // load the playing song off the main thread, the styling needs it
+            items[pos].getSongInfo();
+            updateCurrentItemStyling(-1, pos);
+        }));
+    }
+
+    /**
+     * Waits for the queued writes to the database, and stops writing.
+     */
+    public void stopPersisting() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("stopPersisting: writes to the database did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public PlayQueueState getState() {
         synchronized (lock) {
             var playingItemId = position
-                    .filter(p -> p >= 0 && p < listStore.getNItems())
-                    .map(p -> listStore.getItem(p).getQueueItemId());
+                    .filter(p -> p >= 0 && p < listModel.getNItems())
+                    .map(p -> listModel.getItem(p).getQueueItemId());
             return new PlayQueueState(this.playContext, position, playingItemId, playMode);
         }
     }
@@ -76,11 +165,11 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
                 log.warn("playPosition: can not play invalid position={}", newPosition);
                 return;
             }
-            if (newPosition >= listStore.getNItems()) {
+            if (newPosition >= listModel.getNItems()) {
                 log.warn("playPosition: can not play invalid position={}", newPosition);
                 return;
             }
-            var newItem = listStore.get(newPosition);
+            var newItem = listModel.getItem(newPosition);
             int oldPosition = this.position.orElse(-1);
             this.position = Optional.of(newPosition);
             updateCurrentItemStyling(oldPosition, newPosition);
@@ -111,9 +200,149 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
     ){}
     private void notifyState() {
         var next = getState();
+        var stateRow = toStateRow(next);
+        persist("save state", service -> service.saveState(stateRow));
         this.onStateChanged.accept(next);
     }
 
+    private void persist(String what, Consumer<PlayQueueService> write) {
+        var service = this.queueService;
+        if (service == null) {
+            return;
+        }
+        try {
+            writer.execute(() -> {
+                try {
+                    write.accept(service);
+                } catch (Exception e) {
+                    log.warn("persist: failed to {}", what, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("persist: stopped persisting, not writing: {}", what);
+        }
+    }
+
+    // must hold lock: inserts the entry at position, with a sort key between its neighbours in the unshuffled order
+    private void insertEntry(int position, GQueueItem item) {
+        listModel.insert(position, item);
+        int index = listModel.unshuffledPosition(position);
+        var key = sortKeyAt(index);
+        if (key.isPresent()) {
+            item.setSortKey(key.get());
+        } else {
+            // many songs were inserted at the same place, there is no key left between these two
+            renumber();
+        }
+        var row = toRow(item);
+        persist("insert", service -> service.insert(row));
+        if (listModel.isShuffled()) {
+            saveShuffleOrder();
+        }
+    }
+
+    // must hold lock: a sort key between the entries before and after index of the unshuffled order
+    private Optional<Double> sortKeyAt(int index) {
+        var prev = listModel.getUnshuffledItem(index - 1);
+        var next = listModel.getUnshuffledItem(index + 1);
+        if (prev == null && next == null) {
+            return Optional.of(0.0);
+        }
+        if (prev == null) {
+            return Optional.of(next.getSortKey() - 1);
+        }
+        if (next == null) {
+            return Optional.of(prev.getSortKey() + 1);
+        }
+        return PlayQueueService.sortKeyBetween(prev.getSortKey(), next.getSortKey());
+    }
+
+    // must hold lock: the sort key of each entry is its unshuffled position
+    private void renumber() {
+        for (int i = 0; i < listModel.getNItems(); i++) {
+            listModel.getUnshuffledItem(i).setSortKey(i);
+        }
+        var rows = unshuffledRows();
+        persist("move entries", service -> service.updateOrder(rows));
+    }
+
+    // must hold lock
+    private List<PlayQueueRow> unshuffledRows() {
+        int size = listModel.getNItems();
+        var rows = new ArrayList<PlayQueueRow>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(toRow(listModel.getUnshuffledItem(i)));
+        }
+        return rows;
+    }
+
+    // must hold lock: the entries are not rewritten, only the order of the positions
+    private void saveShuffleOrder() {
+        var order = listModel.getOrder();
+        persist("save shuffle order", service -> service.saveShuffleOrder(order));
+    }
+
+    private static boolean isOrderOf(int[] order, int size) {
+        if (order.length != size) {
+            return false;
+        }
+        var seen = new boolean[size];
+        for (int index : order) {
+            if (index < 0 || index >= size || seen[index]) {
+                return false;
+            }
+            seen[index] = true;
+        }
+        return true;
+    }
+
+    private static PlayQueueRow toRow(GQueueItem item) {
+        return new PlayQueueRow(
+                item.getEntryId(),
+                item.getQueueItemId(),
+                item.getId(),
+                item.getSortKey(),
+                item.getIsUserQueued()
+        );
+    }
+
+    private static PlayQueueStateRow toStateRow(PlayQueueState state) {
+        var context = state.playContext();
+        return new PlayQueueStateRow(
+                state.position(),
+                state.playMode().name(),
+                context.map(c -> switch (c) {
+                    case ObjectIdentifier.ArtistIdentifier _ -> "artist";
+                    case ObjectIdentifier.AlbumIdentifier _ -> "album";
+                    case ObjectIdentifier.PlaylistIdentifier _ -> "playlist";
+                    case ObjectIdentifier.SongIdentifier _ -> "song";
+                }),
+                context.map(ObjectIdentifier::getId)
+        );
+    }
+
+    private static Optional<ObjectIdentifier> toPlayContext(PlayQueueStateRow state) {
+        if (state.playContextKind().isEmpty() || state.playContextId().isEmpty()) {
+            return Optional.empty();
+        }
+        var id = state.playContextId().get();
+        return switch (state.playContextKind().get()) {
+            case "artist" -> Optional.of(new ObjectIdentifier.ArtistIdentifier(id));
+            case "album" -> Optional.of(new ObjectIdentifier.AlbumIdentifier(id));
+            case "playlist" -> Optional.of(new ObjectIdentifier.PlaylistIdentifier(id));
+            case "song" -> Optional.of(new ObjectIdentifier.SongIdentifier(id));
+            default -> Optional.empty();
+        };
+    }
+
+    private static PlayMode parsePlayMode(String playMode) {
+        try {
+            return PlayMode.valueOf(playMode);
+        } catch (IllegalArgumentException e) {
+            return PlayMode.NORMAL;
+        }
+    }
+
 
     @Override
     public void onState(PlaybinPlayer.PlayerState st) {
@@ -124,38 +353,72 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
 
     public void attemptPlayNext() {
         synchronized (lock) {
-            if (listStore.isEmpty()) {
+            var next = nextIndex();
+            if (next.isEmpty()) {
                 return;
             }
-
-            // REPEAT_ONE: replay current song
-            if (playMode == PlayMode.REPEAT_ONE) {
-                int currentIdx = position.orElse(-1);
-                if (currentIdx >= 0 && currentIdx < listStore.getNItems()) {
-                    var queueItem = listStore.get(currentIdx);
-                    this.onPlay.accept(queueItem.getSongInfo());
-                    // No position change, no state notification needed
-                    return;
-                }
+            int oldIdx = position.orElse(-1);
+            int nextIdx = next.get();
+            var queueItem = listModel.getItem(nextIdx);
+            if (nextIdx == oldIdx) {
+                // REPEAT_ONE: replay current song
+                this.onPlay.accept(queueItem.getSongInfo());
+                // No position change, no state notification needed
+                return;
             }
+            this.position = Optional.of(nextIdx);
+            updateCurrentItemStyling(oldIdx, nextIdx);
+            this.onPlay.accept(queueItem.getSongInfo());
+            this.notifyState();
+        }
+    }
+
+    /**
+     * The song {@link #attemptPlayNext()} would play, without moving the queue. Used to prepare it ahead of time.
+     */
+    public Optional<GSongInfo> peekNext() {
+        synchronized (lock) {
+            return nextIndex().map(idx -> listModel.getItem(idx).getSongInfo());
+        }
+    }
 
+    /**
+     * Moves to the song {@link #peekNext()} returned without playing it, for when the player already continued with it.
+     */
+    public void advanceToNext() {
+        synchronized (lock) {
+            var next = nextIndex();
             int oldIdx = position.orElse(-1);
-            int nextIdx = oldIdx + 1;
-            if (nextIdx >= listStore.getNItems()) {
-                // we have reached the end of the queue
+            if (next.isEmpty() || next.get() == oldIdx) {
                 return;
             }
-            var queueItem = listStore.get(nextIdx);
+            int nextIdx = next.get();
             this.position = Optional.of(nextIdx);
             updateCurrentItemStyling(oldIdx, nextIdx);
-            this.onPlay.accept(queueItem.getSongInfo());
             this.notifyState();
         }
     }
 
+    // must hold lock. The current position again in REPEAT_ONE, empty at the end of the queue
+    private Optional<Integer> nextIndex() {
+        if (listModel.getNItems() == 0) {
+            return Optional.empty();
+        }
+        int currentIdx = position.orElse(-1);
+        if (playMode == PlayMode.REPEAT_ONE && currentIdx >= 0 && currentIdx < listModel.getNItems()) {
+            return Optional.of(currentIdx);
+        }
+        int nextIdx = currentIdx + 1;
+        if (nextIdx >= listModel.getNItems()) {
+            // we have reached the end of the queue
+            return Optional.empty();
+        }
+        return Optional.of(nextIdx);
+    }
+
     public void attemptPlayPrev() {
         synchronized (lock) {
-            if (listStore.isEmpty()) {
+            if (listModel.getNItems() == 0) {
                 return;
             }
             var state = player.getState();
@@ -175,7 +438,7 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
                 player.seekTo(Duration.ZERO);
                 return;
             }
-            var queueItem = listStore.get(prevIdx);
+            var queueItem = listModel.getItem(prevIdx);
             this.position = Optional.of(prevIdx);
             updateCurrentItemStyling(oldIdx, prevIdx);
             this.onPlay.accept(queueItem.getSongInfo());
@@ -188,8 +451,8 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
             int insertPosition = position.orElse(-1) + 1;
             var song = this.songstore.newInstance(songInfo);
             var queueItemId = PlaylistListViewV2.GPlaylistEntry.makeQueueItemId(song.getSongInfo().albumId(), song.getId(), insertPosition);
-            var queueItem = GQueueItem.newInstance(queueItemId, song, GQueueItem.QueueKind.USER_ADDED, insertPosition);
-            listStore.insert(insertPosition, queueItem);
+            var queueItem = GQueueItem.newInstance(nextEntryId.getAndIncrement(), queueItemId, song, GQueueItem.QueueKind.USER_ADDED, 0);
+            insertEntry(insertPosition, queueItem);
             this.notifyState();
         }
     }
@@ -198,8 +461,8 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
         synchronized (lock) {
             int currentPos = position.orElse(-1);
             int insertPos = currentPos + 1;
-            for (int i = currentPos + 1; i < listStore.getNItems(); i++) {
-                if (listStore.get(i).getIsUserQueued()) {
+            for (int i = currentPos + 1; i < listModel.getNItems(); i++) {
+                if (listModel.getItem(i).getIsUserQueued()) {
                     insertPos = i + 1;
                 } else {
                     break;
@@ -211,20 +474,25 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
                     song.getId(),
                     insertPos
             );
-            var queueItem = GQueueItem.newInstance(queueItemId, song, GQueueItem.QueueKind.USER_ADDED, insertPos);
-            listStore.insert(insertPos, queueItem);
+            var queueItem = GQueueItem.newInstance(nextEntryId.getAndIncrement(), queueItemId, song, GQueueItem.QueueKind.USER_ADDED, 0);
+            insertEntry(insertPos, queueItem);
             this.notifyState();
         }
     }
 
     public void removeAt(int index) {
         synchronized (lock) {
-            if (index < 0 || index >= listStore.getNItems()) {
+            if (index < 0 || index >= listModel.getNItems()) {
                 log.warn("removeAt: invalid index={}", index);
                 return;
             }
             int currentPos = position.orElse(-1);
-            listStore.removeAt(index);
+            long entryId = listModel.getItem(index).getEntryId();
+            listModel.removeAt(index);
+            persist("remove", service -> service.remove(entryId));
+            if (listModel.isShuffled()) {
+                saveShuffleOrder();
+            }
             if (index < currentPos) {
                 this.position = Optional.of(currentPos - 1);
             } else if (index == currentPos) {
@@ -245,33 +513,36 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
             for (int i = 0; i < slots.size(); i++) {
                 var slot = slots.get(i);
                 var song = this.songstore.newInstance(slot.song());
-                newList[i] = GQueueItem.newInstance(slot.id(), song, GQueueItem.QueueKind.AUTOMATIC, i);
+                newList[i] = GQueueItem.newInstance(nextEntryId.getAndIncrement(), slot.id(), song, GQueueItem.QueueKind.AUTOMATIC, i);
             }
 
             synchronized (lock) {
-                boolean isShuffleMode = playMode == PlayMode.SHUFFLE;
-
                 // Clear isPlaying on the previously playing GSongInfo before replacing.
                 // GSongInfo instances are globally shared, so stale isPlaying=true would
                 // leak into the new queue if the same song appears at a different position.
                 int oldPos = this.position.orElse(-1);
                 this.position = startPosition.filter(pos -> pos >= 0 && pos < newList.length);
+                // in shuffle mode the new queue starts shuffled, with the song to play first
+                int[] order = playMode == PlayMode.SHUFFLE && newList.length > 1
+                        ? GQueueListModel.shuffledOrder(newList.length, this.position.orElse(-1), new Random())
+                        : null;
+                if (order != null && this.position.isPresent()) {
+                    this.position = Optional.of(0);
+                }
                 Utils.runOnMainThreadFuture(() -> {
                     // TODO: updating prev song is-playing should probably be done in AppState and AppManager by the switch to a new song
-                    if (oldPos >= 0 && oldPos < listStore.getNItems()) {
-                        listStore.getItem(oldPos).getSongInfo().setIsPlaying(false);
+                    if (oldPos >= 0 && oldPos < listModel.getNItems()) {
+                        listModel.getItem(oldPos).getSongInfo().setIsPlaying(false);
                     }
-                    this.listStore.removeAll();
-                    this.listStore.splice(0, 0, newList);
-                    var pos = this.position.filter(p -> p >= 0 && p < listStore.getNItems());
+                    this.listModel.setItems(newList, order);
+                    var pos = this.position.filter(p -> p >= 0 && p < listModel.getNItems());
                     if (pos.isPresent()) {
-                        listStore.getItem(pos.get()).getSongInfo().setIsPlaying(true);
+                        listModel.getItem(pos.get()).getSongInfo().setIsPlaying(true);
                     }
                 }).join();
-
-                if (isShuffleMode) {
-                    shuffle(false);
-                }
+                var rows = unshuffledRows();
+                persist("replace", service -> service.replaceAll(rows));
+                saveShuffleOrder();
                 this.notifyState();
             }
         });
@@ -291,11 +562,11 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
 
     private void updateCurrentItemStyling(int oldPosition, int newPosition) {
         Utils.runOnMainThread(() -> {
-            if (oldPosition != newPosition && oldPosition >= 0 && oldPosition < listStore.getNItems()) {
-                listStore.getItem(oldPosition).getSongInfo().setIsPlaying(false);
+            if (oldPosition != newPosition && oldPosition >= 0 && oldPosition < listModel.getNItems()) {
+                listModel.getItem(oldPosition).getSongInfo().setIsPlaying(false);
             }
-            if (newPosition >= 0 && newPosition < listStore.getNItems()) {
-                var nextItem = listStore.getItem(newPosition);
+            if (newPosition >= 0 && newPosition < listModel.getNItems()) {
+                var nextItem = listModel.getItem(newPosition);
                 nextItem.getSongInfo().setIsPlaying(true);
                 log.info("updateCurrentItemStyling: nextItem={}", nextItem.getId());
             }
@@ -309,39 +580,19 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
     private void shuffle(boolean doNotify) {
         synchronized (lock) {
             playMode = PlayMode.SHUFFLE;
-            if (listStore.getNItems() <= 1) {
+            int size = listModel.getNItems();
+            if (size <= 1) {
                 return;
             }
 
+            // the current song goes first, only the order of the positions changes
             int oldPos = position.orElse(-1);
-            GQueueItem currentItem = oldPos >= 0 ? listStore.getItem(oldPos) : null;
-
-            // Assign random positive shuffle numbers to all items
-            var random = new Random();
-            for (int i = 0; i < listStore.getNItems(); i++) {
-                // Use absolute value to ensure positive, add 1 to avoid 0
-                listStore.getItem(i).setShuffleOrder(random.nextInt(1, Integer.MAX_VALUE));
-            }
-
-            // Set current song's shuffle order to minimum so it sorts first
-            if (currentItem != null) {
-                currentItem.setShuffleOrder(Integer.MIN_VALUE);
-            }
-
-            // Extract items and sort by shuffleOrder (current song will be first)
-            var items = new ArrayList<GQueueItem>();
-            for (int i = 0; i < listStore.getNItems(); i++) {
-                items.add(listStore.getItem(i));
-            }
-            items.sort(Comparator.comparingInt(GQueueItem::getShuffleOrder));
-
-            Utils.runOnMainThreadFuture(() -> {
-                listStore.removeAll();
-                listStore.splice(0, 0, items.toArray(GQueueItem[]::new));
-            }).join();
+            int[] order = GQueueListModel.shuffledOrder(size, listModel.unshuffledPosition(oldPos), new Random());
+            Utils.runOnMainThreadFuture(() -> listModel.setOrder(order)).join();
+            saveShuffleOrder();
 
             // Current song is now at position 0
-            if (currentItem != null) {
+            if (oldPos >= 0) {
                 position = Optional.of(0);
             }
 
@@ -360,29 +611,17 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
 
     public void unshuffle() {
         synchronized (lock) {
-            if (playMode == PlayMode.NORMAL || listStore.getNItems() <= 1) {
+            if (playMode == PlayMode.NORMAL || listModel.getNItems() <= 1) {
                 return;
             }
 
-            // Extract items, sort by originalOrder, rebuild store
-            var items = new ArrayList<GQueueItem>();
-            for (int i = 0; i < listStore.getNItems(); i++) {
-                items.add(listStore.getItem(i));
-            }
-            items.sort(Comparator.comparingInt(GQueueItem::getOriginalOrder));
-
-            // Find new position of currently playing song
-            int oldPos = position.orElse(-1);
-            GQueueItem currentItem = oldPos >= 0 ? listStore.getItem(oldPos) : null;
-
-            Utils.runOnMainThreadFuture(() -> {
-                listStore.removeAll();
-                listStore.splice(0, 0, items.toArray(GQueueItem[]::new));
-            }).join();
-
             // Update position to track the same song
-            if (currentItem != null) {
-                position = Optional.of(items.indexOf(currentItem));
+            int oldPos = position.orElse(-1);
+            int newPos = listModel.unshuffledPosition(oldPos);
+            Utils.runOnMainThreadFuture(() -> listModel.setOrder(null)).join();
+            saveShuffleOrder();
+            if (newPos >= 0) {
+                position = Optional.of(newPos);
             }
 
             playMode = PlayMode.NORMAL;
@@ -393,6 +632,7 @@ public class PlayQueue implements AutoCloseable, PlaybinPlayer.OnStateChanged {
     @Override
     public void close() throws Exception {
         this.player.removeOnStateChanged(this);
+        this.stopPersisting();
     }
 
 }
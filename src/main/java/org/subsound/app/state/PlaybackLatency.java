@@ -0,0 +1,154 @@
+package org.subsound.app.state;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.subsound.utils.Histogram;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Time from a play request to sound, split by stage. A {@link Trace} is started when the action is dispatched,
+ * marked as the song goes through each {@link Stage}, and recorded once the player reports PLAYING.
+ * Latency per stage and in total per {@link Kind} is kept in a {@link Histogram}, and logged.
+ */
+public class PlaybackLatency {
+    private static final Logger log = LoggerFactory.getLogger(PlaybackLatency.class);
+    private static final long LOG_SUMMARY_EVERY = 20;
+    // a pending trace this old did not lead to a song being loaded
+    private static final Duration PENDING_MAX_AGE = Duration.ofSeconds(10);
+
+    public enum Kind {
+        // a song picked from a list
+        PLAY,
+        // next or previous
+        SKIP,
+        // the queue continued on its own at the end of a song
+        AUTO,
+    }
+
+    // in order, each stage is the time since the previous one
+    public enum Stage {
+        STREAM_URI_RESOLVED,
+        CACHE_LOOKUP,
+        DOWNLOADED,
+        SET_SOURCE,
+        PLAYING,
+    }
+
+    public static final class Trace {
+        private final Kind kind;
+        private final long startedNanos;
+        private final Map<Stage, Long> stageMillis = new EnumMap<>(Stage.class);
+        private long lastNanos;
+
+        private Trace(Kind kind, long startedNanos) {
+            this.kind = kind;
+            this.startedNanos = startedNanos;
+            this.lastNanos = startedNanos;
+        }
+
+        public synchronized void mark(Stage stage) {
+            long now = System.nanoTime();
+            stageMillis.put(stage, Duration.ofNanos(now - lastNanos).toMillis());
+            lastNanos = now;
+        }
+
+        private synchronized long totalMillis() {
+            return Duration.ofNanos(lastNanos - startedNanos).toMillis();
+        }
+    }
+
+    private final Map<Stage, Histogram> stages = new EnumMap<>(Stage.class);
+    private final Map<Kind, Histogram> totals = new EnumMap<>(Kind.class);
+    private final AtomicReference<Trace> pending = new AtomicReference<>();
+    private final AtomicLong recorded = new AtomicLong();
+
+    public PlaybackLatency() {
+        for (var stage : Stage.values()) {
+            stages.put(stage, new Histogram());
+        }
+        for (var kind : Kind.values()) {
+            totals.put(kind, new Histogram());
+        }
+    }
+
+    /**
+     * A play action was dispatched, the next {@link #take()} continues its trace.
+     */
+    public void begin(Kind kind) {
+        pending.set(new Trace(kind, System.nanoTime()));
+    }
+
+    /**
+     * @return the trace of the action that is loading a song, or a new {@link Kind#AUTO} trace when there is none
+     */
+    public Trace take() {
+        var trace = pending.getAndSet(null);
+        long now = System.nanoTime();
+        if (trace == null || now - trace.startedNanos > PENDING_MAX_AGE.toNanos()) {
+            return new Trace(Kind.AUTO, now);
+        }
+        return trace;
+    }
+
+    /**
+     * The player continued with the next song without stopping: as the previous song ends the next one plays, there
+     * is no silence to measure. Recorded as an {@link Kind#AUTO} trace that is PLAYING when it starts, so AUTO covers
+     * gapless switches as well as songs loaded at the end of the previous one.
+     */
+    public void recordGapless() {
+        var trace = new Trace(Kind.AUTO, System.nanoTime());
+        trace.mark(Stage.PLAYING);
+        record(trace);
+    }
+
+    public void record(Trace trace) {
+        long total;
+        String stageLine;
+        synchronized (trace) {
+            trace.stageMillis.forEach((stage, millis) -> stages.get(stage).record(millis));
+            total = trace.totalMillis();
+            stageLine = trace.stageMillis.entrySet().stream()
+                    .map(e -> "%s=%dms".formatted(e.getKey().name(), e.getValue()))
+                    .collect(Collectors.joining(" "));
+        }
+        totals.get(trace.kind).record(total);
+        log.info("playback latency: kind={} total={}ms {}", trace.kind, total, stageLine);
+        if (recorded.incrementAndGet() % LOG_SUMMARY_EVERY == 0) {
+            logSummary();
+        }
+    }
+
+    public Histogram stage(Stage stage) {
+        return stages.get(stage);
+    }
+
+    public Histogram total(Kind kind) {
+        return totals.get(kind);
+    }
+
+    public void logSummary() {
+        summaryLines().forEach(line -> log.info("playback latency: {}", line));
+    }
+
+    /**
+     * @return one line per kind and stage, e.g. for a debug view
+     */
+    public List<String> summaryLines() {
+        var lines = new ArrayList<String>();
+        for (var kind : Kind.values()) {
+            lines.add("total %-20s %s".formatted(kind.name(), totals.get(kind).summary("ms")));
+        }
+        for (var stage : Stage.values()) {
+            lines.add("stage %-20s %s".formatted(stage.name(), stages.get(stage).summary("ms")));
+        }
+        return lines;
+    }
+}
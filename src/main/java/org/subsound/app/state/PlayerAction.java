@@ -44,6 +44,8 @@ public sealed interface PlayerAction {
     record Star(SongInfo song) implements PlayerAction {}
     record Star2(GSongInfo song) implements PlayerAction {}
     record StarRefresh(boolean forced) implements PlayerAction {}
+    // the starred list scrolled near its end, load the next page if there is one
+    record StarLoadMore() implements PlayerAction {}
     record Unstar(SongInfo song) implements PlayerAction {}
     record AddToPlaylist(SongInfo song, String playlistId, String playlistName) implements PlayerAction {}
     record RemoveFromPlaylist(SongInfo song, int originalPosition, String playlistId, String playlistName) implements PlayerAction {}
@@ -64,7 +66,12 @@ public sealed interface PlayerAction {
             this(toast, Duration.ofMillis(2000));
         }
     }
-    record SyncDatabase() implements PlayerAction {}
+    // repair: throw away the local library and fetch everything again instead of syncing only what changed
+    record SyncDatabase(boolean repair) implements PlayerAction {
+        public SyncDatabase() {
+            this(false);
+        }
+    }
     record ClearSongCache() implements PlayerAction {}
     record ClearThumbnailCache() implements PlayerAction {}
     record OverrideNetworkStatus(Optional<NetworkMonitoring.NetworkStatus> overrideStatus) implements PlayerAction {}
@@ -1,6 +1,7 @@
 package org.subsound.app.state;
 
 import org.subsound.integration.ServerClient;
+import org.subsound.persistence.CachingClient.LocalSearchResult;
 import org.subsound.ui.models.GSearchResultItem;
 import org.subsound.utils.LevenshteinSearch;
 import org.subsound.utils.Utils;
@@ -10,9 +11,11 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
@@ -22,12 +25,15 @@ public class SearchResultStore {
     private final Object lock = new Object();
     private final ListStore<GSearchResultItem> store = new ListStore<>(GSearchResultItem.gtype);
     private final Supplier<ServerClient> client;
+    // the local full-text index, shown while the server search is still in flight
+    private final Function<String, Optional<LocalSearchResult>> localSearch;
 
     private volatile SearchStatus currentStatus = SearchStatus.INITIAL;
     private final AtomicReference<String> searchId = new AtomicReference<>();
 
-    public SearchResultStore(Supplier<ServerClient> client) {
+    public SearchResultStore(Supplier<ServerClient> client, Function<String, Optional<LocalSearchResult>> localSearch) {
         this.client = client;
+        this.localSearch = localSearch;
     }
 
     public enum SearchStatus {
@@ -48,9 +54,18 @@ public class SearchResultStore {
 
         return Utils.doAsync(() -> {
             this.clear().join();
+            Optional<LocalSearchResult> local = Optional.empty();
             try {
                 var searchFuture = Utils.doAsync(() -> this.client.get().search(query));
                 var playlistsFuture = Utils.doAsync(() -> this.client.get().getPlaylists());
+                local = searchLocal(query);
+                if (local.isPresent() && id.equals(this.searchId.get())) {
+                    var l = local.get().result();
+                    // the index also matches names that only differ in accents. Its songs are sorted like the
+                    // server's below, so the list keeps its order when the server results replace it
+                    var sortedLocal = new ServerClient.SearchResult(l.artists(), l.albums(), sortByRelevance(l.songs(), query));
+                    this.setResults(sortedLocal, local.get().playlists());
+                }
                 var searchResult = searchFuture.join();
                 var playlistsResult = playlistsFuture.join();
                 if (!id.equals(this.searchId.get())) {
@@ -70,11 +85,27 @@ public class SearchResultStore {
             } catch (Exception e) {
                 this.currentStatus = SearchStatus.DONE;
                 log.info("searchAsync: status={} query={}, id={}", currentStatus, query, id, e);
+                if (local.isPresent()) {
+                    // the local results are already showing, keep them
+                    return local.get().result();
+                }
                 throw e;
             }
         });
     }
 
+    private Optional<LocalSearchResult> searchLocal(String query) {
+        try {
+            return this.localSearch.apply(query).filter(l -> !l.playlists().isEmpty()
+                    || !l.result().artists().isEmpty()
+                    || !l.result().albums().isEmpty()
+                    || !l.result().songs().isEmpty());
+        } catch (Exception e) {
+            log.warn("searchLocal: failed for query={}", query, e);
+            return Optional.empty();
+        }
+    }
+
     public void setResults(ServerClient.SearchResult result, List<ServerClient.PlaylistSimple> playlists) {
         synchronized (lock) {
             var artistItems = result.artists().stream()
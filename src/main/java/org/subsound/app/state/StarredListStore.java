@@ -1,7 +1,7 @@
 package org.subsound.app.state;
 
-import org.subsound.integration.ServerClient;
 import org.subsound.integration.ServerClient.SongInfo;
+import org.subsound.persistence.database.Page;
 import org.subsound.ui.models.GSongInfo;
 import org.subsound.ui.models.GSongInfo.GSongStore;
 import org.subsound.utils.Utils;
@@ -19,9 +19,12 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 public class StarredListStore {
     private static final Logger log = LoggerFactory.getLogger(StarredListStore.class);
+    // offline the starred songs come from the database this many at a time, online the server sends all of them
+    private static final int PAGE_SIZE = 200;
 
     private final Object lock = new Object();
     private final ListStore<GSongInfo> store;
@@ -29,6 +32,8 @@ public class StarredListStore {
     private final GSongStore songStore;
     private final ArrayList<String> backingIds = new ArrayList<>();
     private final AtomicBoolean isLoading = new AtomicBoolean(false);
+    // the page after the last loaded one, guarded by lock
+    private Optional<Supplier<Page<SongInfo>>> nextPage = Optional.empty();
 
     public StarredListStore(AppManager appManager) {
         this.appManager = appManager;
@@ -55,9 +60,14 @@ public class StarredListStore {
             }
 
             try {
-                var list = this.appManager.useClient(ServerClient::getStarred);
+                int loaded;
                 synchronized (lock) {
-                    var newSongs = list.songs();
+                    loaded = backingIds.size();
+                }
+                // reload as many as are showing, so a refresh does not cut the list back to the first page
+                var page = this.appManager.useCachingClient(c -> c.getStarredPage(Math.max(PAGE_SIZE, loaded)));
+                synchronized (lock) {
+                    var newSongs = page.items();
                     var diff = mergeRefresh(backingIds, newSongs);
 
                     var removalIndices = diff.removalIndices();
@@ -83,6 +93,7 @@ public class StarredListStore {
                     for (var song : newSongs) {
                         backingIds.add(song.id());
                     }
+                    this.nextPage = page.next();
                     log.info("mergeRefresh: total={} removals={} insertions={} updated={}",
                             newSongs.size(),
                             removalIndices.size(),
@@ -98,6 +109,42 @@ public class StarredListStore {
         });
     }
 
+    /**
+     * Appends the next page of starred songs, if the list came from the database and has more.
+     *
+     * @return number of songs appended
+     */
+    public CompletableFuture<Integer> loadMoreAsync() {
+        return Utils.doAsync(() -> {
+            Optional<Supplier<Page<SongInfo>>> next;
+            synchronized (lock) {
+                next = this.nextPage;
+            }
+            if (next.isEmpty() || !isLoading.compareAndSet(false, true)) {
+                return 0;
+            }
+            try {
+                var page = next.get().get();
+                synchronized (lock) {
+                    if (this.nextPage != next) {
+                        // a refresh replaced the list while this page was loading
+                        return 0;
+                    }
+                    var gSongs = page.items().stream().map(songStore::newInstance).toArray(GSongInfo[]::new);
+                    Utils.runOnMainThreadFuture(() -> store.splice(store.getNItems(), 0, gSongs)).join();
+                    for (var song : page.items()) {
+                        backingIds.add(song.id());
+                    }
+                    this.nextPage = page.next();
+                    log.info("loadMore: appended={} total={} hasMore={}", gSongs.length, backingIds.size(), page.hasMore());
+                    return gSongs.length;
+                }
+            } finally {
+                isLoading.set(false);
+            }
+        });
+    }
+
     /**
      * Merges the API response into the ListStore with minimal mutations.
      * Preserves existing GSongInfo instances and their GTK bindings.
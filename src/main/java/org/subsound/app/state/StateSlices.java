@@ -0,0 +1,173 @@
+package org.subsound.app.state;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.subsound.app.state.AppManager.AppState;
+import org.subsound.app.state.AppManager.NowPlaying;
+import org.subsound.app.state.AppManager.StateListener;
+import org.subsound.sound.PlaybinPlayer;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes {@link AppState} to the listeners that use the parts of it that changed. Each listener registers for
+ * the {@link Slice}s it renders, so a position tick does not reach the views that only show the network status.
+ * Change detection compares the fields of each slice in place, without building a copy of the state per slice.
+ */
+public class StateSlices {
+    private static final Logger log = LoggerFactory.getLogger(StateSlices.class);
+
+    public enum Slice {
+        // the position of the loaded song, changes every few hundred ms while playing
+        POSITION,
+        // the player state, volume, mute and the loaded source, without its position
+        PLAYER,
+        // the song that is playing and whether it is loaded, without its download progress
+        NOW_PLAYING,
+        QUEUE,
+        // the network status and the server
+        NETWORK,
+        // the download progress of the song that is playing
+        DOWNLOADS,
+        // the library sync progress
+        SYNC,
+        ;
+
+        public static final Set<Slice> ALL = EnumSet.allOf(Slice.class);
+    }
+
+    private record Registration(Set<Slice> slices, StateListener listener) {}
+
+    public record Stats(long publishes, long skipped, long invocations) {}
+
+    private final CopyOnWriteArrayList<Registration> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder publishes = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder invocations = new LongAdder();
+    // the state the listeners have seen last, only written by publish(), read by add()
+    private volatile AppState published;
+
+    public StateSlices(AppState initial) {
+        this.published = initial;
+    }
+
+    /**
+     * Registers the listener and calls it with the state published last, on the calling thread, so it does not
+     * wait for the next change of its slices to render. That first call is not counted in {@link #stats()}.
+     */
+    public void add(Set<Slice> slices, StateListener listener) {
+        listeners.add(new Registration(EnumSet.copyOf(slices), listener));
+        // read after registering: a publish() that does not see the registration has already set published
+        var current = this.published;
+        try {
+            listener.onStateChanged(current);
+        } catch (Exception e) {
+            log.error("add: listener failed: {}", listener, e);
+        }
+    }
+
+    public void remove(StateListener listener) {
+        listeners.removeIf(r -> r.listener() == listener);
+    }
+
+    /**
+     * Calls the listeners of the slices that changed since the previous call, on the calling thread.
+     * Not thread safe, calls must not overlap.
+     */
+    public void publish(AppState next) {
+        var prev = this.published;
+        this.published = next;
+        publishes.increment();
+        boolean anyChanged = false;
+        for (var registration : listeners) {
+            if (!changed(registration.slices(), prev, next)) {
+                continue;
+            }
+            anyChanged = true;
+            invocations.increment();
+            try {
+                registration.listener().onStateChanged(next);
+            } catch (Exception e) {
+                log.error("publish: listener failed: {}", registration.listener(), e);
+            }
+        }
+        if (!anyChanged) {
+            skipped.increment();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(publishes.sum(), skipped.sum(), invocations.sum());
+    }
+
+    public static boolean changed(Set<Slice> slices, AppState prev, AppState next) {
+        for (var slice : slices) {
+            if (changed(slice, prev, next)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean changed(Slice slice, AppState prev, AppState next) {
+        if (prev == next) {
+            return false;
+        }
+        return switch (slice) {
+            case POSITION -> !Objects.equals(position(prev.player()), position(next.player()));
+            case PLAYER -> playerChanged(prev.player(), next.player());
+            case NOW_PLAYING -> nowPlayingChanged(prev.nowPlaying(), next.nowPlaying());
+            case QUEUE -> !prev.queue().equals(next.queue());
+            case NETWORK -> !prev.networkState().equals(next.networkState())
+                    || !prev.serverState().equals(next.serverState());
+            case DOWNLOADS -> !Objects.equals(bufferingProgress(prev), bufferingProgress(next));
+            case SYNC -> !prev.sync().equals(next.sync());
+        };
+    }
+
+    private static Duration position(PlaybinPlayer.PlayerState player) {
+        return player.source().isPresent() ? player.source().get().position().orElse(null) : null;
+    }
+
+    private static AppManager.BufferingProgress bufferingProgress(AppState state) {
+        return state.nowPlaying().isPresent() ? state.nowPlaying().get().bufferingProgress() : null;
+    }
+
+    private static boolean playerChanged(PlaybinPlayer.PlayerState prev, PlaybinPlayer.PlayerState next) {
+        if (prev.state() != next.state()
+                || prev.volume() != next.volume()
+                || prev.muted() != next.muted()
+                || !prev.playbackStartedAt().equals(next.playbackStartedAt())
+                || prev.source().isPresent() != next.source().isPresent()) {
+            return true;
+        }
+        if (prev.source().isEmpty()) {
+            return false;
+        }
+        var prevSource = prev.source().get();
+        var nextSource = next.source().get();
+        return !prevSource.current().equals(nextSource.current())
+                || !prevSource.duration().equals(nextSource.duration());
+    }
+
+    private static boolean nowPlayingChanged(Optional<NowPlaying> prev, Optional<NowPlaying> next) {
+        if (prev.isPresent() != next.isPresent()) {
+            return true;
+        }
+        if (prev.isEmpty()) {
+            return false;
+        }
+        var p = prev.get();
+        var n = next.get();
+        return !p.requestId().equals(n.requestId())
+                || p.state() != n.state()
+                || !p.song().equals(n.song())
+                || !p.cacheResult().equals(n.cacheResult());
+    }
+}
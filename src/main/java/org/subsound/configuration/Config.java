@@ -27,6 +27,8 @@ public class Config {
     private final SecretService secretService;
     public static final int DEFAULT_WINDOW_WIDTH = 1250;
     public static final int DEFAULT_WINDOW_HEIGHT = 950;
+    public static final int DEFAULT_SYNC_MAX_CONCURRENCY = 8;
+    public static final int DEFAULT_PLAYER_IDLE_TEARDOWN_SECONDS = 10 * 60;
 
     public final boolean isTestpageEnabled = "true".equals(System.getenv("SUBSOUND_TESTPAGE_ENABLED"));
     public Path dataDir = defaultStorageDir();
@@ -34,6 +36,10 @@ public class Config {
     public OnboardingState onboarding;
     public int windowWidth = DEFAULT_WINDOW_WIDTH;
     public int windowHeight = DEFAULT_WINDOW_HEIGHT;
+    // ceiling for parallel server requests during a library sync
+    public int syncMaxConcurrency = DEFAULT_SYNC_MAX_CONCURRENCY;
+    // how long the player stays paused before releasing the audio device, 0 never releases it
+    public int playerIdleTeardownSeconds = DEFAULT_PLAYER_IDLE_TEARDOWN_SECONDS;
     private boolean credentialsInKeyring = false;
 
 
@@ -72,6 +78,8 @@ public class Config {
         d.onboarding = this.onboarding;
         d.windowWidth = this.windowWidth;
         d.windowHeight = this.windowHeight;
+        d.syncMaxConcurrency = this.syncMaxConcurrency;
+        d.playerIdleTeardownSeconds = this.playerIdleTeardownSeconds;
         if (this.serverConfig != null) {
             // Only write password to config file if libsecret is not available
             String passwordForFile = this.credentialsInKeyring ? null : this.serverConfig.password();
@@ -153,6 +161,12 @@ public class Config {
                             if (cfg.windowHeight != null && cfg.windowHeight > 0) {
                                 config.windowHeight = cfg.windowHeight;
                             }
+                            if (cfg.syncMaxConcurrency != null && cfg.syncMaxConcurrency > 0) {
+                                config.syncMaxConcurrency = cfg.syncMaxConcurrency;
+                            }
+                            if (cfg.playerIdleTeardownSeconds != null && cfg.playerIdleTeardownSeconds >= 0) {
+                                config.playerIdleTeardownSeconds = cfg.playerIdleTeardownSeconds;
+                            }
                             if (cfg.server != null) {
                                 config.onboarding = OnboardingState.DONE;
                                 TranscodeFormat audioFormat = null;
@@ -210,6 +224,10 @@ public class Config {
         public Integer windowWidth;
         @SerializedName("windowHeight")
         public Integer windowHeight;
+        @SerializedName("syncMaxConcurrency")
+        public Integer syncMaxConcurrency;
+        @SerializedName("playerIdleTeardownSeconds")
+        public Integer playerIdleTeardownSeconds;
         public enum OnboardingState {
             DONE,
         }
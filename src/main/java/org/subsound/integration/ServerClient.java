@@ -23,6 +23,8 @@ public interface ServerClient {
     ServerType getServerType();
 
     ListArtists getArtists();
+    // one page of getAlbumList2 type=newest, used by the incremental sync to find added/changed albums
+    List<AlbumListEntry> listNewestAlbums(int size, int offset);
     ArtistInfo getArtistInfo(String artistId);
     ArtistInfo getArtistWithAlbums(String artistId);
     AlbumInfo getAlbumInfo(String albumId);
@@ -254,10 +256,21 @@ public interface ServerClient {
 
     @RecordBuilder
     record ListArtists(
-            List<ArtistEntry> list
+            List<ArtistEntry> list,
+            // when the artist index last changed on the server, i.e. the last library scan that changed something
+            Optional<Instant> lastModified
     ) {
+        public ListArtists(List<ArtistEntry> list) {
+            this(list, Optional.empty());
+        }
     }
 
+    record AlbumListEntry(
+            ArtistAlbumInfo album,
+            Optional<Instant> created,
+            Optional<Instant> changed
+    ) {}
+
     @RecordBuilder
     record ListStarred(
             List<SongInfo> songs
@@ -17,6 +17,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.subsound.app.state.AppManager;
 import org.subsound.app.state.PlayerAction;
+import org.subsound.app.state.StateSlices.Slice;
 import org.subsound.configuration.constants.Constants;
 import org.subsound.sound.PlaybinPlayer;
 import org.subsound.utils.OsUtil;
@@ -24,6 +25,7 @@ import org.subsound.utils.OsUtil;
 import java.io.IOException;
 import java.net.URI;
 import java.time.Duration;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -82,7 +84,8 @@ public class MPrisController implements MediaPlayer2, MediaPlayer2Player, AppMan
         builder.receivingThreadConfig().withMethodReturnThreadCount(1);
         builder.receivingThreadConfig().withMethodCallThreadCount(1);
         try (DBusConnection conn = builder.build()) {
-            this.appManager.addOnStateChanged(this);
+            // the position is read on request, clients are not notified of it changing
+            this.appManager.addOnStateChanged(EnumSet.of(Slice.NOW_PLAYING, Slice.PLAYER, Slice.QUEUE), this);
             conn.exportObject("/org/mpris/MediaPlayer2", this);
             conn.requestBusName("org.mpris.MediaPlayer2.Subsound");
             while (!isShutdown.get()) {
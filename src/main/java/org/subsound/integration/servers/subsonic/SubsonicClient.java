@@ -163,6 +163,19 @@ public class SubsonicClient implements ServerClient {
                 .toList();
     }
 
+    @Override
+    public List<AlbumListEntry> listNewestAlbums(int size, int offset) {
+        var params = AlbumListParams.create().type(AlbumListType.NEWEST).size(size).offset(offset);
+        var albums = this.client.lists().getAlbumList2(params).getAlbums();
+        return albums.stream()
+                .map(album -> new AlbumListEntry(
+                        ArtistAlbumInfo.create(album, toCoverArt(album.getCoverArtId(), new AlbumIdentifier(album.getId()))),
+                        ofNullable(album.getCreated()).map(d -> d.toInstant(ZoneOffset.UTC)),
+                        Optional.empty()
+                ))
+                .toList();
+    }
+
     private AlbumListParams listParams(AlbumListType albumListType) {
         var params = AlbumListParams.create().type(albumListType);
         if (albumListType == AlbumListType.BY_YEAR) {
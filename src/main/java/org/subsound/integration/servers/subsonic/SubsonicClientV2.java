@@ -9,12 +9,15 @@ import org.subsound.integration.ServerClient.ObjectIdentifier.AlbumIdentifier;
 import org.subsound.integration.ServerClient.ObjectIdentifier.ArtistIdentifier;
 import org.subsound.integration.ServerClient.ObjectIdentifier.PlaylistIdentifier;
 import org.subsound.utils.Utils;
-import org.subsound.utils.javahttp.LoggingHttpClient;
+import org.subsound.utils.javahttp.DecodingBodyHandler;
+import org.subsound.utils.javahttp.ServerTransport;
+import org.subsound.utils.javahttp.ServerTransport.RequestClass;
 import org.subsound.utils.javahttp.TextUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
@@ -52,7 +55,7 @@ public class SubsonicClientV2 implements ServerClient {
     private final String password;
     private final String streamFormat;  // "" = source
     private final int streamBitRate;    // 0 = source
-    private final HttpClient httpClient;
+    private final ServerTransport transport;
 
     public SubsonicClientV2(ServerConfig cfg) {
         this.serverId = cfg.id();
@@ -60,9 +63,7 @@ public class SubsonicClientV2 implements ServerClient {
         this.serverUri = URI.create(cfg.url());
         this.username = cfg.username();
         this.password = cfg.password();
-        this.httpClient = new LoggingHttpClient(
-                HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build()
-        );
+        this.transport = ServerTransport.forUri(this.serverUri);
 
         // Derive transcode settings from config (same logic as SubsonicClient.createSettings)
         TranscodeFormat fmt = cfg.audioFormat() != null ? cfg.audioFormat() : TranscodeFormat.source;
@@ -149,68 +150,67 @@ public class SubsonicClientV2 implements ServerClient {
 
     // ── HTTP helpers ─────────────────────────────────────────────────────
 
+    /**
+     * Sends an API request, negotiating gzip/deflate with the server.
+     * The body is decoded while it is being read, so callers can stream it straight into Gson.
+     */
+    private HttpResponse<InputStream> sendApi(HttpRequest.Builder builder) throws IOException, InterruptedException {
+        var req = builder
+                .header(DecodingBodyHandler.ACCEPT_ENCODING_HEADER, DecodingBodyHandler.ACCEPT_ENCODING)
+                .build();
+        return transport.send(RequestClass.API, req, DecodingBodyHandler.forRequest(req));
+    }
+
+    private static String readBody(InputStream body) throws IOException {
+        return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
     private <T> T fetchJson(String path, Map<String, String> params, Class<T> responseClass) {
-        try {
-            URI uri = buildUri(path, params);
-            var req = HttpRequest.newBuilder().GET().uri(uri).build();
-            HttpResponse<byte[]> res = httpClient.send(req, HttpResponse.BodyHandlers.ofByteArray());
-            var body = new String(res.body(), StandardCharsets.UTF_8);
-            if (res.statusCode() < 200 || res.statusCode() >= 300) {
-                throw new RuntimeException("HTTP " + res.statusCode() + " from " + path + ": " + body);
-            }
-            return Utils.fromJson(body, responseClass);
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        URI uri = buildUri(path, params);
+        return sendJson(path, HttpRequest.newBuilder().GET().uri(uri), responseClass);
     }
 
     private <T> T postJson(String path, Map<String, String> params, Class<T> responseClass) {
+        URI uri = buildUri(path, params);
+        return sendJson(path, HttpRequest.newBuilder().POST(BodyPublishers.noBody()).uri(uri), responseClass);
+    }
+
+    private <T> T sendJson(String path, HttpRequest.Builder req, Class<T> responseClass) {
         try {
-            URI uri = buildUri(path, params);
-            var req = HttpRequest.newBuilder().POST(BodyPublishers.noBody()).uri(uri).build();
-            HttpResponse<byte[]> res = httpClient.send(req, HttpResponse.BodyHandlers.ofByteArray());
-            var body = new String(res.body(), StandardCharsets.UTF_8);
-            if (res.statusCode() < 200 || res.statusCode() >= 300) {
-                throw new RuntimeException("HTTP " + res.statusCode() + " from " + path + ": " + body);
+            HttpResponse<InputStream> res = sendApi(req);
+            try (var body = res.body()) {
+                if (res.statusCode() < 200 || res.statusCode() >= 300) {
+                    throw new RuntimeException("HTTP " + res.statusCode() + " from " + path + ": " + readBody(body));
+                }
+                return Utils.fromJson(new InputStreamReader(body, StandardCharsets.UTF_8), responseClass);
             }
-            return Utils.fromJson(body, responseClass);
         } catch (IOException | InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
 
     private void fetchVoid(String path, Map<String, String> params) {
-        try {
-            URI uri = buildUri(path, params);
-            var req = HttpRequest.newBuilder().GET().uri(uri).build();
-            HttpResponse<byte[]> res = httpClient.send(req, HttpResponse.BodyHandlers.ofByteArray());
-            if (res.statusCode() < 200 || res.statusCode() >= 300) {
-                var body = new String(res.body(), StandardCharsets.UTF_8);
-                throw new RuntimeException("HTTP " + res.statusCode() + " from " + path + ": " + body);
-            }
-            var body = new String(res.body(), StandardCharsets.UTF_8);
-            var parsed = Utils.fromJson(body, PingResponseJson.class);
-            if (!"ok".equalsIgnoreCase(parsed.subsonicResponse.status)) {
-                throw new RuntimeException("Subsonic error from " + path + ": " + body);
-            }
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        URI uri = buildUri(path, params);
+        sendVoid(path, uri);
     }
 
     private void fetchVoidMulti(String path, Map<String, String> singleParams, Map<String, List<String>> multiParams) {
+        URI uri = buildUriMulti(path, singleParams, multiParams);
+        sendVoid(path, uri);
+    }
+
+    private void sendVoid(String path, URI uri) {
         try {
-            URI uri = buildUriMulti(path, singleParams, multiParams);
-            var req = HttpRequest.newBuilder().GET().uri(uri).build();
-            HttpResponse<byte[]> res = httpClient.send(req, HttpResponse.BodyHandlers.ofByteArray());
-            if (res.statusCode() < 200 || res.statusCode() >= 300) {
-                var body = new String(res.body(), StandardCharsets.UTF_8);
-                throw new RuntimeException("HTTP " + res.statusCode() + " from " + path + ": " + body);
-            }
-            var body = new String(res.body(), StandardCharsets.UTF_8);
-            var parsed = Utils.fromJson(body, PingResponseJson.class);
-            if (!"ok".equalsIgnoreCase(parsed.subsonicResponse.status)) {
-                throw new RuntimeException("Subsonic error from " + path + ": " + body);
+            HttpResponse<InputStream> res = sendApi(HttpRequest.newBuilder().GET().uri(uri));
+            try (var stream = res.body()) {
+                var body = readBody(stream);
+                if (res.statusCode() < 200 || res.statusCode() >= 300) {
+                    throw new RuntimeException("HTTP " + res.statusCode() + " from " + path + ": " + body);
+                }
+                var parsed = Utils.fromJson(body, PingResponseJson.class);
+                if (!"ok".equalsIgnoreCase(parsed.subsonicResponse.status)) {
+                    throw new RuntimeException("Subsonic error from " + path + ": " + body);
+                }
             }
         } catch (IOException | InterruptedException e) {
             throw new RuntimeException(e);
@@ -307,7 +307,10 @@ public class SubsonicClientV2 implements ServerClient {
             Integer duration,
             Integer year,
             String genre,
-            Instant starred
+            Instant starred,
+            Instant created,
+            // not part of the subsonic spec, but some servers report when the album was last updated
+            Instant changed
     ) {}
 
     // -- AlbumWithSongs (for getAlbum) --
@@ -400,6 +403,9 @@ public class SubsonicClientV2 implements ServerClient {
             ArtistsJson artists;
         }
         static class ArtistsJson {
+            String ignoredArticles;
+            // epoch millis
+            Long lastModified;
             List<IndexJson> index;
         }
         @Override public String getStatus() { return subsonicResponse.status; }
@@ -755,7 +761,30 @@ public class SubsonicClientV2 implements ServerClient {
                 .flatMap(idx -> idx.artist().stream())
                 .map(this::toArtistEntry)
                 .toList();
-        return new ListArtists(list);
+        var lastModified = ofNullable(res.subsonicResponse.artists.lastModified)
+                .filter(ms -> ms > 0)
+                .map(Instant::ofEpochMilli);
+        return new ListArtists(list, lastModified);
+    }
+
+    @Override
+    public List<AlbumListEntry> listNewestAlbums(int size, int offset) {
+        var res = fetchAndCheck("/rest/getAlbumList2", Map.of(
+                "type", "newest",
+                "size", String.valueOf(size),
+                "offset", String.valueOf(offset)
+        ), GetAlbumList2ResponseJson.class);
+        var albumList = res.subsonicResponse.albumList2;
+        if (albumList == null || albumList.album() == null) {
+            return List.of();
+        }
+        return albumList.album().stream()
+                .map(album -> new AlbumListEntry(
+                        toArtistAlbumInfo(album),
+                        ofNullable(album.created()),
+                        ofNullable(album.changed())
+                ))
+                .toList();
     }
 
     @Override
@@ -6,6 +6,9 @@ import org.subsound.persistence.database.Album;
 import org.subsound.persistence.database.Artist;
 import org.subsound.persistence.database.DatabaseServerService;
 import org.subsound.persistence.database.DownloadQueueItem;
+import org.subsound.persistence.database.Page;
+import org.subsound.persistence.database.PendingMutation;
+import org.subsound.persistence.database.PendingMutation.MutationKind;
 import org.subsound.persistence.database.PlaylistRow;
 import org.subsound.persistence.database.Song;
 import org.subsound.utils.Utils;
@@ -20,11 +23,18 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.subsound.persistence.ThumbnailCache.toCachePath;
 
 public class CachingClient implements ServerClient {
     private static final Logger log = LoggerFactory.getLogger(CachingClient.class);
+    // same as the search3 defaults, so local and server results have the same shape
+    private static final int LOCAL_SEARCH_LIMIT = 20;
+    // the home page shows a row of recent albums, not the whole library
+    private static final int HOME_OVERVIEW_ALBUMS = 50;
+    private static final List<MutationKind> STAR_MUTATIONS = List.of(MutationKind.STAR, MutationKind.UNSTAR);
 
     private final ServerClient delegate;
     private final DatabaseServerService dbService;
@@ -35,41 +45,157 @@ public class CachingClient implements ServerClient {
     // Defaulting to OFFLINE here causes first-run/onboarding issues in flatpak where
     // GNetworkMonitorPortal returns LOCAL (mapped to OFFLINE) for ~500ms on startup.
     private volatile NetworkStatus networkStatus = NetworkStatus.ONLINE;
+    // Tracks server health separately from OS connectivity: the network can be up while the server is down or slow.
+    private final CircuitBreaker circuitBreaker;
+    private final Consumer<CircuitBreaker.State> onCircuitStateChanged;
+    // star/unstar and playlist edits made while offline, replayed once the server is reachable
+    private final MutationLogService mutationLog;
 
     public CachingClient(ServerClient delegate, DatabaseServerService dbService, String serverId, Path cacheRoot) {
+        this(delegate, dbService, serverId, cacheRoot, state -> {});
+    }
+
+    public CachingClient(
+            ServerClient delegate,
+            DatabaseServerService dbService,
+            String serverId,
+            Path cacheRoot,
+            Consumer<CircuitBreaker.State> onCircuitStateChanged
+    ) {
         this.delegate = delegate;
         this.dbService = dbService;
         this.serverId = serverId;
         this.cacheRoot = cacheRoot;
+        this.onCircuitStateChanged = onCircuitStateChanged;
+        // probe with /rest/ping while the circuit is open
+        this.circuitBreaker = new CircuitBreaker(serverId, delegate::testConnection, this::handleCircuitStateChanged);
+        this.mutationLog = new MutationLogService(dbService, this::replayMutation, this::canReplayMutations);
+    }
+
+    private void handleCircuitStateChanged(CircuitBreaker.State state) {
+        onCircuitStateChanged.accept(state);
+        if (state != CircuitBreaker.State.OPEN) {
+            mutationLog.triggerReplay();
+        }
+    }
+
+    private boolean canReplayMutations() {
+        return networkStatus == NetworkStatus.ONLINE && circuitBreaker.allowRequest();
+    }
+
+    public void stop() {
+        circuitBreaker.stop();
+        mutationLog.stop();
     }
 
     public void setNetworkStatus(NetworkStatus status) {
+        var prev = this.networkStatus;
         this.networkStatus = status;
         log.info("CachingClient network status changed to: {}", status);
+        if (prev == NetworkStatus.OFFLINE && status == NetworkStatus.ONLINE) {
+            // connectivity is back, don't wait out the backoff before checking the server again
+            circuitBreaker.probeNow();
+            mutationLog.triggerReplay();
+        }
     }
 
+    // while the circuit is half open this lets the one trial call through, so check it last
     private boolean isOffline() {
-        return networkStatus == NetworkStatus.OFFLINE;
+        return networkStatus == NetworkStatus.OFFLINE || !circuitBreaker.allowRequest();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
     }
 
     /**
-     * If the exception is caused by a network error (IOException), auto-flip to OFFLINE mode.
-     * This avoids waiting for DNS/connection timeouts on every subsequent request.
-     * The GioNetworkMonitor will flip back to ONLINE when connectivity returns.
+     * Calls the server and records the outcome and latency in the circuit breaker.
+     * Once enough calls fail with network errors (or are too slow), the breaker opens and
+     * {@link #isOffline()} sends callers straight to the database until a background ping succeeds.
      */
-    private void detectOffline(Exception e) {
-        if (networkStatus == NetworkStatus.OFFLINE) {
-            return;
+    private <T> T callServer(Supplier<T> call) {
+        long started = System.nanoTime();
+        try {
+            T result = call.get();
+            circuitBreaker.recordSuccess(Duration.ofNanos(System.nanoTime() - started));
+            return result;
+        } catch (RuntimeException e) {
+            circuitBreaker.recordFailure(e, Duration.ofNanos(System.nanoTime() - started));
+            throw e;
         }
-        Throwable cause = e;
-        while (cause != null) {
-            if (cause instanceof java.io.IOException) {
-                log.warn("Network error detected, auto-switching to offline mode");
-                this.networkStatus = NetworkStatus.OFFLINE;
+    }
+
+    private void runServer(Runnable call) {
+        callServer(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Sends a mutation to the server, or appends it to the write-behind log when the server is unreachable.
+     * Callers apply the mutation to the local database first, and pass {@code rollback} to undo it when the server
+     * rejects the mutation.
+     * While older mutations are still pending we always queue, so the server sees them in the order they were made.
+     */
+    private void writeBehind(MutationKind kind, String targetId, Object payload, Runnable call, Runnable rollback) {
+        if (!dbService.hasPendingMutations() && !isOffline()) {
+            try {
+                runServer(call);
                 return;
+            } catch (RuntimeException e) {
+                if (!CircuitBreaker.isNetworkError(e)) {
+                    log.warn("Server rejected {} for {}, rolling back the local change", kind, targetId, e);
+                    try {
+                        rollback.run();
+                    } catch (RuntimeException rollbackError) {
+                        e.addSuppressed(rollbackError);
+                    }
+                    throw e;
+                }
+                log.warn("Failed to send {} for {} to server, queueing for later", kind, targetId, e);
             }
-            cause = cause.getCause();
         }
+        dbService.enqueueMutation(kind, targetId, payload == null ? "" : Utils.toJson(payload));
+        mutationLog.triggerReplay();
+    }
+
+    // undoes a local rename or delete: puts back the playlist row as it is now
+    private Runnable playlistRowRollback(String playlistId) {
+        var row = dbService.getPlaylistById(playlistId);
+        return () -> row.ifPresent(dbService::upsertPlaylist);
+    }
+
+    // undoes a local edit of the songs: puts back the playlist row and its songs as they are now
+    private Runnable playlistSongsRollback(String playlistId) {
+        var row = dbService.getPlaylistById(playlistId);
+        var songIds = dbService.listPlaylistSongIds(playlistId);
+        return () -> {
+            row.ifPresent(dbService::upsertPlaylist);
+            dbService.replacePlaylistSongs(playlistId, songIds);
+        };
+    }
+
+    // undoes a local star or unstar: puts back the starred timestamp the song, album or artist has now
+    private Runnable starredRollback(String id) {
+        Optional<Instant> starredAt = dbService.getSongById(id).map(Song::starredAt)
+                .or(() -> dbService.getAlbumById(id).map(Album::starredAt))
+                .or(() -> dbService.getArtistById(id).map(Artist::starredAt))
+                .orElse(Optional.empty());
+        return () -> dbService.setStarredAt(id, starredAt);
+    }
+
+    private void replayMutation(PendingMutation mutation) {
+        runServer(() -> {
+            switch (mutation.kind()) {
+                case STAR -> delegate.starId(mutation.targetId());
+                case UNSTAR -> delegate.unStarId(mutation.targetId());
+                case PLAYLIST_ADD -> delegate.addToPlaylist(Utils.fromJson(mutation.payload(), AddSongToPlaylist.class));
+                case PLAYLIST_REMOVE -> delegate.playlistRemove(Utils.fromJson(mutation.payload(), PlaylistRemoveSongRequest.class));
+                case PLAYLIST_RENAME -> delegate.playlistRename(Utils.fromJson(mutation.payload(), PlaylistRenameRequest.class));
+                case PLAYLIST_DELETE -> delegate.playlistDelete(new PlaylistDeleteRequest(mutation.targetId()));
+            }
+        });
     }
 
     @Override
@@ -80,15 +206,36 @@ public class CachingClient implements ServerClient {
             return new ListArtists(artists.stream().map(this::toArtistEntry).toList());
         }
         try {
-            return delegate.getArtists();
+            return callServer(() -> delegate.getArtists());
         } catch (Exception e) {
-            detectOffline(e);
             log.warn("Failed to fetch artists from server, falling back to database", e);
             var artists = dbService.listArtists();
             return new ListArtists(artists.stream().map(this::toArtistEntry).toList());
         }
     }
 
+    /**
+     * Like {@link #getArtists()}, but offline the artists are read from the database a page at a time, so the list
+     * shows up without reading every row first. The server only lists all artists at once, online that is one page.
+     */
+    public Page<ArtistEntry> getArtistsPage(int pageSize) {
+        if (isOffline()) {
+            log.debug("Offline mode: using cached artists");
+            return dbService.listArtists(pageSize).map(this::toArtistEntry);
+        }
+        try {
+            return Page.of(callServer(() -> delegate.getArtists()).list());
+        } catch (Exception e) {
+            log.warn("Failed to fetch artists from server, falling back to database", e);
+            return dbService.listArtists(pageSize).map(this::toArtistEntry);
+        }
+    }
+
+    @Override
+    public List<AlbumListEntry> listNewestAlbums(int size, int offset) {
+        return callServer(() -> delegate.listNewestAlbums(size, offset));
+    }
+
     @Override
     public ArtistInfo getArtistInfo(String artistId) {
         if (isOffline()) {
@@ -98,9 +245,8 @@ public class CachingClient implements ServerClient {
                     .orElseThrow(() -> new RuntimeException("Artist not found in database: " + artistId));
         }
         try {
-            return delegate.getArtistInfo(artistId);
+            return callServer(() -> delegate.getArtistInfo(artistId));
         } catch (Exception e) {
-            detectOffline(e);
             log.warn("Failed to fetch artist info from server, falling back to database: {}", artistId, e);
             return dbService.getArtistById(artistId)
                     .map(this::toArtistInfo)
@@ -117,9 +263,8 @@ public class CachingClient implements ServerClient {
                     .orElseThrow(() -> new RuntimeException("Artist not found in database: " + artistId));
         }
         try {
-            return delegate.getArtistWithAlbums(artistId);
+            return callServer(() -> delegate.getArtistWithAlbums(artistId));
         } catch (Exception e) {
-            detectOffline(e);
             log.warn("Failed to fetch artist with albums from server, falling back to database: {}", artistId, e);
             return dbService.getArtistById(artistId)
                     .map(this::toArtistInfo)
@@ -136,9 +281,8 @@ public class CachingClient implements ServerClient {
                     .orElseThrow(() -> new RuntimeException("Album not found in database: " + albumId));
         }
         try {
-            return delegate.getAlbumInfo(albumId);
+            return callServer(() -> delegate.getAlbumInfo(albumId));
         } catch (Exception e) {
-            detectOffline(e);
             log.warn("Failed to fetch album info from server, falling back to database: {}", albumId, e);
             return dbService.getAlbumById(albumId)
                     .map(this::toAlbumInfo)
@@ -154,9 +298,8 @@ public class CachingClient implements ServerClient {
             return new ListPlaylists(playlists.stream().map(this::toPlaylistSimple).toList());
         }
         try {
-            return delegate.getPlaylists();
+            return callServer(() -> delegate.getPlaylists());
         } catch (Exception e) {
-            detectOffline(e);
             log.warn("Failed to fetch playlists from server, falling back to database", e);
             var playlists = dbService.listPlaylists();
             return new ListPlaylists(playlists.stream().map(this::toPlaylistSimple).toList());
@@ -165,18 +308,17 @@ public class CachingClient implements ServerClient {
 
     @Override
     public Playlist getPlaylist(String playlistId) {
-        if (isOffline()) {
+        if (dbService.hasPendingMutations(playlistId) || isOffline()) {
             log.debug("Offline mode: using cached playlist for {}", playlistId);
             return dbService.getPlaylistById(playlistId)
                     .map(this::toPlaylist)
                     .orElseThrow(() -> new RuntimeException("Playlist not found in database: " + playlistId));
         }
         try {
-            var playlist = delegate.getPlaylist(playlistId);
+            var playlist = callServer(() -> delegate.getPlaylist(playlistId));
             persistPlaylist(playlist);
             return playlist;
         } catch (Exception e) {
-            detectOffline(e);
             log.warn("Failed to fetch playlist from server, falling back to database: {}", playlistId, e);
             return dbService.getPlaylistById(playlistId)
                     .map(this::toPlaylist)
@@ -193,7 +335,7 @@ public class CachingClient implements ServerClient {
                 Duration.ZERO,
                 playlist.coverArtId().map(CoverArt::coverArtId),
                 playlist.created(),
-                Instant.now()
+                Optional.ofNullable(playlist.changedAt()).orElseGet(Instant::now)
         );
         dbService.upsertPlaylist(row);
     }
@@ -206,18 +348,17 @@ public class CachingClient implements ServerClient {
                 playlist.songs().stream().map(SongInfo::duration).reduce(Duration.ZERO, Duration::plus),
                 playlist.coverArtId().map(CoverArt::coverArtId),
                 playlist.created(),
-                Instant.now()
+                Optional.ofNullable(playlist.changedAt()).orElseGet(Instant::now)
         );
         Utils.doAsync(() -> {
             try {
-                dbService.upsertPlaylist(row);
-                dbService.deletePlaylistSongs(playlist.id());
-
-                var playlistSongs = playlist.songs();
-                for (int i = 0; i < playlistSongs.size(); i++) {
-                    var song = playlistSongs.get(i);
-                    dbService.insertPlaylistSong(playlist.id(), song.id(), i);
+                var existing = dbService.getPlaylistById(playlist.id());
+                if (existing.isPresent() && existing.get().isUnchangedSince(playlist.changedAt(), playlist.songCount())) {
+                    log.debug("Playlist {} unchanged since {}, skipping persist", playlist.id(), playlist.changedAt());
+                    return;
                 }
+                dbService.upsertPlaylist(row);
+                dbService.replacePlaylistSongs(playlist.id(), playlist.songs().stream().map(SongInfo::id).toList());
             } catch (Exception e) {
                 log.warn("Failed to persist playlist {} to database", playlist.id(), e);
             }
@@ -226,21 +367,44 @@ public class CachingClient implements ServerClient {
 
     @Override
     public ListStarred getStarred() {
-        if (isOffline()) {
+        // with stars still in the write-behind log the server list is stale, the database has the latest local state
+        if (dbService.hasPendingMutations(STAR_MUTATIONS) || isOffline()) {
             log.debug("Offline mode: using cached starred");
             var songs = dbService.listSongsByStarredAt();
             return new ListStarred(songs.stream().map(this::toSongInfo).toList());
         }
         try {
-            return delegate.getStarred();
+            return callServer(() -> delegate.getStarred());
         } catch (Exception e) {
-            detectOffline(e);
             log.warn("Failed to fetch starred from server, falling back to database", e);
             var songs = dbService.listSongsByStarredAt();
             return new ListStarred(songs.stream().map(this::toSongInfo).toList());
         }
     }
 
+    /**
+     * Like {@link #getStarred()}, a page at a time when the starred songs come from the database.
+     */
+    public Page<SongInfo> getStarredPage(int pageSize) {
+        if (dbService.hasPendingMutations(STAR_MUTATIONS) || isOffline()) {
+            log.debug("Offline mode: using cached starred");
+            return dbService.listSongsByStarredAt(pageSize).map(this::toSongInfo);
+        }
+        try {
+            return Page.of(callServer(() -> delegate.getStarred()).songs());
+        } catch (Exception e) {
+            log.warn("Failed to fetch starred from server, falling back to database", e);
+            return dbService.listSongsByStarredAt(pageSize).map(this::toSongInfo);
+        }
+    }
+
+    /**
+     * The song as synced to the local database, without asking the server.
+     */
+    public Optional<SongInfo> getSongLocal(String songId) {
+        return dbService.getSongById(songId).map(this::toSongInfo);
+    }
+
     @Override
     public SongInfo getSong(String songId) {
         if (isOffline()) {
@@ -250,9 +414,8 @@ public class CachingClient implements ServerClient {
                     .orElseThrow(() -> new RuntimeException("Song not found in local database: " + songId));
         }
         try {
-            return delegate.getSong(songId);
+            return callServer(() -> delegate.getSong(songId));
         } catch (Exception e) {
-            detectOffline(e);
             log.warn("Failed to fetch song from server, falling back to database: {}", songId, e);
             return dbService.getSongById(songId)
                     .map(this::toSongInfo)
@@ -262,10 +425,9 @@ public class CachingClient implements ServerClient {
 
     @Override
     public AddSongToPlaylist addToPlaylist(AddSongToPlaylist req) {
-        if (isOffline()) {
-            throw new IllegalStateException("Cannot add to playlist while offline");
-        }
-        this.delegate.addToPlaylist(req);
+        var rollback = playlistSongsRollback(req.playlistId());
+        this.dbService.appendPlaylistSongs(req.playlistId(), req.songIds());
+        writeBehind(MutationKind.PLAYLIST_ADD, req.playlistId(), req, () -> this.delegate.addToPlaylist(req), rollback);
         return req;
     }
 
@@ -273,7 +435,7 @@ public class CachingClient implements ServerClient {
     public HomeOverview getHomeOverview() {
         if (isOffline()) {
             log.debug("Offline mode: using cached home overview");
-            var recentAlbums = dbService.listAlbumsByAddedAt();
+            var recentAlbums = dbService.listAlbumsByAddedAt(HOME_OVERVIEW_ALBUMS).items();
             var albumsByYear = dbService.listAlbumsByYear(20);
             var albumsByYears = albumsByYear.stream().map(this::toArtistAlbumInfo).toList();
             var albumInfos = recentAlbums.stream().map(this::toArtistAlbumInfo).toList();
@@ -281,11 +443,10 @@ public class CachingClient implements ServerClient {
             return new HomeOverview(albumInfos, albumInfos, List.of(), List.of(), albumsByYears);
         }
         try {
-            return delegate.getHomeOverview();
+            return callServer(() -> delegate.getHomeOverview());
         } catch (Exception e) {
-            detectOffline(e);
             log.warn("Failed to fetch home overview from server, falling back to database", e);
-            var recentAlbums = dbService.listAlbumsByAddedAt();
+            var recentAlbums = dbService.listAlbumsByAddedAt(HOME_OVERVIEW_ALBUMS).items();
             var albumsByYear = dbService.listAlbumsByYear(20);
             var albumsByYears = albumsByYear.stream().map(this::toArtistAlbumInfo).toList();
             var albumInfos = recentAlbums.stream().map(this::toArtistAlbumInfo).toList();
@@ -296,19 +457,20 @@ public class CachingClient implements ServerClient {
 
     @Override
     public void scrobble(ScrobbleRequest req) {
-        this.delegate.scrobble(req);
+        runServer(() -> this.delegate.scrobble(req));
     }
 
     @Override
     public PlaylistSimple playlistCreate(PlaylistCreateRequest req) {
-        var res = this.delegate.playlistCreate(req);
+        var res = callServer(() -> this.delegate.playlistCreate(req));
         this.persistPlaylist(res);
         return res;
     }
 
     @Override
     public void playlistRename(PlaylistRenameRequest req) {
-        // unconditionally rename the playlist in the UI first, its not the end of the world if we fail to rename at server
+        // rename it locally first so the UI shows the new name right away, a rename the server rejects is undone
+        var rollback = playlistRowRollback(req.id());
         this.dbService.getPlaylistById(req.id()).ifPresent(existing -> {
             var updated = new PlaylistRow(
                     existing.id(),
@@ -322,35 +484,38 @@ public class CachingClient implements ServerClient {
             );
             this.dbService.upsertPlaylist(updated);
         });
-        this.delegate.playlistRename(req);
+        writeBehind(MutationKind.PLAYLIST_RENAME, req.id(), req, () -> this.delegate.playlistRename(req), rollback);
     }
 
     @Override
     public void playlistDelete(PlaylistDeleteRequest req) {
-        this.delegate.playlistDelete(req);
-        this.dbService.deletePlaylist(req.id());
+        // hide the playlist right away, its songs go once the server took the delete or it is queued,
+        // so a delete the server rejects only has to put back the row
+        var rollback = playlistRowRollback(req.id());
+        this.dbService.deletePlaylistRow(req.id());
+        writeBehind(MutationKind.PLAYLIST_DELETE, req.id(), null, () -> this.delegate.playlistDelete(req), rollback);
+        this.dbService.deletePlaylistSongs(req.id());
     }
 
     @Override
     public void playlistRemove(PlaylistRemoveSongRequest req) {
-        this.delegate.playlistRemove(req);
+        var rollback = playlistSongsRollback(req.playlistId());
         this.dbService.playlistRemoveSong(req);
+        writeBehind(MutationKind.PLAYLIST_REMOVE, req.playlistId(), req, () -> this.delegate.playlistRemove(req), rollback);
     }
 
     @Override
     public void starId(String id) {
-        if (isOffline()) {
-            throw new IllegalStateException("Cannot star while offline");
-        }
-        delegate.starId(id);
+        var rollback = starredRollback(id);
+        this.dbService.setStarredAt(id, Optional.of(Instant.now()));
+        writeBehind(MutationKind.STAR, id, null, () -> delegate.starId(id), rollback);
     }
 
     @Override
     public void unStarId(String id) {
-        if (isOffline()) {
-            throw new IllegalStateException("Cannot unstar while offline");
-        }
-        delegate.unStarId(id);
+        var rollback = starredRollback(id);
+        this.dbService.setStarredAt(id, Optional.empty());
+        writeBehind(MutationKind.UNSTAR, id, null, () -> delegate.unStarId(id), rollback);
     }
 
     @Override
@@ -365,7 +530,7 @@ public class CachingClient implements ServerClient {
 
     @Override
     public ServerInfo getServerInfo() {
-        return delegate.getServerInfo();
+        return callServer(() -> delegate.getServerInfo());
     }
 
     @Override
@@ -375,17 +540,42 @@ public class CachingClient implements ServerClient {
 
     @Override
     public ScanStatus scanStatus() {
-        return delegate.scanStatus();
+        return callServer(() -> delegate.scanStatus());
     }
 
     @Override
     public ScanStatus startScan() {
-        return delegate.startScan();
+        return callServer(() -> delegate.startScan());
     }
 
     @Override
     public SearchResult search(String query) {
-        return delegate.search(query);
+        if (isOffline()) {
+            log.debug("Offline mode: searching the local library for {}", query);
+            return searchLocal(query).result();
+        }
+        try {
+            return callServer(() -> delegate.search(query));
+        } catch (Exception e) {
+            log.warn("Failed to search on server, falling back to the local library: {}", query, e);
+            return searchLocal(query).result();
+        }
+    }
+
+    public record LocalSearchResult(SearchResult result, List<PlaylistSimple> playlists) {}
+
+    /**
+     * Searches the synced library with the local full-text index. Fast enough to run on every keystroke,
+     * but only knows what was synced or browsed before.
+     */
+    public LocalSearchResult searchLocal(String query) {
+        var result = new SearchResult(
+                dbService.searchArtists(query, LOCAL_SEARCH_LIMIT).stream().map(this::toArtistEntry).toList(),
+                dbService.searchAlbums(query, LOCAL_SEARCH_LIMIT).stream().map(this::toArtistAlbumInfo).toList(),
+                dbService.searchSongs(query, LOCAL_SEARCH_LIMIT).stream().map(this::toSongInfo).toList()
+        );
+        var playlists = dbService.searchPlaylists(query, LOCAL_SEARCH_LIMIT).stream().map(this::toPlaylistSimple).toList();
+        return new LocalSearchResult(result, playlists);
     }
 
     // Conversion methods: database records -> ServerClient types
@@ -0,0 +1,311 @@
+package org.subsound.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the health of a single server.
+ * <p>
+ * CLOSED: requests go to the server, outcomes are recorded in a sliding window.
+ * When the share of failed or slow calls in the window crosses the threshold the breaker trips to OPEN.
+ * <p>
+ * OPEN: callers should use their local fallback. A background probe (ping) runs with exponential backoff,
+ * and moves the breaker to HALF_OPEN when the server answers again.
+ * <p>
+ * HALF_OPEN: a single trial request is let through, the others use their fallback until it is recorded.
+ * Its outcome decides whether we go back to CLOSED or OPEN.
+ */
+public class CircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN,
+    }
+
+    public record Settings(
+            // number of recent calls considered when computing the failure rate
+            int windowSize,
+            // do not trip before we have seen at least this many calls in the window
+            int minimumCalls,
+            // trip when failures / calls >= failureRateThreshold
+            double failureRateThreshold,
+            // successful calls slower than this count as failures
+            Duration slowCallThreshold,
+            Duration initialBackoff,
+            Duration maxBackoff
+    ) {
+        public static final Settings DEFAULT = new Settings(
+                20,
+                3,
+                0.5,
+                Duration.ofSeconds(8),
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(60)
+        );
+    }
+
+    private final String name;
+    private final Settings settings;
+    private final BooleanSupplier probe;
+    private final Consumer<State> onStateChanged;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final boolean[] window;
+    private int windowNext = 0;
+    private int windowCalls = 0;
+    private int windowFailures = 0;
+
+    private volatile State state = State.CLOSED;
+    // HALF_OPEN: whether the trial call was let through
+    private final AtomicBoolean trialStarted = new AtomicBoolean(false);
+    private volatile long trialStartedNanos;
+    private volatile boolean running = true;
+    private volatile CountDownLatch probeTrigger = new CountDownLatch(1);
+    private Thread prober;
+    private Duration backoff;
+
+    public CircuitBreaker(String name, BooleanSupplier probe, Consumer<State> onStateChanged) {
+        this(name, Settings.DEFAULT, probe, onStateChanged);
+    }
+
+    public CircuitBreaker(String name, Settings settings, BooleanSupplier probe, Consumer<State> onStateChanged) {
+        this.name = name;
+        this.settings = settings;
+        this.probe = probe;
+        this.onStateChanged = onStateChanged;
+        this.window = new boolean[settings.windowSize()];
+        this.backoff = settings.initialBackoff();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return true if callers should try the server, false if they should go straight to their fallback.
+     */
+    public boolean allowRequest() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> tryStartTrial();
+        };
+    }
+
+    private boolean tryStartTrial() {
+        if (trialStarted.compareAndSet(false, true)) {
+            trialStartedNanos = System.nanoTime();
+            return true;
+        }
+        // a caller that was let through but used its fallback after all never records an outcome,
+        // a trial slower than a slow call would count as failed anyway, so another one may start
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (state != State.HALF_OPEN || now - trialStartedNanos < settings.slowCallThreshold().toNanos()) {
+                return false;
+            }
+            trialStartedNanos = now;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordSuccess(Duration elapsed) {
+        if (elapsed.compareTo(settings.slowCallThreshold()) > 0) {
+            log.info("[{}] slow call: {}ms", name, elapsed.toMillis());
+            record(true);
+        } else {
+            record(false);
+        }
+    }
+
+    /**
+     * Records a failed call. Only network level errors (an {@link IOException} somewhere in the cause chain)
+     * count against the server; application errors mean the server answered and is healthy.
+     */
+    public void recordFailure(Throwable error, Duration elapsed) {
+        if (isNetworkError(error)) {
+            record(true);
+        } else {
+            recordSuccess(elapsed);
+        }
+    }
+
+    /**
+     * Trip the breaker without waiting for the failure window, e.g. when we already know the host is unreachable.
+     */
+    public void tripOpen(String reason) {
+        lock.lock();
+        try {
+            log.info("[{}] forced open: {}", name, reason);
+            transitionTo(State.OPEN);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ask the background probe to run right away, e.g. when the OS reports connectivity has returned.
+     */
+    public void probeNow() {
+        lock.lock();
+        try {
+            this.backoff = settings.initialBackoff();
+        } finally {
+            lock.unlock();
+        }
+        probeTrigger.countDown();
+    }
+
+    public void stop() {
+        running = false;
+        probeTrigger.countDown();
+    }
+
+    public static boolean isNetworkError(Throwable e) {
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    private void record(boolean failed) {
+        lock.lock();
+        try {
+            switch (state) {
+                case HALF_OPEN -> transitionTo(failed ? State.OPEN : State.CLOSED);
+                case OPEN -> {
+                    // in-flight calls started before we tripped, the prober decides when to leave OPEN
+                }
+                case CLOSED -> {
+                    if (windowCalls == window.length) {
+                        if (window[windowNext]) {
+                            windowFailures--;
+                        }
+                    } else {
+                        windowCalls++;
+                    }
+                    window[windowNext] = failed;
+                    if (failed) {
+                        windowFailures++;
+                    }
+                    windowNext = (windowNext + 1) % window.length;
+
+                    if (windowCalls >= settings.minimumCalls()) {
+                        double failureRate = (double) windowFailures / windowCalls;
+                        if (failureRate >= settings.failureRateThreshold()) {
+                            log.warn("[{}] failure rate {}/{} crossed threshold", name, windowFailures, windowCalls);
+                            transitionTo(State.OPEN);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // must hold lock
+    private void transitionTo(State next) {
+        var prev = this.state;
+        if (prev == next) {
+            return;
+        }
+        this.state = next;
+        log.info("[{}] circuit {} -> {}", name, prev, next);
+        switch (next) {
+            case CLOSED -> {
+                resetWindow();
+                this.backoff = settings.initialBackoff();
+            }
+            case HALF_OPEN -> {
+                trialStartedNanos = System.nanoTime();
+                trialStarted.set(false);
+            }
+            case OPEN -> {
+                resetWindow();
+                startProber();
+            }
+        }
+        if (onStateChanged != null) {
+            onStateChanged.accept(next);
+        }
+    }
+
+    private void resetWindow() {
+        windowNext = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+    }
+
+    // must hold lock
+    private void startProber() {
+        if (!running || (prober != null && prober.isAlive())) {
+            return;
+        }
+        this.prober = Thread.ofVirtual().name("circuit-probe-" + name).start(this::probeLoop);
+    }
+
+    private void probeLoop() {
+        while (running && state == State.OPEN) {
+            Duration wait;
+            lock.lock();
+            try {
+                wait = this.backoff;
+                var doubled = this.backoff.multipliedBy(2);
+                this.backoff = doubled.compareTo(settings.maxBackoff()) > 0 ? settings.maxBackoff() : doubled;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                probeTrigger.await(wait.toMillis(), TimeUnit.MILLISECONDS);
+                probeTrigger = new CountDownLatch(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!running) {
+                return;
+            }
+
+            boolean healthy;
+            try {
+                healthy = probe.getAsBoolean();
+            } catch (Exception e) {
+                log.debug("[{}] probe failed: {}", name, e.getMessage());
+                healthy = false;
+            }
+            if (healthy) {
+                lock.lock();
+                try {
+                    // detach before leaving OPEN, so a failing trial call can start a fresh prober
+                    this.prober = null;
+                    if (state == State.OPEN) {
+                        transitionTo(State.HALF_OPEN);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            log.info("[{}] probe unhealthy, next attempt in {}ms", name, this.backoff.toMillis());
+        }
+    }
+}
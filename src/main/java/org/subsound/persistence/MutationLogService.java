@@ -0,0 +1,109 @@
+package org.subsound.persistence;
+
+import org.subsound.persistence.database.DatabaseServerService;
+import org.subsound.persistence.database.PendingMutation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Replays the write-behind mutation log (stars, playlist edits made while offline) to the server.
+ * Follows the same loop as {@link ScrobbleService}: wake up on a trigger or every 60s,
+ * and only talk to the server when the connection is considered healthy.
+ */
+public class MutationLogService {
+    private static final Logger log = LoggerFactory.getLogger(MutationLogService.class);
+    private static final int BATCH_SIZE = 50;
+    // give up on mutations the server keeps rejecting, e.g. a playlist that was deleted on another device
+    private static final int MAX_ATTEMPTS = 5;
+
+    public interface MutationExecutor {
+        void apply(PendingMutation mutation);
+    }
+
+    private final DatabaseServerService dbService;
+    private final MutationExecutor executor;
+    private final BooleanSupplier canReplay;
+    private volatile boolean running = true;
+    private volatile CountDownLatch trigger = new CountDownLatch(1);
+
+    public MutationLogService(
+            DatabaseServerService dbService,
+            MutationExecutor executor,
+            BooleanSupplier canReplay
+    ) {
+        this.dbService = dbService;
+        this.executor = executor;
+        this.canReplay = canReplay;
+        startProcessor();
+    }
+
+    private void startProcessor() {
+        Thread.startVirtualThread(() -> {
+            while (running) {
+                try {
+                    replayPending();
+                    trigger.await(60, TimeUnit.SECONDS);
+                    trigger = new CountDownLatch(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    log.error("Error in mutation log processor", e);
+                }
+            }
+        });
+    }
+
+    public void triggerReplay() {
+        trigger.countDown();
+    }
+
+    void replayPending() {
+        while (running && canReplay.getAsBoolean()) {
+            var batch = dbService.listPendingMutations(BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            var done = new ArrayList<Long>(batch.size());
+            boolean networkFailure = false;
+            for (var mutation : batch) {
+                try {
+                    executor.apply(mutation);
+                    done.add(mutation.id());
+                } catch (Exception e) {
+                    if (CircuitBreaker.isNetworkError(e)) {
+                        // keep the order: stop here and retry the rest when the server is reachable again
+                        log.warn("Network error replaying mutation id={} kind={}, will retry later", mutation.id(), mutation.kind());
+                        networkFailure = true;
+                        break;
+                    }
+                    if (mutation.attempts() + 1 >= MAX_ATTEMPTS) {
+                        log.error("Dropping mutation after {} attempts: id={} kind={} targetId={}", MAX_ATTEMPTS, mutation.id(), mutation.kind(), mutation.targetId(), e);
+                        done.add(mutation.id());
+                    } else {
+                        log.warn("Failed to replay mutation: id={} kind={} targetId={}", mutation.id(), mutation.kind(), mutation.targetId(), e);
+                        dbService.markMutationFailed(mutation.id(), String.valueOf(e.getMessage()));
+                    }
+                }
+            }
+            dbService.deleteMutations(done);
+            log.info("Replayed {}/{} pending mutations", done.size(), batch.size());
+
+            if (networkFailure || done.size() < batch.size()) {
+                // wait for the next trigger instead of spinning on mutations that keep failing
+                return;
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+        trigger.countDown();
+    }
+}
@@ -0,0 +1,124 @@
+package org.subsound.persistence;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Serves songs that are still downloading to the player over {@code http://127.0.0.1}, with range requests.
+ * GStreamer seeks in an http source by requesting the range at the seek target, which is passed on to the
+ * {@link RangeDownload}. Reads of bytes not downloaded yet wait for them.
+ */
+class PartialSongServer {
+    private static final Logger log = LoggerFactory.getLogger(PartialSongServer.class);
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-\\d*");
+    // the player gives up on a read after this, the same as a stalled server
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private record Entry(SparseCacheFile file, RangeDownload download) {}
+
+    private final HttpServer server;
+    private final int port;
+    private final Map<String, Entry> songs = new ConcurrentHashMap<>();
+
+    PartialSongServer() {
+        try {
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.server.createContext("/song", this::handle);
+        // a response blocks while it waits for the download
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.start();
+        this.port = this.server.getAddress().getPort();
+        log.info("PartialSongServer started on port {}", port);
+    }
+
+    URI register(SparseCacheFile file, RangeDownload download) {
+        var token = UUID.randomUUID().toString();
+        songs.put(token, new Entry(file, download));
+        return URI.create("http://127.0.0.1:%d/song/%s".formatted(port, token));
+    }
+
+    void unregister(URI uri) {
+        var path = uri.getPath();
+        songs.remove(path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        // path: /song/{token}
+        var path = exchange.getRequestURI().getPath();
+        var entry = songs.get(path.substring(path.lastIndexOf('/') + 1));
+        if (entry == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        var file = entry.file();
+        long size = file.size();
+        var rangeHeader = exchange.getRequestHeaders().getFirst("Range");
+        long start = 0;
+        if (rangeHeader != null) {
+            var matcher = RANGE.matcher(rangeHeader);
+            if (matcher.matches()) {
+                start = Long.parseLong(matcher.group(1));
+            }
+        }
+        var headers = exchange.getResponseHeaders();
+        headers.set("Accept-Ranges", "bytes");
+        headers.set("Content-Type", "application/octet-stream");
+        if (start >= size) {
+            headers.set("Content-Range", "bytes */%d".formatted(size));
+            exchange.sendResponseHeaders(416, -1);
+            exchange.close();
+            return;
+        }
+        int status = 200;
+        if (rangeHeader != null) {
+            status = 206;
+            headers.set("Content-Range", "bytes %d-%d/%d".formatted(start, size - 1, size));
+        }
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            headers.set("Content-Length", Long.toString(size - start));
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        entry.download().seek(start);
+        exchange.sendResponseHeaders(status, size - start);
+        try (var os = exchange.getResponseBody()) {
+            var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = start;
+            while (position < size) {
+                buffer.clear();
+                int n = file.read(position, buffer, READ_TIMEOUT);
+                if (n < 0) {
+                    break;
+                }
+                os.write(buffer.array(), 0, n);
+                position += n;
+            }
+        } catch (IOException e) {
+            // the player closes the connection on every seek
+            log.debug("handle: response ended early: start={} size={}", start, size, e);
+        }
+    }
+}
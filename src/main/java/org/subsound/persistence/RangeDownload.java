@@ -0,0 +1,186 @@
+package org.subsound.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.subsound.persistence.SongCache.DownloadProgressHandler;
+import org.subsound.utils.javahttp.ServerTransport;
+import org.subsound.utils.javahttp.ServerTransport.RequestClass;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.OptionalLong;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Downloads a song into a {@link SparseCacheFile} with HTTP range requests. One request runs at a time, from the
+ * start of the file. {@link #seek} moves it to where the player reads, when that is not downloaded and not just
+ * ahead of the running request. Afterwards it fills in the ranges it skipped.
+ */
+class RangeDownload {
+    private static final Logger log = LoggerFactory.getLogger(RangeDownload.class);
+    // a seek this close ahead of the running request waits for it instead of starting a new one
+    private static final long READ_AHEAD_BYTES = 512 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final URI uri;
+    private final SparseCacheFile file;
+    private final DownloadProgressHandler progressHandler;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final Object lock = new Object();
+    // guarded by lock: where the running request writes next, and where a seek wants the next one to start
+    private long fetchPosition = 0;
+    private long seekOffset = -1;
+    // the body of the running request, closed to abort it
+    private volatile InputStream body;
+    private volatile boolean cancelled = false;
+
+    RangeDownload(URI uri, SparseCacheFile file, DownloadProgressHandler progressHandler) {
+        this.uri = uri;
+        this.file = file;
+        this.progressHandler = progressHandler;
+    }
+
+    /**
+     * @param first the response to a range request from offset 0
+     * @return completes once the whole file is downloaded
+     */
+    CompletableFuture<Void> start(HttpResponse<InputStream> first) {
+        Thread.ofVirtual().name("range-download").start(() -> this.run(first));
+        return done;
+    }
+
+    void seek(long offset) {
+        if (offset >= file.size() || file.availableUntil(offset) > offset) {
+            return;
+        }
+        synchronized (lock) {
+            if (offset >= fetchPosition && offset - fetchPosition < READ_AHEAD_BYTES) {
+                return;
+            }
+            log.info("seek: offset={} is past the download at {}, requesting it", offset, fetchPosition);
+            seekOffset = offset;
+        }
+        closeBody();
+    }
+
+    void cancel() {
+        cancelled = true;
+        closeBody();
+    }
+
+    private void run(HttpResponse<InputStream> first) {
+        try {
+            var response = first;
+            long offset = 0;
+            while (!cancelled) {
+                long copied = copy(response.body(), offset);
+                if (copied == 0 && !cancelled && !seekPending()) {
+                    // the server ended the body without data, asking again would loop forever
+                    throw new IOException("error: no data from offset=%d size=%d uri=%s".formatted(offset, file.size(), uri));
+                }
+                var next = nextOffset();
+                if (next.isEmpty() || cancelled) {
+                    break;
+                }
+                offset = next.getAsLong();
+                response = request(offset);
+            }
+            if (cancelled) {
+                done.completeExceptionally(new CancellationException("download cancelled: uri=" + uri));
+                return;
+            }
+            long size = file.size();
+            progressHandler.progress(size, size);
+            done.complete(null);
+        } catch (Exception e) {
+            var error = e instanceof IOException io ? io : new IOException(e);
+            file.fail(error);
+            done.completeExceptionally(error);
+        }
+    }
+
+    // returns the bytes written: at the end of the body, when it runs into bytes that are already downloaded, or when a seek aborted it
+    private long copy(InputStream in, long offset) throws IOException {
+        this.body = in;
+        setFetchPosition(offset);
+        long position = offset;
+        try (in) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while (-1 != (n = in.read(buffer))) {
+                // a server sending more than the size it announced
+                int length = (int) Math.min(n, file.size() - position);
+                if (length <= 0) {
+                    return position - offset;
+                }
+                file.write(position, ByteBuffer.wrap(buffer, 0, length));
+                position += length;
+                setFetchPosition(position);
+                progressHandler.progress(file.size(), file.downloadedBytes());
+                if (cancelled || seekPending() || file.availableUntil(position) > position) {
+                    return position - offset;
+                }
+            }
+            return position - offset;
+        } catch (IOException e) {
+            if (cancelled || seekPending()) {
+                // closeBody() aborted the request
+                return position - offset;
+            }
+            throw e;
+        }
+    }
+
+    private OptionalLong nextOffset() {
+        synchronized (lock) {
+            long seek = seekOffset;
+            seekOffset = -1;
+            if (seek >= 0 && file.availableUntil(seek) == seek) {
+                return OptionalLong.of(seek);
+            }
+            return file.firstMissing(fetchPosition);
+        }
+    }
+
+    private HttpResponse<InputStream> request(long offset) throws IOException, InterruptedException {
+        var req = HttpRequest.newBuilder().uri(uri)
+                .header("Range", "bytes=%d-".formatted(offset))
+                .GET()
+                .build();
+        HttpResponse<InputStream> res = ServerTransport.forUri(uri).send(RequestClass.STREAM, req, HttpResponse.BodyHandlers.ofInputStream());
+        if (res.statusCode() != 206) {
+            res.body().close();
+            throw new IOException("error: expected a partial response: statusCode=%d offset=%d uri=%s".formatted(res.statusCode(), offset, uri));
+        }
+        return res;
+    }
+
+    private void setFetchPosition(long position) {
+        synchronized (lock) {
+            this.fetchPosition = position;
+        }
+    }
+
+    private boolean seekPending() {
+        synchronized (lock) {
+            return seekOffset >= 0;
+        }
+    }
+
+    private void closeBody() {
+        var in = this.body;
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("closeBody: uri={}", uri, e);
+        }
+    }
+}
@@ -2,7 +2,8 @@ package org.subsound.persistence;
 
 import org.subsound.integration.ServerClient.TranscodedStream;
 import org.subsound.integration.ServerClient.TranscodeInfo;
-import org.subsound.utils.javahttp.LoggingHttpClient;
+import org.subsound.utils.javahttp.ServerTransport;
+import org.subsound.utils.javahttp.ServerTransport.RequestClass;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,23 +14,34 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.subsound.utils.Utils.sha256;
 
 public class SongCache implements SongCacheChecker {
     private static final Logger log = LoggerFactory.getLogger(SongCache.class);
 
+    private static final Pattern CONTENT_RANGE_TOTAL = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+
     private final Path root;
-    private final HttpClient client = new LoggingHttpClient(HttpClient.newBuilder().build());
     private final Function<TranscodeInfo, TranscodedStream> streamResolver;
+    private final Object streamingLock = new Object();
+    private final AtomicLong partFileCounter = new AtomicLong(System.currentTimeMillis());
+    // created on the first partial song
+    private PartialSongServer partialSongServer;
+    // the song streamSong() is downloading or last downloaded
+    private Streaming streaming;
 
     public SongCache(
             Path cacheDir
@@ -75,10 +87,140 @@ public class SongCache implements SongCacheChecker {
     ) {
     }
 
+    public record StreamedSong(
+            // the cached file, or while it downloads a local http uri that serves it
+            URI playbackUri,
+            // completes with the cached file once the download finished
+            CompletableFuture<LoadSongResult> completed
+    ) {
+    }
+
+    private record Streaming(
+            Path cachePath,
+            URI playbackUri,
+            SparseCacheFile file,
+            RangeDownload download,
+            CompletableFuture<LoadSongResult> completed
+    ) {
+    }
+
     public LoadSongResult getSong(CacheSong songData) {
         // TODO: cache the cache check??
         // Check cache
         var cachePath = this.cachePath(songData);
+        var cached = cachedFile(cachePath);
+        if (cached.isPresent()) {
+            return new LoadSongResult(CacheResult.HIT, cached.get().toURI());
+        }
+
+        var streamUriA = streamResolver.apply(songData.transcodeInfo);
+        var streamUri = streamUriA.streamUri();
+        var req = HttpRequest.newBuilder().uri(streamUri).GET().build();
+        return downloadWhole(cachePath, streamUri, send(streamUri, req), songData);
+    }
+
+    /**
+     * Like {@link #getSong}, but returns as soon as playback can start. When the server answers range requests,
+     * the song is downloaded into a {@link SparseCacheFile} and played from a local http uri while it downloads.
+     * A seek past the downloaded part starts a request at the seek target, so playback resumes there right away.
+     * A stream without ranges (a live transcode of unknown length) is downloaded whole first, like getSong().
+     * <p>
+     * One song streams at a time: the next call cancels the download of the previous song if it has not finished.
+     */
+    public StreamedSong streamSong(CacheSong songData) {
+        var cachePath = this.cachePath(songData);
+        var cached = cachedFile(cachePath);
+        if (cached.isPresent()) {
+            var result = new LoadSongResult(CacheResult.HIT, cached.get().toURI());
+            return new StreamedSong(result.uri(), CompletableFuture.completedFuture(result));
+        }
+        synchronized (streamingLock) {
+            var current = this.streaming;
+            if (current != null && current.cachePath().equals(cachePath.cachePath) && !current.completed().isCompletedExceptionally()) {
+                // played again while it downloads
+                return new StreamedSong(current.playbackUri(), current.completed());
+            }
+        }
+        stopStreaming();
+
+        var streamUri = streamResolver.apply(songData.transcodeInfo).streamUri();
+        var req = HttpRequest.newBuilder().uri(streamUri).header("Range", "bytes=0-").GET().build();
+        var res = send(streamUri, req);
+        var size = res.statusCode() == 206
+                ? res.headers().firstValue("Content-Range").map(CONTENT_RANGE_TOTAL::matcher).filter(Matcher::matches).map(m -> Long.parseLong(m.group(1)))
+                : Optional.<Long>empty();
+        if (size.isEmpty()) {
+            var result = downloadWhole(cachePath, streamUri, res, songData);
+            return new StreamedSong(result.uri(), CompletableFuture.completedFuture(result));
+        }
+
+        var cacheFile = cachePath.cachePath.toAbsolutePath().toFile();
+        // a new file every time: a cancelled download of the same song may still be writing to the previous one
+        var partPath = cachePath.cachePath.resolveSibling(
+                "%s.%d.part".formatted(cacheFile.getName(), partFileCounter.incrementAndGet())
+        ).toAbsolutePath();
+        partPath.getParent().toFile().mkdirs();
+        synchronized (streamingLock) {
+            SparseCacheFile file;
+            try {
+                file = new SparseCacheFile(partPath, size.get());
+            } catch (IOException e) {
+                closeQuietly(res);
+                throw new RuntimeException(e);
+            }
+            var download = new RangeDownload(streamUri, file, songData.progressHandler);
+            if (partialSongServer == null) {
+                partialSongServer = new PartialSongServer();
+            }
+            var playbackUri = partialSongServer.register(file, download);
+            var completed = download.start(res).thenApply(v -> {
+                // the player keeps reading the open file, renaming it does not get in the way
+                if (!partPath.toFile().renameTo(cacheFile)) {
+                    throw new RuntimeException("unable to move %s to %s".formatted(partPath, cacheFile));
+                }
+                return new LoadSongResult(CacheResult.MISS, cacheFile.toURI());
+            });
+            log.info("streamSong: songId={} size={} uri={}", songData.songId, size.get(), playbackUri);
+            this.streaming = new Streaming(cachePath.cachePath, playbackUri, file, download, completed);
+            return new StreamedSong(playbackUri, completed);
+        }
+    }
+
+    // the player moved on from the streamed song
+    private void stopStreaming() {
+        Streaming previous;
+        synchronized (streamingLock) {
+            previous = this.streaming;
+            this.streaming = null;
+            if (previous == null) {
+                return;
+            }
+            partialSongServer.unregister(previous.playbackUri());
+        }
+        previous.download().cancel();
+        previous.completed().whenComplete((result, throwable) -> {
+            try {
+                previous.file().close();
+            } catch (IOException e) {
+                log.warn("stopStreaming: failed to close path={}", previous.file().path(), e);
+            }
+            if (throwable != null) {
+                // cancelled or failed, the partial file is not used again
+                previous.file().path().toFile().delete();
+            }
+        });
+    }
+
+    public void close() {
+        stopStreaming();
+        synchronized (streamingLock) {
+            if (partialSongServer != null) {
+                partialSongServer.stop();
+            }
+        }
+    }
+
+    private Optional<File> cachedFile(CachehPath cachePath) {
         var cacheFile = cachePath.cachePath.toAbsolutePath().toFile();
         if (cacheFile.isDirectory()) {
             cacheFile.delete();
@@ -87,12 +229,22 @@ public class SongCache implements SongCacheChecker {
             cacheFile.delete();
         }
         if (cacheFile.exists()) {
-            return new LoadSongResult(CacheResult.HIT, cacheFile.toURI());
+            return Optional.of(cacheFile);
         }
+        return Optional.empty();
+    }
 
-        var streamUriA = streamResolver.apply(songData.transcodeInfo);
-        var streamUri = streamUriA.streamUri();
+    private LoadSongResult downloadWhole(CachehPath cachePath, URI streamUri, HttpResponse<InputStream> res, CacheSong songData) {
+        // the body holds a STREAM permit of the transport until it is closed, on every way out of here
+        try {
+            return downloadWholeInner(cachePath, streamUri, res, songData);
+        } finally {
+            closeQuietly(res);
+        }
+    }
 
+    private LoadSongResult downloadWholeInner(CachehPath cachePath, URI streamUri, HttpResponse<InputStream> res, CacheSong songData) {
+        var cacheFile = cachePath.cachePath.toAbsolutePath().toFile();
         cachePath.tmpFilePath.getParent().toFile().mkdirs();
         var cacheTmpFile = cachePath.tmpFilePath.toAbsolutePath().toFile();
         if (cacheTmpFile.exists()) {
@@ -108,6 +260,7 @@ public class SongCache implements SongCacheChecker {
             long estimatedContentSize = songData.transcodeInfo.estimateContentSize();
             long downloadSize = downloadTo(
                     streamUri,
+                    res,
                     new FileOutputStream(cacheTmpFile),
                     songData.originalSize,
                     estimatedContentSize,
@@ -124,21 +277,36 @@ public class SongCache implements SongCacheChecker {
         }
     }
 
+    private static HttpResponse<InputStream> send(URI uri, HttpRequest req) {
+        try {
+            return ServerTransport.forUri(uri).send(RequestClass.STREAM, req, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void closeQuietly(HttpResponse<InputStream> res) {
+        try {
+            res.body().close();
+        } catch (IOException e) {
+            log.debug("closeQuietly: uri={}", res.uri(), e);
+        }
+    }
+
     public interface DownloadProgressHandler {
         void progress(long total, long count);
     }
 
     private long downloadTo(
             URI uri,
+            HttpResponse<InputStream> res,
             OutputStream output,
             long originalSize,
             long estimatedContentSize,
             DownloadProgressHandler ph
     ) {
-        var req = HttpRequest.newBuilder().uri(uri).GET().build();
-        try {
-            HttpResponse<InputStream> res = this.client.send(req, HttpResponse.BodyHandlers.ofInputStream());
-            if (res.statusCode() != 200) {
+        try (output) {
+            if (res.statusCode() != 200 && res.statusCode() != 206) {
                 throw new RuntimeException("error: statusCode=%d uri=%s".formatted(res.statusCode(), uri.toString()));
             }
 
@@ -179,7 +347,7 @@ public class SongCache implements SongCacheChecker {
                 ph.progress(finalSize, finalSize);
                 return sum;
             }
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
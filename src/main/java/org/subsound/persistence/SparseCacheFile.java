@@ -0,0 +1,172 @@
+package org.subsound.persistence;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache file of known size that is downloaded in ranges, in any order. Tracks which extents are on disk, and
+ * lets readers wait for the bytes they need while a download fills them in.
+ * The file is created at its full size, filesystems that support it leave the parts never written unallocated.
+ */
+public class SparseCacheFile implements AutoCloseable {
+    private final Path path;
+    private final long size;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    // start -> end (exclusive) of the downloaded extents. Never overlapping or touching, guarded by this
+    private final TreeMap<Long, Long> extents = new TreeMap<>();
+    private long downloadedBytes = 0;
+    private IOException failure;
+    private boolean closed = false;
+
+    public SparseCacheFile(Path path, long size) throws IOException {
+        this.path = path;
+        this.size = size;
+        this.file = new RandomAccessFile(path.toFile(), "rw");
+        // whatever was in the file before is not in the extents, so it is never read
+        this.file.setLength(0);
+        this.file.setLength(size);
+        this.channel = file.getChannel();
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public void write(long offset, ByteBuffer data) throws IOException {
+        long start = offset;
+        long position = offset;
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+        synchronized (this) {
+            addExtent(start, position);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Reads the bytes at {@code offset} into {@code dst}, waiting up to {@code timeout} for them to be downloaded.
+     * Reads at most up to the end of the downloaded extent.
+     *
+     * @return the number of bytes read, -1 at the end of the file
+     */
+    public int read(long offset, ByteBuffer dst, Duration timeout) throws IOException {
+        if (offset >= size) {
+            return -1;
+        }
+        long available;
+        synchronized (this) {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while ((available = availableUntil(offset)) == offset) {
+                if (failure != null) {
+                    throw new IOException("download failed: path=%s".formatted(path), failure);
+                }
+                if (closed) {
+                    throw new IOException("closed: path=%s".formatted(path));
+                }
+                long waitNanos = deadline - System.nanoTime();
+                if (waitNanos <= 0) {
+                    throw new IOException("timed out waiting for offset=%d path=%s".formatted(offset, path));
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted waiting for offset=%d".formatted(offset));
+                }
+            }
+        }
+        int length = (int) Math.min(dst.remaining(), available - offset);
+        var slice = dst.slice(dst.position(), length);
+        int n = channel.read(slice, offset);
+        if (n > 0) {
+            dst.position(dst.position() + n);
+        }
+        return n;
+    }
+
+    /**
+     * @return the end of the downloaded extent that contains {@code offset}, {@code offset} itself when it is not downloaded
+     */
+    public synchronized long availableUntil(long offset) {
+        var floor = extents.floorEntry(offset);
+        if (floor != null && floor.getValue() > offset) {
+            return floor.getValue();
+        }
+        return offset;
+    }
+
+    /**
+     * @return the first offset at or after {@code from} that is not downloaded yet, wrapping around to the start
+     * of the file. Empty when the file is complete.
+     */
+    public synchronized OptionalLong firstMissing(long from) {
+        if (isComplete()) {
+            return OptionalLong.empty();
+        }
+        long missing = from < size ? availableUntil(from) : size;
+        if (missing < size) {
+            return OptionalLong.of(missing);
+        }
+        return OptionalLong.of(availableUntil(0));
+    }
+
+    public synchronized long downloadedBytes() {
+        return downloadedBytes;
+    }
+
+    public synchronized boolean isComplete() {
+        return downloadedBytes == size;
+    }
+
+    // wakes up the readers, which throw instead of waiting for bytes that will not come
+    public synchronized void fail(IOException e) {
+        this.failure = e;
+        notifyAll();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        file.close();
+    }
+
+    private void addExtent(long start, long end) {
+        if (end <= start) {
+            return;
+        }
+        var floor = extents.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+            extents.remove(floor.getKey());
+            downloadedBytes -= floor.getValue() - floor.getKey();
+        }
+        for (var next = extents.ceilingEntry(start); next != null && next.getKey() <= end; next = extents.ceilingEntry(start)) {
+            end = Math.max(end, next.getValue());
+            extents.remove(next.getKey());
+            downloadedBytes -= next.getValue() - next.getKey();
+        }
+        extents.put(start, end);
+        downloadedBytes += end - start;
+    }
+}
@@ -13,7 +13,8 @@ import org.subsound.utils.ImageUtils;
 import org.subsound.utils.ImageUtils.ColorValue;
 import org.subsound.utils.ThumbHashUtils;
 import org.subsound.utils.Utils;
-import org.subsound.utils.javahttp.LoggingHttpClient;
+import org.subsound.utils.javahttp.ServerTransport;
+import org.subsound.utils.javahttp.ServerTransport.RequestClass;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -21,7 +22,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.file.Files;
@@ -47,7 +47,6 @@ public class ThumbnailCache {
     private static final Logger log = LoggerFactory.getLogger(ThumbnailCache.class);
 
     private final Path root;
-    private final HttpClient client = new LoggingHttpClient(HttpClient.newBuilder().build());
     // semaphore limits concurrency a little, we could send 1000s request concurrently on page load of a e.g. starred page:
     private final Semaphore semaphore = new Semaphore(4);
     private final Cache<PixbufCacheKey, CachedTexture> pixbufCache = Caffeine.newBuilder().maximumSize(1000).recordStats().build();
@@ -143,7 +142,7 @@ public class ThumbnailCache {
                     var req = HttpRequest.newBuilder().GET().uri(url.uri()).build();
                     var bodyHandler = HttpResponse.BodyHandlers.ofByteArray();
 
-                    HttpResponse<byte[]> res = this.client.send(req, bodyHandler);
+                    HttpResponse<byte[]> res = ServerTransport.forUri(url.uri()).send(RequestClass.ARTWORK, req, bodyHandler);
                     if (res.statusCode() != 200) {
                         throw new RuntimeException("error loading: status=" + res.statusCode() + " link=" + link);
                     }
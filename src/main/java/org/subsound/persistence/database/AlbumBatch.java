@@ -0,0 +1,13 @@
+package org.subsound.persistence.database;
+
+import java.util.List;
+import java.util.Optional;
+
+public record AlbumBatch(
+        Album album,
+        // the full song list of the album
+        List<Song> songs,
+        // see SyncService.fingerprint, empty when the album was not stored by a sync
+        Optional<String> syncFingerprint
+) {
+}
@@ -9,18 +9,88 @@ import org.slf4j.LoggerFactory;
 
 import org.sqlite.SQLiteDataSource;
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+
+/**
+ * The app database. SQLite allows one writer at a time, but in WAL mode readers do not block the writer and the
+ * writer does not block readers. So there are two pools: a single writer connection, and a few read-only connections
+ * for the queries the UI waits on, which then keep answering while a sync or a download is writing.
+ * <p>
+ * Use {@link #openWriteConnection()} for anything that modifies the database, a read connection fails on writes.
+ * <p>
+ * Nothing shrinks the file or refreshes the planner statistics on its own, {@link #runMaintenance()} does both and is
+ * run by {@link DatabaseMaintenance} while the app is idle.
+ */
 public class Database {
     private static final Logger logger = LoggerFactory.getLogger(Database.class);
     private static final String DB_NAME = "subsound.db";
-    private final HikariDataSource dataSource;
+    public static final int DEFAULT_READ_POOL_SIZE = 4;
+    // rows ANALYZE samples per index, bounds the time of an ANALYZE on a large library
+    private static final int ANALYSIS_LIMIT = 1000;
+    private final Path dbFile;
+    private final Tuning tuning;
+    private final HikariDataSource writeDataSource;
+    // null when reads share the writer connection
+    private final HikariDataSource readDataSource;
+
+    /**
+     * Per-connection settings, the same for the writer and every reader.
+     *
+     * @param cacheSizeKiB page cache of each connection
+     * @param mmapSizeBytes how much of the file is read through a memory map instead of read() calls, 0 disables it
+     * @param tempStoreMemory keep temporary tables and sort spills in memory instead of temp files
+     */
+    public record Tuning(int cacheSizeKiB, long mmapSizeBytes, boolean tempStoreMemory) {
+        public static final Tuning SMALL = new Tuning(2 * 1024, 0, false);
+        public static final Tuning LARGE = new Tuning(16 * 1024, 256L * 1024 * 1024, true);
+
+        /**
+         * {@link #LARGE} unless the machine has less than 4GiB of memory, the writer and a full read pool can hold
+         * 80MiB of page cache with it.
+         */
+        public static Tuning forThisMachine() {
+            if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os
+                    && os.getTotalMemorySize() < 4L * 1024 * 1024 * 1024) {
+                return SMALL;
+            }
+            return LARGE;
+        }
+
+        private void apply(org.sqlite.SQLiteConfig sqliteConfig) {
+            // negative: in KiB instead of pages
+            sqliteConfig.setCacheSize(-cacheSizeKiB);
+            sqliteConfig.setPragma(org.sqlite.SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(mmapSizeBytes));
+            if (tempStoreMemory) {
+                sqliteConfig.setTempStore(org.sqlite.SQLiteConfig.TempStore.MEMORY);
+            }
+        }
+    }
+
+    /**
+     * What one {@link #runMaintenance()} did. Sizes include the WAL file.
+     */
+    public record MaintenanceReport(
+            long sizeBeforeBytes,
+            long sizeAfterBytes,
+            long freePagesBefore,
+            long freePagesAfter,
+            // true when the file was rewritten by a full VACUUM
+            boolean vacuumed,
+            Duration elapsed
+    ) {}
 
     public Database() {
         String dataDir = PortalUtils.getUserDataDir();
@@ -32,26 +102,49 @@ public class Database {
         String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
         logger.info("Database URL: {}", url);
         logger.warn("opening database file path={}", dbFile.getAbsolutePath());
-        this.dataSource = createDataSource(url);
+        this.dbFile = dbFile.toPath();
+        this.tuning = Tuning.forThisMachine();
+        logger.info("Database tuning: {}", this.tuning);
+        this.writeDataSource = createWriteDataSource(url);
         initialize();
+        this.readDataSource = createReadDataSource(url, DEFAULT_READ_POOL_SIZE);
     }
 
     // Constructor for testing
     public Database(String url) {
-        this.dataSource = createDataSource(url);
+        this(url, DEFAULT_READ_POOL_SIZE);
+    }
+
+    /**
+     * @param readPoolSize number of read-only connections, 0 sends reads through the writer connection as well
+     */
+    public Database(String url, int readPoolSize) {
+        this(url, readPoolSize, Tuning.forThisMachine());
+    }
+
+    public Database(String url, int readPoolSize, Tuning tuning) {
+        this.dbFile = Path.of(url.substring("jdbc:sqlite:".length()));
+        this.tuning = tuning;
+        this.writeDataSource = createWriteDataSource(url);
         initialize();
+        this.readDataSource = readPoolSize > 0 ? createReadDataSource(url, readPoolSize) : null;
     }
 
-    private HikariDataSource createDataSource(String url) {
+    private HikariDataSource createWriteDataSource(String url) {
         org.sqlite.SQLiteConfig sqliteConfig = new org.sqlite.SQLiteConfig();
         sqliteConfig.setJournalMode(org.sqlite.SQLiteConfig.JournalMode.WAL);
         sqliteConfig.setSynchronous(org.sqlite.SQLiteConfig.SynchronousMode.NORMAL);
+        // INSERT OR REPLACE only fires delete triggers with recursive triggers on,
+        // the search index triggers (MigrationV16) rely on them to drop the replaced row
+        sqliteConfig.enableRecursiveTriggers(true);
+        tuning.apply(sqliteConfig);
         SQLiteDataSource ds = new SQLiteDataSource(sqliteConfig);
         ds.setUrl(url);
         var cfg = new HikariConfig();
         //cfg.setJdbcUrl(url);
         cfg.setDataSource(ds);
-        // SQLITE only support single connection per db file, so limit at 1 connection in pool:
+        cfg.setPoolName("sqlite-writer");
+        // SQLite only allows one writer per db file, a single connection queues writers here instead of on SQLITE_BUSY:
         cfg.setMaximumPoolSize(1);
         cfg.setMinimumIdle(1);
         cfg.setAutoCommit(true);
@@ -60,12 +153,25 @@ public class Database {
         return new HikariDataSource(cfg);
     }
 
-    private Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+    private HikariDataSource createReadDataSource(String url, int poolSize) {
+        org.sqlite.SQLiteConfig sqliteConfig = new org.sqlite.SQLiteConfig();
+        // WAL is a property of the db file, set by the writer, a read-only connection cannot change the journal mode
+        sqliteConfig.setReadOnly(true);
+        tuning.apply(sqliteConfig);
+        SQLiteDataSource ds = new SQLiteDataSource(sqliteConfig);
+        ds.setUrl(url);
+        var cfg = new HikariConfig();
+        cfg.setDataSource(ds);
+        cfg.setPoolName("sqlite-reader");
+        cfg.setMaximumPoolSize(poolSize);
+        cfg.setMinimumIdle(1);
+        cfg.setAutoCommit(true);
+        cfg.setConnectionTimeout(120000);
+        return new HikariDataSource(cfg);
     }
 
     private void initialize() {
-        try (Connection conn = getConnection()) {
+        try (Connection conn = openWriteConnection()) {
             conn.setAutoCommit(false);
             try {
                 int currentVersion = getCurrentVersion(conn);
@@ -119,6 +225,15 @@ public class Database {
         migrations.add(new MigrationV9());
         migrations.add(new MigrationV10());
         migrations.add(new MigrationV11());
+        migrations.add(new MigrationV12());
+        migrations.add(new MigrationV13());
+        migrations.add(new MigrationV14());
+        migrations.add(new MigrationV15());
+        migrations.add(new MigrationV16());
+        migrations.add(new MigrationV17());
+        migrations.add(new MigrationV18());
+        migrations.add(new MigrationV19());
+        migrations.add(new MigrationV20());
         return migrations;
     }
 
@@ -406,12 +521,438 @@ public class Database {
         }
     }
 
-    public Connection openConnection() throws SQLException {
-        return getConnection();
+    static class MigrationV12 implements Migration {
+        @Override
+        public int version() { return 12; }
+
+        @Override
+        public void apply(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                // write-behind log of user mutations (star, playlist edits) that still need to reach the server
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS pending_mutations (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        server_id TEXT NOT NULL,
+                        kind TEXT NOT NULL,
+                        target_id TEXT NOT NULL,
+                        payload TEXT NOT NULL,
+                        created_at_ms INTEGER NOT NULL,
+                        attempts INTEGER NOT NULL DEFAULT 0,
+                        last_error TEXT
+                    )
+                """);
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_pending_mutations_server_target ON pending_mutations (server_id, target_id)");
+            }
+        }
+    }
+
+    static class MigrationV13 implements Migration {
+        @Override
+        public int version() { return 13; }
+
+        @Override
+        public void apply(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                // what the server reported for the album when we last stored it, see SyncService.fingerprint
+                stmt.execute("ALTER TABLE albums ADD COLUMN sync_fingerprint TEXT");
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS sync_state (
+                        server_id TEXT PRIMARY KEY,
+                        artists_last_modified_ms INTEGER,
+                        last_sync_at_ms INTEGER NOT NULL,
+                        last_full_sync_at_ms INTEGER
+                    )
+                """);
+            }
+        }
+    }
+
+    static class MigrationV14 implements Migration {
+        @Override
+        public int version() { return 14; }
+
+        @Override
+        public void apply(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                // a full sync writes here and swaps the rows into artists/albums/songs when every artist is done
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS artists_staging (
+                        id TEXT NOT NULL,
+                        server_id TEXT NOT NULL,
+                        name TEXT NOT NULL,
+                        album_count INTEGER NOT NULL,
+                        starred_at INTEGER,
+                        cover_art_id TEXT,
+                        biography BLOB,
+                        PRIMARY KEY (id, server_id)
+                    )
+                """);
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS albums_staging (
+                        id TEXT NOT NULL,
+                        server_id TEXT NOT NULL,
+                        artist_id TEXT NOT NULL,
+                        name TEXT NOT NULL,
+                        song_count INTEGER,
+                        year INTEGER,
+                        artist_name TEXT NOT NULL,
+                        duration_ms INTEGER,
+                        starred_at_ms INTEGER,
+                        cover_art_id TEXT,
+                        added_at_ms INTEGER NOT NULL,
+                        genre TEXT,
+                        sync_fingerprint TEXT,
+                        PRIMARY KEY (id, server_id)
+                    )
+                """);
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS songs_staging (
+                        id TEXT NOT NULL,
+                        server_id TEXT NOT NULL,
+                        album_id TEXT NOT NULL,
+                        album_name TEXT NOT NULL DEFAULT '',
+                        name TEXT NOT NULL,
+                        year INTEGER,
+                        artist_id TEXT NOT NULL,
+                        artist_name TEXT NOT NULL,
+                        duration_ms INTEGER,
+                        starred_at_ms INTEGER,
+                        cover_art_id TEXT,
+                        created_at_ms INTEGER NOT NULL,
+                        track_number INTEGER,
+                        disc_number INTEGER,
+                        bit_rate INTEGER,
+                        size INTEGER DEFAULT 0,
+                        genre TEXT DEFAULT '',
+                        suffix TEXT DEFAULT '',
+                        PRIMARY KEY (id, server_id)
+                    )
+                """);
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_albums_staging_artist ON albums_staging (server_id, artist_id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_songs_staging_album ON songs_staging (server_id, album_id)");
+                // one row per staged full sync that has not been swapped in yet
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS staged_sync (
+                        server_id TEXT PRIMARY KEY,
+                        started_at_ms INTEGER NOT NULL
+                    )
+                """);
+                // artists whose rows are completely written to the staging tables
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS sync_checkpoints (
+                        server_id TEXT NOT NULL,
+                        artist_id TEXT NOT NULL,
+                        completed_at_ms INTEGER NOT NULL,
+                        PRIMARY KEY (server_id, artist_id)
+                    )
+                """);
+            }
+        }
+    }
+
+    static class MigrationV15 implements Migration {
+        @Override
+        public int version() { return 15; }
+
+        @Override
+        public void apply(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                // one index per hot query in DatabaseServerService, server_id first as every query filters on it.
+                // Sort columns are part of the index so results come out in order without a temp b-tree.
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_albums_server_artist ON albums (server_id, artist_id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_albums_server_added_at ON albums (server_id, added_at_ms)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_albums_server_year ON albums (server_id, year)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_songs_server_album ON songs (server_id, album_id, disc_number, track_number)");
+                // few songs are starred, a partial index stays tiny and is only touched when a star changes
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_songs_server_starred_at ON songs (server_id, starred_at_ms) WHERE starred_at_ms IS NOT NULL");
+                // covering: listPlaylistSongIds never touches the table
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_playlist_songs_server_playlist ON playlist_songs (server_id, playlist_id, sort_order, song_id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_download_queue_server_status ON download_queue (server_id, status)");
+            }
+        }
+    }
+
+    static class MigrationV16 implements Migration {
+        // table -> columns to index, all text columns of the table a user would search for
+        private static final Map<String, List<String>> SEARCHABLE = new LinkedHashMap<>();
+        static {
+            SEARCHABLE.put("artists", List.of("name"));
+            SEARCHABLE.put("albums", List.of("name", "artist_name"));
+            SEARCHABLE.put("songs", List.of("name", "artist_name", "album_name"));
+            SEARCHABLE.put("playlists", List.of("name"));
+        }
+
+        @Override
+        public int version() { return 16; }
+
+        @Override
+        public void apply(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                // Full-text search over the local library, <table>_fts indexes <table> by rowid (external content).
+                // Triggers keep the index in step with every write, so sync, browsing and the staging swap all
+                // maintain it without knowing about it. remove_diacritics lets "beyonce" match "Beyoncé",
+                // the prefix indexes make "bey*" as cheap as a full term.
+                // The rowids of these tables are not stable across a full VACUUM, rebuild the index after one.
+                for (var entry : SEARCHABLE.entrySet()) {
+                    var table = entry.getKey();
+                    var columns = String.join(", ", entry.getValue());
+                    var newValues = String.join(", ", entry.getValue().stream().map(c -> "new." + c).toList());
+                    var oldValues = String.join(", ", entry.getValue().stream().map(c -> "old." + c).toList());
+                    stmt.execute("""
+                        CREATE VIRTUAL TABLE IF NOT EXISTS %1$s_fts USING fts5(
+                            %2$s,
+                            content = '%1$s',
+                            content_rowid = 'rowid',
+                            tokenize = 'unicode61 remove_diacritics 2',
+                            prefix = '2 3'
+                        )
+                    """.formatted(table, columns));
+                    stmt.execute("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_fts_insert AFTER INSERT ON %1$s BEGIN
+                            INSERT INTO %1$s_fts (rowid, %2$s) VALUES (new.rowid, %3$s);
+                        END
+                    """.formatted(table, columns, newValues));
+                    stmt.execute("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_fts_delete AFTER DELETE ON %1$s BEGIN
+                            INSERT INTO %1$s_fts (%1$s_fts, rowid, %2$s) VALUES ('delete', old.rowid, %3$s);
+                        END
+                    """.formatted(table, columns, oldValues));
+                    stmt.execute("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_fts_update AFTER UPDATE OF %2$s ON %1$s BEGIN
+                            INSERT INTO %1$s_fts (%1$s_fts, rowid, %2$s) VALUES ('delete', old.rowid, %4$s);
+                            INSERT INTO %1$s_fts (rowid, %2$s) VALUES (new.rowid, %3$s);
+                        END
+                    """.formatted(table, columns, newValues, oldValues));
+                    // index what is already synced
+                    stmt.execute("INSERT INTO %1$s_fts (%1$s_fts) VALUES ('rebuild')".formatted(table));
+                }
+            }
+        }
+    }
+
+    static class MigrationV17 implements Migration {
+        @Override
+        public int version() { return 17; }
+
+        @Override
+        public void apply(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                // keyset pagination in DatabaseServerService: the index holds the full sort key including the id
+                // tie-breaker, so every page is a range scan starting right after the previous page
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_artists_server_name ON artists (server_id, name COLLATE NOCASE, id)");
+                stmt.execute("DROP INDEX IF EXISTS idx_albums_server_added_at");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_albums_server_added_at ON albums (server_id, added_at_ms, id)");
+                stmt.execute("DROP INDEX IF EXISTS idx_songs_server_starred_at");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_songs_server_starred_at ON songs (server_id, starred_at_ms, id) WHERE starred_at_ms IS NOT NULL");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_download_queue_server_added_at ON download_queue (server_id, added_at, song_id)");
+            }
+        }
+    }
+
+    static class MigrationV18 implements Migration {
+        @Override
+        public int version() { return 18; }
+
+        @Override
+        public void apply(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                // the play queue, written one row at a time by PlayQueueService. Rows are ordered by sort_key:
+                // inserting between two rows takes a key between theirs, so nothing else is rewritten
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS play_queue (
+                        entry_id INTEGER PRIMARY KEY,
+                        queue_item_id TEXT NOT NULL,
+                        song_id TEXT NOT NULL,
+                        sort_key REAL NOT NULL,
+                        user_added INTEGER NOT NULL DEFAULT 0,
+                        original_order INTEGER NOT NULL
+                    )
+                """);
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_play_queue_sort_key ON play_queue (sort_key)");
+                // a single row: the playing position, the play mode and where the queue was played from
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS play_queue_state (
+                        id INTEGER PRIMARY KEY CHECK (id = 1),
+                        position INTEGER,
+                        play_mode TEXT NOT NULL,
+                        play_context_kind TEXT,
+                        play_context_id TEXT
+                    )
+                """);
+            }
+        }
+    }
+
+    static class MigrationV19 implements Migration {
+        @Override
+        public int version() { return 19; }
+
+        @Override
+        public void apply(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                // sort_key is the unshuffled order now, the order of a shuffled queue is kept as one value
+                stmt.execute("ALTER TABLE play_queue_state ADD COLUMN shuffle_order BLOB");
+                stmt.executeUpdate("UPDATE play_queue SET sort_key = original_order");
+                stmt.execute("ALTER TABLE play_queue DROP COLUMN original_order");
+            }
+        }
+    }
+
+    static class MigrationV20 implements Migration {
+        @Override
+        public int version() { return 20; }
+
+        @Override
+        public void apply(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                // the queue belongs to a server, like the library it plays from. The saved queue is not kept,
+                // the server it was played from is not known
+                stmt.execute("DROP TABLE IF EXISTS play_queue");
+                stmt.execute("DROP TABLE IF EXISTS play_queue_state");
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS play_queue (
+                        server_id TEXT NOT NULL,
+                        entry_id INTEGER NOT NULL,
+                        queue_item_id TEXT NOT NULL,
+                        song_id TEXT NOT NULL,
+                        sort_key REAL NOT NULL,
+                        user_added INTEGER NOT NULL DEFAULT 0,
+                        PRIMARY KEY (server_id, entry_id)
+                    )
+                """);
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_play_queue_server_sort_key ON play_queue (server_id, sort_key)");
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS play_queue_state (
+                        server_id TEXT PRIMARY KEY,
+                        position INTEGER,
+                        play_mode TEXT NOT NULL,
+                        play_context_kind TEXT,
+                        play_context_id TEXT,
+                        shuffle_order BLOB
+                    )
+                """);
+            }
+        }
+    }
+
+    /**
+     * A read-only connection. Sees everything committed before the first query of its transaction,
+     * never waits for the writer.
+     */
+    public Connection openReadConnection() throws SQLException {
+        return readDataSource != null ? readDataSource.getConnection() : writeDataSource.getConnection();
+    }
+
+    /**
+     * The single writer connection, callers queue up here until the current writer is done.
+     */
+    public Connection openWriteConnection() throws SQLException {
+        return writeDataSource.getConnection();
+    }
+
+    /**
+     * Refreshes the planner statistics, checkpoints the WAL into the db file and returns the free pages to the file
+     * system. Holds the writer connection for the duration, so writers wait, readers do not.
+     * <p>
+     * Incremental vacuum needs auto_vacuum=INCREMENTAL, which a db file only gets from a full VACUUM.
+     * The first run on a file without it does that VACUUM once, which rewrites the whole file.
+     */
+    public MaintenanceReport runMaintenance() {
+        long start = System.nanoTime();
+        long sizeBefore = fileSize();
+        try (Connection conn = openWriteConnection(); Statement stmt = conn.createStatement()) {
+            long freePagesBefore = queryLong(stmt, "PRAGMA freelist_count");
+            stmt.execute("PRAGMA analysis_limit = " + ANALYSIS_LIMIT);
+            if (queryLong(stmt, "SELECT count(*) FROM sqlite_master WHERE name = 'sqlite_stat1'") == 0) {
+                // PRAGMA optimize only re-analyzes tables that have statistics already
+                stmt.execute("ANALYZE");
+            } else {
+                stmt.execute("PRAGMA optimize");
+            }
+            boolean vacuumed = false;
+            // 2 = INCREMENTAL
+            if (queryLong(stmt, "PRAGMA auto_vacuum") != 2) {
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                stmt.execute("VACUUM");
+                rebuildSearchIndex(stmt);
+                vacuumed = true;
+            }
+            // after a VACUUM this frees the pages of the old search index
+            incrementalVacuum(conn, queryLong(stmt, "PRAGMA freelist_count"));
+            try (ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(TRUNCATE)")) {
+                // busy: a reader still uses the WAL, it is checkpointed as far as possible and truncated next time
+                if (rs.next() && rs.getInt(1) != 0) {
+                    logger.info("maintenance: WAL checkpoint incomplete, a reader was active");
+                }
+            }
+            var report = new MaintenanceReport(
+                    sizeBefore,
+                    fileSize(),
+                    freePagesBefore,
+                    queryLong(stmt, "PRAGMA freelist_count"),
+                    vacuumed,
+                    Duration.ofNanos(System.nanoTime() - start)
+            );
+            logger.info("maintenance: size {} -> {} bytes, free pages {} -> {}, vacuumed={} in {}ms",
+                    report.sizeBeforeBytes(), report.sizeAfterBytes(), report.freePagesBefore(), report.freePagesAfter(),
+                    report.vacuumed(), report.elapsed().toMillis());
+            return report;
+        } catch (SQLException e) {
+            logger.error("maintenance failed", e);
+            throw new RuntimeException("Database maintenance failed", e);
+        }
+    }
+
+    // incremental_vacuum frees one page per step of the statement and the driver steps a statement once per execute,
+    // so it is executed once per free page, in one transaction
+    private static void incrementalVacuum(Connection conn, long pages) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            // closed before the commit, the last execute is still unfinished
+            try (PreparedStatement pstmt = conn.prepareStatement("PRAGMA incremental_vacuum(1)")) {
+                for (long i = 0; i < pages; i++) {
+                    pstmt.execute();
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    // VACUUM renumbers the rowids of tables without an INTEGER PRIMARY KEY, the search index refers to rows by rowid
+    private static void rebuildSearchIndex(Statement stmt) throws SQLException {
+        for (var table : MigrationV16.SEARCHABLE.keySet()) {
+            stmt.execute("INSERT INTO %1$s_fts (%1$s_fts) VALUES ('rebuild')".formatted(table));
+        }
+    }
+
+    private static long queryLong(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private long fileSize() {
+        long size = 0;
+        for (var file : List.of(dbFile, Path.of(dbFile + "-wal"))) {
+            try {
+                size += Files.size(file);
+            } catch (IOException e) {
+                // no WAL file between checkpoints
+            }
+        }
+        return size;
     }
 
     public void close() {
-        dataSource.close();
+        if (readDataSource != null) {
+            readDataSource.close();
+        }
+        writeDataSource.close();
     }
 
     public Path getDbFilePath() {
@@ -0,0 +1,73 @@
+package org.subsound.persistence.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs {@link Database#runMaintenance()} in the background, at most once per {@link #INTERVAL} and only while
+ * the app is idle: a sync would wait for the writer connection, and a full VACUUM competes with playback for disk.
+ */
+public class DatabaseMaintenance {
+    private static final Logger log = LoggerFactory.getLogger(DatabaseMaintenance.class);
+    private static final Duration CHECK_INTERVAL = Duration.ofMinutes(5);
+    private static final Duration INTERVAL = Duration.ofHours(6);
+
+    private final Database database;
+    private final BooleanSupplier isIdle;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    // only touched on the executor thread
+    private Instant lastRun = Instant.EPOCH;
+    private volatile boolean running = true;
+
+    public DatabaseMaintenance(Database database, BooleanSupplier isIdle) {
+        this.database = database;
+        this.isIdle = isIdle;
+        executor.scheduleWithFixedDelay(
+                this::runIfIdle,
+                CHECK_INTERVAL.toMillis(),
+                CHECK_INTERVAL.toMillis(),
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    private void runIfIdle() {
+        if (!this.running) {
+            return;
+        }
+        var now = Instant.now();
+        if (Duration.between(lastRun, now).compareTo(INTERVAL) < 0) {
+            return;
+        }
+        if (!isIdle.getAsBoolean()) {
+            log.debug("maintenance: app busy, retrying in {}", CHECK_INTERVAL);
+            return;
+        }
+        // a failing run is not retried before the next interval either
+        this.lastRun = now;
+        try {
+            database.runMaintenance();
+        } catch (Exception e) {
+            log.error("Error in database maintenance", e);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        executor.shutdown();
+        try {
+            // a VACUUM cannot be interrupted, wait for it so the pools are not closed underneath it
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.subsound.integration.ServerClient;
 import org.subsound.persistence.database.Artist.Biography;
 import org.subsound.integration.ServerClient.SongInfo;
 import org.subsound.persistence.database.DownloadQueueItem.DownloadStatus;
+import org.subsound.persistence.database.PendingMutation.MutationKind;
 import org.subsound.persistence.database.ScrobbleEntry.ScrobbleStatus;
 import org.subsound.utils.Utils;
 import org.slf4j.Logger;
@@ -18,12 +19,59 @@ import java.sql.Types;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class DatabaseServerService {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseServerService.class);
+    // Queries run by the UI on every page load. Each has a matching index in MigrationV15, checked by DatabaseIndexTest.
+    static final String LIST_ALBUMS_BY_ARTIST_SQL = "SELECT * FROM albums WHERE server_id = ? AND artist_id = ?";
+    static final String LIST_ALBUMS_BY_ADDED_AT_SQL = "SELECT * FROM albums WHERE server_id = ? ORDER BY added_at_ms DESC";
+    static final String LIST_ALBUMS_BY_YEAR_SQL = "SELECT * FROM albums WHERE server_id = ? AND year IS NOT NULL ORDER BY year DESC LIMIT ?";
+    static final String LIST_SONGS_BY_ALBUM_SQL = "SELECT * FROM songs WHERE server_id = ? AND album_id = ? ORDER BY disc_number, track_number";
+    static final String LIST_SONGS_BY_STARRED_AT_SQL = "SELECT * FROM songs WHERE server_id = ? AND starred_at_ms IS NOT NULL ORDER BY starred_at_ms DESC";
+    static final String LIST_PLAYLIST_SONG_IDS_SQL = "SELECT song_id FROM playlist_songs WHERE playlist_id = ? AND server_id = ? ORDER BY sort_order";
+    // formatted with one placeholder per status
+    static final String LIST_DOWNLOAD_QUEUE_SQL = "SELECT * FROM download_queue WHERE server_id = ? AND status IN (%s)";
+
+    // Keyset pagination: every page continues after the sort key of the previous page's last row, see MigrationV17.
+    // The id is a tie-breaker, so rows with the same sort key are neither skipped nor repeated.
+    // Without the biography BLOB, the artist list never shows it
+    static final String LIST_ARTISTS_PAGE_SQL = """
+            SELECT id, server_id, name, album_count, starred_at, cover_art_id FROM artists
+            WHERE server_id = ? AND name COLLATE NOCASE >= ? AND (name COLLATE NOCASE, id) > (?, ?)
+            ORDER BY name COLLATE NOCASE, id
+            LIMIT ?
+            """;
+    static final String LIST_ALBUMS_BY_ADDED_AT_PAGE_SQL = """
+            SELECT * FROM albums
+            WHERE server_id = ? AND (added_at_ms, id) < (?, ?)
+            ORDER BY added_at_ms DESC, id DESC
+            LIMIT ?
+            """;
+    static final String LIST_SONGS_BY_STARRED_AT_PAGE_SQL = """
+            SELECT * FROM songs
+            WHERE server_id = ? AND starred_at_ms IS NOT NULL AND (starred_at_ms, id) < (?, ?)
+            ORDER BY starred_at_ms DESC, id DESC
+            LIMIT ?
+            """;
+    // formatted with one placeholder per status
+    static final String LIST_DOWNLOAD_QUEUE_PAGE_SQL = """
+            SELECT * FROM download_queue
+            WHERE server_id = ? AND status IN (%s) AND (added_at, song_id) < (?, ?)
+            ORDER BY added_at DESC, song_id DESC
+            LIMIT ?
+            """;
+
     private final UUID serverId;
     private final Database database;
 
@@ -37,7 +85,7 @@ public class DatabaseServerService {
                 INSERT OR REPLACE INTO albums (id, server_id, artist_id, name, song_count, year, artist_name, duration_ms, starred_at_ms, cover_art_id, added_at_ms, genre)
                 VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
                 """;
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, album.id());
             pstmt.setString(2, album.serverId().toString());
@@ -76,8 +124,8 @@ public class DatabaseServerService {
 
     public List<Album> listAlbumsByArtist(String artistId) {
         List<Album> albums = new ArrayList<>();
-        String sql = "SELECT * FROM albums WHERE server_id = ? AND artist_id = ?";
-        try (Connection conn = database.openConnection();
+        String sql = LIST_ALBUMS_BY_ARTIST_SQL;
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, artistId);
@@ -94,8 +142,8 @@ public class DatabaseServerService {
     }
 
     public List<Album> listAlbumsByAddedAt() {
-        String sql = "SELECT * FROM albums WHERE server_id = ? ORDER BY added_at_ms DESC";
-        try (Connection conn = database.openConnection();
+        String sql = LIST_ALBUMS_BY_ADDED_AT_SQL;
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -111,9 +159,37 @@ public class DatabaseServerService {
         }
     }
 
+    /**
+     * Newest albums first, {@code limit} at a time.
+     */
+    public Page<Album> listAlbumsByAddedAt(int limit) {
+        return listAlbumsByAddedAtAfter(Long.MAX_VALUE, "", limit);
+    }
+
+    private Page<Album> listAlbumsByAddedAtAfter(long addedAtMs, String id, int limit) {
+        String sql = LIST_ALBUMS_BY_ADDED_AT_PAGE_SQL;
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            pstmt.setLong(2, addedAtMs);
+            pstmt.setString(3, id);
+            pstmt.setInt(4, limit + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                List<Album> albums = new ArrayList<>();
+                while (rs.next()) {
+                    albums.add(mapResultSetToAlbum(rs));
+                }
+                return toPage(albums, limit, last -> listAlbumsByAddedAtAfter(last.addedAt().toEpochMilli(), last.id(), limit));
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to list albums page by added_at_ms for server: {}", serverId, e);
+            throw new RuntimeException("Failed to list albums page by added_at_ms", e);
+        }
+    }
+
     public List<Album> listAlbumsByYear(int limit) {
-        String sql = "SELECT * FROM albums WHERE server_id = ? AND year IS NOT NULL ORDER BY year DESC LIMIT ?";
-        try (Connection conn = database.openConnection();
+        String sql = LIST_ALBUMS_BY_YEAR_SQL;
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setInt(2, limit);
@@ -132,7 +208,7 @@ public class DatabaseServerService {
 
     public Optional<Album> getAlbumById(String albumId) {
         String sql = "SELECT * FROM albums WHERE server_id = ? AND id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, albumId);
@@ -179,29 +255,9 @@ public class DatabaseServerService {
 
     public void insert(Artist artist) {
         String sql = "INSERT OR REPLACE INTO artists (id, server_id, name, album_count, starred_at, cover_art_id, biography) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, artist.id());
-            pstmt.setString(2, artist.serverId().toString());
-            pstmt.setString(3, artist.name());
-            pstmt.setInt(4, artist.albumCount());
-            if (artist.starredAt().isPresent()) {
-                pstmt.setLong(5, artist.starredAt().get().toEpochMilli());
-            } else {
-                pstmt.setNull(5, Types.INTEGER);
-            }
-            if (artist.coverArtId().isPresent()) {
-                pstmt.setString(6, artist.coverArtId().get());
-            } else {
-                pstmt.setNull(6, Types.VARCHAR);
-            }
-            if (artist.biography().isPresent()) {
-                var biography = artist.biography().get();
-                var data = Utils.toJson(biography);
-                pstmt.setBytes(7, data.getBytes(StandardCharsets.UTF_8));
-            } else {
-                pstmt.setNull(7, Types.BLOB);
-            }
+            bindArtist(pstmt, artist);
             pstmt.executeUpdate();
         } catch (SQLException e) {
             logger.error("Failed to insert artist", e);
@@ -211,7 +267,7 @@ public class DatabaseServerService {
 
     public Optional<Artist> getArtistById(String id) {
         String sql = "SELECT id, server_id, name, album_count, starred_at, cover_art_id, biography FROM artists WHERE server_id = ? AND  id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, id);
@@ -227,14 +283,18 @@ public class DatabaseServerService {
         return Optional.empty();
     }
 
+    /**
+     * All artists, without their biography: decoding every biography BLOB is most of the cost of listing artists,
+     * use {@link #getArtistById} to get one with its biography.
+     */
     public List<Artist> listArtists() {
         List<Artist> artists = new ArrayList<>();
-        String sql = "SELECT id, server_id, name, album_count, starred_at, cover_art_id, biography FROM artists WHERE server_id = ?";
-        try (Connection conn = database.openConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        String sql = "SELECT id, server_id, name, album_count, starred_at, cover_art_id FROM artists WHERE server_id = ?";
+        try (Connection conn = database.openReadConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    artists.add(mapResultSetToArtist(rs));
+                    artists.add(mapResultSetToArtistSummary(rs));
                 }
             }
         } catch (SQLException e) {
@@ -244,19 +304,54 @@ public class DatabaseServerService {
         return artists;
     }
 
-    private Artist mapResultSetToArtist(ResultSet rs) throws SQLException {
-        long starredAt = rs.getLong("starred_at");
-        Optional<Instant> starredAtInstant = rs.wasNull() ? Optional.empty() : Optional.of(Instant.ofEpochMilli(starredAt));
+    /**
+     * Artists sorted by name, {@code limit} at a time and without their biography.
+     */
+    public Page<Artist> listArtists(int limit) {
+        return listArtistsAfter("", "", limit);
+    }
 
-        String coverArtId = rs.getString("cover_art_id");
-        Optional<String> coverArtIdOptional = Optional.ofNullable(coverArtId);
+    private Page<Artist> listArtistsAfter(String name, String id, int limit) {
+        String sql = LIST_ARTISTS_PAGE_SQL;
+        try (Connection conn = database.openReadConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            pstmt.setString(2, name);
+            pstmt.setString(3, name);
+            pstmt.setString(4, id);
+            pstmt.setInt(5, limit + 1);
+            List<Artist> artists = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    artists.add(mapResultSetToArtistSummary(rs));
+                }
+            }
+            return toPage(artists, limit, last -> listArtistsAfter(last.name(), last.id(), limit));
+        } catch (SQLException e) {
+            logger.error("Failed to list artists page for server: {}", serverId, e);
+            throw new RuntimeException("Failed to list artists page", e);
+        }
+    }
 
+    private Artist mapResultSetToArtist(ResultSet rs) throws SQLException {
         byte[] biography = rs.getBytes("biography");
         Optional<Biography> biographyOptional = Optional.empty();
         if (biography != null && biography.length > 0) {
             Biography bio = Utils.fromJson(new String(biography, StandardCharsets.UTF_8), Biography.class);
             biographyOptional = Optional.of(bio);
         }
+        return mapResultSetToArtist(rs, biographyOptional);
+    }
+
+    private Artist mapResultSetToArtistSummary(ResultSet rs) throws SQLException {
+        return mapResultSetToArtist(rs, Optional.empty());
+    }
+
+    private Artist mapResultSetToArtist(ResultSet rs, Optional<Biography> biography) throws SQLException {
+        long starredAt = rs.getLong("starred_at");
+        Optional<Instant> starredAtInstant = rs.wasNull() ? Optional.empty() : Optional.of(Instant.ofEpochMilli(starredAt));
+
+        String coverArtId = rs.getString("cover_art_id");
+        Optional<String> coverArtIdOptional = Optional.ofNullable(coverArtId);
 
         return new Artist(
                 rs.getString("id"),
@@ -265,7 +360,7 @@ public class DatabaseServerService {
                 rs.getInt("album_count"),
                 starredAtInstant,
                 coverArtIdOptional,
-                biographyOptional
+                biography
         );
     }
 
@@ -274,7 +369,7 @@ public class DatabaseServerService {
                 INSERT OR REPLACE INTO songs (id, server_id, album_id, album_name, name, year, artist_id, artist_name, duration_ms, starred_at_ms, cover_art_id, created_at_ms, track_number, disc_number, bit_rate, size, genre, suffix)
                 VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
                 """;
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, song.id());
             pstmt.setString(2, song.serverId().toString());
@@ -326,96 +421,85 @@ public class DatabaseServerService {
     }
 
     public void syncAlbumBatch(Album album, List<Song> songs) {
-        String albumSql = """
-                INSERT OR REPLACE INTO albums (id, server_id, artist_id, name, song_count, year, artist_name, duration_ms, starred_at_ms, cover_art_id, added_at_ms, genre)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                """;
-        String songSql = """
-                INSERT OR REPLACE INTO songs (id, server_id, album_id, album_name, name, year, artist_id, artist_name, duration_ms, starred_at_ms, cover_art_id, created_at_ms, track_number, disc_number, bit_rate, size, genre, suffix)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                """;
-        try (Connection conn = database.openConnection()) {
+        ingestBatch(List.of(), List.of(new AlbumBatch(album, songs, Optional.empty())));
+    }
+
+    /**
+     * Where library rows are written. A full sync writes into the staging tables and swaps them in when it is
+     * complete, see {@link #swapStagedLibrary()}.
+     */
+    public enum LibraryTables {
+        LIVE("artists", "albums", "songs"),
+        STAGING("artists_staging", "albums_staging", "songs_staging"),
+        ;
+
+        private final String artists;
+        private final String albums;
+        private final String songs;
+
+        LibraryTables(String artists, String albums, String songs) {
+            this.artists = artists;
+            this.albums = albums;
+            this.songs = songs;
+        }
+    }
+
+    private static final String ARTIST_COLUMNS = "id, server_id, name, album_count, starred_at, cover_art_id, biography";
+    private static final String ALBUM_COLUMNS = "id, server_id, artist_id, name, song_count, year, artist_name, duration_ms, starred_at_ms, cover_art_id, added_at_ms, genre, sync_fingerprint";
+    private static final String SONG_COLUMNS = "id, server_id, album_id, album_name, name, year, artist_id, artist_name, duration_ms, starred_at_ms, cover_art_id, created_at_ms, track_number, disc_number, bit_rate, size, genre, suffix";
+
+    /**
+     * Writes artists and albums with their songs in a single transaction.
+     * Songs that are stored for one of the albums but are not in its batch anymore are deleted.
+     */
+    public void ingestBatch(List<Artist> artists, List<AlbumBatch> albums) {
+        ingestBatch(LibraryTables.LIVE, artists, albums, List.of());
+    }
+
+    /**
+     * Like {@link #ingestBatch(List, List)}, into the given tables. The completed artists are checkpointed in the
+     * same transaction, so a checkpoint is never visible without the rows it stands for.
+     */
+    public void ingestBatch(LibraryTables tables, List<Artist> artists, List<AlbumBatch> albums, List<String> completedArtistIds) {
+        String artistSql = "INSERT OR REPLACE INTO %s (%s) VALUES (?, ?, ?, ?, ?, ?, ?)".formatted(tables.artists, ARTIST_COLUMNS);
+        String albumSql = "INSERT OR REPLACE INTO %s (%s) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)".formatted(tables.albums, ALBUM_COLUMNS);
+        String songSql = "INSERT OR REPLACE INTO %s (%s) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)".formatted(tables.songs, SONG_COLUMNS);
+        String checkpointSql = "INSERT OR REPLACE INTO sync_checkpoints (server_id, artist_id, completed_at_ms) VALUES (?, ?, ?)";
+        try (Connection conn = database.openWriteConnection()) {
             conn.setAutoCommit(false);
-            try {
-                try (PreparedStatement pstmt = conn.prepareStatement(albumSql)) {
-                    pstmt.setString(1, album.id());
-                    pstmt.setString(2, album.serverId().toString());
-                    pstmt.setString(3, album.artistId());
-                    pstmt.setString(4, album.name());
-                    pstmt.setInt(5, album.songCount());
-                    if (album.year().isPresent()) {
-                        pstmt.setInt(6, album.year().get());
-                    } else {
-                        pstmt.setNull(6, Types.INTEGER);
-                    }
-                    pstmt.setString(7, album.artistName());
-                    pstmt.setLong(8, album.duration().toMillis());
-                    if (album.starredAt().isPresent()) {
-                        pstmt.setLong(9, album.starredAt().get().toEpochMilli());
-                    } else {
-                        pstmt.setNull(9, Types.INTEGER);
-                    }
-                    if (album.coverArtId().isPresent()) {
-                        pstmt.setString(10, album.coverArtId().get());
+            try (PreparedStatement artistStmt = conn.prepareStatement(artistSql);
+                 PreparedStatement albumStmt = conn.prepareStatement(albumSql);
+                 PreparedStatement songStmt = conn.prepareStatement(songSql);
+                 PreparedStatement checkpointStmt = conn.prepareStatement(checkpointSql)) {
+                for (Artist artist : artists) {
+                    bindArtist(artistStmt, artist);
+                    artistStmt.addBatch();
+                }
+                artistStmt.executeBatch();
+                for (AlbumBatch batch : albums) {
+                    bindAlbum(albumStmt, batch.album());
+                    if (batch.syncFingerprint().isPresent()) {
+                        albumStmt.setString(13, batch.syncFingerprint().get());
                     } else {
-                        pstmt.setNull(10, Types.VARCHAR);
+                        albumStmt.setNull(13, Types.VARCHAR);
                     }
-                    pstmt.setLong(11, album.addedAt().toEpochMilli());
-                    if (album.genre().isPresent()) {
-                        pstmt.setString(12, album.genre().get());
-                    } else {
-                        pstmt.setNull(12, Types.VARCHAR);
+                    albumStmt.addBatch();
+                    deleteSongsNotIn(conn, tables, batch.album(), batch.songs());
+                    for (Song song : batch.songs()) {
+                        bindSong(songStmt, song);
+                        songStmt.addBatch();
                     }
-                    pstmt.executeUpdate();
                 }
-                try (PreparedStatement pstmt = conn.prepareStatement(songSql)) {
-                    for (Song song : songs) {
-                        pstmt.setString(1, song.id());
-                        pstmt.setString(2, song.serverId().toString());
-                        pstmt.setString(3, song.albumId());
-                        pstmt.setString(4, song.albumName());
-                        pstmt.setString(5, song.name());
-                        if (song.year().isPresent()) {
-                            pstmt.setInt(6, song.year().get());
-                        } else {
-                            pstmt.setNull(6, Types.INTEGER);
-                        }
-                        pstmt.setString(7, song.artistId());
-                        pstmt.setString(8, song.artistName());
-                        pstmt.setLong(9, song.duration().toMillis());
-                        if (song.starredAt().isPresent()) {
-                            pstmt.setLong(10, song.starredAt().get().toEpochMilli());
-                        } else {
-                            pstmt.setNull(10, Types.INTEGER);
-                        }
-                        if (song.coverArtId().isPresent()) {
-                            pstmt.setString(11, song.coverArtId().get());
-                        } else {
-                            pstmt.setNull(11, Types.VARCHAR);
-                        }
-                        pstmt.setLong(12, song.createdAt().toEpochMilli());
-                        if (song.trackNumber().isPresent()) {
-                            pstmt.setInt(13, song.trackNumber().get());
-                        } else {
-                            pstmt.setNull(13, Types.INTEGER);
-                        }
-                        if (song.discNumber().isPresent()) {
-                            pstmt.setInt(14, song.discNumber().get());
-                        } else {
-                            pstmt.setNull(14, Types.INTEGER);
-                        }
-                        if (song.bitRate().isPresent()) {
-                            pstmt.setInt(15, song.bitRate().get());
-                        } else {
-                            pstmt.setNull(15, Types.INTEGER);
-                        }
-                        pstmt.setLong(16, song.size());
-                        pstmt.setString(17, song.genre());
-                        pstmt.setString(18, song.suffix());
-                        pstmt.addBatch();
-                    }
-                    pstmt.executeBatch();
+                albumStmt.executeBatch();
+                songStmt.executeBatch();
+                long now = Instant.now().toEpochMilli();
+                for (String artistId : completedArtistIds) {
+                    checkpointStmt.setString(1, this.serverId.toString());
+                    checkpointStmt.setString(2, artistId);
+                    checkpointStmt.setLong(3, now);
+                    checkpointStmt.addBatch();
                 }
+                checkpointStmt.executeBatch();
                 conn.commit();
             } catch (SQLException e) {
                 conn.rollback();
@@ -427,10 +511,127 @@ public class DatabaseServerService {
         }
     }
 
+    // songs that are no longer on the album on the server
+    private static void deleteSongsNotIn(Connection conn, LibraryTables tables, Album album, List<Song> songs) throws SQLException {
+        String placeholders = String.join(",", songs.stream().map(_ -> "?").toList());
+        String deleteSql = songs.isEmpty()
+                ? "DELETE FROM " + tables.songs + " WHERE server_id = ? AND album_id = ?"
+                : "DELETE FROM " + tables.songs + " WHERE server_id = ? AND album_id = ? AND id NOT IN (" + placeholders + ")";
+        try (PreparedStatement pstmt = conn.prepareStatement(deleteSql)) {
+            pstmt.setString(1, album.serverId().toString());
+            pstmt.setString(2, album.id());
+            int col = 3;
+            for (Song song : songs) {
+                pstmt.setString(col++, song.id());
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void bindArtist(PreparedStatement pstmt, Artist artist) throws SQLException {
+        pstmt.setString(1, artist.id());
+        pstmt.setString(2, artist.serverId().toString());
+        pstmt.setString(3, artist.name());
+        pstmt.setInt(4, artist.albumCount());
+        if (artist.starredAt().isPresent()) {
+            pstmt.setLong(5, artist.starredAt().get().toEpochMilli());
+        } else {
+            pstmt.setNull(5, Types.INTEGER);
+        }
+        if (artist.coverArtId().isPresent()) {
+            pstmt.setString(6, artist.coverArtId().get());
+        } else {
+            pstmt.setNull(6, Types.VARCHAR);
+        }
+        if (artist.biography().isPresent()) {
+            var biography = artist.biography().get();
+            var data = Utils.toJson(biography);
+            pstmt.setBytes(7, data.getBytes(StandardCharsets.UTF_8));
+        } else {
+            pstmt.setNull(7, Types.BLOB);
+        }
+    }
+
+    private static void bindAlbum(PreparedStatement pstmt, Album album) throws SQLException {
+        pstmt.setString(1, album.id());
+        pstmt.setString(2, album.serverId().toString());
+        pstmt.setString(3, album.artistId());
+        pstmt.setString(4, album.name());
+        pstmt.setInt(5, album.songCount());
+        if (album.year().isPresent()) {
+            pstmt.setInt(6, album.year().get());
+        } else {
+            pstmt.setNull(6, Types.INTEGER);
+        }
+        pstmt.setString(7, album.artistName());
+        pstmt.setLong(8, album.duration().toMillis());
+        if (album.starredAt().isPresent()) {
+            pstmt.setLong(9, album.starredAt().get().toEpochMilli());
+        } else {
+            pstmt.setNull(9, Types.INTEGER);
+        }
+        if (album.coverArtId().isPresent()) {
+            pstmt.setString(10, album.coverArtId().get());
+        } else {
+            pstmt.setNull(10, Types.VARCHAR);
+        }
+        pstmt.setLong(11, album.addedAt().toEpochMilli());
+        if (album.genre().isPresent()) {
+            pstmt.setString(12, album.genre().get());
+        } else {
+            pstmt.setNull(12, Types.VARCHAR);
+        }
+    }
+
+    private static void bindSong(PreparedStatement pstmt, Song song) throws SQLException {
+        pstmt.setString(1, song.id());
+        pstmt.setString(2, song.serverId().toString());
+        pstmt.setString(3, song.albumId());
+        pstmt.setString(4, song.albumName());
+        pstmt.setString(5, song.name());
+        if (song.year().isPresent()) {
+            pstmt.setInt(6, song.year().get());
+        } else {
+            pstmt.setNull(6, Types.INTEGER);
+        }
+        pstmt.setString(7, song.artistId());
+        pstmt.setString(8, song.artistName());
+        pstmt.setLong(9, song.duration().toMillis());
+        if (song.starredAt().isPresent()) {
+            pstmt.setLong(10, song.starredAt().get().toEpochMilli());
+        } else {
+            pstmt.setNull(10, Types.INTEGER);
+        }
+        if (song.coverArtId().isPresent()) {
+            pstmt.setString(11, song.coverArtId().get());
+        } else {
+            pstmt.setNull(11, Types.VARCHAR);
+        }
+        pstmt.setLong(12, song.createdAt().toEpochMilli());
+        if (song.trackNumber().isPresent()) {
+            pstmt.setInt(13, song.trackNumber().get());
+        } else {
+            pstmt.setNull(13, Types.INTEGER);
+        }
+        if (song.discNumber().isPresent()) {
+            pstmt.setInt(14, song.discNumber().get());
+        } else {
+            pstmt.setNull(14, Types.INTEGER);
+        }
+        if (song.bitRate().isPresent()) {
+            pstmt.setInt(15, song.bitRate().get());
+        } else {
+            pstmt.setNull(15, Types.INTEGER);
+        }
+        pstmt.setLong(16, song.size());
+        pstmt.setString(17, song.genre());
+        pstmt.setString(18, song.suffix());
+    }
+
     public List<Song> listSongsByAlbumId(String albumId) {
         List<Song> songs = new ArrayList<>();
-        String sql = "SELECT * FROM songs WHERE server_id = ? AND album_id = ? ORDER BY disc_number, track_number";
-        try (Connection conn = database.openConnection();
+        String sql = LIST_SONGS_BY_ALBUM_SQL;
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, albumId);
@@ -448,8 +649,8 @@ public class DatabaseServerService {
 
     public List<Song> listSongsByStarredAt() {
         List<Song> songs = new ArrayList<>();
-        String sql = "SELECT * FROM songs WHERE server_id = ? AND starred_at_ms IS NOT NULL ORDER BY starred_at_ms DESC";
-        try (Connection conn = database.openConnection();
+        String sql = LIST_SONGS_BY_STARRED_AT_SQL;
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -464,9 +665,37 @@ public class DatabaseServerService {
         return songs;
     }
 
+    /**
+     * Most recently starred songs first, {@code limit} at a time.
+     */
+    public Page<Song> listSongsByStarredAt(int limit) {
+        return listSongsByStarredAtAfter(Long.MAX_VALUE, "", limit);
+    }
+
+    private Page<Song> listSongsByStarredAtAfter(long starredAtMs, String id, int limit) {
+        String sql = LIST_SONGS_BY_STARRED_AT_PAGE_SQL;
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            pstmt.setLong(2, starredAtMs);
+            pstmt.setString(3, id);
+            pstmt.setInt(4, limit + 1);
+            List<Song> songs = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    songs.add(mapResultSetToSong(rs));
+                }
+            }
+            return toPage(songs, limit, last -> listSongsByStarredAtAfter(last.starredAt().orElseThrow().toEpochMilli(), last.id(), limit));
+        } catch (SQLException e) {
+            logger.error("Failed to list starred songs page for server: {}", serverId, e);
+            throw new RuntimeException("Failed to list starred songs page", e);
+        }
+    }
+
     public Optional<Song> getSongById(String songId) {
         String sql = "SELECT * FROM songs WHERE server_id = ? AND id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, songId);
@@ -530,7 +759,7 @@ public class DatabaseServerService {
                 INSERT OR REPLACE INTO playlists (id, server_id, name, song_count, duration_ms, cover_art_id, created_at_ms, updated_at_ms)
                 VALUES (?, ?, ?, ?, ?, ?, ?, ?)
                 """;
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, playlist.id());
             pstmt.setString(2, playlist.serverId().toString());
@@ -553,7 +782,7 @@ public class DatabaseServerService {
 
     public void insertPlaylistSong(String playlistId, String songId, int sortOrder) {
         String sql = "INSERT OR REPLACE INTO playlist_songs (playlist_id, server_id, song_id, sort_order) VALUES (?, ?, ?, ?)";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, playlistId);
             pstmt.setString(2, this.serverId.toString());
@@ -566,6 +795,117 @@ public class DatabaseServerService {
         }
     }
 
+    /**
+     * Appends songs to the end of a playlist and updates the playlist song count.
+     */
+    public void appendPlaylistSongs(String playlistId, List<String> songIds) {
+        if (songIds.isEmpty()) {
+            return;
+        }
+        String maxSql = "SELECT COALESCE(MAX(sort_order), -1) FROM playlist_songs WHERE playlist_id = ? AND server_id = ?";
+        String insertSql = "INSERT OR REPLACE INTO playlist_songs (playlist_id, server_id, song_id, sort_order) VALUES (?, ?, ?, ?)";
+        String countSql = """
+                UPDATE playlists
+                SET song_count = (SELECT COUNT(*) FROM playlist_songs WHERE playlist_id = ? AND server_id = ?)
+                WHERE id = ? AND server_id = ?
+                """;
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int next;
+                try (PreparedStatement pstmt = conn.prepareStatement(maxSql)) {
+                    pstmt.setString(1, playlistId);
+                    pstmt.setString(2, this.serverId.toString());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        next = rs.next() ? rs.getInt(1) + 1 : 0;
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+                    for (String songId : songIds) {
+                        pstmt.setString(1, playlistId);
+                        pstmt.setString(2, this.serverId.toString());
+                        pstmt.setString(3, songId);
+                        pstmt.setInt(4, next++);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(countSql)) {
+                    pstmt.setString(1, playlistId);
+                    pstmt.setString(2, this.serverId.toString());
+                    pstmt.setString(3, playlistId);
+                    pstmt.setString(4, this.serverId.toString());
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to append songs to playlist: playlistId={}", playlistId, e);
+            throw new RuntimeException("Failed to append songs to playlist", e);
+        }
+    }
+
+    /**
+     * Replaces the songs of a playlist in one transaction. Only positions whose song changed are written,
+     * so refreshing an unchanged or appended-to playlist costs a read and a handful of inserts.
+     *
+     * @return number of rows inserted or deleted
+     */
+    public int replacePlaylistSongs(String playlistId, List<String> songIds) {
+        String selectSql = "SELECT sort_order, song_id FROM playlist_songs WHERE playlist_id = ? AND server_id = ?";
+        String insertSql = "INSERT OR REPLACE INTO playlist_songs (playlist_id, server_id, song_id, sort_order) VALUES (?, ?, ?, ?)";
+        String deleteSql = "DELETE FROM playlist_songs WHERE playlist_id = ? AND server_id = ? AND sort_order >= ?";
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Map<Integer, String> stored = new HashMap<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(selectSql)) {
+                    pstmt.setString(1, playlistId);
+                    pstmt.setString(2, this.serverId.toString());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            stored.put(rs.getInt("sort_order"), rs.getString("song_id"));
+                        }
+                    }
+                }
+                int changed = 0;
+                try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+                    for (int i = 0; i < songIds.size(); i++) {
+                        if (songIds.get(i).equals(stored.get(i))) {
+                            continue;
+                        }
+                        pstmt.setString(1, playlistId);
+                        pstmt.setString(2, this.serverId.toString());
+                        pstmt.setString(3, songIds.get(i));
+                        pstmt.setInt(4, i);
+                        pstmt.addBatch();
+                        changed++;
+                    }
+                    if (changed > 0) {
+                        pstmt.executeBatch();
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(deleteSql)) {
+                    pstmt.setString(1, playlistId);
+                    pstmt.setString(2, this.serverId.toString());
+                    pstmt.setInt(3, songIds.size());
+                    changed += pstmt.executeUpdate();
+                }
+                conn.commit();
+                return changed;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to replace playlist songs: playlistId={}", playlistId, e);
+            throw new RuntimeException("Failed to replace playlist songs", e);
+        }
+    }
+
     public void playlistRemoveSong(ServerClient.PlaylistRemoveSongRequest req) {
         if (req.songIds().isEmpty()) {
             return;
@@ -597,7 +937,7 @@ public class DatabaseServerService {
                   AND playlist_songs.sort_order  = ranked.sort_order
                 """;
 
-        try (Connection conn = database.openConnection()) {
+        try (Connection conn = database.openWriteConnection()) {
             conn.setAutoCommit(false);
             try {
                 try (PreparedStatement pstmt = conn.prepareStatement(deleteSql)) {
@@ -630,8 +970,15 @@ public class DatabaseServerService {
 
     public void deletePlaylist(String playlistId) {
         deletePlaylistSongs(playlistId);
+        deletePlaylistRow(playlistId);
+    }
+
+    /**
+     * Deletes the playlist but not its songs, which are not listed without it.
+     */
+    public void deletePlaylistRow(String playlistId) {
         String sql = "DELETE FROM playlists WHERE id = ? AND server_id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, playlistId);
             pstmt.setString(2, this.serverId.toString());
@@ -644,7 +991,7 @@ public class DatabaseServerService {
 
     public void deletePlaylistSongs(String playlistId) {
         String sql = "DELETE FROM playlist_songs WHERE playlist_id = ? AND server_id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, playlistId);
             pstmt.setString(2, this.serverId.toString());
@@ -657,7 +1004,7 @@ public class DatabaseServerService {
 
     public void deleteAllArtists() {
         String sql = "DELETE FROM artists WHERE server_id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             int deleted = pstmt.executeUpdate();
@@ -670,7 +1017,7 @@ public class DatabaseServerService {
 
     public void deleteAllAlbums() {
         String sql = "DELETE FROM albums WHERE server_id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             int deleted = pstmt.executeUpdate();
@@ -683,7 +1030,7 @@ public class DatabaseServerService {
 
     public void deleteAllSongs() {
         String sql = "DELETE FROM songs WHERE server_id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             int deleted = pstmt.executeUpdate();
@@ -696,7 +1043,7 @@ public class DatabaseServerService {
 
     public void deleteAllPlaylists() {
         String sql = "DELETE FROM playlists WHERE server_id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             int deleted = pstmt.executeUpdate();
@@ -709,7 +1056,7 @@ public class DatabaseServerService {
 
     public void deleteAllPlaylistSongs() {
         String sql = "DELETE FROM playlist_songs WHERE server_id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             int deleted = pstmt.executeUpdate();
@@ -726,7 +1073,7 @@ public class DatabaseServerService {
                 WHERE server_id = ?
                 AND song_id NOT IN (SELECT id FROM songs WHERE server_id = ?)
                 """;
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, this.serverId.toString());
@@ -744,7 +1091,7 @@ public class DatabaseServerService {
     public List<PlaylistRow> listPlaylists() {
         List<PlaylistRow> playlists = new ArrayList<>();
         String sql = "SELECT * FROM playlists WHERE server_id = ? ORDER BY name";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -761,7 +1108,7 @@ public class DatabaseServerService {
 
     public Optional<PlaylistRow> getPlaylistById(String playlistId) {
         String sql = "SELECT * FROM playlists WHERE server_id = ? AND id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, playlistId);
@@ -779,8 +1126,8 @@ public class DatabaseServerService {
 
     public List<String> listPlaylistSongIds(String playlistId) {
         List<String> songIds = new ArrayList<>();
-        String sql = "SELECT song_id FROM playlist_songs WHERE playlist_id = ? AND server_id = ? ORDER BY sort_order";
-        try (Connection conn = database.openConnection();
+        String sql = LIST_PLAYLIST_SONG_IDS_SQL;
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, playlistId);
             pstmt.setString(2, this.serverId.toString());
@@ -827,7 +1174,7 @@ public class DatabaseServerService {
                     duration_seconds = excluded.duration_seconds
                 WHERE download_queue.status = 'CACHED'
                 """;
-        try (Connection conn = database.openConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = database.openWriteConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, songInfo.id());
             pstmt.setString(2, this.serverId.toString());
             pstmt.setString(3, DownloadQueueItem.DownloadStatus.PENDING.name());
@@ -852,7 +1199,7 @@ public class DatabaseServerService {
 
     public void addToCacheTracking(SongInfo songInfo, String checksum) {
         String sql = "INSERT OR IGNORE INTO download_queue (song_id, server_id, status, progress, stream_uri, stream_format, original_size, original_bitrate, estimated_bitrate, duration_seconds, checksum) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, songInfo.id());
             pstmt.setString(2, this.serverId.toString());
@@ -884,7 +1231,7 @@ public class DatabaseServerService {
         List<String> deletedSongIds = new ArrayList<>();
         String selectSql = "SELECT song_id FROM download_queue WHERE server_id = ? AND status = 'CACHED'";
         String deleteSql = "DELETE FROM download_queue WHERE server_id = ? AND status = 'CACHED'";
-        try (Connection conn = database.openConnection()) {
+        try (Connection conn = database.openWriteConnection()) {
             try (PreparedStatement pstmt = conn.prepareStatement(selectSql)) {
                 pstmt.setString(1, this.serverId.toString());
                 try (ResultSet rs = pstmt.executeQuery()) {
@@ -907,7 +1254,7 @@ public class DatabaseServerService {
 
     public Optional<DownloadQueueItem> getDownloadQueueItem(String songId) {
         String sql = "SELECT * FROM download_queue WHERE server_id = ? AND song_id = ?";
-        try (Connection conn = database.openConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = database.openReadConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, songId);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -936,7 +1283,8 @@ public class DatabaseServerService {
                 originalBitRateOpt,
                 rs.getInt("estimated_bitrate"),
                 rs.getLong("duration_seconds"),
-                Optional.ofNullable(rs.getString("checksum"))
+                Optional.ofNullable(rs.getString("checksum")),
+                Instant.ofEpochSecond(rs.getLong("added_at"))
         );
     }
 
@@ -951,8 +1299,8 @@ public class DatabaseServerService {
     public List<DownloadQueueItem> listDownloadQueue(List<DownloadStatus> statuses) {
         List<DownloadQueueItem> items = new ArrayList<>();
         String placeholders = String.join(",", statuses.stream().map(s -> "?").toList());
-        String sql = "SELECT * FROM download_queue WHERE server_id = ? AND status IN (" + placeholders + ")";
-        try (Connection conn = database.openConnection();
+        String sql = LIST_DOWNLOAD_QUEUE_SQL.formatted(placeholders);
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             for (int i = 0; i < statuses.size(); i++) {
@@ -970,6 +1318,39 @@ public class DatabaseServerService {
         return items;
     }
 
+    /**
+     * Most recently added items first, {@code limit} at a time.
+     */
+    public Page<DownloadQueueItem> listDownloadQueue(List<DownloadStatus> statuses, int limit) {
+        return listDownloadQueueAfter(statuses, Long.MAX_VALUE, "", limit);
+    }
+
+    private Page<DownloadQueueItem> listDownloadQueueAfter(List<DownloadStatus> statuses, long addedAtSeconds, String songId, int limit) {
+        String placeholders = String.join(",", statuses.stream().map(s -> "?").toList());
+        String sql = LIST_DOWNLOAD_QUEUE_PAGE_SQL.formatted(placeholders);
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int idx = 1;
+            pstmt.setString(idx++, this.serverId.toString());
+            for (var status : statuses) {
+                pstmt.setString(idx++, status.name());
+            }
+            pstmt.setLong(idx++, addedAtSeconds);
+            pstmt.setString(idx++, songId);
+            pstmt.setInt(idx, limit + 1);
+            List<DownloadQueueItem> items = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    items.add(mapDownloadQueueItem(rs));
+                }
+            }
+            return toPage(items, limit, last -> listDownloadQueueAfter(statuses, last.addedAt().getEpochSecond(), last.songId(), limit));
+        } catch (SQLException e) {
+            logger.error("Failed to list download queue page for server: {}", serverId, e);
+            throw new RuntimeException("Failed to list download queue page", e);
+        }
+    }
+
     public void updateDownloadProgress(
             String songId,
             DownloadQueueItem.DownloadStatus status,
@@ -987,7 +1368,7 @@ public class DatabaseServerService {
             String checksum
     ) {
         String sql = "UPDATE download_queue SET status = ?, progress = ?, error_message = ?, checksum = ? WHERE song_id = ? AND server_id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, status.name());
             pstmt.setDouble(2, progress);
@@ -1004,7 +1385,7 @@ public class DatabaseServerService {
 
     public void removeFromDownloadQueue(String songId) {
         String sql = "DELETE FROM download_queue WHERE song_id = ? AND server_id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, songId);
             pstmt.setString(2, this.serverId.toString());
@@ -1019,7 +1400,7 @@ public class DatabaseServerService {
 
     public void insertScrobble(String songId, Instant playedAt) {
         String sql = "INSERT INTO scrobbles (server_id, song_id, played_at_ms, status) VALUES (?, ?, ?, ?)";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, songId);
@@ -1035,7 +1416,7 @@ public class DatabaseServerService {
     public List<ScrobbleEntry> listPendingScrobbles() {
         List<ScrobbleEntry> entries = new ArrayList<>();
         String sql = "SELECT * FROM scrobbles WHERE server_id = ? AND status IN (?, ?) ORDER BY played_at_ms ASC";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, ScrobbleStatus.PENDING.name());
@@ -1054,7 +1435,7 @@ public class DatabaseServerService {
 
     public void updateScrobbleStatus(long id, ScrobbleStatus status) {
         String sql = "UPDATE scrobbles SET status = ? WHERE id = ? AND server_id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, status.name());
             pstmt.setLong(2, id);
@@ -1068,7 +1449,7 @@ public class DatabaseServerService {
 
     public void deleteSubmittedScrobbles() {
         String sql = "DELETE FROM scrobbles WHERE server_id = ? AND status = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, this.serverId.toString());
             pstmt.setString(2, ScrobbleStatus.SUBMITTED.name());
@@ -1092,4 +1473,623 @@ public class DatabaseServerService {
                 ScrobbleStatus.valueOf(rs.getString("status"))
         );
     }
+
+    /**
+     * Sets or clears the starred timestamp on whatever song, album or artist has this id.
+     */
+    public void setStarredAt(String id, Optional<Instant> starredAt) {
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (String sql : List.of(
+                        "UPDATE songs SET starred_at_ms = ? WHERE server_id = ? AND id = ?",
+                        "UPDATE albums SET starred_at_ms = ? WHERE server_id = ? AND id = ?",
+                        "UPDATE artists SET starred_at = ? WHERE server_id = ? AND id = ?"
+                )) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        if (starredAt.isPresent()) {
+                            pstmt.setLong(1, starredAt.get().toEpochMilli());
+                        } else {
+                            pstmt.setNull(1, Types.INTEGER);
+                        }
+                        pstmt.setString(2, this.serverId.toString());
+                        pstmt.setString(3, id);
+                        pstmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to set starred for id: {}", id, e);
+            throw new RuntimeException("Failed to set starred", e);
+        }
+    }
+
+    // Incremental sync methods
+
+    public Optional<SyncState> getSyncState() {
+        String sql = "SELECT artists_last_modified_ms, last_sync_at_ms, last_full_sync_at_ms FROM sync_state WHERE server_id = ?";
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    long lastModified = rs.getLong("artists_last_modified_ms");
+                    Optional<Instant> lastModifiedInstant = rs.wasNull() ? Optional.empty() : Optional.of(Instant.ofEpochMilli(lastModified));
+                    Instant lastSyncAt = Instant.ofEpochMilli(rs.getLong("last_sync_at_ms"));
+                    long lastFullSync = rs.getLong("last_full_sync_at_ms");
+                    Optional<Instant> lastFullSyncInstant = rs.wasNull() ? Optional.empty() : Optional.of(Instant.ofEpochMilli(lastFullSync));
+                    return Optional.of(new SyncState(this.serverId, lastModifiedInstant, lastSyncAt, lastFullSyncInstant));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to get sync state for server: {}", serverId, e);
+            throw new RuntimeException("Failed to get sync state", e);
+        }
+        return Optional.empty();
+    }
+
+    public void saveSyncState(SyncState state) {
+        String sql = "INSERT OR REPLACE INTO sync_state (server_id, artists_last_modified_ms, last_sync_at_ms, last_full_sync_at_ms) VALUES (?, ?, ?, ?)";
+        try (Connection conn = database.openWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            if (state.artistsLastModified().isPresent()) {
+                pstmt.setLong(2, state.artistsLastModified().get().toEpochMilli());
+            } else {
+                pstmt.setNull(2, Types.INTEGER);
+            }
+            pstmt.setLong(3, state.lastSyncAt().toEpochMilli());
+            if (state.lastFullSyncAt().isPresent()) {
+                pstmt.setLong(4, state.lastFullSyncAt().get().toEpochMilli());
+            } else {
+                pstmt.setNull(4, Types.INTEGER);
+            }
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Failed to save sync state", e);
+            throw new RuntimeException("Failed to save sync state", e);
+        }
+    }
+
+    /**
+     * @return the sync fingerprint of every stored album, keyed by album id. The value is null for albums
+     * that were stored outside of a sync, e.g. while browsing.
+     */
+    public Map<String, String> listAlbumFingerprints() {
+        Map<String, String> fingerprints = new HashMap<>();
+        String sql = "SELECT id, sync_fingerprint FROM albums WHERE server_id = ?";
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    fingerprints.put(rs.getString("id"), rs.getString("sync_fingerprint"));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to list album fingerprints for server: {}", serverId, e);
+            throw new RuntimeException("Failed to list album fingerprints", e);
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Deletes the given albums together with their songs.
+     */
+    public int deleteAlbums(Collection<String> albumIds) {
+        if (albumIds.isEmpty()) {
+            return 0;
+        }
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement songs = conn.prepareStatement("DELETE FROM songs WHERE server_id = ? AND album_id = ?");
+                 PreparedStatement albums = conn.prepareStatement("DELETE FROM albums WHERE server_id = ? AND id = ?")) {
+                for (String albumId : albumIds) {
+                    songs.setString(1, this.serverId.toString());
+                    songs.setString(2, albumId);
+                    songs.addBatch();
+                    albums.setString(1, this.serverId.toString());
+                    albums.setString(2, albumId);
+                    albums.addBatch();
+                }
+                songs.executeBatch();
+                int deleted = 0;
+                for (int count : albums.executeBatch()) {
+                    deleted += Math.max(count, 0);
+                }
+                conn.commit();
+                logger.info("Deleted {} albums for server {}", deleted, serverId);
+                return deleted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to delete albums", e);
+            throw new RuntimeException("Failed to delete albums", e);
+        }
+    }
+
+    public int deleteArtists(Collection<String> artistIds) {
+        if (artistIds.isEmpty()) {
+            return 0;
+        }
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM artists WHERE server_id = ? AND id = ?")) {
+                for (String artistId : artistIds) {
+                    pstmt.setString(1, this.serverId.toString());
+                    pstmt.setString(2, artistId);
+                    pstmt.addBatch();
+                }
+                int deleted = 0;
+                for (int count : pstmt.executeBatch()) {
+                    deleted += Math.max(count, 0);
+                }
+                conn.commit();
+                logger.info("Deleted {} artists for server {}", deleted, serverId);
+                return deleted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to delete artists", e);
+            throw new RuntimeException("Failed to delete artists", e);
+        }
+    }
+
+    /**
+     * @param rows up to {@code limit + 1} rows, the extra row only tells there is another page
+     */
+    private static <T> Page<T> toPage(List<T> rows, int limit, Function<T, Page<T>> after) {
+        if (rows.size() <= limit) {
+            return Page.of(rows);
+        }
+        var items = List.copyOf(rows.subList(0, limit));
+        var last = items.getLast();
+        Supplier<Page<T>> next = () -> after.apply(last);
+        return new Page<>(items, Optional.of(next));
+    }
+
+    // Local full-text search, see MigrationV16
+
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    public List<Artist> searchArtists(String query, int limit) {
+        return search("artists", query, limit, this::mapResultSetToArtistSummary);
+    }
+
+    public List<Album> searchAlbums(String query, int limit) {
+        return search("albums", query, limit, this::mapResultSetToAlbum);
+    }
+
+    public List<Song> searchSongs(String query, int limit) {
+        return search("songs", query, limit, this::mapResultSetToSong);
+    }
+
+    public List<PlaylistRow> searchPlaylists(String query, int limit) {
+        return search("playlists", query, limit, this::mapResultSetToPlaylist);
+    }
+
+    private <T> List<T> search(String table, String query, int limit, RowMapper<T> mapper) {
+        var ftsQuery = toFtsQuery(query);
+        if (ftsQuery.isEmpty()) {
+            return List.of();
+        }
+        String sql = """
+                SELECT t.* FROM %1$s_fts f
+                JOIN %1$s t ON t.rowid = f.rowid
+                WHERE %1$s_fts MATCH ? AND t.server_id = ?
+                ORDER BY f.rank
+                LIMIT ?
+                """.formatted(table);
+        List<T> results = new ArrayList<>();
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, ftsQuery.get());
+            pstmt.setString(2, this.serverId.toString());
+            pstmt.setInt(3, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    results.add(mapper.map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to search {} for: {}", table, query, e);
+            throw new RuntimeException("Failed to search " + table, e);
+        }
+        return results;
+    }
+
+    /**
+     * Turns what the user typed into an FTS5 query: every word must match the start of a word in the indexed columns,
+     * so results show up while the user is still typing. Punctuation is dropped, user input never becomes FTS5 syntax.
+     */
+    static Optional<String> toFtsQuery(String query) {
+        var terms = Arrays.stream(query.split("[^\\p{L}\\p{M}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .map(term -> "\"" + term + "\"*")
+                .toList();
+        return terms.isEmpty() ? Optional.empty() : Optional.of(String.join(" ", terms));
+    }
+
+    // Staged full sync methods
+
+    /**
+     * Starts a staged full sync, or picks up the one a previous run left behind if it started less than
+     * {@code maxAge} ago. An older one is thrown away: by then the server has likely changed under the staged rows.
+     */
+    public StagedSync beginStagedSync(Duration maxAge) {
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                var existing = getStagedSyncStartedAt(conn);
+                if (existing.isPresent() && existing.get().isAfter(Instant.now().minus(maxAge))) {
+                    var staged = new StagedSync(existing.get(), listCheckpoints(conn), countStagedAlbums(conn));
+                    conn.commit();
+                    return staged;
+                }
+                clearStaging(conn);
+                var startedAt = Instant.now();
+                try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO staged_sync (server_id, started_at_ms) VALUES (?, ?)")) {
+                    pstmt.setString(1, this.serverId.toString());
+                    pstmt.setLong(2, startedAt.toEpochMilli());
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+                return new StagedSync(startedAt, Set.of(), 0);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to begin staged sync", e);
+            throw new RuntimeException("Failed to begin staged sync", e);
+        }
+    }
+
+    public boolean hasStagedSync() {
+        try (Connection conn = database.openReadConnection()) {
+            return getStagedSyncStartedAt(conn).isPresent();
+        } catch (SQLException e) {
+            logger.error("Failed to get staged sync for server: {}", serverId, e);
+            throw new RuntimeException("Failed to get staged sync", e);
+        }
+    }
+
+    /**
+     * Removes staged artists, e.g. ones that were checkpointed by an interrupted run and are gone from the server since.
+     */
+    public int deleteStagedArtists(Collection<String> artistIds) {
+        if (artistIds.isEmpty()) {
+            return 0;
+        }
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement songs = conn.prepareStatement("DELETE FROM songs_staging WHERE server_id = ? AND album_id IN (SELECT id FROM albums_staging WHERE server_id = ? AND artist_id = ?)");
+                 PreparedStatement albums = conn.prepareStatement("DELETE FROM albums_staging WHERE server_id = ? AND artist_id = ?");
+                 PreparedStatement artists = conn.prepareStatement("DELETE FROM artists_staging WHERE server_id = ? AND id = ?");
+                 PreparedStatement checkpoints = conn.prepareStatement("DELETE FROM sync_checkpoints WHERE server_id = ? AND artist_id = ?")) {
+                for (String artistId : artistIds) {
+                    songs.setString(1, this.serverId.toString());
+                    songs.setString(2, this.serverId.toString());
+                    songs.setString(3, artistId);
+                    songs.addBatch();
+                    albums.setString(1, this.serverId.toString());
+                    albums.setString(2, artistId);
+                    albums.addBatch();
+                    artists.setString(1, this.serverId.toString());
+                    artists.setString(2, artistId);
+                    artists.addBatch();
+                    checkpoints.setString(1, this.serverId.toString());
+                    checkpoints.setString(2, artistId);
+                    checkpoints.addBatch();
+                }
+                songs.executeBatch();
+                albums.executeBatch();
+                int deleted = 0;
+                for (int count : artists.executeBatch()) {
+                    deleted += Math.max(count, 0);
+                }
+                checkpoints.executeBatch();
+                conn.commit();
+                return deleted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to delete staged artists", e);
+            throw new RuntimeException("Failed to delete staged artists", e);
+        }
+    }
+
+    /**
+     * Replaces the live library of this server with the staged one in a single transaction, then clears the
+     * staging tables. Readers see either the old library or the new one, never a mix.
+     */
+    public void swapStagedLibrary() {
+        String server = this.serverId.toString();
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (getStagedSyncStartedAt(conn).isEmpty()) {
+                    throw new IllegalStateException("No staged sync for server " + serverId);
+                }
+                keepPendingStars(conn);
+                for (var live : List.of(LibraryTables.LIVE.songs, LibraryTables.LIVE.albums, LibraryTables.LIVE.artists)) {
+                    try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM " + live + " WHERE server_id = ?")) {
+                        pstmt.setString(1, server);
+                        pstmt.executeUpdate();
+                    }
+                }
+                int artists = copyStaged(conn, LibraryTables.LIVE.artists, LibraryTables.STAGING.artists, ARTIST_COLUMNS);
+                int albums = copyStaged(conn, LibraryTables.LIVE.albums, LibraryTables.STAGING.albums, ALBUM_COLUMNS);
+                int songs = copyStaged(conn, LibraryTables.LIVE.songs, LibraryTables.STAGING.songs, SONG_COLUMNS);
+                clearStaging(conn);
+                conn.commit();
+                logger.info("Swapped in staged library for server {}: {} artists, {} albums, {} songs", serverId, artists, albums, songs);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to swap staged library", e);
+            throw new RuntimeException("Failed to swap staged library", e);
+        }
+    }
+
+    // a star or unstar the server has not seen yet is only in the live rows, carry it over to the staged ones
+    private void keepPendingStars(Connection conn) throws SQLException {
+        keepPendingStars(conn, LibraryTables.LIVE.songs, LibraryTables.STAGING.songs, "starred_at_ms");
+        keepPendingStars(conn, LibraryTables.LIVE.albums, LibraryTables.STAGING.albums, "starred_at_ms");
+        keepPendingStars(conn, LibraryTables.LIVE.artists, LibraryTables.STAGING.artists, "starred_at");
+    }
+
+    private void keepPendingStars(Connection conn, String live, String staging, String column) throws SQLException {
+        String sql = """
+            UPDATE %2$s SET %3$s = (SELECT l.%3$s FROM %1$s l WHERE l.server_id = %2$s.server_id AND l.id = %2$s.id)
+            WHERE server_id = ?
+              AND id IN (SELECT target_id FROM pending_mutations WHERE server_id = ? AND kind IN (?, ?))
+              AND EXISTS (SELECT 1 FROM %1$s l WHERE l.server_id = %2$s.server_id AND l.id = %2$s.id)
+            """.formatted(live, staging, column);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            pstmt.setString(2, this.serverId.toString());
+            pstmt.setString(3, MutationKind.STAR.name());
+            pstmt.setString(4, MutationKind.UNSTAR.name());
+            pstmt.executeUpdate();
+        }
+    }
+
+    private int copyStaged(Connection conn, String live, String staging, String columns) throws SQLException {
+        // OR REPLACE: the artists table is keyed by id alone, an artist id can already exist for another server
+        String sql = "INSERT OR REPLACE INTO %s (%s) SELECT %s FROM %s WHERE server_id = ?".formatted(live, columns, columns, staging);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private void clearStaging(Connection conn) throws SQLException {
+        for (var table : List.of(LibraryTables.STAGING.songs, LibraryTables.STAGING.albums, LibraryTables.STAGING.artists, "sync_checkpoints", "staged_sync")) {
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM " + table + " WHERE server_id = ?")) {
+                pstmt.setString(1, this.serverId.toString());
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private Optional<Instant> getStagedSyncStartedAt(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT started_at_ms FROM staged_sync WHERE server_id = ?")) {
+            pstmt.setString(1, this.serverId.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(Instant.ofEpochMilli(rs.getLong("started_at_ms")));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Set<String> listCheckpoints(Connection conn) throws SQLException {
+        Set<String> artistIds = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT artist_id FROM sync_checkpoints WHERE server_id = ?")) {
+            pstmt.setString(1, this.serverId.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    artistIds.add(rs.getString("artist_id"));
+                }
+            }
+        }
+        return artistIds;
+    }
+
+    private int countStagedAlbums(Connection conn) throws SQLException {
+        // albums of artists that are not checkpointed yet are fetched again, don't count them
+        String sql = """
+                SELECT COUNT(*) FROM albums_staging a
+                JOIN sync_checkpoints c ON c.server_id = a.server_id AND c.artist_id = a.artist_id
+                WHERE a.server_id = ?
+                """;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    // Pending mutation methods
+
+    /**
+     * Appends a mutation to the write-behind log.
+     * Star/unstar and rename are last-writer-wins: any older pending mutation of the same family
+     * for the same target is dropped, so only the latest local intent is replayed.
+     */
+    public void enqueueMutation(MutationKind kind, String targetId, String payload) {
+        List<MutationKind> supersedes = switch (kind) {
+            case STAR, UNSTAR -> List.of(MutationKind.STAR, MutationKind.UNSTAR);
+            case PLAYLIST_RENAME -> List.of(MutationKind.PLAYLIST_RENAME);
+            // adds and removes refer to positions and must be replayed in order
+            case PLAYLIST_ADD, PLAYLIST_REMOVE, PLAYLIST_DELETE -> List.of();
+        };
+        String insertSql = "INSERT INTO pending_mutations (server_id, kind, target_id, payload, created_at_ms) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!supersedes.isEmpty()) {
+                    String placeholders = String.join(",", supersedes.stream().map(_ -> "?").toList());
+                    String deleteSql = "DELETE FROM pending_mutations WHERE server_id = ? AND target_id = ? AND kind IN (" + placeholders + ")";
+                    try (PreparedStatement pstmt = conn.prepareStatement(deleteSql)) {
+                        pstmt.setString(1, this.serverId.toString());
+                        pstmt.setString(2, targetId);
+                        int col = 3;
+                        for (var k : supersedes) {
+                            pstmt.setString(col++, k.name());
+                        }
+                        pstmt.executeUpdate();
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+                    pstmt.setString(1, this.serverId.toString());
+                    pstmt.setString(2, kind.name());
+                    pstmt.setString(3, targetId);
+                    pstmt.setString(4, payload);
+                    pstmt.setLong(5, Instant.now().toEpochMilli());
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to enqueue mutation: kind={} targetId={}", kind, targetId, e);
+            throw new RuntimeException("Failed to enqueue mutation", e);
+        }
+    }
+
+    public List<PendingMutation> listPendingMutations(int limit) {
+        List<PendingMutation> entries = new ArrayList<>();
+        String sql = "SELECT * FROM pending_mutations WHERE server_id = ? ORDER BY id ASC LIMIT ?";
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(mapResultSetToPendingMutation(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to list pending mutations for server: {}", serverId, e);
+            throw new RuntimeException("Failed to list pending mutations", e);
+        }
+        return entries;
+    }
+
+    public boolean hasPendingMutations() {
+        String sql = "SELECT 1 FROM pending_mutations WHERE server_id = ? LIMIT 1";
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to check pending mutations for server: {}", serverId, e);
+            throw new RuntimeException("Failed to check pending mutations", e);
+        }
+    }
+
+    public boolean hasPendingMutations(Collection<MutationKind> kinds) {
+        if (kinds.isEmpty()) {
+            return false;
+        }
+        String placeholders = String.join(",", kinds.stream().map(_ -> "?").toList());
+        String sql = "SELECT 1 FROM pending_mutations WHERE server_id = ? AND kind IN (" + placeholders + ") LIMIT 1";
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            int col = 2;
+            for (var kind : kinds) {
+                pstmt.setString(col++, kind.name());
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to check pending mutations for server: {} kinds={}", serverId, kinds, e);
+            throw new RuntimeException("Failed to check pending mutations", e);
+        }
+    }
+
+    public boolean hasPendingMutations(String targetId) {
+        String sql = "SELECT 1 FROM pending_mutations WHERE server_id = ? AND target_id = ? LIMIT 1";
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            pstmt.setString(2, targetId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to check pending mutations for target: {}", targetId, e);
+            throw new RuntimeException("Failed to check pending mutations", e);
+        }
+    }
+
+    public void deleteMutations(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(",", ids.stream().map(_ -> "?").toList());
+        String sql = "DELETE FROM pending_mutations WHERE server_id = ? AND id IN (" + placeholders + ")";
+        try (Connection conn = database.openWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, this.serverId.toString());
+            int col = 2;
+            for (Long id : ids) {
+                pstmt.setLong(col++, id);
+            }
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Failed to delete pending mutations", e);
+            throw new RuntimeException("Failed to delete pending mutations", e);
+        }
+    }
+
+    public void markMutationFailed(long id, String error) {
+        String sql = "UPDATE pending_mutations SET attempts = attempts + 1, last_error = ? WHERE id = ? AND server_id = ?";
+        try (Connection conn = database.openWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, error);
+            pstmt.setLong(2, id);
+            pstmt.setString(3, this.serverId.toString());
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Failed to mark mutation failed for id: {}", id, e);
+            throw new RuntimeException("Failed to mark mutation failed", e);
+        }
+    }
+
+    private PendingMutation mapResultSetToPendingMutation(ResultSet rs) throws SQLException {
+        return new PendingMutation(
+                rs.getLong("id"),
+                UUID.fromString(rs.getString("server_id")),
+                MutationKind.valueOf(rs.getString("kind")),
+                rs.getString("target_id"),
+                rs.getString("payload"),
+                rs.getLong("created_at_ms"),
+                rs.getInt("attempts")
+        );
+    }
 }
@@ -24,7 +24,7 @@ public class DatabaseService {
 
     public void insert(Server server) {
         String sql = "INSERT INTO servers (id, is_primary, server_type, server_url, username, created_at) VALUES (?, ?, ?, ?, ?, ?)";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, server.id().toString());
             pstmt.setBoolean(2, server.isPrimary());
@@ -41,7 +41,7 @@ public class DatabaseService {
 
     public Optional<Server> getDefaultServer() {
         String sql = "SELECT id, is_primary, server_type, server_url, username, created_at FROM servers WHERE is_primary = 1 LIMIT 1";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
             if (rs.next()) {
@@ -56,7 +56,7 @@ public class DatabaseService {
 
     public Optional<Server> getServerById(String id) {
         String sql = "SELECT id, is_primary, server_type, server_url, username, created_at FROM servers WHERE id = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -74,7 +74,7 @@ public class DatabaseService {
     public List<Server> listServers() {
         List<Server> servers = new ArrayList<>();
         String sql = "SELECT id, is_primary, server_type, server_url, username, created_at FROM servers";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
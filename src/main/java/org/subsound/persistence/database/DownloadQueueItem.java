@@ -1,5 +1,6 @@
 package org.subsound.persistence.database;
 
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -14,7 +15,8 @@ public record DownloadQueueItem(
         Optional<Integer> originalBitRate,
         int estimatedBitRate,
         long durationSeconds,
-        Optional<String> checksum
+        Optional<String> checksum,
+        Instant addedAt
 ) {
     public enum DownloadStatus {
         PENDING, DOWNLOADING, COMPLETED, FAILED, CACHED
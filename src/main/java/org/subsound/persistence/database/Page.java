@@ -0,0 +1,29 @@
+package org.subsound.persistence.database;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * One page of a keyset-paginated list. {@link #next()} fetches the rows after the last one of this page,
+ * so a page stays correct while rows are added or removed before it, unlike an OFFSET.
+ */
+public record Page<T>(
+        List<T> items,
+        // empty on the last page
+        Optional<Supplier<Page<T>>> next
+) {
+    public static <T> Page<T> of(List<T> items) {
+        return new Page<>(items, Optional.empty());
+    }
+
+    public boolean hasMore() {
+        return next.isPresent();
+    }
+
+    public <R> Page<R> map(Function<T, R> mapper) {
+        Optional<Supplier<Page<R>>> mappedNext = next.map(n -> () -> n.get().map(mapper));
+        return new Page<>(items.stream().map(mapper).toList(), mappedNext);
+    }
+}
@@ -0,0 +1,24 @@
+package org.subsound.persistence.database;
+
+import java.util.UUID;
+
+public record PendingMutation(
+    long id,
+    UUID serverId,
+    MutationKind kind,
+    // song/album/artist id for stars, playlist id for playlist edits
+    String targetId,
+    // kind specific JSON payload, empty for stars
+    String payload,
+    long createdAtMs,
+    int attempts
+) {
+    public enum MutationKind {
+        STAR,
+        UNSTAR,
+        PLAYLIST_ADD,
+        PLAYLIST_REMOVE,
+        PLAYLIST_RENAME,
+        PLAYLIST_DELETE,
+    }
+}
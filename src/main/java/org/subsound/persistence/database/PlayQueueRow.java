@@ -0,0 +1,12 @@
+package org.subsound.persistence.database;
+
+public record PlayQueueRow(
+        // unique per queue entry, the same song can be queued more than once
+        long entryId,
+        String queueItemId,
+        String songId,
+        // the unshuffled queue is ordered by this, see PlayQueueService
+        double sortKey,
+        boolean userAdded
+) {
+}
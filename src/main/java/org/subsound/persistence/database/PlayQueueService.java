@@ -0,0 +1,253 @@
+package org.subsound.persistence.database;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Stores the play queue of a server, so it survives a restart. Every change to the queue is written as the rows it touches:
+ * an added song is one insert, a removed one is one delete. The unshuffled order is kept in a sort key, a song
+ * inserted between two others gets a key between theirs, see {@link #sortKeyBetween}. The order of a shuffled queue
+ * is stored apart from the entries, as one value, so shuffling and unshuffling do not rewrite them.
+ */
+public class PlayQueueService {
+    private static final Logger logger = LoggerFactory.getLogger(PlayQueueService.class);
+    private static final String COLUMNS = "entry_id, queue_item_id, song_id, sort_key, user_added";
+
+    /**
+     * @param shuffleOrder the order of the items while shuffled, see {@link #saveShuffleOrder}, null when not shuffled
+     */
+    public record SavedQueue(List<PlayQueueRow> items, Optional<PlayQueueStateRow> state, int @Nullable [] shuffleOrder) {}
+
+    private final UUID serverId;
+    private final Database database;
+
+    public PlayQueueService(UUID serverId, Database database) {
+        this.serverId = serverId;
+        this.database = database;
+    }
+
+    /**
+     * A key that sorts between {@code before} and {@code after}. Empty when they are too close together for one,
+     * then the queue has to be renumbered.
+     */
+    public static Optional<Double> sortKeyBetween(double before, double after) {
+        double key = before + (after - before) / 2;
+        if (key <= before || key >= after) {
+            return Optional.empty();
+        }
+        return Optional.of(key);
+    }
+
+    public SavedQueue load() {
+        String itemsSql = "SELECT " + COLUMNS + " FROM play_queue WHERE server_id = ? ORDER BY sort_key";
+        String stateSql = "SELECT position, play_mode, play_context_kind, play_context_id, shuffle_order FROM play_queue_state WHERE server_id = ?";
+        try (Connection conn = database.openReadConnection();
+             PreparedStatement itemsStmt = conn.prepareStatement(itemsSql);
+             PreparedStatement stateStmt = conn.prepareStatement(stateSql)) {
+            var items = new ArrayList<PlayQueueRow>();
+            itemsStmt.setString(1, serverId.toString());
+            try (ResultSet rs = itemsStmt.executeQuery()) {
+                while (rs.next()) {
+                    items.add(new PlayQueueRow(
+                            rs.getLong("entry_id"),
+                            rs.getString("queue_item_id"),
+                            rs.getString("song_id"),
+                            rs.getDouble("sort_key"),
+                            rs.getInt("user_added") != 0
+                    ));
+                }
+            }
+            Optional<PlayQueueStateRow> state = Optional.empty();
+            int[] shuffleOrder = null;
+            stateStmt.setString(1, serverId.toString());
+            try (ResultSet rs = stateStmt.executeQuery()) {
+                if (rs.next()) {
+                    int position = rs.getInt("position");
+                    Optional<Integer> positionOptional = rs.wasNull() ? Optional.empty() : Optional.of(position);
+                    state = Optional.of(new PlayQueueStateRow(
+                            positionOptional,
+                            rs.getString("play_mode"),
+                            Optional.ofNullable(rs.getString("play_context_kind")),
+                            Optional.ofNullable(rs.getString("play_context_id"))
+                    ));
+                    shuffleOrder = decodeOrder(rs.getBytes("shuffle_order"));
+                }
+            }
+            return new SavedQueue(items, state, shuffleOrder);
+        } catch (SQLException e) {
+            logger.error("Failed to load play queue for server: {}", serverId, e);
+            throw new RuntimeException("Failed to load play queue", e);
+        }
+    }
+
+    /**
+     * Replaces the whole queue, for when it is played from something else.
+     */
+    public void replaceAll(List<PlayQueueRow> items) {
+        String sql = "INSERT INTO play_queue (server_id, " + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement delete = conn.prepareStatement("DELETE FROM play_queue WHERE server_id = ?");
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                delete.setString(1, serverId.toString());
+                delete.executeUpdate();
+                for (PlayQueueRow item : items) {
+                    bindRow(pstmt, item);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            logger.debug("Replaced play queue: size={}", items.size());
+        } catch (SQLException e) {
+            logger.error("Failed to replace play queue: size={}", items.size(), e);
+            throw new RuntimeException("Failed to replace play queue", e);
+        }
+    }
+
+    public void insert(PlayQueueRow item) {
+        String sql = "INSERT OR REPLACE INTO play_queue (server_id, " + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection conn = database.openWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            bindRow(pstmt, item);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Failed to insert play queue entry: entryId={}", item.entryId(), e);
+            throw new RuntimeException("Failed to insert play queue entry", e);
+        }
+    }
+
+    public void remove(long entryId) {
+        String sql = "DELETE FROM play_queue WHERE server_id = ? AND entry_id = ?";
+        try (Connection conn = database.openWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, serverId.toString());
+            pstmt.setLong(2, entryId);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Failed to remove play queue entry: entryId={}", entryId, e);
+            throw new RuntimeException("Failed to remove play queue entry", e);
+        }
+    }
+
+    /**
+     * Moves entries by giving them new sort keys, in one transaction.
+     */
+    public void updateOrder(List<PlayQueueRow> items) {
+        String sql = "UPDATE play_queue SET sort_key = ? WHERE server_id = ? AND entry_id = ?";
+        try (Connection conn = database.openWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (PlayQueueRow item : items) {
+                    pstmt.setDouble(1, item.sortKey());
+                    pstmt.setString(2, serverId.toString());
+                    pstmt.setLong(3, item.entryId());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to move play queue entries: count={}", items.size(), e);
+            throw new RuntimeException("Failed to move play queue entries", e);
+        }
+    }
+
+    public void saveState(PlayQueueStateRow state) {
+        String sql = """
+            INSERT INTO play_queue_state (server_id, position, play_mode, play_context_kind, play_context_id)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT(server_id) DO UPDATE SET
+                position = excluded.position,
+                play_mode = excluded.play_mode,
+                play_context_kind = excluded.play_context_kind,
+                play_context_id = excluded.play_context_id
+            """;
+        try (Connection conn = database.openWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, serverId.toString());
+            if (state.position().isPresent()) {
+                pstmt.setInt(2, state.position().get());
+            } else {
+                pstmt.setNull(2, Types.INTEGER);
+            }
+            pstmt.setString(3, state.playMode());
+            pstmt.setString(4, state.playContextKind().orElse(null));
+            pstmt.setString(5, state.playContextId().orElse(null));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Failed to save play queue state", e);
+            throw new RuntimeException("Failed to save play queue state", e);
+        }
+    }
+
+    /**
+     * Saves the order of the queue while it is shuffled, null once it is not. Written when the order changes, not
+     * with every {@link #saveState}.
+     *
+     * @param order the index in the unshuffled order of the entry at each position
+     */
+    public void saveShuffleOrder(int @Nullable [] order) {
+        // the play mode is a placeholder for a queue without a saved state yet, saveState() follows
+        String sql = """
+            INSERT INTO play_queue_state (server_id, play_mode, shuffle_order) VALUES (?, 'NORMAL', ?)
+            ON CONFLICT(server_id) DO UPDATE SET shuffle_order = excluded.shuffle_order
+            """;
+        try (Connection conn = database.openWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, serverId.toString());
+            pstmt.setBytes(2, encodeOrder(order));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Failed to save play queue order: size={}", order == null ? 0 : order.length, e);
+            throw new RuntimeException("Failed to save play queue order", e);
+        }
+    }
+
+    private void bindRow(PreparedStatement pstmt, PlayQueueRow item) throws SQLException {
+        pstmt.setString(1, serverId.toString());
+        pstmt.setLong(2, item.entryId());
+        pstmt.setString(3, item.queueItemId());
+        pstmt.setString(4, item.songId());
+        pstmt.setDouble(5, item.sortKey());
+        pstmt.setInt(6, item.userAdded() ? 1 : 0);
+    }
+
+    // 4 bytes per entry, the index in the unshuffled order of the entry at each position
+    private static byte @Nullable [] encodeOrder(int @Nullable [] order) {
+        if (order == null) {
+            return null;
+        }
+        var buffer = ByteBuffer.allocate(order.length * Integer.BYTES);
+        buffer.asIntBuffer().put(order);
+        return buffer.array();
+    }
+
+    private static int @Nullable [] decodeOrder(byte @Nullable [] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        var ints = ByteBuffer.wrap(bytes).asIntBuffer();
+        var order = new int[ints.remaining()];
+        ints.get(order);
+        return order;
+    }
+}
@@ -0,0 +1,12 @@
+package org.subsound.persistence.database;
+
+import java.util.Optional;
+
+public record PlayQueueStateRow(
+        Optional<Integer> position,
+        String playMode,
+        // the kind and id of what the queue was played from, e.g. a playlist
+        Optional<String> playContextKind,
+        Optional<String> playContextId
+) {
+}
@@ -54,7 +54,7 @@ public class PlayerConfigService {
                 config_json = excluded.config_json,
                 updated_at = (strftime('%s', 'now'))
             """;
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, configKey);
             pstmt.setString(2, configJson);
@@ -68,7 +68,7 @@ public class PlayerConfigService {
 
     private Optional<String> loadConfig(int configKey) {
         String sql = "SELECT config_json FROM player_config WHERE config_key = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, configKey);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -86,7 +86,7 @@ public class PlayerConfigService {
 
     private void deleteConfig(int configKey) {
         String sql = "DELETE FROM player_config WHERE config_key = ?";
-        try (Connection conn = database.openConnection();
+        try (Connection conn = database.openWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, configKey);
             pstmt.executeUpdate();
@@ -13,6 +13,16 @@ public record PlaylistRow(
         Duration duration,
         Optional<String> coverArtId,
         Instant createdAt,
+        // the server "changed" timestamp when the playlist was last stored from the server
         Instant updatedAt
 ) {
+    /**
+     * True if the server copy of this playlist is the same one we already stored,
+     * so there is no need to fetch or rewrite its songs.
+     */
+    public boolean isUnchangedSince(Instant serverChangedAt, int serverSongCount) {
+        return serverChangedAt != null
+                && updatedAt.toEpochMilli() == serverChangedAt.toEpochMilli()
+                && songCount == serverSongCount;
+    }
 }
@@ -0,0 +1,18 @@
+package org.subsound.persistence.database;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * A full sync that is being written to the staging tables and has not been swapped in yet.
+ */
+public record StagedSync(
+        Instant startedAt,
+        // artists whose rows are completely staged, a resumed sync skips them
+        Set<String> completedArtistIds,
+        int stagedAlbums
+) {
+    public boolean isResumed() {
+        return !completedArtistIds.isEmpty();
+    }
+}
@@ -2,129 +2,173 @@ package org.subsound.persistence.database;
 
 import org.subsound.integration.ServerClient;
 import org.subsound.integration.ServerClient.AlbumInfo;
+import org.subsound.integration.ServerClient.AlbumListEntry;
 import org.subsound.integration.ServerClient.ArtistAlbumInfo;
 import org.subsound.integration.ServerClient.ArtistEntry;
 import org.subsound.integration.ServerClient.ArtistInfo;
 import org.subsound.integration.ServerClient.CoverArt;
 import org.subsound.integration.ServerClient.SongInfo;
+import org.subsound.persistence.CircuitBreaker;
 import org.subsound.persistence.SongCache;
 import org.subsound.persistence.SongCacheChecker;
 import org.subsound.persistence.ThumbnailCache;
+import org.subsound.persistence.database.DatabaseServerService.LibraryTables;
+import org.subsound.utils.AdaptiveLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+/**
+ * Copies the server library into the local database for offline use.
+ * <p>
+ * {@link #syncIncremental()} is the normal sync: it only fetches artists and albums that changed since the last sync
+ * and deletes only what disappeared from the server. {@link #syncAll()} rebuilds the local library from scratch,
+ * and is kept as a repair mode. It writes into staging tables with a checkpoint per artist and swaps the result in
+ * when complete, so an interrupted full sync leaves the old library in place and the next run resumes it.
+ * <p>
+ * Fetching and writing are split: server calls run on virtual threads and hand the parsed rows to a {@link SyncWriter},
+ * the only thread writing library rows during a sync. How many server calls run at once is decided by an
+ * {@link AdaptiveLimiter}: it grows while the server answers quickly and backs off on timeouts or rising latency.
+ */
 public class SyncService {
     private static final Logger logger = LoggerFactory.getLogger(SyncService.class);
+    // getAlbumList2 returns at most 500 albums per call
+    private static final int ALBUM_PAGE_SIZE = 500;
+    // ceiling for server requests in flight during a sync, the limiter finds the actual level
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+    private static final long PROGRESS_INTERVAL_NANOS = Duration.ofMillis(250).toNanos();
+    // an interrupted full sync older than this is started over instead of resumed
+    private static final Duration STAGED_SYNC_MAX_AGE = Duration.ofDays(1);
 
     private final ServerClient serverClient;
     private final DatabaseServerService databaseServerService;
     private final UUID serverId;
     private final ThumbnailCache thumbnailCache;
     private final SongCacheChecker songCacheChecker;
-    private final ExecutorService executor = Executors.newFixedThreadPool(2);
-    private final List<CoverArt> collectedCoverArts = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AdaptiveLimiter limiter;
+    private final Consumer<SyncProgress> onProgress;
+    private final AtomicInteger albumsDone = new AtomicInteger();
+    private final AtomicInteger albumsTotal = new AtomicInteger();
+    private final AtomicLong lastProgressNanos = new AtomicLong(System.nanoTime() - PROGRESS_INTERVAL_NANOS);
+    private final Set<CoverArt> collectedCoverArts = ConcurrentHashMap.newKeySet();
 
     public SyncService(ServerClient serverClient, DatabaseServerService databaseServerService, UUID serverId, ThumbnailCache thumbnailCache, SongCacheChecker songCacheChecker) {
+        this(serverClient, databaseServerService, serverId, thumbnailCache, songCacheChecker, DEFAULT_MAX_CONCURRENCY, progress -> {});
+    }
+
+    public SyncService(
+            ServerClient serverClient,
+            DatabaseServerService databaseServerService,
+            UUID serverId,
+            ThumbnailCache thumbnailCache,
+            SongCacheChecker songCacheChecker,
+            int maxConcurrency,
+            Consumer<SyncProgress> onProgress
+    ) {
         this.serverClient = serverClient;
         this.databaseServerService = databaseServerService;
         this.serverId = serverId;
         this.thumbnailCache = thumbnailCache;
         this.songCacheChecker = songCacheChecker;
+        this.limiter = new AdaptiveLimiter(AdaptiveLimiter.Settings.withCeiling(maxConcurrency));
+        this.onProgress = onProgress;
     }
 
-    public record SyncStats(int artists, int albums, int songs, int playlists) {}
+    // playlists: refreshed from the server, playlistsSkipped: unchanged since the last sync
+    public record SyncStats(int artists, int albums, int songs, int playlists, int playlistsSkipped) {}
+    // albumsTotal is only known up front in a full sync, an incremental sync counts albums as it finds changes
+    public record SyncProgress(int albumsDone, int albumsTotal, AdaptiveLimiter.Snapshot limiter) {}
+    private record PlaylistSyncStats(int refreshed, int skipped) {}
 
     public SyncStats syncAll() {
         var start = System.nanoTime();
         logger.info("Starting full sync for server: {}", serverId);
         try {
-            // Step 1: Fetch artists first to verify server is online before deleting
-            var artists = serverClient.getArtists().list();
+            // Step 1: Fetch artists first to verify server is online before staging anything
+            var listArtists = serverClient.getArtists();
+            var artists = listArtists.list();
             logger.info("Fetched {} artists from server", artists.size());
-
-            // Step 2: Truncate existing data (server confirmed online)
-            logger.info("Truncating existing data for server: {}", serverId);
-            databaseServerService.deleteAllPlaylistSongs();
-            databaseServerService.deleteAllPlaylists();
-            databaseServerService.deleteAllSongs();
-            databaseServerService.deleteAllAlbums();
-            databaseServerService.deleteAllArtists();
-
-            // Step 3: Sync all data from server in parallel
-            collectedCoverArts.clear();
-            List<Future<SyncStats>> futures = new ArrayList<>();
-            for (ArtistEntry artistEntry : artists) {
-                futures.add(executor.submit(() -> syncArtist(artistEntry.id())));
-            }
-            // Wait for all and aggregate stats
-            var stats = new SyncStats(0, 0, 0, 0);
-            for (Future<SyncStats> future : futures) {
-                var s = future.get();
-                stats = new SyncStats(
-                        stats.artists + s.artists,
-                        stats.albums + s.albums,
-                        stats.songs + s.songs,
-                        stats.playlists
-                );
+            // Remember what each album looked like, so the next incremental sync can tell what changed
+            var fingerprints = new HashMap<String, String>();
+            for (var entry : listAllAlbums()) {
+                fingerprints.put(entry.album().id(), fingerprint(entry));
             }
-            int playlistCount = syncPlaylists();
-            stats = new SyncStats(stats.artists, stats.albums, stats.songs, playlistCount);
+            albumsTotal.set(fingerprints.size());
 
-            // Step 4: Verify and clean up orphaned downloads
-            int orphanedDownloads = databaseServerService.removeOrphanedDownloads();
-            if (orphanedDownloads > 0) {
-                logger.warn("Cleaned up {} orphaned download references", orphanedDownloads);
+            // Step 2: Stage the library (server confirmed online). The live tables stay untouched until the swap,
+            // so offline browsing keeps working if this run dies halfway.
+            var staged = databaseServerService.beginStagedSync(STAGED_SYNC_MAX_AGE);
+            if (staged.isResumed()) {
+                logger.info("Resuming full sync started at {}: {} artists already staged", staged.startedAt(), staged.completedArtistIds().size());
+                albumsDone.set(staged.stagedAlbums());
+                var serverArtistIds = artists.stream().map(ArtistEntry::id).collect(Collectors.toSet());
+                var vanished = staged.completedArtistIds().stream().filter(id -> !serverArtistIds.contains(id)).toList();
+                databaseServerService.deleteStagedArtists(vanished);
             }
 
-            // Step 5: Verify remaining downloads are still cached on disk, re-queue any missing
-            var completedDownloads = databaseServerService.listDownloadQueue(List.of(DownloadQueueItem.DownloadStatus.COMPLETED));
-            int requeued = 0;
-            for (var item : completedDownloads) {
-                var query = new SongCache.SongCacheQuery(item.serverId().toString(), item.songId(), item.streamFormat());
-                if (!songCacheChecker.isCached(query)) {
-                    databaseServerService.updateDownloadProgress(item.songId(), DownloadQueueItem.DownloadStatus.PENDING, 0.0, null);
-                    requeued++;
+            // Step 3: Sync all remaining artists from server in parallel
+            // playlists are kept: syncPlaylists() only refreshes the ones that changed on the server
+            collectedCoverArts.clear();
+            var stats = new SyncStats(0, 0, 0, 0, 0);
+            try (var writer = new SyncWriter(databaseServerService, LibraryTables.STAGING)) {
+                List<Future<SyncStats>> futures = new ArrayList<>();
+                for (ArtistEntry artistEntry : artists) {
+                    if (staged.completedArtistIds().contains(artistEntry.id())) {
+                        continue;
+                    }
+                    futures.add(executor.submit(() -> syncArtist(artistEntry.id(), fingerprints, writer)));
                 }
-            }
-            if (requeued > 0) {
-                logger.info("Re-queued {} downloads with missing cache files", requeued);
-            }
-
-            // Step 5b: Clean up CACHED entries whose files are no longer on disk
-            var cachedEntries = databaseServerService.listDownloadQueue(List.of(DownloadQueueItem.DownloadStatus.CACHED));
-            int removedCached = 0;
-            for (var item : cachedEntries) {
-                var query = new SongCache.SongCacheQuery(item.serverId().toString(), item.songId(), item.streamFormat());
-                if (!songCacheChecker.isCached(query)) {
-                    databaseServerService.removeFromDownloadQueue(item.songId());
-                    removedCached++;
+                // Wait for all and aggregate stats
+                for (Future<SyncStats> future : futures) {
+                    var s = future.get();
+                    stats = new SyncStats(
+                            stats.artists + s.artists,
+                            stats.albums + s.albums,
+                            stats.songs + s.songs,
+                            stats.playlists,
+                            stats.playlistsSkipped
+                    );
                 }
+                writer.finish();
             }
-            if (removedCached > 0) {
-                logger.info("Removed {} cached entries with missing cache files", removedCached);
-            }
+            // Step 4: Make the new library visible in one transaction
+            databaseServerService.swapStagedLibrary();
+
+            var playlistStats = syncPlaylists();
+            stats = new SyncStats(stats.artists, stats.albums, stats.songs, playlistStats.refreshed(), playlistStats.skipped());
+
+            verifyDownloads();
+            cacheThumbnails();
 
-            // Step 6: Cache all collected thumbnails
-            logger.info("Caching {} thumbnails", collectedCoverArts.size());
-            List<CompletableFuture<Void>> thumbFutures = collectedCoverArts.stream()
-                    .distinct()
-                    .map(ca -> thumbnailCache.loadThumbAsync(ca).thenAccept(loaded -> {}))
-                    .toList();
-            CompletableFuture.allOf(thumbFutures.toArray(new CompletableFuture[0])).join();
-            logger.info("Finished caching thumbnails");
+            var now = Instant.now();
+            databaseServerService.saveSyncState(new SyncState(serverId, listArtists.lastModified(), now, Optional.of(now)));
 
             var elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
-            logger.info("Synced {} artists, {} albums, {} songs, {} playlists in {}ms", stats.artists, stats.albums, stats.songs, stats.playlists, elapsedMillis);
+            logger.info("Fetch concurrency at end of sync: {}", limiter.snapshot());
+            logger.info("Synced {} artists, {} albums, {} songs, {} playlists ({} unchanged) in {}ms", stats.artists, stats.albums, stats.songs, stats.playlists, stats.playlistsSkipped, elapsedMillis);
             logger.info("Full sync completed for server: {}", serverId);
             return stats;
         } catch (Exception e) {
@@ -135,8 +179,299 @@ public class SyncService {
         }
     }
 
-    private SyncStats syncArtist(String artistId) {
-        ArtistInfo artistInfo = serverClient.getArtistWithAlbums(artistId);
+    /**
+     * Syncs only what changed on the server since the last sync.
+     * Falls back to {@link #syncAll()} when this server has never been synced, or a full sync was interrupted.
+     */
+    public SyncStats syncIncremental() {
+        if (databaseServerService.hasStagedSync()) {
+            logger.info("Found an unfinished full sync for server {}, resuming it", serverId);
+            return syncAll();
+        }
+        var previous = databaseServerService.getSyncState();
+        if (previous.isEmpty()) {
+            logger.info("No previous sync for server {}, running a full sync", serverId);
+            return syncAll();
+        }
+        var start = System.nanoTime();
+        logger.info("Starting incremental sync for server: {} (last sync {})", serverId, previous.get().lastSyncAt());
+        try {
+            collectedCoverArts.clear();
+            var listArtists = serverClient.getArtists();
+            var albumStats = new SyncStats(0, 0, 0, 0, 0);
+            var lastModified = listArtists.lastModified();
+            int artists;
+            try (var writer = new SyncWriter(databaseServerService)) {
+                artists = syncChangedArtists(listArtists.list(), writer);
+                if (lastModified.isPresent() && lastModified.equals(previous.get().artistsLastModified())) {
+                    // nothing was rescanned on the server, so no album can have changed
+                    logger.info("Library unchanged since {}, skipping album scan", lastModified.get());
+                } else {
+                    albumStats = syncChangedAlbums(listArtists.list().size(), writer);
+                }
+                writer.finish();
+            }
+            syncStarredSongs();
+            var playlistStats = syncPlaylists();
+            var stats = new SyncStats(artists, albumStats.albums, albumStats.songs, playlistStats.refreshed(), playlistStats.skipped());
+
+            verifyDownloads();
+            cacheThumbnails();
+
+            databaseServerService.saveSyncState(new SyncState(serverId, lastModified, Instant.now(), previous.get().lastFullSyncAt()));
+
+            var elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            logger.info("Fetch concurrency at end of sync: {}", limiter.snapshot());
+            logger.info("Incremental sync: {} artists, {} albums, {} songs, {} playlists ({} unchanged) updated in {}ms", stats.artists, stats.albums, stats.songs, stats.playlists, stats.playlistsSkipped, elapsedMillis);
+            return stats;
+        } catch (Exception e) {
+            logger.error("Error during incremental sync", e);
+            throw new RuntimeException("Sync failed", e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Refreshes artists that are new or differ from the stored row, and deletes the ones that are gone from the server.
+     * Albums are handled separately by {@link #syncChangedAlbums(int, SyncWriter)}.
+     */
+    private int syncChangedArtists(List<ArtistEntry> serverArtists, SyncWriter writer) throws Exception {
+        var localArtists = new HashMap<String, Artist>();
+        for (var artist : databaseServerService.listArtists()) {
+            localArtists.put(artist.id(), artist);
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        Set<String> serverIds = new HashSet<>();
+        for (var entry : serverArtists) {
+            serverIds.add(entry.id());
+            if (isArtistChanged(localArtists.get(entry.id()), entry) && !databaseServerService.hasPendingMutations(entry.id())) {
+                futures.add(executor.submit(() -> {
+                    storeArtist(fetch(() -> serverClient.getArtistWithAlbums(entry.id())), writer);
+                    return null;
+                }));
+            }
+        }
+        for (var future : futures) {
+            future.get();
+        }
+        var vanished = localArtists.keySet().stream().filter(id -> !serverIds.contains(id)).toList();
+        int removed = databaseServerService.deleteArtists(vanished);
+        logger.info("Artists: {} changed, {} unchanged, {} removed", futures.size(), serverArtists.size() - futures.size(), removed);
+        return futures.size();
+    }
+
+    private static boolean isArtistChanged(Artist local, ArtistEntry server) {
+        return local == null
+                || !local.name().equals(server.name())
+                || local.albumCount() != server.albumCount()
+                || !toMillis(local.starredAt()).equals(toMillis(server.starredAt()))
+                || !local.coverArtId().equals(server.coverArt().map(CoverArt::coverArtId));
+    }
+
+    /**
+     * Lists every album on the server (cheap, {@value ALBUM_PAGE_SIZE} albums per request) and fetches songs only
+     * for albums whose fingerprint changed. Albums no longer listed by the server are deleted.
+     */
+    private SyncStats syncChangedAlbums(int serverArtistCount, SyncWriter writer) throws Exception {
+        var serverAlbums = listAllAlbums();
+        var localFingerprints = databaseServerService.listAlbumFingerprints();
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        Set<String> serverIds = new HashSet<>();
+        for (var entry : serverAlbums) {
+            var album = entry.album();
+            serverIds.add(album.id());
+            var fingerprint = fingerprint(entry);
+            if (fingerprint.equals(localFingerprints.get(album.id()))) {
+                continue;
+            }
+            if (databaseServerService.hasPendingMutations(album.id())) {
+                // a local star has not reached the server yet, pick the album up on a later sync
+                continue;
+            }
+            albumsTotal.incrementAndGet();
+            futures.add(executor.submit(() -> syncAlbum(album.id(), album.genre(), Optional.of(fingerprint), writer)));
+        }
+        int songs = 0;
+        for (var future : futures) {
+            songs += future.get();
+        }
+
+        int removed = 0;
+        if (serverAlbums.isEmpty() && serverArtistCount > 0) {
+            // a server that lists artists but no albums is more likely broken than empty
+            logger.warn("Server listed {} artists but no albums, not deleting any local albums", serverArtistCount);
+        } else {
+            var vanished = localFingerprints.keySet().stream().filter(id -> !serverIds.contains(id)).toList();
+            removed = databaseServerService.deleteAlbums(vanished);
+        }
+        logger.info("Albums: {} changed, {} unchanged, {} removed", futures.size(), serverAlbums.size() - futures.size(), removed);
+        return new SyncStats(0, futures.size(), songs, 0, 0);
+    }
+
+    private List<AlbumListEntry> listAllAlbums() throws InterruptedException {
+        // keyed by id: albums can shift between pages if the server is scanning while we page through
+        var albums = new LinkedHashMap<String, AlbumListEntry>();
+        int offset = 0;
+        while (true) {
+            int pageOffset = offset;
+            var page = fetch(() -> serverClient.listNewestAlbums(ALBUM_PAGE_SIZE, pageOffset));
+            for (var entry : page) {
+                albums.putIfAbsent(entry.album().id(), entry);
+            }
+            if (page.size() < ALBUM_PAGE_SIZE) {
+                break;
+            }
+            offset += page.size();
+        }
+        logger.info("Listed {} albums from server", albums.size());
+        return new ArrayList<>(albums.values());
+    }
+
+    /**
+     * Everything the album list tells us about an album. If any of it changes, the album is fetched again.
+     * The server "changed" timestamp catches tag edits that do not show up in the other fields.
+     */
+    static String fingerprint(AlbumListEntry entry) {
+        var album = entry.album();
+        return String.join("|",
+                toMillis(entry.changed()),
+                toMillis(entry.created()),
+                album.name(),
+                String.valueOf(album.songCount()),
+                String.valueOf(album.duration().toSeconds()),
+                album.year().map(String::valueOf).orElse(""),
+                album.genre().orElse(""),
+                album.coverArt().map(CoverArt::coverArtId).orElse(""),
+                toMillis(album.starredAt())
+        );
+    }
+
+    private static String toMillis(Optional<Instant> instant) {
+        return instant.map(i -> String.valueOf(i.truncatedTo(ChronoUnit.MILLIS).toEpochMilli())).orElse("");
+    }
+
+    /**
+     * Song stars do not touch the album, so they are reconciled separately with a single getStarred call.
+     */
+    private void syncStarredSongs() {
+        var serverStarred = new HashMap<String, Optional<Instant>>();
+        for (var song : serverClient.getStarred().songs()) {
+            serverStarred.put(song.id(), song.starred());
+        }
+        var localStarred = new HashMap<String, Optional<Instant>>();
+        for (var song : databaseServerService.listSongsByStarredAt()) {
+            localStarred.put(song.id(), song.starredAt());
+        }
+        int updated = 0;
+        for (var entry : serverStarred.entrySet()) {
+            var local = localStarred.getOrDefault(entry.getKey(), Optional.empty());
+            if (!toMillis(local).equals(toMillis(entry.getValue())) && !databaseServerService.hasPendingMutations(entry.getKey())) {
+                databaseServerService.setStarredAt(entry.getKey(), entry.getValue());
+                updated++;
+            }
+        }
+        for (var songId : localStarred.keySet()) {
+            if (!serverStarred.containsKey(songId) && !databaseServerService.hasPendingMutations(songId)) {
+                databaseServerService.setStarredAt(songId, Optional.empty());
+                updated++;
+            }
+        }
+        if (updated > 0) {
+            logger.info("Updated stars on {} songs", updated);
+        }
+    }
+
+    private void verifyDownloads() {
+        // Clean up orphaned downloads
+        int orphanedDownloads = databaseServerService.removeOrphanedDownloads();
+        if (orphanedDownloads > 0) {
+            logger.warn("Cleaned up {} orphaned download references", orphanedDownloads);
+        }
+
+        // Verify remaining downloads are still cached on disk, re-queue any missing
+        var completedDownloads = databaseServerService.listDownloadQueue(List.of(DownloadQueueItem.DownloadStatus.COMPLETED));
+        int requeued = 0;
+        for (var item : completedDownloads) {
+            var query = new SongCache.SongCacheQuery(item.serverId().toString(), item.songId(), item.streamFormat());
+            if (!songCacheChecker.isCached(query)) {
+                databaseServerService.updateDownloadProgress(item.songId(), DownloadQueueItem.DownloadStatus.PENDING, 0.0, null);
+                requeued++;
+            }
+        }
+        if (requeued > 0) {
+            logger.info("Re-queued {} downloads with missing cache files", requeued);
+        }
+
+        // Clean up CACHED entries whose files are no longer on disk
+        var cachedEntries = databaseServerService.listDownloadQueue(List.of(DownloadQueueItem.DownloadStatus.CACHED));
+        int removedCached = 0;
+        for (var item : cachedEntries) {
+            var query = new SongCache.SongCacheQuery(item.serverId().toString(), item.songId(), item.streamFormat());
+            if (!songCacheChecker.isCached(query)) {
+                databaseServerService.removeFromDownloadQueue(item.songId());
+                removedCached++;
+            }
+        }
+        if (removedCached > 0) {
+            logger.info("Removed {} cached entries with missing cache files", removedCached);
+        }
+    }
+
+    private void cacheThumbnails() {
+        logger.info("Caching {} thumbnails", collectedCoverArts.size());
+        List<CompletableFuture<Void>> thumbFutures = collectedCoverArts.stream()
+                .distinct()
+                .map(ca -> thumbnailCache.loadThumbAsync(ca).thenAccept(loaded -> {}))
+                .toList();
+        CompletableFuture.allOf(thumbFutures.toArray(new CompletableFuture[0])).join();
+        logger.info("Finished caching thumbnails");
+    }
+
+    /**
+     * Runs a server call within the concurrency limit. Its latency, and whether it failed with a network error,
+     * feed back into the limit.
+     */
+    private <T> T fetch(Supplier<T> call) throws InterruptedException {
+        limiter.acquire();
+        long started = System.nanoTime();
+        boolean dropped = false;
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            dropped = CircuitBreaker.isNetworkError(e);
+            throw e;
+        } finally {
+            limiter.release(Duration.ofNanos(System.nanoTime() - started), dropped);
+            publishProgress();
+        }
+    }
+
+    private void publishProgress() {
+        // a fast server completes hundreds of calls per second, the UI only needs a few updates
+        long now = System.nanoTime();
+        long last = lastProgressNanos.get();
+        if (now - last < PROGRESS_INTERVAL_NANOS || !lastProgressNanos.compareAndSet(last, now)) {
+            return;
+        }
+        onProgress.accept(new SyncProgress(albumsDone.get(), albumsTotal.get(), limiter.snapshot()));
+    }
+
+    private SyncStats syncArtist(String artistId, Map<String, String> fingerprints, SyncWriter writer) throws InterruptedException {
+        ArtistInfo artistInfo = fetch(() -> serverClient.getArtistWithAlbums(artistId));
+        storeArtist(artistInfo, writer);
+
+        int songs = 0;
+        for (ArtistAlbumInfo albumInfoSimple : artistInfo.albums()) {
+            var fingerprint = Optional.ofNullable(fingerprints.get(albumInfoSimple.id()));
+            songs += syncAlbum(albumInfoSimple.id(), albumInfoSimple.genre(), fingerprint, writer);
+        }
+        writer.checkpoint(artistId);
+        return new SyncStats(1, artistInfo.albums().size(), songs, 0, 0);
+    }
+
+    private void storeArtist(ArtistInfo artistInfo, SyncWriter writer) throws InterruptedException {
         Artist artist = new Artist(
                 artistInfo.id(),
                 serverId,
@@ -146,20 +481,15 @@ public class SyncService {
                 artistInfo.coverArt().map(ca -> ca.coverArtId()),
                 artistInfo.biography() != null ? java.util.Optional.of(new Artist.Biography(artistInfo.biography().original())) : java.util.Optional.empty()
         );
-        databaseServerService.insert(artist);
+        writer.write(artist);
 
         // Collect artist cover art for thumbnail caching
         artistInfo.coverArt().ifPresent(collectedCoverArts::add);
-
-        int songs = 0;
-        for (ArtistAlbumInfo albumInfoSimple : artistInfo.albums()) {
-            songs += syncAlbum(albumInfoSimple.id(), albumInfoSimple.genre());
-        }
-        return new SyncStats(1, artistInfo.albums().size(), songs, 0);
     }
 
-    private int syncAlbum(String albumId, java.util.Optional<String> genre) {
-        AlbumInfo albumInfo = serverClient.getAlbumInfo(albumId);
+    private int syncAlbum(String albumId, Optional<String> genre, Optional<String> fingerprint, SyncWriter writer) throws InterruptedException {
+        var start = System.nanoTime();
+        AlbumInfo albumInfo = fetch(() -> serverClient.getAlbumInfo(albumId));
         if (albumId.contains("al-5CcViuxlnidLI1TGKZcjjN")) {
             System.out.println("Album: %s %s %s".formatted(albumInfo.id(), albumInfo.name(), albumInfo.artistName()));
         }
@@ -180,8 +510,6 @@ public class SyncService {
         // Collect album cover art for thumbnail caching
         albumInfo.coverArt().ifPresent(collectedCoverArts::add);
 
-        var start = System.nanoTime();
-
         List<Song> songs = new ArrayList<>();
         for (SongInfo songInfo : albumInfo.songs()) {
             songs.add(new Song(
@@ -208,17 +536,32 @@ public class SyncService {
             // Collect song cover art for thumbnail caching
             songInfo.coverArt().ifPresent(collectedCoverArts::add);
         }
-        databaseServerService.syncAlbumBatch(album, songs);
         var elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
-        logger.info("syncing: songs={} for album {} in {}ms", albumInfo.songs().size(), albumInfo.id(), elapsedMillis);
+        logger.debug("fetched: songs={} for album {} in {}ms", albumInfo.songs().size(), albumInfo.id(), elapsedMillis);
+        writer.write(new AlbumBatch(album, songs, fingerprint));
+        albumsDone.incrementAndGet();
         return albumInfo.songs().size();
     }
 
-    private int syncPlaylists() {
+    private PlaylistSyncStats syncPlaylists() {
         try {
             var playlists = serverClient.getPlaylists().playlists();
             logger.info("Fetched {} playlists", playlists.size());
+            int refreshed = 0;
+            int skipped = 0;
+            var serverPlaylistIds = new HashSet<String>();
             for (var playlistSimple : playlists) {
+                serverPlaylistIds.add(playlistSimple.id());
+                var existing = databaseServerService.getPlaylistById(playlistSimple.id());
+                if (existing.isPresent() && existing.get().isUnchangedSince(playlistSimple.changedAt(), playlistSimple.songCount())) {
+                    skipped++;
+                    continue;
+                }
+                if (databaseServerService.hasPendingMutations(playlistSimple.id())) {
+                    // local edits have not reached the server yet, don't overwrite them with the stale server copy
+                    skipped++;
+                    continue;
+                }
                 var playlist = serverClient.getPlaylist(playlistSimple.id());
                 PlaylistRow row = new PlaylistRow(
                         playlist.id(),
@@ -230,18 +573,26 @@ public class SyncService {
                                 .reduce(java.time.Duration.ZERO, java.time.Duration::plus),
                         playlist.coverArtId().map(CoverArt::coverArtId),
                         playlist.created(),
-                        java.time.Instant.now()
+                        Optional.ofNullable(playlist.changedAt()).orElseGet(java.time.Instant::now)
                 );
                 databaseServerService.upsertPlaylist(row);
-                // Note: playlist_songs already deleted at start of syncAll()
-                for (int i = 0; i < playlist.songs().size(); i++) {
-                    databaseServerService.insertPlaylistSong(playlist.id(), playlist.songs().get(i).id(), i);
+                databaseServerService.replacePlaylistSongs(playlist.id(), playlist.songs().stream().map(SongInfo::id).toList());
+                refreshed++;
+            }
+
+            // remove playlists that were deleted on the server
+            int removed = 0;
+            for (var row : databaseServerService.listPlaylists()) {
+                if (!serverPlaylistIds.contains(row.id()) && !databaseServerService.hasPendingMutations(row.id())) {
+                    databaseServerService.deletePlaylist(row.id());
+                    removed++;
                 }
             }
-            return playlists.size();
+            logger.info("Playlists: {} refreshed, {} unchanged, {} removed", refreshed, skipped, removed);
+            return new PlaylistSyncStats(refreshed, skipped);
         } catch (Exception e) {
             logger.error("Error syncing playlists", e);
-            return 0;
+            return new PlaylistSyncStats(0, 0);
         }
     }
 }
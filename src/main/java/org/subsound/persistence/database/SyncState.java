@@ -0,0 +1,15 @@
+package org.subsound.persistence.database;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public record SyncState(
+        UUID serverId,
+        // lastModified of the server artist index at the last sync, empty if the server does not report it
+        Optional<Instant> artistsLastModified,
+        Instant lastSyncAt,
+        // last time the library was rebuilt from scratch, empty if only incremental syncs have run
+        Optional<Instant> lastFullSyncAt
+) {
+}
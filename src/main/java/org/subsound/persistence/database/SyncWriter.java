@@ -0,0 +1,169 @@
+package org.subsound.persistence.database;
+
+import com.softwaremill.jox.Channel;
+import com.softwaremill.jox.ChannelDoneException;
+import org.subsound.persistence.database.DatabaseServerService.LibraryTables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The single database writer of a sync.
+ * <p>
+ * Fetcher threads parse server responses and {@link #write} the rows into a bounded channel. One virtual thread drains
+ * the channel and commits many albums per transaction, so the fetchers never queue up on the database connection and
+ * SQLite pays for one commit per batch instead of one per album. When the writer falls behind, the channel fills up
+ * and the fetchers block, which keeps memory bounded on large libraries.
+ * <p>
+ * A {@link #checkpoint} is committed together with the rows sent before it, so after a crash the checkpointed
+ * artists are known to be completely written.
+ */
+public class SyncWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SyncWriter.class);
+    // commit when this many rows are pending, roughly 500 albums on a typical library
+    static final int DEFAULT_BATCH_ROWS = 5_000;
+    private static final int CHANNEL_CAPACITY = 128;
+
+    private sealed interface Item {}
+    private record ArtistItem(Artist artist) implements Item {}
+    private record AlbumItem(AlbumBatch batch) implements Item {}
+    private record CheckpointItem(String artistId) implements Item {}
+
+    public record IngestStats(
+            int artists,
+            int albums,
+            int songs,
+            int transactions,
+            Duration elapsed,
+            // time spent inside transactions, the rest of elapsed the writer was waiting on fetchers
+            Duration writeTime
+    ) {
+        public long rows() {
+            return (long) artists + albums + songs;
+        }
+
+        public long rowsPerSecond() {
+            return rows() * 1000 / Math.max(1, elapsed.toMillis());
+        }
+
+        @Override
+        public String toString() {
+            return "%d artists, %d albums, %d songs in %d transactions, %d rows/s (%dms, %dms writing)".formatted(
+                    artists, albums, songs, transactions, rowsPerSecond(), elapsed.toMillis(), writeTime.toMillis()
+            );
+        }
+    }
+
+    private final DatabaseServerService databaseServerService;
+    private final LibraryTables tables;
+    private final int batchRows;
+    private final Channel<Item> channel = Channel.newBufferedChannel(CHANNEL_CAPACITY);
+    private final CompletableFuture<IngestStats> result = new CompletableFuture<>();
+
+    public SyncWriter(DatabaseServerService databaseServerService) {
+        this(databaseServerService, LibraryTables.LIVE);
+    }
+
+    public SyncWriter(DatabaseServerService databaseServerService, LibraryTables tables) {
+        this(databaseServerService, tables, DEFAULT_BATCH_ROWS);
+    }
+
+    public SyncWriter(DatabaseServerService databaseServerService, LibraryTables tables, int batchRows) {
+        this.databaseServerService = databaseServerService;
+        this.tables = tables;
+        this.batchRows = batchRows;
+        Thread.ofVirtual().name("sync-writer").start(this::run);
+    }
+
+    public void write(Artist artist) throws InterruptedException {
+        channel.send(new ArtistItem(artist));
+    }
+
+    public void write(AlbumBatch album) throws InterruptedException {
+        channel.send(new AlbumItem(album));
+    }
+
+    /**
+     * Marks the artist as completely written. Must be sent by the thread that wrote the artist and its albums,
+     * the channel only keeps the order of items sent from the same thread.
+     */
+    public void checkpoint(String artistId) throws InterruptedException {
+        channel.send(new CheckpointItem(artistId));
+    }
+
+    /**
+     * Commits whatever is still pending and waits for the writer to finish.
+     */
+    public IngestStats finish() {
+        channel.doneOrClosed();
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Sync writer failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops the writer without waiting, e.g. when a fetcher failed. Rows already committed stay committed.
+     */
+    @Override
+    public void close() {
+        channel.doneOrClosed();
+    }
+
+    private void run() {
+        long started = System.nanoTime();
+        long writeNanos = 0;
+        int artists = 0, albums = 0, songs = 0, transactions = 0;
+        List<Artist> pendingArtists = new ArrayList<>();
+        List<AlbumBatch> pendingAlbums = new ArrayList<>();
+        List<String> pendingCheckpoints = new ArrayList<>();
+        int pendingRows = 0;
+        try {
+            boolean done = false;
+            while (!done) {
+                try {
+                    switch (channel.receive()) {
+                        case ArtistItem(var artist) -> {
+                            pendingArtists.add(artist);
+                            pendingRows++;
+                        }
+                        case AlbumItem(var batch) -> {
+                            pendingAlbums.add(batch);
+                            pendingRows += 1 + batch.songs().size();
+                        }
+                        case CheckpointItem(var artistId) -> pendingCheckpoints.add(artistId);
+                    }
+                } catch (ChannelDoneException e) {
+                    done = true;
+                }
+                if (pendingRows >= batchRows || (done && (pendingRows > 0 || !pendingCheckpoints.isEmpty()))) {
+                    long t = System.nanoTime();
+                    databaseServerService.ingestBatch(tables, pendingArtists, pendingAlbums, pendingCheckpoints);
+                    writeNanos += System.nanoTime() - t;
+                    transactions++;
+                    artists += pendingArtists.size();
+                    albums += pendingAlbums.size();
+                    songs += pendingAlbums.stream().mapToInt(a -> a.songs().size()).sum();
+                    pendingArtists = new ArrayList<>();
+                    pendingAlbums = new ArrayList<>();
+                    pendingCheckpoints = new ArrayList<>();
+                    pendingRows = 0;
+                }
+            }
+            var stats = new IngestStats(artists, albums, songs, transactions, Duration.ofNanos(System.nanoTime() - started), Duration.ofNanos(writeNanos));
+            logger.info("Sync writer: {}", stats);
+            result.complete(stats);
+        } catch (Exception e) {
+            logger.error("Sync writer failed after {} transactions", transactions, e);
+            // wake up blocked fetchers, their next write fails
+            channel.errorOrClosed(e);
+            result.completeExceptionally(e);
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package org.subsound.sound;
 
+import io.reactivex.rxjava3.disposables.Disposable;
 import org.javagi.base.Out;
+import org.subsound.utils.Histogram;
 import org.subsound.utils.OsUtil;
 import io.soabase.recordbuilder.core.RecordBuilderFull;
 import org.freedesktop.gstreamer.gst.*;
 import org.gnome.glib.GError;
+import org.gnome.glib.GErrorException;
 import org.gnome.glib.GLib;
 import org.gnome.glib.MainContext;
 import org.gnome.glib.MainLoop;
@@ -15,12 +18,14 @@ import org.slf4j.LoggerFactory;
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static org.subsound.sound.PlaybinPlayer.PlayerStates.*;
@@ -37,6 +42,7 @@ public class PlaybinPlayer implements Player {
     private static final int GST_PLAY_FLAG_AUDIO = 2;
     private static final int GST_PLAY_FLAG_SOFT_VOLUME = 0x00000010;
     private static final List<OnStateChanged> listeners = new CopyOnWriteArrayList<>();
+    private final List<OnSourceAdvanced> advancedListeners = new CopyOnWriteArrayList<>();
 
     public interface OnStateChanged {
         void onState(PlayerState next);
@@ -50,6 +56,45 @@ public class PlaybinPlayer implements Player {
         listeners.remove(listener);
     }
 
+    public interface OnSourceAdvanced {
+        // called from the bus watch, on the STREAM_START message of the next source set with setNextSource()
+        void onAdvanced(AudioSource next);
+    }
+
+    /**
+     * How often the position is published while playing. The fastest rate of all subscribers is used.
+     */
+    public enum PositionRate {
+        // a scrubber is on screen. AppManager does not emit states faster than this anyway
+        SCRUBBER(Duration.ofMillis(250)),
+        // nothing on screen shows the position: window hidden, only scrobbling and MPRIS.
+        // MPRIS clients get the position on demand from getCurrentPosition()
+        BACKGROUND(Duration.ofSeconds(5)),
+        ;
+        private final Duration interval;
+
+        PositionRate(Duration interval) {
+            this.interval = interval;
+        }
+    }
+
+    /**
+     * Publishes the position through {@link OnStateChanged} at {@code rate} while playing, until the returned
+     * {@link Disposable} is disposed. Nothing runs while paused or when there are no subscribers.
+     */
+    public Disposable subscribePosition(PositionRate rate) {
+        positionSubscribers.add(rate);
+        this.reschedulePositionUpdates();
+        return Disposable.fromAction(() -> {
+            positionSubscribers.remove(rate);
+            this.reschedulePositionUpdates();
+        });
+    }
+
+    public void onSourceAdvanced(OnSourceAdvanced listener) {
+        advancedListeners.add(listener);
+    }
+
     public PlayerState getState() {
         var source = Optional.ofNullable(currentUri).map(uri -> new Source(
                 uri,
@@ -111,14 +156,43 @@ public class PlaybinPlayer implements Player {
     private final Thread playerLoopThread;
     private final MainContext playerContext;
     private final MainLoop loop;
-    Element playbinEl;
-    Bus bus;
-    int busWatchId;
+    // swapped with the standby pipeline on skip, see setSource()
+    volatile Element playbinEl;
+    volatile Bus bus;
     // PlayerState should be the public view of the state of the player/player Pipeline
     PlayerStates playerStates = INIT;
-    // positionPublisher updates the player position while state is PLAYING
-    private final Thread positionPublisher;
+    // a timeout on playerContext updates the position while state is PLAYING and someone is subscribed
+    private final List<PositionRate> positionSubscribers = new CopyOnWriteArrayList<>();
+    // a pipeline PAUSED this long goes to NULL to release the decoders and the audio device, null never does.
+    // Off until setIdleTeardown(), the delay comes from Config.playerIdleTeardownSeconds
+    private volatile Duration idleTeardownAfter = null;
+    private final Object idleLock = new Object();
+    // guarded by idleLock
+    private org.gnome.glib.Source idleTimer;
+    // guarded by idleLock: set while the pipeline is torn down, play() rebuilds it at this position
+    private Duration tornDownAt;
+    // set by play() rebuilding a torn down pipeline, until it is PLAYING
+    private volatile long resumeStartedNanos = 0;
+    // guarded by idleLock: set by resumeFromIdle() until the rebuilt pipeline is prerolled, see onResumePrerolled()
+    private Duration resumeAt;
+    // false once paused again before the rebuilt pipeline was prerolled
+    private volatile boolean resumePlaying;
+    private final Histogram resumeLatencyMillis = new Histogram();
+    private final Object positionTimerLock = new Object();
+    private org.gnome.glib.Source positionTimer;
+    private Duration positionTimerInterval;
     private URI currentUri;
+    // played after the current source without stopping the pipeline, see onAboutToFinish()
+    private volatile AudioSource nextSource;
+    // set by onAboutToFinish() until the next source starts, the STREAM_START of a gapless switch
+    private volatile AudioSource advancingTo;
+    // a second pipeline prerolled in PAUSED on the next source, so skipping to it only has to start it.
+    // It prerolls into a fakesink in sinkBin, the audio output is only opened when it becomes the active pipeline
+    private record Standby(Element playbin, Bus bus, URI uri, Bin sinkBin) {}
+    private final Object standbyLock = new Object();
+    private Standby standby;
+    // null for the default audio output
+    private final Supplier<Element> audioSinkFactory;
     private double currentVolume = 1.0;
     private Duration duration;
     private volatile Duration position;
@@ -153,12 +227,23 @@ public class PlaybinPlayer implements Player {
     }
 
     public void setSource(URI uri, boolean startPlaying) {
+        synchronized (idleLock) {
+            // READY from NULL works the same, the position is not needed anymore
+            this.tornDownAt = null;
+            this.resumeAt = null;
+        }
         this.currentUri = uri;
         this.playbackStartedAtMillis = 0;
-        var fileUri = uri.toString();
-        if ("file".equals(uri.getScheme())) {
-            fileUri = fileUri.replace("file:/", "file:///");
+        // the next source followed the previous one, the caller sets it again for this one
+        this.nextSource = null;
+        this.advancingTo = null;
+        var prerolled = takeStandby();
+        if (prerolled.isPresent() && prerolled.get().uri().equals(uri)) {
+            this.swapTo(prerolled.get(), startPlaying);
+            return;
         }
+        prerolled.ifPresent(PlaybinPlayer::dispose);
+        var fileUri = toPlaybinUri(uri);
         // https://gstreamer.freedesktop.org/documentation/additional/design/playback-gapless.html?gi-language=c
         // https://gstreamer.freedesktop.org/documentation/playback/playbin3.html?gi-language=c
         // the user wants to play a different track, playbin3 should be set back to READY or NULL state,
@@ -184,7 +269,199 @@ public class PlaybinPlayer implements Player {
         this.notifyState();
     }
 
+    /**
+     * The source to continue with when the current one ends, empty to stop at the end instead.
+     * It has to be a local file: it is opened on the streaming thread the moment the current source runs out,
+     * with no time to download anything. Cleared by {@link #setSource}.
+     */
+    public void setNextSource(Optional<AudioSource> next) {
+        this.nextSource = next.orElse(null);
+        takeStandby().ifPresent(PlaybinPlayer::dispose);
+        if (this.isTornDown()) {
+            // prerolled on resume, the standby would hold its decoders again
+            return;
+        }
+        next.ifPresent(this::prerollStandby);
+    }
+
+    // skipping to the next song is the most common track change, preroll it so setSource() only has to start it
+    private void prerollStandby(AudioSource next) {
+        var sinkBin = createStandbySink();
+        var playbin = createPlaybin(sinkBin);
+        var standbyBus = playbin.getBus();
+        standbyBus.addWatch(0, this::busCall);
+        playbin.set("uri", toPlaybinUri(next.uri()), null);
+        playbin.set("volume", this.currentVolume, null);
+        playbin.set("mute", this.muteState.get(), null);
+        // asynchronous, the pipeline keeps the first decoded buffer once it is PAUSED
+        playbin.setState(State.PAUSED);
+        Standby previous;
+        synchronized (standbyLock) {
+            previous = this.standby;
+            this.standby = new Standby(playbin, standbyBus, next.uri(), sinkBin);
+        }
+        if (previous != null) {
+            dispose(previous);
+        }
+        log.debug("Player: prerolling standby src={}", next.uri());
+    }
+
+    private Optional<Standby> takeStandby() {
+        synchronized (standbyLock) {
+            var taken = Optional.ofNullable(this.standby);
+            this.standby = null;
+            return taken;
+        }
+    }
+
+    private static void dispose(Standby standby) {
+        dispose(standby.playbin(), standby.bus());
+    }
+
+    private static void dispose(Element playbin, Bus bus) {
+        bus.removeWatch();
+        playbin.setState(State.NULL);
+    }
+
+    // makes the prerolled pipeline the active one. The old one goes to NULL after, so there is no silence in between
+    private void swapTo(Standby next, boolean startPlaying) {
+        var stateOut = new Out<State>();
+        var pendingOut = new Out<State>();
+        var prerolled = next.playbin().getState(stateOut, pendingOut, 0);
+        if (prerolled != StateChangeReturn.SUCCESS || !this.attachAudioSink(next)) {
+            // not prerolled yet, or the audio output could not be attached: start it the slow way
+            log.warn("Player: standby not prerolled src={} prerolled={}", next.uri(), prerolled.name());
+            dispose(next);
+            this.setSource(next.uri(), startPlaying);
+            return;
+        }
+        var previousPlaybin = this.playbinEl;
+        var previousBus = this.bus;
+        double savedVolume = this.currentVolume;
+        boolean savedMute = this.muteState.get();
+        this.playbinEl = next.playbin();
+        this.bus = next.bus();
+        this.pipelineState = State.PAUSED;
+        this.playbinEl.set("volume", savedVolume, null);
+        this.playbinEl.set("mute", savedMute, null);
+        var target = this.playbinEl.setState(startPlaying ? State.PLAYING : State.PAUSED);
+        log.debug("Player: swapped to standby src={} prerolled={} {}", next.uri(), prerolled.name(), target.name());
+        dispose(previousPlaybin, previousBus);
+        // its STREAM_START went by while it was the standby
+        this.onDurationChanged();
+        this.notifyState();
+    }
+
+    // replaces the fakesink the standby prerolled into with the audio output. Flushing to the start prerolls it again,
+    // the source, demuxer and decoder are kept
+    private boolean attachAudioSink(Standby next) {
+        var fakesink = next.sinkBin().getByName("out");
+        var resample = next.sinkBin().getByName("resample");
+        var audioSink = audioSinkFactory != null ? audioSinkFactory.get() : ElementFactory.make("autoaudiosink", null);
+        if (fakesink == null || resample == null || audioSink == null) {
+            return false;
+        }
+        fakesink.setState(State.NULL);
+        next.sinkBin().remove(fakesink);
+        next.sinkBin().add(audioSink);
+        if (!resample.link(audioSink) || !audioSink.syncStateWithParent()) {
+            return false;
+        }
+        return next.playbin().seekSimple(Format.TIME, Set.of(SeekFlags.ACCURATE, SeekFlags.FLUSH), 0);
+    }
+
+    private static Bin createStandbySink() {
+        try {
+            return Gst.parseBinFromDescription("audioconvert ! audioresample name=resample ! fakesink name=out", true);
+        } catch (GErrorException e) {
+            throw new RuntimeException("standby audio sink could not be created", e);
+        }
+    }
+
+    private Element createPlaybin() {
+        return createPlaybin(audioSinkFactory != null ? audioSinkFactory.get() : null);
+    }
+
+    // audioSink: null for the default audio output
+    private Element createPlaybin(Element audioSink) {
+        var playbin = ElementFactory.make("playbin", "Subsound");
+        if (Stream.of(playbin).anyMatch(Objects::isNull)) {
+            GLib.printerr("playbin element could not be created. Exiting.\n");
+            throw new RuntimeException("playbin element could not be created. Exiting.");
+        }
+        // playbin: we only want to enable audio:
+        // https://gstreamer.freedesktop.org/documentation/playback/playsink.html?gi-language=c#GstPlayFlags
+        // MacOS: needs soft-volume flag
+        int flags = GST_PLAY_FLAG_AUDIO;
+        if (OsUtil.getOSPlatform() == MACOS) {
+            flags = flags | GST_PLAY_FLAG_SOFT_VOLUME;
+        }
+        playbin.set("flags", flags, null);
+        if (audioSink != null) {
+            playbin.set("audio-sink", audioSink, null);
+        }
+        // only the active pipeline reports, the standby is swapped in later
+        playbin.connect("about-to-finish", (Runnable) () -> {
+            if (playbin.equals(this.playbinEl)) {
+                this.onAboutToFinish();
+            }
+        });
+        playbin.onNotify("volume", params -> {
+            if (playbin.equals(this.playbinEl)) {
+                this.onVolumeChanged();
+            }
+        });
+        playbin.onNotify("mute", params -> {
+            if (playbin.equals(this.playbinEl)) {
+                this.onMuteChanged();
+            }
+        });
+        return playbin;
+    }
+
+    // https://gstreamer.freedesktop.org/documentation/additional/design/playback-gapless.html?gi-language=c
+    // Emitted on the streaming thread when playbin has queued the last of the current uri. Setting "uri" here makes
+    // playbin continue with it on the running pipeline: no READY/PLAYING round trip, the audio sink stays open and
+    // there is no silence between the tracks.
+    private void onAboutToFinish() {
+        var next = this.nextSource;
+        if (next == null) {
+            // nothing queued, the pipeline posts EOS and the queue loads the next song the slow way
+            return;
+        }
+        this.nextSource = null;
+        this.advancingTo = next;
+        log.debug("Player: about-to-finish: continue with src={}", next.uri());
+        this.playbinEl.set("uri", toPlaybinUri(next.uri()), null);
+    }
+
+    // the next source started playing, the pipeline stayed in PLAYING so no state change tells us
+    private void onAdvanced(AudioSource next) {
+        // the standby was prerolled for this source, which is now playing on the active pipeline
+        takeStandby().ifPresent(PlaybinPlayer::dispose);
+        this.currentUri = next.uri();
+        this.duration = next.estimatedDuration();
+        this.position = Duration.ZERO;
+        this.playbackStartedAtMillis = System.currentTimeMillis();
+        for (OnSourceAdvanced listener : advancedListeners) {
+            listener.onAdvanced(next);
+        }
+        this.notifyState();
+    }
+
+    private static String toPlaybinUri(URI uri) {
+        var fileUri = uri.toString();
+        if ("file".equals(uri.getScheme())) {
+            fileUri = fileUri.replace("file:/", "file:///");
+        }
+        return fileUri;
+    }
+
     private boolean busCall(Bus bus, Message msg) {
+        if (!bus.equals(this.bus)) {
+            // the standby pipeline, prerolling in the background
+            return true;
+        }
         Set<MessageType> msgTypes = msg.readType();
         var msgType = msgTypes.iterator().next();
         if (msgTypes.contains(MessageType.EOS)) {
@@ -203,10 +480,18 @@ public class PlaybinPlayer implements Player {
 
             loop.quit();
         } else if (msgTypes.contains(MessageType.ASYNC_DONE)) {
+            if (this.onResumePrerolled()) {
+                return true;
+            }
             // if the seek operation succeeded.
             // Flushing seeks will trigger a preroll, which will emit MessageType.ASYNC_DONE
             this.onPositionChanged();
         } else if (msgTypes.contains(MessageType.STREAM_START)) {
+            var advanced = this.advancingTo;
+            if (advanced != null) {
+                this.advancingTo = null;
+                this.onAdvanced(advanced);
+            }
             this.onDurationChanged();
             this.onPositionChanged();
         } else if (msgTypes.contains(MessageType.STATE_CHANGED)) {
@@ -259,16 +544,51 @@ public class PlaybinPlayer implements Player {
     }
 
     private void onPositionChanged() {
+        queryPosition().ifPresent(this::setPosition);
+    }
+
+    private Optional<Duration> queryPosition() {
         var dur = new Out<Long>();
         var success = playbinEl.queryPosition(Format.TIME, dur);
-        if (success) {
-            Long nanos = dur.get();
-            if (nanos == null) {
+        if (!success) {
+            return Optional.empty();
+        }
+        Long nanos = dur.get();
+        if (nanos == null) {
+            return Optional.empty();
+        }
+        // normalize to millis:
+        return Optional.of(Duration.ofMillis(Duration.ofNanos(nanos).toMillis()));
+    }
+
+    // starts, stops or changes the rate of the position timer to match the player state and the subscribers
+    private void reschedulePositionUpdates() {
+        Optional<Duration> wanted = playerStates != PLAYING || quitState.get()
+                ? Optional.empty()
+                : positionSubscribers.stream().map(rate -> rate.interval).min(Comparator.naturalOrder());
+        synchronized (positionTimerLock) {
+            if (wanted.equals(Optional.ofNullable(this.positionTimerInterval))) {
+                return;
+            }
+            if (this.positionTimer != null) {
+                this.positionTimer.destroy();
+                this.positionTimer = null;
+                this.positionTimerInterval = null;
+            }
+            if (wanted.isEmpty()) {
+                log.debug("Player: position updates stopped");
                 return;
             }
-            // normalize to millis:
-            var pos = Duration.ofMillis(Duration.ofNanos(nanos).toMillis());
-            this.setPosition(pos);
+            var timer = GLib.timeoutSourceNew((int) wanted.get().toMillis());
+            timer.setCallback(() -> {
+                this.onPositionChanged();
+                // G_SOURCE_CONTINUE
+                return true;
+            });
+            timer.attach(playerContext);
+            this.positionTimer = timer;
+            this.positionTimerInterval = wanted.get();
+            log.debug("Player: position updates every {}ms", wanted.get().toMillis());
         }
     }
 
@@ -318,6 +638,7 @@ public class PlaybinPlayer implements Player {
 
     private void setPlayerState(PlayerStates playerStates) {
         this.playerStates = playerStates;
+        this.reschedulePositionUpdates();
     }
 
     public boolean isPlaying() {
@@ -329,6 +650,9 @@ public class PlaybinPlayer implements Player {
     }
 
     public void play() {
+        if (this.resumeFromIdle()) {
+            return;
+        }
         if (pipelineState == State.PLAYING) {
             return;
         }
@@ -339,12 +663,119 @@ public class PlaybinPlayer implements Player {
     }
 
     public void pause() {
-        if (pipelineState == State.PAUSED) {
+        this.resumePlaying = false;
+        if (pipelineState == State.PAUSED || this.isTornDown()) {
             return;
         }
         playbinEl.setState(State.PAUSED);
     }
 
+    /**
+     * How long the player stays paused before the pipeline goes to NULL, releasing its buffers and the audio device.
+     * The source and position are kept, and {@link #play()} rebuilds the pipeline. Zero disables it.
+     */
+    public void setIdleTeardown(Duration idleTeardownAfter) {
+        this.idleTeardownAfter = idleTeardownAfter.isZero() ? null : idleTeardownAfter;
+        this.rescheduleIdleTeardown();
+    }
+
+    /**
+     * @return the time from play() to PLAYING for a pipeline that was torn down while paused
+     */
+    public Histogram resumeLatencyMillis() {
+        return resumeLatencyMillis;
+    }
+
+    private boolean isTornDown() {
+        synchronized (idleLock) {
+            return tornDownAt != null;
+        }
+    }
+
+    // starts the idle timer while PAUSED, and stops it otherwise
+    private void rescheduleIdleTeardown() {
+        var after = this.idleTeardownAfter;
+        synchronized (idleLock) {
+            if (this.idleTimer != null) {
+                this.idleTimer.destroy();
+                this.idleTimer = null;
+            }
+            if (after == null || pipelineState != State.PAUSED || tornDownAt != null || quitState.get()) {
+                return;
+            }
+            var timer = GLib.timeoutSourceNew((int) Math.min(Integer.MAX_VALUE, after.toMillis()));
+            timer.setCallback(() -> {
+                this.tearDownIdle();
+                // G_SOURCE_REMOVE
+                return false;
+            });
+            timer.attach(playerContext);
+            this.idleTimer = timer;
+        }
+    }
+
+    private void tearDownIdle() {
+        Duration at;
+        synchronized (idleLock) {
+            this.idleTimer = null;
+            if (pipelineState != State.PAUSED || tornDownAt != null) {
+                return;
+            }
+            at = queryPosition().or(() -> Optional.ofNullable(this.position)).orElse(Duration.ZERO);
+            this.tornDownAt = at;
+        }
+        this.position = at;
+        // the standby holds decoders too, it is prerolled again on resume
+        takeStandby().ifPresent(PlaybinPlayer::dispose);
+        this.playbinEl.setState(State.NULL);
+        // no state change is published: to the app the player is still paused, at the same position
+        this.pipelineState = State.NULL;
+        log.info("Player: paused for {}, pipeline torn down at position={}ms", this.idleTeardownAfter, at.toMillis());
+    }
+
+    // rebuilds a pipeline torn down by tearDownIdle(), and continues where it was
+    private boolean resumeFromIdle() {
+        Duration at;
+        synchronized (idleLock) {
+            at = this.tornDownAt;
+            if (at == null) {
+                return false;
+            }
+            this.tornDownAt = null;
+            // a seek needs the pipeline prerolled: its ASYNC_DONE seeks and starts playing, play() does not wait for it
+            this.resumeAt = at;
+        }
+        this.resumeStartedNanos = System.nanoTime();
+        this.resumePlaying = true;
+        this.playbinEl.setState(State.PAUSED);
+        var next = this.nextSource;
+        if (next != null) {
+            this.prerollStandby(next);
+        }
+        return true;
+    }
+
+    // on the bus: the pipeline rebuilt by resumeFromIdle() is prerolled, continue where it was torn down.
+    // Prerolled in PAUSED so nothing is heard from the start of the song before the seek
+    private boolean onResumePrerolled() {
+        Duration at;
+        synchronized (idleLock) {
+            at = this.resumeAt;
+            if (at == null) {
+                return false;
+            }
+            this.resumeAt = null;
+        }
+        log.debug("Player: resume: prerolled, seeking to position={}ms", at.toMillis());
+        this.playbinEl.seekSimple(Format.TIME, Set.of(SeekFlags.ACCURATE, SeekFlags.FLUSH), at.toNanos());
+        if (this.resumePlaying) {
+            this.playbinEl.setState(State.PLAYING);
+        } else {
+            this.resumeStartedNanos = 0;
+        }
+        return true;
+    }
+
     private void seekToStart() {
         //playbin.seek(1.0, Format.TIME, SeekFlags.FLUSH, SeekType.SET, 0, SeekType.NONE, 0);
         playbinEl.seekSimple(Format.TIME, SeekFlags.FLUSH, 0);
@@ -365,13 +796,32 @@ public class PlaybinPlayer implements Player {
     public void seekTo(Duration position) {
         //playbin.seek(1.0, Format.TIME, SeekFlags.FLUSH, SeekType.SET, 0, SeekType.NONE, 0);
         this.playbackStartedAtMillis = 0;
+        synchronized (idleLock) {
+            if (this.tornDownAt != null) {
+                // there is no pipeline to seek, resume there instead
+                this.tornDownAt = position;
+                this.position = position;
+                this.notifyState();
+                return;
+            }
+            if (this.resumeAt != null) {
+                // still prerolling after a resume, it seeks there once it is prerolled
+                this.resumeAt = position;
+                this.position = position;
+                this.notifyState();
+                return;
+            }
+        }
         playbinEl.seekSimple(Format.TIME, Set.of(SeekFlags.ACCURATE, SeekFlags.FLUSH), position.toNanos());
+        // while paused there is no position update to pick it up
+        this.position = position;
         this.notifyState();
     }
 
     private void onPipelineStateChanged() {
         var player = playbinEl;
-        if (player == null) {
+        if (player == null || this.isTornDown()) {
+            // torn down: the state changes on the way to NULL are not published
             return;
         }
         Out<State> stateOut = new Out<>();
@@ -408,7 +858,21 @@ public class PlaybinPlayer implements Player {
             case PAUSED -> PAUSED;
             case PLAYING -> PLAYING;
         };
+        var prevPlayerState = this.playerStates;
         this.playerStates = nextPlayerState;
+        this.reschedulePositionUpdates();
+        this.rescheduleIdleTeardown();
+        long resumeStarted = this.resumeStartedNanos;
+        if (nextPlayerState == PLAYING && resumeStarted != 0) {
+            this.resumeStartedNanos = 0;
+            long millis = Duration.ofNanos(System.nanoTime() - resumeStarted).toMillis();
+            resumeLatencyMillis.record(millis);
+            log.info("Player: resumed a torn down pipeline in {}ms, {}", millis, resumeLatencyMillis.summary("ms"));
+        }
+        if (prevPlayerState == PLAYING && nextPlayerState == PAUSED) {
+            // no timer while paused, publish where it stopped
+            this.onPositionChanged();
+        }
         if (nextPlayerState == PLAYING && this.playbackStartedAtMillis == 0) {
             this.playbackStartedAtMillis = System.currentTimeMillis();
         }
@@ -420,6 +884,11 @@ public class PlaybinPlayer implements Player {
     }
 
     public PlaybinPlayer(URI initialFile) {
+        this(initialFile, null);
+    }
+
+    // audioSinkFactory: null for the default audio output, tests pass fakesinks. Called once per pipeline
+    PlaybinPlayer(URI initialFile, Supplier<Element> audioSinkFactory) {
         // Initialisation
         // Init should be done from Main function
         //Gst.init(new Out<>(new String[]{}));
@@ -427,28 +896,15 @@ public class PlaybinPlayer implements Player {
 
         playerContext = new MainContext();
         loop = new MainLoop(playerContext, false);
+        this.audioSinkFactory = audioSinkFactory;
 
         // Create gstreamer elements
-        playbinEl = ElementFactory.make("playbin", "Subsound");
-        if (Stream.of(playbinEl).anyMatch(Objects::isNull)) {
-            GLib.printerr("playbin element could not be created. Exiting.\n");
-            throw new RuntimeException("playbin element could not be created. Exiting.");
-        }
-        // playbin: we only want to enable audio:
-        // https://gstreamer.freedesktop.org/documentation/playback/playsink.html?gi-language=c#GstPlayFlags
-        // MacOS: needs soft-volume flag
-        int flags = GST_PLAY_FLAG_AUDIO;
-        if (OsUtil.getOSPlatform() == MACOS) {
-            flags = flags | GST_PLAY_FLAG_SOFT_VOLUME;
-        }
-        playbinEl.set("flags", flags, null);
+        playbinEl = createPlaybin();
 
         // We add a message handler
         bus = playbinEl.getBus();
-        busWatchId = bus.addWatch(0, this::busCall);
+        bus.addWatch(0, this::busCall);
 
-        playbinEl.onNotify("volume", params -> this.onVolumeChanged());
-        playbinEl.onNotify("mute", params -> this.onMuteChanged());
         // make sure we update the values on construction:
         this.onVolumeChanged();
         this.onMuteChanged();
@@ -465,29 +921,6 @@ public class PlaybinPlayer implements Player {
         }, "player-main-loop");
         playerLoopThread.start();
 
-        this.positionPublisher = Thread.startVirtualThread(() -> {
-            try {
-                while (true) {
-                    if (!playerLoopThread.isAlive()) {
-                        log.info("positionPublisher: playerLoopThread died, exiting");
-                        return;
-                    }
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        throw new RuntimeException(e);
-                    }
-                    if (playerStates != PLAYING) {
-                        continue;
-                    }
-                    // update the position
-                    this.onPositionChanged();
-                }
-            } finally {
-                log.info("positionPublisher: exited");
-            }
-        });
-
         // We set the input filename to the source element
         if (initialFile != null) {
             //var fileUri = initialFile.toString();
@@ -498,7 +931,8 @@ public class PlaybinPlayer implements Player {
     }
 
     public Optional<Duration> getCurrentPosition() {
-        return Optional.ofNullable(this.position);
+        // asked for between the published updates, e.g. by MPRIS clients
+        return queryPosition().or(() -> Optional.ofNullable(this.position));
     }
 
     public double getVolume() {
@@ -537,6 +971,9 @@ public class PlaybinPlayer implements Player {
             // quit has already been called
             return;
         }
+        takeStandby().ifPresent(PlaybinPlayer::dispose);
+        this.reschedulePositionUpdates();
+        this.rescheduleIdleTeardown();
         this.playbinEl.setState(State.NULL);
         if (loop.isRunning()) {
             loop.quit();
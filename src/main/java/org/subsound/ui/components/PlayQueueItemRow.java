@@ -13,6 +13,8 @@ import org.gnome.gtk.Label;
 import org.gnome.gtk.ListItem;
 import org.gnome.pango.EllipsizeMode;
 import org.javagi.gobject.SignalConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -24,6 +26,7 @@ import static org.gnome.gtk.Orientation.HORIZONTAL;
 import static org.gnome.gtk.Orientation.VERTICAL;
 
 public class PlayQueueItemRow extends Box {
+    private static final Logger log = LoggerFactory.getLogger(PlayQueueItemRow.class);
     private static final int ALBUM_ART_SIZE = 40;
 
     private final AppManager appManager;
@@ -112,22 +115,50 @@ public class PlayQueueItemRow extends Box {
 
     public void bind(GQueueItem item, ListItem listItem) {
         this.gQueueItem = item;
-        this.gSongInfo = item.getSongInfo();
-        this.songInfo = item.getSongInfo().getSongInfo();
-
-        // Listen for IS_CURRENT changes
-        this.isCurrentSignal = this.gSongInfo.onNotify(
-                GSongInfo.Signal.IS_PLAYING.getId(),
-                _ -> updateStyling()
-        );
 
         // Listen for position changes
         this.positionSignal = listItem.onNotify("position", _ -> {
             int pos = listItem.getPosition();
             this.index.set(pos);
         });
-
         this.index.set(listItem.getPosition());
+
+        var loaded = item.getLoadedSongInfo();
+        if (loaded.isPresent()) {
+            bindSong(loaded.get());
+            return;
+        }
+        // a restored entry loads its song the first time it is shown, which can take a request to the server
+        this.titleLabel.setLabel("");
+        this.artistLabel.setLabel("");
+        this.durationLabel.setLabel("");
+        this.albumArt.update(Optional.empty());
+        item.loadSongInfoAsync(Utils.ASYNC_EXECUTOR)
+                .thenAccept(song -> Utils.runOnMainThread(() -> {
+                    // the row may show another entry by now
+                    if (this.gQueueItem == item) {
+                        bindSong(song);
+                    }
+                }))
+                .exceptionally(e -> {
+                    log.warn("failed to load queued song: {}", item.getId(), e);
+                    return null;
+                });
+    }
+
+    private void bindSong(GSongInfo song) {
+        if (this.gSongInfo != null) {
+            return;
+        }
+        this.gSongInfo = song;
+        this.songInfo = song.getSongInfo();
+
+        // Listen for IS_CURRENT changes
+        this.isCurrentSignal = this.gSongInfo.onNotify(
+                GSongInfo.Signal.IS_PLAYING.getId(),
+                _ -> updateStyling()
+        );
+
         updateView();
         updateStyling();
     }
@@ -2,8 +2,8 @@ package org.subsound.ui.components;
 
 import org.subsound.app.state.AppManager;
 import org.subsound.ui.models.GQueueItem;
+import org.subsound.ui.models.GQueueListModel;
 import org.subsound.utils.Utils;
-import org.gnome.gio.ListStore;
 import org.gnome.gtk.Box;
 import org.gnome.gtk.Label;
 import org.gnome.gtk.ListItem;
@@ -23,14 +23,14 @@ public class PlayQueuePopover extends Popover {
     private final AppManager appManager;
     private final ListView queueListView;
     private final ScrolledWindow queueScrolled;
-    private final ListStore<GQueueItem> listModel;
+    private final GQueueListModel listModel;
     private final SingleSelection<GQueueItem> selectionModel;
     private final SignalListItemFactory factory;
     private final Box emptyStateBox;
 
     public PlayQueuePopover(AppManager appManager, IntConsumer onPlayPosition) {
         super();
-        this.listModel = appManager.getPlayQueueListStore();
+        this.listModel = appManager.getPlayQueueListModel();
         this.appManager = appManager;
 
         factory = new SignalListItemFactory();
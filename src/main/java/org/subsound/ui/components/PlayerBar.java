@@ -1,5 +1,6 @@
 package org.subsound.ui.components;
 
+import io.reactivex.rxjava3.disposables.Disposable;
 import org.gnome.gtk.ActionBar;
 import org.gnome.gtk.Align;
 import org.gnome.gtk.Box;
@@ -15,11 +16,13 @@ import org.subsound.app.state.AppManager;
 import org.subsound.app.state.AppManager.AppState;
 import org.subsound.app.state.AppManager.NowPlaying;
 import org.subsound.app.state.PlayerAction;
+import org.subsound.app.state.StateSlices.Slice;
 import org.subsound.integration.ServerClient.SongInfo;
 import org.subsound.sound.PlaybinPlayer;
 import org.subsound.utils.Utils;
 
 import java.time.Duration;
+import java.util.EnumSet;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -57,6 +60,8 @@ public class PlayerBar extends Box implements AppManager.StateListener {
     private final Button shuffleModeButton;
     private final Button repeatModeButton;
     private final PlayerScrubberV2 playerScrubber;
+    // main thread only
+    private Disposable positionUpdates = Disposable.disposed();
     private final MenuButton queueButton;
     private final PlayQueuePopover queuePopover;
     private final VolumeButton volumeButton;
@@ -81,8 +86,15 @@ public class PlayerBar extends Box implements AppManager.StateListener {
     public PlayerBar(AppManager appManager) {
         super(Orientation.VERTICAL, 2);
         this.appManager = appManager;
-        this.onMap(() -> this.appManager.addOnStateChanged(this));
-        this.onUnmap(() -> this.appManager.removeOnStateChanged(this));
+        this.onMap(() -> {
+            this.appManager.addOnStateChanged(EnumSet.complementOf(EnumSet.of(Slice.NETWORK, Slice.SYNC)), this);
+            // the scrubber only needs a fast position while it is on screen
+            this.positionUpdates = this.appManager.subscribePosition(PlaybinPlayer.PositionRate.SCRUBBER);
+        });
+        this.onUnmap(() -> {
+            this.appManager.removeOnStateChanged(this);
+            this.positionUpdates.dispose();
+        });
         this.currentState = new AtomicReference<>(this.appManager.getState());
 
         this.starButton = new StarButton(
@@ -26,10 +26,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.subsound.app.state.AppManager;
 import org.subsound.app.state.PlayerAction;
+import org.subsound.app.state.PlaylistsStore;
 import org.subsound.app.state.PlaylistsStore.GPlaylist;
 import org.subsound.integration.ServerClient;
 import org.subsound.integration.ServerClient.PlaylistKind;
 import org.subsound.integration.ServerClient.PlaylistSimple;
+import org.subsound.persistence.database.DownloadQueueItem;
+import org.subsound.persistence.database.Page;
 import org.subsound.ui.models.GSongInfo.GSongStore;
 import org.subsound.ui.views.PlaylistListViewV2;
 import org.subsound.ui.views.StarredListView;
@@ -37,6 +40,9 @@ import org.subsound.utils.Utils;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import static org.gnome.gtk.Align.CENTER;
 import static org.gnome.gtk.Align.FILL;
@@ -48,6 +54,7 @@ import static org.subsound.utils.Utils.doAsync;
 
 public class PlaylistsListView extends Box {
     private static final Logger log = LoggerFactory.getLogger(PlaylistsListView.class);
+    private static final int DOWNLOADS_PAGE_SIZE = 100;
 
     private final AppManager appManager;
     private final ListStore<GPlaylist> listModel;
@@ -62,6 +69,9 @@ public class PlaylistsListView extends Box {
     private final SingleSelection<GPlaylist> selectionModel;
     private final GSongStore songStore;
     private int currentIndex = 0;
+    // the rest of the downloads list, empty unless the downloads playlist is shown
+    private volatile Optional<Supplier<Page<DownloadQueueItem>>> downloadsNextPage = Optional.empty();
+    private final AtomicBoolean loadingDownloads = new AtomicBoolean(false);
 
     public PlaylistsListView(AppManager appManager) {
         super(Orientation.VERTICAL, 0);
@@ -82,6 +92,7 @@ public class PlaylistsListView extends Box {
         this.playlistListView = new PlaylistListViewV2(appManager, appManager::navigateTo);
         this.playlistListView.setHalign(Align.FILL);
         this.playlistListView.setValign(Align.FILL);
+        this.playlistListView.setOnScrolledNearEnd(this::loadMoreDownloads);
         this.playlistPage = NavigationPage.builder()
                 .setTag("page-2")
                 .setChild(this.playlistListView)
@@ -242,16 +253,14 @@ public class PlaylistsListView extends Box {
     }
 
     private void setSelectedPlaylist(PlaylistSimple playlist) {
+        this.downloadsNextPage = Optional.empty();
         doAsync(() -> switch (playlist.kind()) {
             case NORMAL -> Optional.of(this.appManager.useClient(cl -> cl.getPlaylist(playlist.id())).songs());
             case STARRED -> Optional.<List<ServerClient.SongInfo>>empty();
             case DOWNLOADED -> {
-                var downloads = this.appManager.getDownloadQueue();
-                var futures = downloads.stream()
-                        .map(d -> Utils.doAsync(() -> this.appManager.useClient(cl -> cl.getSong(d.songId()))))
-                        .toList();
-                var list = futures.stream().map(java.util.concurrent.CompletableFuture::join).toList();
-                yield Optional.of(list);
+                var page = this.appManager.getDownloadQueuePage(DOWNLOADS_PAGE_SIZE);
+                this.downloadsNextPage = page.next();
+                yield Optional.of(resolveSongs(page.items()));
             }
         }).thenApply(data -> {
             if (playlist.kind() == PlaylistKind.STARRED) {
@@ -277,6 +286,34 @@ public class PlaylistsListView extends Box {
         });
     }
 
+    private void loadMoreDownloads() {
+        var next = this.downloadsNextPage;
+        if (next.isEmpty() || !this.loadingDownloads.compareAndSet(false, true)) {
+            return;
+        }
+        doAsync(() -> next.get().get()).thenAccept(page -> {
+            var songs = resolveSongs(page.items()).stream().map(songStore::newInstance).toList();
+            if (this.downloadsNextPage != next) {
+                // another playlist was selected while the page was loading
+                return;
+            }
+            this.downloadsNextPage = page.next();
+            this.playlistListView.appendSongs(PlaylistsStore.DOWNLOADED_ID, songs);
+        }).whenComplete((_, err) -> {
+            this.loadingDownloads.set(false);
+            if (err != null) {
+                log.warn("loadMoreDownloads: failed to load the next page", err);
+            }
+        });
+    }
+
+    private List<ServerClient.SongInfo> resolveSongs(List<DownloadQueueItem> downloads) {
+        var futures = downloads.stream()
+                .map(d -> Utils.doAsync(() -> this.appManager.useClient(cl -> cl.getSong(d.songId()))))
+                .toList();
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
     private void showNewPlaylistDialog() {
         var entry = Entry.builder()
                 .setPlaceholderText("Playlist name")
@@ -18,11 +18,14 @@ import org.subsound.app.state.AppManager;
 import org.subsound.app.state.NetworkMonitoring.NetworkState;
 import org.subsound.app.state.NetworkMonitoring.NetworkStatus;
 import org.subsound.app.state.PlayerAction;
+import org.subsound.app.state.StateSlices.Slice;
 import org.subsound.integration.ServerClient;
+import org.subsound.persistence.database.SyncService.SyncProgress;
 import org.subsound.ui.views.AboutView;
 import org.subsound.utils.Utils;
 
 import java.net.URI;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Executors;
@@ -44,11 +47,13 @@ public class ServerBadge extends Box implements AppManager.StateListener {
     private final ActionRow triggerScanButton;
     private final SwitchRow offlineSwitch;
     private final ActionRow syncButton;
+    private final ActionRow repairButton;
     private final ActionRow configureServerButton;
     private final ActionRow logoutButton;
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private ScheduledFuture<?> pingTask;
     private volatile NetworkStatus currentNetworkStatus = NetworkStatus.ONLINE;
+    private volatile Optional<SyncProgress> currentSync = Optional.empty();
     private final AtomicBoolean updatingSwitch = new AtomicBoolean(false);
 
     public ServerBadge(
@@ -161,6 +166,32 @@ public class ServerBadge extends Box implements AppManager.StateListener {
             );
         });
 
+        // Full resync, for when the incremental sync got the local library wrong
+        this.repairButton = ActionRow.builder()
+                .setTitle("Repair library")
+                .setActivatable(true)
+                .setTooltipText("Fetch all metadata from the server again")
+                .build();
+        this.repairButton.addCssClass(Classes.flat.className());
+        this.repairButton.addCssClass(Classes.heading.className());
+        var repairIcon = Image.fromIconName("system-run-symbolic");
+        repairIcon.setPixelSize(16);
+        repairIcon.setSizeRequest(32,-1);
+        repairIcon.setHalign(Align.CENTER);
+        repairIcon.setValign(Align.CENTER);
+        repairButton.addPrefix(repairIcon);
+        this.repairButton.onActivated(() -> {
+            onClose.run();
+            syncButton.setSensitive(false);
+            repairButton.setSensitive(false);
+            appManager.handleAction(new PlayerAction.SyncDatabase(true)).whenComplete((v, err) ->
+                    Utils.runOnMainThread(() -> {
+                        syncButton.setSensitive(currentNetworkStatus != NetworkStatus.OFFLINE);
+                        repairButton.setSensitive(currentNetworkStatus != NetworkStatus.OFFLINE);
+                    })
+            );
+        });
+
         this.configureServerButton = ActionRow.builder()
                 .setTitle("Configure server")
                 .setActivatable(true)
@@ -216,6 +247,7 @@ public class ServerBadge extends Box implements AppManager.StateListener {
         list.append(offlineSwitch);
         list.append(triggerScanButton);
         list.append(syncButton);
+        list.append(repairButton);
         list.append(configureServerButton);
         list.append(aboutButton);
         list.append(logoutButton);
@@ -229,7 +261,7 @@ public class ServerBadge extends Box implements AppManager.StateListener {
 
         this.pingTask = scheduler.scheduleWithFixedDelay(this::checkConnectivity, 0, 30, TimeUnit.SECONDS);
 
-        this.appManager.addOnStateChanged(this);
+        this.appManager.addOnStateChanged(EnumSet.of(Slice.NETWORK, Slice.SYNC), this);
         var initialNetworkState = this.appManager.getState().networkState();
         this.currentNetworkStatus = initialNetworkState.status();
         updateNetworkStatus(initialNetworkState);
@@ -347,6 +379,25 @@ public class ServerBadge extends Box implements AppManager.StateListener {
             this.currentNetworkStatus = networkState.status();
             Utils.runOnMainThread(() -> updateNetworkStatus(networkState));
         }
+        var sync = state.sync();
+        if (!sync.equals(this.currentSync)) {
+            this.currentSync = sync;
+            Utils.runOnMainThread(() -> updateSyncProgress(sync));
+        }
+    }
+
+    private void updateSyncProgress(Optional<SyncProgress> sync) {
+        sync.ifPresentOrElse(
+                progress -> {
+                    var limiter = progress.limiter();
+                    syncButton.setSubtitle("Syncing %d/%d albums · %d/%d parallel requests · %dms".formatted(
+                            progress.albumsDone(), progress.albumsTotal(),
+                            limiter.limit(), limiter.maxLimit(),
+                            limiter.latencyMillis()
+                    ));
+                },
+                () -> syncButton.setSubtitle("")
+        );
     }
 
     private void updateNetworkStatus(NetworkState networkState) {
@@ -358,10 +409,12 @@ public class ServerBadge extends Box implements AppManager.StateListener {
                 triggerScanButton.setSensitive(false);
                 syncButton.setSensitive(false);
                 syncButton.setTooltipText("Must be online to sync library");
+                repairButton.setSensitive(false);
             } else {
                 triggerScanButton.setSensitive(true);
                 syncButton.setSensitive(true);
                 syncButton.setTooltipText("Sync library to enable offline mode");
+                repairButton.setSensitive(true);
             }
         } finally {
             updatingSwitch.set(false);
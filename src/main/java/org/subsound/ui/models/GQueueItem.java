@@ -7,6 +7,10 @@ import org.javagi.gobject.annotations.Property;
 import org.javagi.gobject.types.Types;
 
 import java.lang.foreign.MemorySegment;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 public class GQueueItem extends GObject {
     public static final Type gtype = Types.register(GQueueItem.class);
@@ -16,11 +20,14 @@ public class GQueueItem extends GObject {
         AUTOMATIC,
     }
 
+    private long entryId;
     private String queueItemId;
-    private GSongInfo gSongInfo;
+    private String songId;
+    // loaded on first use for entries restored from the database, see newLazy()
+    private volatile GSongInfo gSongInfo;
+    private Function<String, GSongInfo> songLoader;
+    private double sortKey;      // Unshuffled order in the persisted queue
     private QueueKind queueKind = QueueKind.AUTOMATIC;
-    private int originalOrder;   // Position when added to queue (for unshuffle)
-    private int shuffleOrder;    // Random number for shuffle sorting
 
     public static Type getType() {
         return gtype;
@@ -31,39 +38,64 @@ public class GQueueItem extends GObject {
     }
 
     public GSongInfo getSongInfo() {
-        return gSongInfo;
+        var song = this.gSongInfo;
+        if (song != null) {
+            return song;
+        }
+        synchronized (this) {
+            if (this.gSongInfo == null) {
+                this.gSongInfo = this.songLoader.apply(this.songId);
+                this.songLoader = null;
+            }
+            return this.gSongInfo;
+        }
     }
+    /**
+     * @return the song if it is loaded already, without loading it
+     */
+    public Optional<GSongInfo> getLoadedSongInfo() {
+        return Optional.ofNullable(this.gSongInfo);
+    }
+
+    /**
+     * Loads the song on {@code executor} unless it is loaded already. For the main thread, where
+     * {@link #getSongInfo()} could wait for the server on a song that is not in the local library.
+     */
+    public CompletableFuture<GSongInfo> loadSongInfoAsync(Executor executor) {
+        var song = this.gSongInfo;
+        if (song != null) {
+            return CompletableFuture.completedFuture(song);
+        }
+        return CompletableFuture.supplyAsync(this::getSongInfo, executor);
+    }
+
     public SongInfo songInfo() {
-        return this.gSongInfo.getSongInfo();
+        return this.getSongInfo().getSongInfo();
     }
 
     @Property
     public String getId() {
-        return gSongInfo != null ? gSongInfo.getSongInfo().id() : null;
+        return songId;
     }
 
     public String getQueueItemId() {
         return queueItemId;
     }
 
-    public QueueKind queueKind() {
-        return queueKind;
-    }
-
-    public int getOriginalOrder() {
-        return originalOrder;
+    public long getEntryId() {
+        return entryId;
     }
 
-    public void setOriginalOrder(int order) {
-        this.originalOrder = order;
+    public double getSortKey() {
+        return sortKey;
     }
 
-    public int getShuffleOrder() {
-        return shuffleOrder;
+    public void setSortKey(double sortKey) {
+        this.sortKey = sortKey;
     }
 
-    public void setShuffleOrder(int order) {
-        this.shuffleOrder = order;
+    public QueueKind queueKind() {
+        return queueKind;
     }
 
     @Property
@@ -72,12 +104,29 @@ public class GQueueItem extends GObject {
         return queueKind == QueueKind.USER_ADDED;
     }
 
-    public static GQueueItem newInstance(String itemId, GSongInfo gSongInfo, QueueKind queueKind, int originalOrder) {
+    public static GQueueItem newInstance(long entryId, String itemId, GSongInfo gSongInfo, QueueKind queueKind, double sortKey) {
         GQueueItem instance = GObject.newInstance(gtype);
+        instance.entryId = entryId;
         instance.queueItemId = itemId;
+        instance.songId = gSongInfo.getId();
         instance.gSongInfo = gSongInfo;
         instance.queueKind = queueKind;
-        instance.originalOrder = originalOrder;
+        instance.sortKey = sortKey;
+        return instance;
+    }
+
+    /**
+     * An entry whose song is loaded by {@code songLoader} the first time it is used, e.g. when its row is shown.
+     * Restoring a long queue then only creates the entries.
+     */
+    public static GQueueItem newLazy(long entryId, String itemId, String songId, QueueKind queueKind, double sortKey, Function<String, GSongInfo> songLoader) {
+        GQueueItem instance = GObject.newInstance(gtype);
+        instance.entryId = entryId;
+        instance.queueItemId = itemId;
+        instance.songId = songId;
+        instance.songLoader = songLoader;
+        instance.queueKind = queueKind;
+        instance.sortKey = sortKey;
         return instance;
     }
 }
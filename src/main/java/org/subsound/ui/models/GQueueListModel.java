@@ -0,0 +1,223 @@
+package org.subsound.ui.models;
+
+import org.gnome.gio.ListModel;
+import org.gnome.glib.Type;
+import org.gnome.gobject.GObject;
+import org.javagi.gobject.types.Types;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The play queue as a {@link ListModel}. The entries are kept in their unshuffled order, and while shuffled an array
+ * of indexes maps each position of the model to its entry. Shuffling and unshuffling only replace that array and emit
+ * {@code items-changed}, the entries themselves are not moved or recreated.
+ * <p>
+ * Emits {@code items-changed} on the thread that changes it, which has to be the main thread while the model is shown.
+ */
+public class GQueueListModel extends GObject implements ListModel<GQueueItem> {
+    public static final Type gtype = Types.register(GQueueListModel.class);
+
+    // in unshuffled order
+    private final ArrayList<GQueueItem> items = new ArrayList<>();
+    // order[position] is the index in items of the entry at position, null when not shuffled
+    private int @Nullable [] order;
+
+    public static Type getType() {
+        return gtype;
+    }
+
+    public GQueueListModel(MemorySegment address) {
+        super(address);
+    }
+
+    public static GQueueListModel newInstance() {
+        return GObject.newInstance(gtype);
+    }
+
+    @Override
+    public Type getItemType() {
+        return GQueueItem.gtype;
+    }
+
+    @Override
+    public synchronized int getNItems() {
+        return items.size();
+    }
+
+    @Override
+    public synchronized @Nullable GQueueItem getItem(int position) {
+        if (position < 0 || position >= items.size()) {
+            return null;
+        }
+        return items.get(itemIndex(position));
+    }
+
+    /**
+     * @return the entry at {@code index} of the unshuffled order, whether shuffled or not
+     */
+    public synchronized @Nullable GQueueItem getUnshuffledItem(int index) {
+        if (index < 0 || index >= items.size()) {
+            return null;
+        }
+        return items.get(index);
+    }
+
+    /**
+     * @return a copy of the order while shuffled, see {@link #setOrder(int[])}, null when not shuffled
+     */
+    public synchronized int @Nullable [] getOrder() {
+        return order == null ? null : order.clone();
+    }
+
+    public synchronized boolean isShuffled() {
+        return order != null;
+    }
+
+    /**
+     * @return the position the entry at {@code position} has when unshuffled, -1 for -1
+     */
+    public synchronized int unshuffledPosition(int position) {
+        if (position < 0) {
+            return -1;
+        }
+        return itemIndex(position);
+    }
+
+    /**
+     * Replaces the entries, unshuffled.
+     */
+    public void setItems(GQueueItem[] newItems) {
+        setItems(newItems, null);
+    }
+
+    /**
+     * Replaces the entries, in {@code newItems} order when unshuffled and in the order of the indexes in
+     * {@code newOrder} when shuffled.
+     */
+    public void setItems(GQueueItem[] newItems, int @Nullable [] newOrder) {
+        if (newOrder != null && newOrder.length != newItems.length) {
+            throw new IllegalArgumentException("order of %d entries for %d entries".formatted(newOrder.length, newItems.length));
+        }
+        int removed;
+        synchronized (this) {
+            removed = items.size();
+            items.clear();
+            items.addAll(Arrays.asList(newItems));
+            order = newOrder;
+        }
+        itemsChanged(0, removed, newItems.length);
+    }
+
+    /**
+     * Shuffles or, with a null {@code newOrder}, unshuffles the entries. Only the positions change.
+     *
+     * @param newOrder from {@link #shuffledOrder(int, int, Random)}
+     */
+    public void setOrder(int @Nullable [] newOrder) {
+        int size;
+        synchronized (this) {
+            if (newOrder == null && order == null) {
+                return;
+            }
+            if (newOrder != null && newOrder.length != items.size()) {
+                throw new IllegalArgumentException("order of %d entries for %d entries".formatted(newOrder.length, items.size()));
+            }
+            order = newOrder;
+            size = items.size();
+        }
+        itemsChanged(0, size, size);
+    }
+
+    /**
+     * Inserts {@code item} at {@code position}. While shuffled it is unshuffled to after the entry before it.
+     */
+    public void insert(int position, GQueueItem item) {
+        synchronized (this) {
+            if (position < 0 || position > items.size()) {
+                throw new IndexOutOfBoundsException("insert at %d of %d".formatted(position, items.size()));
+            }
+            var current = this.order;
+            if (current == null) {
+                items.add(position, item);
+            } else {
+                int index = position == 0 ? 0 : current[position - 1] + 1;
+                items.add(index, item);
+                var next = new int[current.length + 1];
+                for (int i = 0, j = 0; i < next.length; i++) {
+                    if (i == position) {
+                        next[i] = index;
+                    } else {
+                        int idx = current[j++];
+                        next[i] = idx >= index ? idx + 1 : idx;
+                    }
+                }
+                this.order = next;
+            }
+        }
+        itemsChanged(position, 0, 1);
+    }
+
+    public void removeAt(int position) {
+        synchronized (this) {
+            if (position < 0 || position >= items.size()) {
+                throw new IndexOutOfBoundsException("remove at %d of %d".formatted(position, items.size()));
+            }
+            var current = this.order;
+            if (current == null) {
+                items.remove(position);
+            } else {
+                int index = current[position];
+                items.remove(index);
+                var next = new int[current.length - 1];
+                for (int i = 0, j = 0; i < current.length; i++) {
+                    if (i == position) {
+                        continue;
+                    }
+                    int idx = current[i];
+                    next[j++] = idx > index ? idx - 1 : idx;
+                }
+                this.order = next;
+            }
+        }
+        itemsChanged(position, 1, 0);
+    }
+
+    /**
+     * A random order of {@code size} entries, for {@link #setOrder(int[])}.
+     *
+     * @param first the unshuffled position of the entry to put first, e.g. the one that is playing, or -1
+     */
+    public static int[] shuffledOrder(int size, int first, Random random) {
+        var result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = i;
+        }
+        // Fisher-Yates
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        if (first >= 0 && first < size) {
+            for (int i = 0; i < size; i++) {
+                if (result[i] == first) {
+                    result[i] = result[0];
+                    result[0] = first;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    // must hold this: the index in items of the entry at position
+    private int itemIndex(int position) {
+        var current = this.order;
+        return current == null ? position : current[position];
+    }
+}
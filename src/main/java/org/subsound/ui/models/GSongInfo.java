@@ -11,37 +11,78 @@ import org.javagi.gobject.annotations.Property;
 import org.javagi.gobject.types.Types;
 
 import java.lang.foreign.MemorySegment;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static org.subsound.utils.Utils.runOnMainThread;
 
 public class GSongInfo extends GObject {
     public static final Type gtype = Types.register(GSongInfo.class);
 
+    /**
+     * One {@link GSongInfo} per song id, so a song starred or playing in one list shows it in every other list.
+     * Songs are held weakly: java-gi keeps the Java instance of a GObject alive while a ListStore or a widget holds
+     * a reference to it, so a song keeps its identity while it is displayed anywhere, and is evicted afterwards.
+     * The songs used last are also held strongly, so going back to a list just closed finds the same instances.
+     */
     public static class GSongStore {
-        private final ConcurrentHashMap<String, GSongInfo> store = new ConcurrentHashMap<>();
+        public static final int DEFAULT_RECENT_CAPACITY = 2_000;
+
+        private static final class SongRef extends WeakReference<GSongInfo> {
+            private final String songId;
+
+            private SongRef(String songId, GSongInfo song, ReferenceQueue<GSongInfo> queue) {
+                super(song, queue);
+                this.songId = songId;
+            }
+        }
+
+        private final ConcurrentHashMap<String, SongRef> store = new ConcurrentHashMap<>();
+        private final ReferenceQueue<GSongInfo> cleared = new ReferenceQueue<>();
+        // guarded by itself, in access order
+        private final LinkedHashMap<String, GSongInfo> recent;
         private final Function<String, Optional<DownloadQueueItem>> downloadManager;
         private final Function<String, SongInfo> songLoader;
 
         public GSongStore(
                 Function<String, SongInfo> songLoader,
                 Function<String, Optional<DownloadQueueItem>> downloadManager
+        ) {
+            this(songLoader, downloadManager, DEFAULT_RECENT_CAPACITY);
+        }
+
+        public GSongStore(
+                Function<String, SongInfo> songLoader,
+                Function<String, Optional<DownloadQueueItem>> downloadManager,
+                int recentCapacity
         ) {
             this.downloadManager = downloadManager;
             this.songLoader = songLoader;
+            this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, GSongInfo> eldest) {
+                    return size() > recentCapacity;
+                }
+            };
         }
 
         public GSongInfo getSongById(SongIdentifier id) {
-            return store.computeIfAbsent(id.songId(), key -> {
-                var song = songLoader.apply(key);
-                return this.newInstance(song);
-            });
+            var existing = getExisting(id.songId());
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+            return getOrCreate(id.songId(), () -> songLoader.apply(id.songId()));
         }
         public GSongInfo getSongById(String songId) {
             return getSongById(new SongIdentifier(songId));
@@ -49,7 +90,8 @@ public class GSongInfo extends GObject {
 
 
         public Optional<GSongInfo> getExisting(String songId) {
-            return Optional.ofNullable(store.get(songId));
+            expungeCleared();
+            return Optional.ofNullable(store.get(songId)).map(SongRef::get).map(this::touch);
         }
         public GSongInfo get(SongInfo songInfo) {
             return newInstance(songInfo);
@@ -57,23 +99,57 @@ public class GSongInfo extends GObject {
 
         public GSongInfo newInstance(SongInfo value) {
             // TODO: replace with the updated SongInfo data
-            var gsong = store.computeIfAbsent(
-                    value.id(),
-                    key -> {
-                        GSongInfo instance = GObject.newInstance(getType());
-                        instance.songInfo = value;
-                        var songStatus = this.downloadManager.apply(key);
-                        songStatus.ifPresent(item -> instance.setDownloadStateEnum(item.status()));
-                        return instance;
-                    }
-            );
+            var gsong = getOrCreate(value.id(), () -> value);
             gsong.mutate(_ -> value);
             return gsong;
         }
 
+        /**
+         * @return the number of songs in the store, some may be unreachable and not cleared by the GC yet
+         */
         public int size() {
+            expungeCleared();
             return store.size();
         }
+
+        private GSongInfo getOrCreate(String songId, Supplier<SongInfo> loader) {
+            expungeCleared();
+            // the new instance, held strongly until it is in recent
+            var created = new GSongInfo[1];
+            var ref = store.compute(songId, (key, existing) -> {
+                if (existing != null && existing.get() != null) {
+                    return existing;
+                }
+                GSongInfo instance = GObject.newInstance(getType());
+                instance.songInfo = loader.get();
+                var songStatus = this.downloadManager.apply(key);
+                songStatus.ifPresent(item -> instance.setDownloadStateEnum(item.status()));
+                created[0] = instance;
+                return new SongRef(key, instance, cleared);
+            });
+            var song = created[0] != null ? created[0] : ref.get();
+            if (song == null) {
+                // cleared between compute() and get(), the next call creates it again
+                return getOrCreate(songId, loader);
+            }
+            return touch(song);
+        }
+
+        private GSongInfo touch(GSongInfo song) {
+            synchronized (recent) {
+                recent.put(song.getId(), song);
+            }
+            return song;
+        }
+
+        private void expungeCleared() {
+            Reference<? extends GSongInfo> ref;
+            while ((ref = cleared.poll()) != null) {
+                var songRef = (SongRef) ref;
+                // only if it was not replaced by a new instance already
+                store.remove(songRef.songId, songRef);
+            }
+        }
     }
 
     private final AtomicBoolean isPlaying = new AtomicBoolean(false);
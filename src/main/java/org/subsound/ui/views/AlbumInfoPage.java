@@ -10,6 +10,7 @@ import org.subsound.app.state.PlaylistsStore.GPlaylist;
 import org.subsound.integration.ServerClient.ObjectIdentifier.AlbumIdentifier;
 import org.subsound.integration.ServerClient.PlaylistKind;
 import org.subsound.app.state.PlayerAction.PlayAndReplaceQueue;
+import org.subsound.app.state.StateSlices.Slice;
 import org.subsound.integration.ServerClient.SongInfo;
 import org.subsound.persistence.ThumbnailCache;
 import org.subsound.ui.components.AppNavigation;
@@ -57,6 +58,7 @@ import org.javagi.gobject.SignalConnection;
 import org.jspecify.annotations.NonNull;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -676,9 +678,8 @@ public class AlbumInfoPage extends Box implements StateListener {
         this.setHexpand(true);
         this.setVexpand(true);
         this.append(this.scroll);
-        this.appManager.addOnStateChanged(this);
         this.onMap(() -> {
-            this.appManager.addOnStateChanged(this);
+            this.appManager.addOnStateChanged(EnumSet.of(Slice.NETWORK), this);
             this.appManager.getThumbnailCache().loadPixbuf(
                     this.info.album().coverArt().get(),
                     COVER_SIZE
@@ -1,9 +1,9 @@
 package org.subsound.ui.views;
 
 import org.subsound.app.state.AppManager;
-import org.subsound.integration.ServerClient;
-import org.subsound.integration.ServerClient.ListArtists;
+import org.subsound.integration.ServerClient.ArtistEntry;
 import org.subsound.persistence.ThumbnailCache;
+import org.subsound.persistence.database.Page;
 import org.subsound.ui.components.AppNavigation;
 import org.subsound.ui.components.BoxHolder;
 import org.subsound.ui.components.FutureLoader;
@@ -20,10 +20,11 @@ import java.util.function.Consumer;
 
 public class ArtistListLoader extends Box {
     private static final Logger log = LoggerFactory.getLogger(ArtistListLoader.class);
+    private static final int PAGE_SIZE = 200;
     private final ThumbnailCache thumbLoader;
     private final Consumer<AppNavigation.AppRoute> onNavigate;
 
-    private final BoxHolder<FutureLoader<ListArtists, ArtistsListView>> holder;
+    private final BoxHolder<FutureLoader<Page<ArtistEntry>, ArtistsListView>> holder;
     private final AppManager appManager;
 
     public ArtistListLoader(
@@ -48,7 +49,7 @@ public class ArtistListLoader extends Box {
     public synchronized ArtistListLoader refresh() {
         var loadingFuture = doLoad()
                 .thenApply(data -> {
-                    log.info("ArtistListLoader hello size={}", data.list().size());
+                    log.info("ArtistListLoader hello size={}", data.items().size());
                     return data;
                 });
         var loader = new FutureLoader<>(
@@ -56,7 +57,7 @@ public class ArtistListLoader extends Box {
                 artists -> new ArtistsListView(
                         this.thumbLoader,
                         this.appManager,
-                        artists.list(),
+                        artists,
                         albumInfo -> this.onNavigate.accept(new AppNavigation.AppRoute.RouteAlbumInfo(albumInfo.id()))
                 )
         );
@@ -64,7 +65,7 @@ public class ArtistListLoader extends Box {
         return this;
     }
 
-    private CompletableFuture<ListArtists> doLoad() {
-        return Utils.doAsync(() -> this.appManager.useClient(ServerClient::getArtists));
+    private CompletableFuture<Page<ArtistEntry>> doLoad() {
+        return Utils.doAsync(() -> this.appManager.useCachingClient(c -> c.getArtistsPage(PAGE_SIZE)));
     }
 }
@@ -4,6 +4,7 @@ import org.subsound.app.state.AppManager;
 import org.subsound.integration.ServerClient.ArtistAlbumInfo;
 import org.subsound.integration.ServerClient.ArtistEntry;
 import org.subsound.persistence.ThumbnailCache;
+import org.subsound.persistence.database.Page;
 import org.subsound.ui.components.RoundedAlbumArt;
 import org.subsound.utils.Utils;
 import org.gnome.adw.NavigationPage;
@@ -24,10 +25,14 @@ import org.gnome.gtk.SignalListItemFactory;
 import org.gnome.gtk.SingleSelection;
 import org.gnome.pango.EllipsizeMode;
 import org.javagi.gobject.types.Types;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.lang.foreign.MemorySegment;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.subsound.utils.Utils.cssClasses;
 import static org.gnome.gtk.Align.CENTER;
@@ -37,9 +42,13 @@ import static org.gnome.gtk.Orientation.HORIZONTAL;
 import static org.gnome.gtk.Orientation.VERTICAL;
 
 public class ArtistsListView extends Box {
+    private static final Logger log = LoggerFactory.getLogger(ArtistsListView.class);
     private final ThumbnailCache thumbLoader;
     private final AppManager client;
     private final List<ArtistEntry> artists;
+    // only touched on the main thread
+    private Optional<Supplier<Page<ArtistEntry>>> nextPage;
+    private boolean loadingPage = false;
     private Consumer<ArtistAlbumInfo> onAlbumSelected;
     private final NavigationSplitView view;
     private final NavigationPage initialPage;
@@ -54,13 +63,14 @@ public class ArtistsListView extends Box {
     public ArtistsListView(
             ThumbnailCache thumbLoader,
             AppManager client,
-            List<ArtistEntry> artists,
+            Page<ArtistEntry> firstPage,
             Consumer<ArtistAlbumInfo> onAlbumSelected
     ) {
         super(Orientation.VERTICAL, 0);
         this.thumbLoader = thumbLoader;
         this.client = client;
-        this.artists = artists;
+        this.artists = firstPage.items();
+        this.nextPage = firstPage.next();
         this.onAlbumSelected = onAlbumSelected;
         this.artistInfoLoader = new ArtistInfoLoader(this.thumbLoader, this.client, albumInfo -> this.onAlbumSelected.accept(albumInfo));
         this.contentPage = NavigationPage.builder().setTag("page-2").setChild(this.artistInfoLoader).setTitle("ArtistView").build();
@@ -139,13 +149,10 @@ public class ArtistsListView extends Box {
         this.listView.addController(motionController);
 
         // Populate model
-        var items = new GArtistEntry[this.artists.size()];
-        for (int i = 0; i < this.artists.size(); i++) {
-            items[i] = GArtistEntry.of(this.artists.get(i));
-        }
-        this.listModel.splice(0, 0, items);
+        appendArtists(this.artists);
 
         var artistView = ScrolledWindow.builder().setChild(this.listView).setHexpand(true).setVexpand(true).build();
+        Utils.onScrolledNearEnd(artistView, this::loadNextPage);
         // https://gnome.pages.gitlab.gnome.org/libadwaita/doc/main/migrating-to-breakpoints.html#sidebar
         this.page1 = NavigationPage.builder().setTag("page-1").setChild(artistView).setTitle("Artists").build();
         this.view.setSidebar(this.page1);
@@ -171,6 +178,31 @@ public class ArtistsListView extends Box {
         this.view.setShowContent(true);
     }
 
+    private void appendArtists(List<ArtistEntry> artists) {
+        var items = new GArtistEntry[artists.size()];
+        for (int i = 0; i < artists.size(); i++) {
+            items[i] = GArtistEntry.of(artists.get(i));
+        }
+        this.listModel.splice(this.listModel.getNItems(), 0, items);
+    }
+
+    private void loadNextPage() {
+        if (this.loadingPage || this.nextPage.isEmpty()) {
+            return;
+        }
+        this.loadingPage = true;
+        Utils.doAsync(this.nextPage.get()).whenComplete((page, err) -> Utils.runOnMainThread(() -> {
+            this.loadingPage = false;
+            if (err != null) {
+                // keep nextPage, scrolling again retries
+                log.warn("failed to load next artists page", err);
+                return;
+            }
+            appendArtists(page.items());
+            this.nextPage = page.next();
+        }));
+    }
+
     public static class GArtistEntry extends GObject {
         public static final Type gtype = Types.register(GArtistEntry.class);
         private ArtistEntry artist;
@@ -29,6 +29,7 @@ import org.subsound.app.state.AppManager;
 import org.subsound.app.state.NetworkMonitoring;
 import org.subsound.app.state.PlayerAction;
 import org.subsound.app.state.PlaylistsStore.GPlaylist;
+import org.subsound.app.state.StateSlices.Slice;
 import org.subsound.integration.ServerClient;
 import org.subsound.integration.ServerClient.ArtistAlbumInfo;
 import org.subsound.integration.ServerClient.HomeOverview;
@@ -53,6 +54,7 @@ import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -109,7 +111,7 @@ public class FrontpagePage extends Box implements AppManager.StateListener {
         this.appManager = appManager;
         this.homeView = new HomeView(this.appManager, this.onAlbumSelected, this.onNavigate);
         this.onMap(() -> {
-            appManager.addOnStateChanged(this);
+            appManager.addOnStateChanged(EnumSet.of(Slice.NETWORK), this);
             if (this.isMapped.get()) {
                 return;
             }
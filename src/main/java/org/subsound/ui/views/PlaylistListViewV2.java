@@ -34,6 +34,7 @@ import org.slf4j.LoggerFactory;
 import org.subsound.app.state.AppManager;
 import org.subsound.app.state.PlayerAction;
 import org.subsound.app.state.PlaylistsStore.GPlaylist;
+import org.subsound.app.state.StateSlices.Slice;
 import org.subsound.integration.ServerClient;
 import org.subsound.integration.ServerClient.ObjectIdentifier;
 import org.subsound.integration.ServerClient.ObjectIdentifier.PlaylistIdentifier;
@@ -56,6 +57,7 @@ import org.subsound.utils.Utils;
 import java.lang.foreign.MemorySegment;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -95,6 +97,7 @@ public class PlaylistListViewV2 extends Box implements AppManager.StateListener
     private final ConcurrentHashMap<String, List<TitleArtistCell>> listenersTitle = new ConcurrentHashMap<>();
     private final AtomicReference<ServerClient.PlaylistSimple> currentPlaylist = new AtomicReference<>();
     private volatile boolean reloadNeeded = false;
+    private volatile Runnable onScrolledNearEnd = () -> {};
     private volatile int lastKnownSongCount = 0;
     @Nullable
     private SignalConnection<?> playlistNotifySignal = null;
@@ -469,7 +472,7 @@ public class PlaylistListViewV2 extends Box implements AppManager.StateListener
         this.listView.addController(keyController);
 
         var mapSignal = this.onMap(() -> {
-            appManager.addOnStateChanged(this);
+            appManager.addOnStateChanged(EnumSet.of(Slice.NOW_PLAYING, Slice.PLAYER, Slice.QUEUE), this);
 
             var playlist = this.currentPlaylist.get();
             if (playlist == null) {
@@ -503,6 +506,7 @@ public class PlaylistListViewV2 extends Box implements AppManager.StateListener
                 .setPropagateNaturalHeight(true)
                 .build();
         this.scroll.setChild(this.listView);
+        Utils.onScrolledNearEnd(this.scroll, () -> this.onScrolledNearEnd.run());
 
         this.titleLabel = new Label();
         this.titleLabel.setLabel("");
@@ -606,6 +610,29 @@ public class PlaylistListViewV2 extends Box implements AppManager.StateListener
         });
     }
 
+    /**
+     * Appends songs to the playlist currently shown, for lists that are loaded a page at a time.
+     * Dropped if another playlist was selected meanwhile.
+     */
+    public void appendSongs(String playlistId, List<GSongInfo> songs) {
+        Utils.runOnMainThread(() -> {
+            var playlist = this.currentPlaylist.get();
+            if (playlist == null || !playlist.id().equals(playlistId)) {
+                return;
+            }
+            int offset = this.listModel.getNItems();
+            var items = new GPlaylistEntry[songs.size()];
+            for (int i = 0; i < songs.size(); i++) {
+                items[i] = GPlaylistEntry.of(playlistId, songs.get(i), offset + i);
+            }
+            this.listModel.splice(offset, 0, items);
+        });
+    }
+
+    public void setOnScrolledNearEnd(Runnable onScrolledNearEnd) {
+        this.onScrolledNearEnd = onScrolledNearEnd;
+    }
+
     @Override
     public void onStateChanged(AppManager.AppState state) {
         var prev = prevState.get();
@@ -4,6 +4,7 @@ import org.gnome.gtk.ListTabBehavior;
 import org.jspecify.annotations.Nullable;
 import org.subsound.app.state.AppManager;
 import org.subsound.app.state.PlayerAction;
+import org.subsound.app.state.StateSlices.Slice;
 import org.subsound.integration.ServerClient.ObjectIdentifier.PlaylistIdentifier;
 import org.subsound.integration.ServerClient.SongInfo;
 import org.subsound.sound.PlaybinPlayer;
@@ -29,6 +30,7 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
@@ -216,7 +218,7 @@ public class StarredListView extends Box implements AppManager.StateListener {
         this.listView.addController(keyController);
 
         var mapSignal = this.onMap(() -> {
-            appManager.addOnStateChanged(this);
+            appManager.addOnStateChanged(EnumSet.of(Slice.NOW_PLAYING, Slice.PLAYER, Slice.QUEUE), this);
         });
         this.onUnmap(() -> appManager.removeOnStateChanged(this));
         this.onDestroy(() -> {
@@ -240,6 +242,8 @@ public class StarredListView extends Box implements AppManager.StateListener {
 //        clamp.setChild(this.listView);
 //        this.scroll.setChild(clamp);
         this.scroll.setChild(this.listView);
+        // the starred list is loaded a page at a time, fetch the next one before the user scrolls to the end
+        Utils.onScrolledNearEnd(this.scroll, () -> this.onAction.apply(new PlayerAction.StarLoadMore()));
         this.append(this.scroll);
     }
 
@@ -3,9 +3,11 @@ package org.subsound.ui.views;
 import org.subsound.app.state.AppManager;
 import org.subsound.app.state.PlayerAction;
 import org.subsound.integration.ServerClient.SongInfo;
+import org.subsound.ui.components.Classes;
 import org.gnome.gtk.Align;
 import org.gnome.gtk.Box;
 import org.gnome.gtk.Button;
+import org.gnome.gtk.Label;
 import org.gnome.gtk.Orientation;
 import org.gnome.gtk.Scale;
 import org.slf4j.Logger;
@@ -15,6 +17,7 @@ import java.io.File;
 import java.net.URI;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -106,6 +109,20 @@ public class TestPlayerPage extends Box {
 //            GLib.idleAddOnce(() -> scale1.setFillLevel(fill.get()));
 //        }, 1000, 1000, TimeUnit.MILLISECONDS);
 
+        // time from a play action to sound, per stage. Also logged by PlaybackLatency
+        var latencyLabel = Label.builder().setLabel("").setXalign(0).build();
+        latencyLabel.addCssClass(Classes.monospace.className());
+        latencyLabel.addCssClass(Classes.caption.className());
+        Runnable refreshLatency = () -> {
+            var lines = new ArrayList<>(player.getPlaybackLatency().summaryLines());
+            var stats = player.getStateStats();
+            lines.add("state publishes=%d skipped=%d listener invocations=%d".formatted(stats.publishes(), stats.skipped(), stats.invocations()));
+            latencyLabel.setLabel(String.join("\n", lines));
+        };
+        var latencyRefresh = Button.withLabel("Refresh latency");
+        latencyRefresh.onClicked(refreshLatency::run);
+        this.onMap(refreshLatency::run);
+
         var testPageContainer = this;
         testPageContainer.append(playButton);
         testPageContainer.append(pauseButton);
@@ -116,6 +133,8 @@ public class TestPlayerPage extends Box {
         testPageContainer.append(volumeHalf);
         testPageContainer.append(volumeQuarter);
         testPageContainer.append(scale1);
+        testPageContainer.append(latencyRefresh);
+        testPageContainer.append(latencyLabel);
     }
 
     public record Sample(
@@ -0,0 +1,132 @@
+package org.subsound.utils;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts to how the server copes (AIMD).
+ * <p>
+ * The limit grows by one per round trip while responses stay fast and the limit is actually in use. It is cut in half
+ * when a request fails with a network error or timeout, and by 10% when latency rises well above the baseline,
+ * the fastest latency seen lately. A fast LAN server quickly ends up at the ceiling, a Raspberry Pi settles
+ * at whatever it can serve without slowing down.
+ */
+public class AdaptiveLimiter {
+    public record Settings(
+            int initialLimit,
+            int minLimit,
+            int maxLimit,
+            // multiplicative decrease on errors
+            double backoffRatio,
+            // smoothed latency above baseline * latencyTolerance counts as overload
+            double latencyTolerance
+    ) {
+        public static Settings withCeiling(int maxLimit) {
+            int max = Math.max(1, maxLimit);
+            return new Settings(Math.min(2, max), 1, max, 0.5, 2.0);
+        }
+    }
+
+    public record Snapshot(
+            int limit,
+            int maxLimit,
+            int inFlight,
+            long latencyMillis,
+            long baselineMillis,
+            long errors
+    ) {}
+
+    private final Settings settings;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight = 0;
+    private double smoothedLatencyMs = -1;
+    private double baselineMs = -1;
+    private long errors = 0;
+    private long completions = 0;
+    // no new decrease until this many requests completed: the requests already in flight when we backed off
+    // were sent at the old limit, their errors and latency would otherwise cut the limit again
+    private long nextDecreaseAt = 0;
+
+    public AdaptiveLimiter(Settings settings) {
+        this.settings = settings;
+        this.limit = settings.initialLimit();
+    }
+
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param latency time the request took
+     * @param dropped true if the request failed in a way that says the server or network is overloaded
+     */
+    public void release(Duration latency, boolean dropped) {
+        lock.lock();
+        try {
+            boolean wasSaturated = inFlight >= (int) limit;
+            inFlight--;
+            completions++;
+            boolean canDecrease = completions >= nextDecreaseAt;
+            if (dropped) {
+                errors++;
+                if (canDecrease) {
+                    decrease(settings.backoffRatio());
+                }
+            } else {
+                double ms = latency.toNanos() / 1_000_000.0;
+                smoothedLatencyMs = smoothedLatencyMs < 0 ? ms : smoothedLatencyMs * 0.8 + ms * 0.2;
+                // let the baseline drift up slowly, so a single lucky response does not pin it forever
+                baselineMs = baselineMs < 0 ? ms : Math.min(ms, baselineMs + (smoothedLatencyMs - baselineMs) * 0.01);
+                if (smoothedLatencyMs > baselineMs * settings.latencyTolerance() && canDecrease) {
+                    decrease(0.9);
+                } else if (wasSaturated) {
+                    limit = Math.min(settings.maxLimit(), limit + 1.0 / limit);
+                }
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(double ratio) {
+        limit = Math.max(settings.minLimit(), limit * ratio);
+        nextDecreaseAt = completions + inFlight + 1;
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Snapshot snapshot() {
+        lock.lock();
+        try {
+            return new Snapshot(
+                    (int) limit,
+                    settings.maxLimit(),
+                    inFlight,
+                    Math.round(Math.max(0, smoothedLatencyMs)),
+                    Math.round(Math.max(0, baselineMs)),
+                    errors
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.subsound.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram with power-of-two buckets.
+ * Bucket i counts values in [2^(i-1), 2^i), bucket 0 counts zero.
+ * Good enough for latency/size percentiles in logs and debug views, not for exact statistics.
+ */
+public class Histogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        int bucket = v == 0 ? 0 : 64 - Long.numberOfLeadingZeros(v);
+        buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long sum() {
+        return sum.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public long mean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * @return the upper bound of the bucket containing the given quantile (0.0 - 1.0), capped at the max seen value
+     */
+    public long percentile(double quantile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                long upper = i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                return Math.min(upper, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return counts per bucket, index i holds values below 2^i
+     */
+    public long[] bucketCounts() {
+        long[] out = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            out[i] = buckets.get(i);
+        }
+        return out;
+    }
+
+    public String summary(String unit) {
+        return "n=%d mean=%d%s p50=%d%s p95=%d%s p99=%d%s max=%d%s".formatted(
+                count(),
+                mean(), unit,
+                percentile(0.50), unit,
+                percentile(0.95), unit,
+                percentile(0.99), unit,
+                max(), unit
+        );
+    }
+}
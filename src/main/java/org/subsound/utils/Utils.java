@@ -17,6 +17,7 @@ import org.gnome.gtk.Label;
 import org.gnome.gtk.Orientation;
 import org.gnome.gtk.PropagationLimit;
 import org.gnome.gtk.PropagationPhase;
+import org.gnome.gtk.ScrolledWindow;
 import org.gnome.gtk.Widget;
 import org.gnome.gtk.Window;
 import org.javagi.gobject.SignalConnection;
@@ -27,6 +28,7 @@ import org.subsound.utils.javahttp.InstantAdapter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -340,6 +342,17 @@ public class Utils {
         return new HoverController(ec, enterCallbackSignalConnection, leaveSignal);
     }
 
+    // Calls onNearEnd when the scrolled content is within two viewports of its end, to load the next page
+    // before the user reaches it. Fires on every scroll step while near the end, callers guard against reloading.
+    public static SignalConnection<?> onScrolledNearEnd(ScrolledWindow scroll, Runnable onNearEnd) {
+        var adjustment = scroll.getVadjustment();
+        return adjustment.onValueChanged(() -> {
+            if (adjustment.getValue() + adjustment.getPageSize() * 2 >= adjustment.getUpper()) {
+                onNearEnd.run();
+            }
+        });
+    }
+
     public static boolean withinEpsilon(double value1, double value2, double epsilon) {
         var diff = Math.abs(value1 - value2);
         return diff < epsilon;
@@ -363,6 +376,9 @@ public class Utils {
     public static <T> T fromJson(String s, Class<T> clazz) {
         return GSON.fromJson(s, clazz);
     }
+    public static <T> T fromJson(Reader reader, Class<T> clazz) {
+        return GSON.fromJson(reader, clazz);
+    }
     public static <T> String toJson(T obj) {
         return GSON.toJson(obj);
     }
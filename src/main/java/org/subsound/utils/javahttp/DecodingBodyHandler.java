@@ -0,0 +1,175 @@
+package org.subsound.utils.javahttp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * BodyHandler that decodes gzip/deflate response bodies while they are being read,
+ * so the caller can stream the decoded body straight into a parser.
+ * <p>
+ * Use together with {@link #ACCEPT_ENCODING} on the request. When the stream is closed we log the number of bytes
+ * that came over the wire next to the number of decoded bytes.
+ */
+public class DecodingBodyHandler implements HttpResponse.BodyHandler<InputStream> {
+    private static final Logger log = LoggerFactory.getLogger(DecodingBodyHandler.class);
+
+    public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final String method;
+    private final String path;
+
+    private DecodingBodyHandler(String method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    public static DecodingBodyHandler forRequest(HttpRequest request) {
+        // log only the path, the query contains auth tokens
+        return new DecodingBodyHandler(request.method(), request.uri().getPath());
+    }
+
+    @Override
+    public BodySubscriber<InputStream> apply(HttpResponse.ResponseInfo responseInfo) {
+        var encoding = responseInfo.headers()
+                .firstValue("Content-Encoding")
+                .map(s -> s.trim().toLowerCase(Locale.ROOT))
+                .orElse("identity");
+        // the mapper must not block: the decoder is created lazily on first read
+        return BodySubscribers.mapping(
+                BodySubscribers.ofInputStream(),
+                raw -> new DecodedInputStream(raw, encoding, method, path)
+        );
+    }
+
+    static class DecodedInputStream extends InputStream {
+        private final CountingInputStream wire;
+        private final String encoding;
+        private final String method;
+        private final String path;
+        private InputStream decoded;
+        private long decodedBytes = 0;
+        private boolean closed = false;
+
+        DecodedInputStream(InputStream raw, String encoding, String method, String path) {
+            this.wire = new CountingInputStream(raw);
+            this.encoding = encoding;
+            this.method = method;
+            this.path = path;
+        }
+
+        long wireBytes() {
+            return wire.count;
+        }
+
+        long decodedBytes() {
+            return decodedBytes;
+        }
+
+        private InputStream decoded() throws IOException {
+            if (decoded == null) {
+                decoded = switch (encoding) {
+                    case "gzip", "x-gzip" -> new GZIPInputStream(wire, 8192);
+                    case "deflate" -> inflate(wire);
+                    default -> wire;
+                };
+            }
+            return decoded;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = decoded().read();
+            if (b >= 0) {
+                decodedBytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = decoded().read(b, off, len);
+            if (n > 0) {
+                decodedBytes += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (decoded != null) {
+                    decoded.close();
+                } else {
+                    wire.close();
+                }
+            } finally {
+                log.info("[%s %s] <-- body: %d bytes on wire, %d bytes decoded (%s)".formatted(
+                        method, path, wire.count, decodedBytes, encoding
+                ));
+            }
+        }
+    }
+
+    /**
+     * "deflate" is supposed to be zlib wrapped (RFC 9110), but some servers send raw deflate.
+     * Peek at the first two bytes to pick the right inflater.
+     */
+    private static InputStream inflate(InputStream in) throws IOException {
+        var pushback = new PushbackInputStream(in, 2);
+        byte[] header = pushback.readNBytes(2);
+        pushback.unread(header);
+        boolean zlibWrapped = header.length == 2
+                && (header[0] & 0x0F) == 8
+                && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        return new InflaterInputStream(pushback, new Inflater(!zlibWrapped), 8192);
+    }
+
+    static class CountingInputStream extends InputStream {
+        private final InputStream delegate;
+        private long count = 0;
+
+        CountingInputStream(InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = delegate.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
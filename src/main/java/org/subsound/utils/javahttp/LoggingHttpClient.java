@@ -90,7 +90,8 @@ public class LoggingHttpClient extends HttpClient {
 
     private <T> HttpResponse<T> logResponse(HttpResponse<T> res, Duration startedNanos) {
         var duration = Duration.ofNanos(System.nanoTime() - startedNanos.toNanos());
-        log.info("[%s %s] <-- %d in %dms".formatted(res.request().method(), res.request().uri().toString(), res.statusCode(), duration.toMillis()));
+        var encoding = res.headers().firstValue("Content-Encoding").map(e -> " (" + e + ")").orElse("");
+        log.info("[%s %s] <-- %d in %dms%s".formatted(res.request().method(), res.request().uri().toString(), res.statusCode(), duration.toMillis(), encoding));
         return res;
     }
 
@@ -0,0 +1,269 @@
+package org.subsound.utils.javahttp;
+
+import org.subsound.utils.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One HTTP transport per server (scheme + host + port), shared by the API client, the song cache and the thumbnail cache.
+ * Sharing one HttpClient means one connection pool, so API calls, stream downloads and artwork reuse the same
+ * TLS connections instead of each component opening its own.
+ * <p>
+ * Every request is tagged with a {@link RequestClass} that decides its timeout and how many may be in flight at once.
+ * A request is in flight until its body has been read or, for a streamed body, closed.
+ * Latency (time to response headers) and body bytes are recorded per endpoint.
+ */
+public class ServerTransport {
+    private static final Logger log = LoggerFactory.getLogger(ServerTransport.class);
+    private static final Map<String, ServerTransport> TRANSPORTS = new ConcurrentHashMap<>();
+    private static final long LOG_SUMMARY_EVERY = 200;
+
+    public enum RequestClass {
+        // small JSON responses, the UI is waiting on these
+        API(Duration.ofSeconds(30), 6),
+        // audio downloads: timeout until the response headers arrive, the body may take minutes.
+        // Room for the playing song, the next one being prepared and one offline download.
+        STREAM(Duration.ofSeconds(30), 3),
+        ARTWORK(Duration.ofSeconds(20), 4),
+        ;
+
+        private final Duration timeout;
+        private final int maxConcurrent;
+
+        RequestClass(Duration timeout, int maxConcurrent) {
+            this.timeout = timeout;
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public Duration timeout() {
+            return timeout;
+        }
+    }
+
+    public static class EndpointStats {
+        private final Histogram latencyMillis = new Histogram();
+        private final Histogram bodyBytes = new Histogram();
+        private final AtomicLong errors = new AtomicLong();
+
+        public Histogram latencyMillis() {
+            return latencyMillis;
+        }
+
+        public Histogram bodyBytes() {
+            return bodyBytes;
+        }
+
+        public long errors() {
+            return errors.get();
+        }
+    }
+
+    private final String key;
+    private final HttpClient client;
+    private final Map<RequestClass, Semaphore> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private ServerTransport(String key, boolean https) {
+        this.key = key;
+        this.client = new LoggingHttpClient(
+                HttpClient.newBuilder()
+                        // HTTP/2 is negotiated with ALPN over TLS and falls back to HTTP/1.1.
+                        // Over plain http it would send an h2c Upgrade header that some reverse proxies choke on.
+                        .version(https ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(10))
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .executor(Executors.newVirtualThreadPerTaskExecutor())
+                        .build()
+        );
+        for (var requestClass : RequestClass.values()) {
+            inFlight.put(requestClass, new Semaphore(requestClass.maxConcurrent));
+        }
+    }
+
+    public static ServerTransport forUri(URI uri) {
+        var scheme = uri.getScheme() == null ? "http" : uri.getScheme().toLowerCase();
+        int port = uri.getPort() != -1 ? uri.getPort() : ("https".equals(scheme) ? 443 : 80);
+        var key = "%s://%s:%d".formatted(scheme, uri.getHost(), port);
+        return TRANSPORTS.computeIfAbsent(key, k -> new ServerTransport(k, "https".equals(scheme)));
+    }
+
+    public HttpClient client() {
+        return client;
+    }
+
+    public <T> HttpResponse<T> send(
+            RequestClass requestClass,
+            HttpRequest request,
+            HttpResponse.BodyHandler<T> bodyHandler
+    ) throws IOException, InterruptedException {
+        var req = request.timeout().isPresent()
+                ? request
+                : HttpRequest.newBuilder(request, (name, value) -> true).timeout(requestClass.timeout()).build();
+        var endpoint = requestClass.name() + " " + endpointName(req.uri());
+        var endpointStats = stats.computeIfAbsent(endpoint, k -> new EndpointStats());
+        var exchange = new Exchange(inFlight.get(requestClass), endpointStats);
+        exchange.permits.acquire();
+        long started = System.nanoTime();
+        try {
+            var res = client.send(req, countingHandler(bodyHandler, exchange));
+            endpointStats.latencyMillis.record(Duration.ofNanos(System.nanoTime() - started).toMillis());
+            return res;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            exchange.fail();
+            exchange.release();
+            throw e;
+        } finally {
+            if (requestCount.incrementAndGet() % LOG_SUMMARY_EVERY == 0) {
+                logSummary();
+            }
+        }
+    }
+
+    /**
+     * @return stats per endpoint, sorted by endpoint name
+     */
+    public Map<String, EndpointStats> stats() {
+        return new TreeMap<>(stats);
+    }
+
+    public void logSummary() {
+        stats().forEach((endpoint, s) -> log.info("[{}] {}: latency {} | body {} | errors={}",
+                key,
+                endpoint,
+                s.latencyMillis.summary("ms"),
+                s.bodyBytes.summary("B"),
+                s.errors()
+        ));
+    }
+
+    static String endpointName(URI uri) {
+        // the subsonic API puts everything interesting in the last path segment, e.g. /rest/getAlbum
+        var path = uri.getPath() == null ? "" : uri.getPath();
+        int idx = path.lastIndexOf('/');
+        return idx >= 0 ? path.substring(idx) : path;
+    }
+
+    private static <T> HttpResponse.BodyHandler<T> countingHandler(HttpResponse.BodyHandler<T> delegate, Exchange exchange) {
+        return responseInfo -> new CountingBodySubscriber<>(delegate.apply(responseInfo), exchange);
+    }
+
+    /**
+     * One request: holds its in-flight permit until the body is read, failed or closed, and counts its failure once
+     * however many of those paths see it.
+     */
+    private static class Exchange {
+        private final Semaphore permits;
+        private final EndpointStats stats;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final AtomicBoolean failed = new AtomicBoolean();
+
+        Exchange(Semaphore permits, EndpointStats stats) {
+            this.permits = permits;
+            this.stats = stats;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+
+        void fail() {
+            if (failed.compareAndSet(false, true)) {
+                stats.errors.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A streamed body holds the permit of its request until the caller closes it, e.g. after reading a song or when
+     * a seek abandons the download.
+     */
+    private static class ReleasingInputStream extends FilterInputStream {
+        private final Exchange exchange;
+
+        ReleasingInputStream(InputStream in, Exchange exchange) {
+            super(in);
+            this.exchange = exchange;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                exchange.release();
+            }
+        }
+    }
+
+    /**
+     * Counts the body bytes as they come off the wire, before any decoding done by the wrapped subscriber.
+     */
+    private static class CountingBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> delegate;
+        private final Exchange exchange;
+        private long bytes = 0;
+
+        CountingBodySubscriber(HttpResponse.BodySubscriber<T> delegate, Exchange exchange) {
+            this.delegate = delegate;
+            this.exchange = exchange;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public CompletionStage<T> getBody() {
+            return delegate.getBody().thenApply(body -> body instanceof InputStream in
+                    ? (T) new ReleasingInputStream(in, exchange)
+                    : body);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            for (var buffer : item) {
+                bytes += buffer.remaining();
+            }
+            delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            exchange.fail();
+            exchange.release();
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            exchange.stats.bodyBytes.record(bytes);
+            exchange.release();
+            delegate.onComplete();
+        }
+    }
+}
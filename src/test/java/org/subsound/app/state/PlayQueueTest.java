@@ -2,6 +2,8 @@ package org.subsound.app.state;
 
 import org.subsound.integration.ServerClient.SongInfo;
 import org.subsound.integration.SongInfoFactory;
+import org.subsound.persistence.database.Database;
+import org.subsound.persistence.database.PlayQueueService;
 import org.subsound.sound.PlaybinPlayer.PlayerState;
 import org.subsound.sound.PlaybinPlayer.PlayerStates;
 import org.subsound.sound.PlaybinPlayer.Source;
@@ -12,17 +14,22 @@ import org.subsound.ui.models.GSongInfo.GSongStore;
 import org.subsound.utils.Utils;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class PlayQueueTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
 
     private StubPlayer player;
     private PlayQueueStateRecorder stateChangedRecorder;
@@ -62,7 +69,7 @@ public class PlayQueueTest {
         PlayQueue.PlayQueueState state = playQueue.getState();
         assertThat(state.position()).isEmpty();
         assertThat(stateChangedRecorder.states).isNotEmpty();
-        assertThat(playQueue.getListStore().getFirst().songInfo()).isEqualTo(song);
+        assertThat(playQueue.getListModel().getItem(0).songInfo()).isEqualTo(song);
     }
 
     @Test
@@ -76,8 +83,8 @@ public class PlayQueueTest {
         PlayQueue.PlayQueueState state = playQueue.getState();
         assertThat(state.position()).hasValue(1);
         assertThat(stateChangedRecorder.states).isNotEmpty();
-        assertThat(playQueue.getListStore().get(0).songInfo()).isEqualTo(songs.get(0));
-        assertThat(playQueue.getListStore().get(1).songInfo()).isEqualTo(songs.get(1));
+        assertThat(playQueue.getListModel().getItem(0).songInfo()).isEqualTo(songs.get(0));
+        assertThat(playQueue.getListModel().getItem(1).songInfo()).isEqualTo(songs.get(1));
     }
 
     @Test
@@ -192,6 +199,29 @@ public class PlayQueueTest {
         assertThat(playRecorder.songs).contains(songs.get(1));
     }
 
+    @Test
+    public void testAdvanceToNextMovesWithoutPlaying() {
+        List<SongInfo> songs = List.of(
+                songInfoFactory.newRandomSongInfo(),
+                songInfoFactory.newRandomSongInfo()
+        );
+        playQueue.replaceQueue(songs, 0).join();
+
+        assertThat(playQueue.peekNext()).map(GSongInfo::getSongInfo).hasValue(songs.get(1));
+        playQueue.advanceToNext();
+
+        assertThat(playQueue.getState().position()).hasValue(1);
+        assertThat(playRecorder.songs).isEmpty();
+        // end of the queue
+        assertThat(playQueue.peekNext()).isEmpty();
+        playQueue.advanceToNext();
+        assertThat(playQueue.getState().position()).hasValue(1);
+
+        // REPEAT_ONE continues with the same song
+        playQueue.setPlayMode(PlayerAction.PlayMode.REPEAT_ONE);
+        assertThat(playQueue.peekNext()).map(GSongInfo::getSongInfo).hasValue(songs.get(1));
+    }
+
     @Test
     public void testEnqueueMarksItemAsUserQueued() {
         List<SongInfo> songs = List.of(
@@ -204,11 +234,11 @@ public class PlayQueueTest {
         playQueue.enqueue(enqueued);
 
         // enqueue inserts at position+1 with userQueued=true
-        assertThat(playQueue.getListStore().get(1).songInfo()).isEqualTo(enqueued);
-        assertThat(playQueue.getListStore().get(1).getIsUserQueued()).isTrue();
+        assertThat(playQueue.getListModel().getItem(1).songInfo()).isEqualTo(enqueued);
+        assertThat(playQueue.getListModel().getItem(1).getIsUserQueued()).isTrue();
         // original items are not user-queued
-        assertThat(playQueue.getListStore().get(0).getIsUserQueued()).isFalse();
-        assertThat(playQueue.getListStore().get(2).getIsUserQueued()).isFalse();
+        assertThat(playQueue.getListModel().getItem(0).getIsUserQueued()).isFalse();
+        assertThat(playQueue.getListModel().getItem(2).getIsUserQueued()).isFalse();
     }
 
     @Test
@@ -229,13 +259,13 @@ public class PlayQueueTest {
         playQueue.enqueueLast(lastSong);
 
         // Queue should be: [song0(current)] [userSong] [lastSong] [song1] [song2]
-        assertThat(playQueue.getListStore().get(0).songInfo()).isEqualTo(songs.get(0));
-        assertThat(playQueue.getListStore().get(1).songInfo()).isEqualTo(userSong);
-        assertThat(playQueue.getListStore().get(1).getIsUserQueued()).isTrue();
-        assertThat(playQueue.getListStore().get(2).songInfo()).isEqualTo(lastSong);
-        assertThat(playQueue.getListStore().get(2).getIsUserQueued()).isTrue();
-        assertThat(playQueue.getListStore().get(3).songInfo()).isEqualTo(songs.get(1));
-        assertThat(playQueue.getListStore().get(3).getIsUserQueued()).isFalse();
+        assertThat(playQueue.getListModel().getItem(0).songInfo()).isEqualTo(songs.get(0));
+        assertThat(playQueue.getListModel().getItem(1).songInfo()).isEqualTo(userSong);
+        assertThat(playQueue.getListModel().getItem(1).getIsUserQueued()).isTrue();
+        assertThat(playQueue.getListModel().getItem(2).songInfo()).isEqualTo(lastSong);
+        assertThat(playQueue.getListModel().getItem(2).getIsUserQueued()).isTrue();
+        assertThat(playQueue.getListModel().getItem(3).songInfo()).isEqualTo(songs.get(1));
+        assertThat(playQueue.getListModel().getItem(3).getIsUserQueued()).isFalse();
     }
 
     @Test
@@ -250,9 +280,9 @@ public class PlayQueueTest {
         playQueue.enqueueLast(lastSong);
 
         // With no user-queued songs, should insert at position+1
-        assertThat(playQueue.getListStore().get(1).songInfo()).isEqualTo(lastSong);
-        assertThat(playQueue.getListStore().get(1).getIsUserQueued()).isTrue();
-        assertThat(playQueue.getListStore().get(2).songInfo()).isEqualTo(songs.get(1));
+        assertThat(playQueue.getListModel().getItem(1).songInfo()).isEqualTo(lastSong);
+        assertThat(playQueue.getListModel().getItem(1).getIsUserQueued()).isTrue();
+        assertThat(playQueue.getListModel().getItem(2).songInfo()).isEqualTo(songs.get(1));
     }
 
     @Test
@@ -275,15 +305,15 @@ public class PlayQueueTest {
 
         // Should insert after user2 but before song1:
         // [song0] [user1] [user2] [lastSong] [song1]
-        assertThat(playQueue.getListStore().get(0).songInfo()).isEqualTo(songs.get(0));
-        assertThat(playQueue.getListStore().get(1).songInfo()).isEqualTo(user1);
-        assertThat(playQueue.getListStore().get(1).getIsUserQueued()).isTrue();
-        assertThat(playQueue.getListStore().get(2).songInfo()).isEqualTo(user2);
-        assertThat(playQueue.getListStore().get(2).getIsUserQueued()).isTrue();
-        assertThat(playQueue.getListStore().get(3).songInfo()).isEqualTo(lastSong);
-        assertThat(playQueue.getListStore().get(3).getIsUserQueued()).isTrue();
-        assertThat(playQueue.getListStore().get(4).songInfo()).isEqualTo(songs.get(1));
-        assertThat(playQueue.getListStore().get(4).getIsUserQueued()).isFalse();
+        assertThat(playQueue.getListModel().getItem(0).songInfo()).isEqualTo(songs.get(0));
+        assertThat(playQueue.getListModel().getItem(1).songInfo()).isEqualTo(user1);
+        assertThat(playQueue.getListModel().getItem(1).getIsUserQueued()).isTrue();
+        assertThat(playQueue.getListModel().getItem(2).songInfo()).isEqualTo(user2);
+        assertThat(playQueue.getListModel().getItem(2).getIsUserQueued()).isTrue();
+        assertThat(playQueue.getListModel().getItem(3).songInfo()).isEqualTo(lastSong);
+        assertThat(playQueue.getListModel().getItem(3).getIsUserQueued()).isTrue();
+        assertThat(playQueue.getListModel().getItem(4).songInfo()).isEqualTo(songs.get(1));
+        assertThat(playQueue.getListModel().getItem(4).getIsUserQueued()).isFalse();
     }
 
     @Test
@@ -301,9 +331,9 @@ public class PlayQueueTest {
         playQueue.removeAt(1);
 
         // Queue is now [song0, song2, song3], position adjusted to 0
-        assertThat(playQueue.getListStore().size()).isEqualTo(3);
-        assertThat(playQueue.getListStore().get(0).songInfo()).isEqualTo(songs.get(0));
-        assertThat(playQueue.getListStore().get(1).songInfo()).isEqualTo(songs.get(2));
+        assertThat(playQueue.getListModel().getNItems()).isEqualTo(3);
+        assertThat(playQueue.getListModel().getItem(0).songInfo()).isEqualTo(songs.get(0));
+        assertThat(playQueue.getListModel().getItem(1).songInfo()).isEqualTo(songs.get(2));
 
         // "Next" should play song2 (the song that was after the removed one)
         playQueue.attemptPlayNext();
@@ -343,7 +373,7 @@ public class PlayQueueTest {
         playQueue.removeAt(0);
 
         // Queue: [song1, song2], position is empty
-        assertThat(playQueue.getListStore().size()).isEqualTo(2);
+        assertThat(playQueue.getListModel().getNItems()).isEqualTo(2);
         assertThat(playQueue.getState().position()).isEmpty();
 
         // "Next" should play song1 (now at index 0)
@@ -364,13 +394,152 @@ public class PlayQueueTest {
         playQueue.removeAt(1);
 
         // Queue: [song0], position adjusted to 0
-        assertThat(playQueue.getListStore().size()).isEqualTo(1);
+        assertThat(playQueue.getListModel().getNItems()).isEqualTo(1);
 
         // "Next" should do nothing — no songs after
         playQueue.attemptPlayNext();
         assertThat(playRecorder.songs).isEmpty();
     }
 
+    @Test
+    public void testShuffleKeepsTheCurrentSongFirst() {
+        var songs = randomSongs(50);
+        playQueue.replaceQueue(songs, 10).join();
+
+        playQueue.shuffle();
+
+        var state = playQueue.getState();
+        assertThat(state.playMode()).isEqualTo(PlayerAction.PlayMode.SHUFFLE);
+        assertThat(state.position()).hasValue(0);
+        assertThat(playQueue.getListModel().getItem(0).songInfo()).isEqualTo(songs.get(10));
+        assertThat(songIds(playQueue)).containsExactlyInAnyOrderElementsOf(songs.stream().map(SongInfo::id).toList());
+    }
+
+    @Test
+    public void testUnshuffleRestoresTheOrderAndTheCurrentSong() {
+        var songs = randomSongs(50);
+        playQueue.replaceQueue(songs, 10).join();
+        playQueue.shuffle();
+        playQueue.attemptPlayNext();
+        var playing = playQueue.getListModel().getItem(1).songInfo();
+
+        playQueue.unshuffle();
+
+        assertThat(songIds(playQueue)).isEqualTo(songs.stream().map(SongInfo::id).toList());
+        int position = playQueue.getState().position().orElseThrow();
+        assertThat(playQueue.getListModel().getItem(position).songInfo()).isEqualTo(playing);
+        assertThat(playQueue.getState().playMode()).isEqualTo(PlayerAction.PlayMode.NORMAL);
+    }
+
+    @Test
+    public void testEnqueueWhileShuffledIsUnshuffledAfterTheSongBeforeIt() {
+        var songs = randomSongs(10);
+        playQueue.replaceQueue(songs, 3).join();
+        playQueue.shuffle();
+        var added = songInfoFactory.newRandomSongInfo();
+        playQueue.enqueue(added);
+        // plays next
+        assertThat(playQueue.getListModel().getItem(1).songInfo()).isEqualTo(added);
+
+        playQueue.unshuffle();
+
+        // after the song that was playing when it was added
+        assertThat(songIds(playQueue).indexOf(added.id())).isEqualTo(4);
+        assertThat(playQueue.getListModel().getNItems()).isEqualTo(11);
+    }
+
+    @Test
+    public void testRestoresThePersistedQueue() throws Exception {
+        var service = new PlayQueueService(UUID.randomUUID(), new Database("jdbc:sqlite:" + folder.newFile("queue.db").getAbsolutePath()));
+        var persisted = newPersistedQueue(service);
+        var songs = List.of(
+                songInfoFactory.newRandomSongInfo(),
+                songInfoFactory.newRandomSongInfo(),
+                songInfoFactory.newRandomSongInfo()
+        );
+        persisted.replaceQueue(songs, 0).join();
+        // inserted after the playing song
+        var added = songInfoFactory.newRandomSongInfo();
+        persisted.enqueue(added);
+        persisted.removeAt(2);
+        persisted.playPosition(1);
+        persisted.stopPersisting();
+
+        var restored = newPersistedQueue(service);
+        restored.restore();
+
+        var listModel = restored.getListModel();
+        assertThat(songIds(restored)).containsExactly(songs.get(0).id(), added.id(), songs.get(2).id());
+        assertThat(restored.getState().position()).hasValue(1);
+        assertThat(listModel.getItem(1).getIsUserQueued()).isTrue();
+        // loaded on first use
+        assertThat(listModel.getItem(2).songInfo()).isEqualTo(songs.get(2));
+    }
+
+    @Test
+    public void testRestoresAShuffledQueue() throws Exception {
+        var service = new PlayQueueService(UUID.randomUUID(), new Database("jdbc:sqlite:" + folder.newFile("queue.db").getAbsolutePath()));
+        var persisted = newPersistedQueue(service);
+        var songs = randomSongs(20);
+        persisted.replaceQueue(songs, 5).join();
+        persisted.shuffle();
+        // enqueued while shuffled, they go after the playing song in the unshuffled order too
+        persisted.enqueue(songInfoFactory.newRandomSongInfo());
+        persisted.enqueueLast(songInfoFactory.newRandomSongInfo());
+        var shuffledIds = songIds(persisted);
+        var unshuffledIds = unshuffledSongIds(persisted);
+        assertThat(unshuffledIds.subList(0, 6)).isEqualTo(songs.subList(0, 6).stream().map(SongInfo::id).toList());
+        persisted.stopPersisting();
+
+        var restored = newPersistedQueue(service);
+        restored.restore();
+        assertThat(restored.getState().playMode()).isEqualTo(PlayerAction.PlayMode.SHUFFLE);
+        assertThat(songIds(restored)).isEqualTo(shuffledIds);
+
+        restored.unshuffle();
+        assertThat(songIds(restored)).isEqualTo(unshuffledIds);
+        assertThat(restored.getState().position()).hasValue(5);
+    }
+
+    private static List<String> unshuffledSongIds(PlayQueue queue) {
+        var listModel = queue.getListModel();
+        var songIds = new String[listModel.getNItems()];
+        for (int i = 0; i < listModel.getNItems(); i++) {
+            songIds[listModel.unshuffledPosition(i)] = listModel.getItem(i).getId();
+        }
+        return List.of(songIds);
+    }
+
+    private static List<String> songIds(PlayQueue queue) {
+        var listModel = queue.getListModel();
+        var songIds = new ArrayList<String>();
+        for (int i = 0; i < listModel.getNItems(); i++) {
+            songIds.add(listModel.getItem(i).getId());
+        }
+        return songIds;
+    }
+
+    private List<SongInfo> randomSongs(int count) {
+        var songs = new ArrayList<SongInfo>();
+        for (int i = 0; i < count; i++) {
+            songs.add(songInfoFactory.newRandomSongInfo());
+        }
+        return songs;
+    }
+
+    private PlayQueue newPersistedQueue(PlayQueueService service) {
+        return new PlayQueue(
+                player,
+                new GSongStore(
+                        key -> this.songInfoFactory.getSongById(key),
+                        key -> Optional.empty()
+                ),
+                service,
+                stateChangedRecorder,
+                playRecorder
+        );
+    }
+
     private static class StubPlayer implements Player {
         PlayerState currentState = new PlayerState(PlayerStates.INIT, 1.0, false, Optional.empty(), Optional.empty());
         Duration seekedTo;
@@ -0,0 +1,62 @@
+package org.subsound.app.state;
+
+import org.junit.Test;
+import org.subsound.app.state.PlaybackLatency.Kind;
+import org.subsound.app.state.PlaybackLatency.Stage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlaybackLatencyTest {
+
+    @Test
+    public void testTraceRecordsEveryStage() throws Exception {
+        var latency = new PlaybackLatency();
+        latency.begin(Kind.SKIP);
+        Thread.sleep(5);
+
+        var trace = latency.take();
+        for (var stage : Stage.values()) {
+            trace.mark(stage);
+        }
+        latency.record(trace);
+
+        assertThat(latency.total(Kind.SKIP).count()).isEqualTo(1);
+        assertThat(latency.total(Kind.SKIP).max()).isGreaterThanOrEqualTo(5);
+        assertThat(latency.total(Kind.PLAY).count()).isZero();
+        for (var stage : Stage.values()) {
+            assertThat(latency.stage(stage).count()).isEqualTo(1);
+        }
+        // the time before the first stage counts towards it
+        assertThat(latency.stage(Stage.STREAM_URI_RESOLVED).max()).isGreaterThanOrEqualTo(5);
+        assertThat(latency.summaryLines()).hasSize(Kind.values().length + Stage.values().length);
+    }
+
+    @Test
+    public void testTakeWithoutActionIsAuto() {
+        var latency = new PlaybackLatency();
+        var trace = latency.take();
+        trace.mark(Stage.PLAYING);
+        latency.record(trace);
+        assertThat(latency.total(Kind.AUTO).count()).isEqualTo(1);
+
+        // taken once
+        latency.begin(Kind.PLAY);
+        latency.take();
+        latency.record(latency.take());
+        assertThat(latency.total(Kind.AUTO).count()).isEqualTo(2);
+        assertThat(latency.total(Kind.PLAY).count()).isZero();
+    }
+
+    @Test
+    public void testGaplessIsAuto() {
+        var latency = new PlaybackLatency();
+        latency.begin(Kind.SKIP);
+        latency.recordGapless();
+
+        assertThat(latency.total(Kind.AUTO).count()).isEqualTo(1);
+        assertThat(latency.stage(Stage.PLAYING).count()).isEqualTo(1);
+        // the pending action is still waiting for its song
+        latency.record(latency.take());
+        assertThat(latency.total(Kind.SKIP).count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,127 @@
+package org.subsound.app.state;
+
+import org.junit.Test;
+import org.subsound.app.state.AppManager.AppState;
+import org.subsound.app.state.AppManager.BufferingProgress;
+import org.subsound.app.state.AppManager.NowPlaying;
+import org.subsound.app.state.AppManager.ServerState;
+import org.subsound.app.state.NetworkMonitoring.NetworkState;
+import org.subsound.app.state.NetworkMonitoring.NetworkStatus;
+import org.subsound.app.state.StateSlices.Slice;
+import org.subsound.integration.SongInfoFactory;
+import org.subsound.sound.PlaybinPlayer;
+import org.subsound.sound.PlaybinPlayer.PlayerStates;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StateSlicesTest {
+
+    @Test
+    public void testChangedSlices() {
+        var state = playing();
+
+        var ticked = withPosition(state, Duration.ofSeconds(2));
+        assertThat(changedSlices(state, ticked)).containsExactly(Slice.POSITION);
+
+        var downloading = state.withNowPlaying(state.nowPlaying().map(np -> np.withBufferingProgress(new BufferingProgress(100, 50))));
+        assertThat(changedSlices(state, downloading)).containsExactly(Slice.DOWNLOADS);
+
+        var paused = state.withPlayer(state.player().withState(PlayerStates.PAUSED));
+        assertThat(changedSlices(state, paused)).containsExactly(Slice.PLAYER);
+
+        var offline = state.withNetworkState(new NetworkState(NetworkStatus.OFFLINE));
+        assertThat(changedSlices(state, offline)).containsExactly(Slice.NETWORK);
+
+        var queue = state.queue();
+        var shuffled = state.withQueue(new PlayQueue.PlayQueueState(queue.playContext(), queue.position(), queue.playingItemId(), PlayerAction.PlayMode.SHUFFLE));
+        assertThat(changedSlices(state, shuffled)).containsExactly(Slice.QUEUE);
+
+        var nextSong = playing();
+        assertThat(changedSlices(state, nextSong)).contains(Slice.NOW_PLAYING, Slice.PLAYER);
+
+        // an equal copy is not a change
+        assertThat(changedSlices(state, withPosition(state, Duration.ofSeconds(1)))).isEmpty();
+    }
+
+    @Test
+    public void testListenersOnlySeeTheirSlices() {
+        var state = playing();
+        var slices = new StateSlices(state);
+        List<AppState> positions = new ArrayList<>();
+        List<AppState> network = new ArrayList<>();
+        slices.add(EnumSet.of(Slice.POSITION), positions::add);
+        slices.add(EnumSet.of(Slice.NETWORK), network::add);
+
+        var ticked = withPosition(state, Duration.ofSeconds(2));
+        slices.publish(ticked);
+        slices.publish(ticked);
+        var offline = ticked.withNetworkState(new NetworkState(NetworkStatus.OFFLINE));
+        slices.publish(offline);
+
+        // the first is the state at registration
+        assertThat(positions).containsExactly(state, ticked);
+        assertThat(network).containsExactly(state, offline);
+        assertThat(slices.stats()).isEqualTo(new StateSlices.Stats(3, 1, 2));
+    }
+
+    @Test
+    public void testRemove() {
+        var state = playing();
+        var slices = new StateSlices(state);
+        List<AppState> seen = new ArrayList<>();
+        AppManager.StateListener listener = seen::add;
+        slices.add(Slice.ALL, listener);
+        slices.remove(listener);
+
+        slices.publish(withPosition(state, Duration.ofSeconds(2)));
+        assertThat(seen).containsExactly(state);
+    }
+
+    @Test
+    public void testAddSeesThePublishedState() {
+        var state = playing();
+        var slices = new StateSlices(state);
+        var ticked = withPosition(state, Duration.ofSeconds(2));
+        slices.publish(ticked);
+
+        List<AppState> seen = new ArrayList<>();
+        slices.add(EnumSet.of(Slice.NETWORK), seen::add);
+        assertThat(seen).containsExactly(ticked);
+
+        // a publish that changes none of its slices does not call it again
+        slices.publish(withPosition(state, Duration.ofSeconds(3)));
+        assertThat(seen).containsExactly(ticked);
+        assertThat(slices.stats().invocations()).isZero();
+    }
+
+    private static List<Slice> changedSlices(AppState prev, AppState next) {
+        return Stream.of(Slice.values()).filter(slice -> StateSlices.changed(slice, prev, next)).toList();
+    }
+
+    static AppState withPosition(AppState state, Duration position) {
+        var player = state.player();
+        return state.withPlayer(player.withSource(player.source().map(s -> s.withPosition(Optional.of(position)))));
+    }
+
+    static AppState playing() {
+        var song = SongInfoFactory.createRandomSongInfo();
+        var source = new PlaybinPlayer.Source(URI.create("file:///tmp/" + song.id()), Optional.of(Duration.ofSeconds(1)), Optional.of(song.duration()));
+        return new AppState(
+                Optional.of(new NowPlaying(song, NowPlaying.State.READY, UUID.randomUUID(), new BufferingProgress(100, 100), Optional.empty())),
+                new PlaybinPlayer.PlayerState(PlayerStates.PLAYING, 1.0, false, Optional.empty(), Optional.of(source)),
+                new PlayQueue.PlayQueueState(Optional.empty(), Optional.of(0), Optional.of(song.id()), PlayerAction.PlayMode.NORMAL),
+                new NetworkState(NetworkStatus.ONLINE),
+                ServerState.of("server"),
+                Optional.empty()
+        );
+    }
+}
@@ -0,0 +1,155 @@
+package org.subsound.persistence;
+
+import org.subsound.persistence.CircuitBreaker.Settings;
+import org.subsound.persistence.CircuitBreaker.State;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CircuitBreakerTest {
+    private static final Settings SETTINGS = new Settings(
+            10,
+            3,
+            0.5,
+            Duration.ofSeconds(1),
+            Duration.ofMillis(10),
+            Duration.ofMillis(40)
+    );
+
+    private final List<State> transitions = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean serverUp = new AtomicBoolean(false);
+    private final AtomicInteger probes = new AtomicInteger();
+    private final CircuitBreaker breaker = new CircuitBreaker(
+            "test",
+            SETTINGS,
+            () -> {
+                probes.incrementAndGet();
+                return serverUp.get();
+            },
+            transitions::add
+    );
+
+    @After
+    public void tearDown() {
+        breaker.stop();
+    }
+
+    @Test
+    public void staysClosedOnApplicationErrors() {
+        for (int i = 0; i < 10; i++) {
+            breaker.recordFailure(new RuntimeException("Album not found"), Duration.ofMillis(5));
+        }
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void singleNetworkErrorDoesNotTrip() {
+        breaker.recordSuccess(Duration.ofMillis(5));
+        breaker.recordSuccess(Duration.ofMillis(5));
+        breaker.recordFailure(networkError(), Duration.ofMillis(5));
+        breaker.recordSuccess(Duration.ofMillis(5));
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    public void opensOnFailureRateAndRecoversThroughHalfOpen() throws Exception {
+        breaker.recordFailure(networkError(), Duration.ofMillis(5));
+        breaker.recordFailure(networkError(), Duration.ofMillis(5));
+        breaker.recordSuccess(Duration.ofMillis(5));
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+
+        // probe keeps failing with backoff while the server is down
+        awaitCondition(() -> probes.get() >= 2);
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+
+        serverUp.set(true);
+        awaitCondition(() -> breaker.getState() == State.HALF_OPEN);
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.recordSuccess(Duration.ofMillis(5));
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(transitions).containsExactly(State.OPEN, State.HALF_OPEN, State.CLOSED);
+    }
+
+    @Test
+    public void slowCallsCountAsFailures() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordSuccess(Duration.ofSeconds(2));
+        }
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    public void failedTrialCallReopens() throws Exception {
+        serverUp.set(true);
+        breaker.tripOpen("test");
+        awaitCondition(() -> breaker.getState() == State.HALF_OPEN);
+
+        serverUp.set(false);
+        breaker.recordFailure(networkError(), Duration.ofMillis(5));
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+
+        serverUp.set(true);
+        awaitCondition(() -> breaker.getState() == State.HALF_OPEN);
+    }
+
+    @Test
+    public void halfOpenLetsThroughASingleTrialCall() throws Exception {
+        serverUp.set(true);
+        breaker.tripOpen("test");
+        awaitCondition(() -> breaker.getState() == State.HALF_OPEN);
+
+        assertThat(breaker.allowRequest()).isTrue();
+        // the others fall back until the trial is recorded
+        assertThat(breaker.allowRequest()).isFalse();
+        assertThat(breaker.allowRequest()).isFalse();
+
+        breaker.recordSuccess(Duration.ofMillis(5));
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void unrecordedTrialCallIsRetriedAfterTheSlowCallThreshold() throws Exception {
+        var settings = new Settings(10, 3, 0.5, Duration.ofMillis(50), Duration.ofMillis(10), Duration.ofMillis(40));
+        var fastBreaker = new CircuitBreaker("fast", settings, () -> true, state -> {});
+        try {
+            fastBreaker.tripOpen("test");
+            awaitCondition(() -> fastBreaker.getState() == State.HALF_OPEN);
+            assertThat(fastBreaker.allowRequest()).isTrue();
+            assertThat(fastBreaker.allowRequest()).isFalse();
+
+            // the caller fell back without recording an outcome
+            awaitCondition(fastBreaker::allowRequest);
+            assertThat(fastBreaker.allowRequest()).isFalse();
+        } finally {
+            fastBreaker.stop();
+        }
+    }
+
+    private static RuntimeException networkError() {
+        return new UncheckedIOException(new ConnectException("Connection refused"));
+    }
+
+    private static void awaitCondition(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met within 5s");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
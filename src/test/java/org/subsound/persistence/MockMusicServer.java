@@ -11,10 +11,12 @@ import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.subsound.ui.views.TestPlayerPage.loadSamples;
@@ -25,6 +27,8 @@ public class MockMusicServer {
     private final int port;
     private final Map<String, SampleSong> songIdMapping;
     private final HttpServer server;
+    private volatile boolean rangeRequests = false;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
 
     public MockMusicServer() {
         this(defaultSamples);
@@ -58,7 +62,19 @@ public class MockMusicServer {
                 respond(exchange, 400, "text/plain", "Missing songId=%s".formatted(songId));
                 return;
             }
-            respond(exchange, 200, "", song.data);
+            if (failuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                // an error page larger than the socket buffers, the client has to close it
+                respond(exchange, 500, "text/html", new byte[1024 * 1024]);
+                return;
+            }
+            var range = exchange.getRequestHeaders().getFirst("Range");
+            if (this.rangeRequests && range != null && range.startsWith("bytes=")) {
+                int start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                exchange.getResponseHeaders().set("Content-Range", "bytes %d-%d/%d".formatted(start, song.data.length - 1, song.data.length));
+                respond(exchange, 206, "application/octet-stream", Arrays.copyOfRange(song.data, start, song.data.length));
+                return;
+            }
+            respond(exchange, 200, "application/octet-stream", song.data);
         });
     }
 
@@ -76,6 +92,16 @@ public class MockMusicServer {
         }
     }
 
+    // answer Range headers with 206 Partial Content, like a server streaming the original file
+    public void setRangeRequests(boolean rangeRequests) {
+        this.rangeRequests = rangeRequests;
+    }
+
+    // answer the next streams with 500 Internal Server Error
+    public void failNext(int count) {
+        this.failuresLeft.set(count);
+    }
+
     public Collection<SampleSong> getSamples() {
         return this.songIdMapping.values();
     }
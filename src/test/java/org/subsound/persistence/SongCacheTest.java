@@ -1,12 +1,51 @@
 package org.subsound.persistence;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.subsound.integration.ServerClient.TranscodeInfo;
+import org.subsound.persistence.MockMusicServer.SampleSong;
+import org.subsound.persistence.SongCache.CacheResult;
+import org.subsound.persistence.SongCache.CacheSong;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import static org.subsound.persistence.SongCache.toCacheKey;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class SongCacheTest {
+    private static final String SONG_ID = "long-mix";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] songData = randomBytes(3 * 1024 * 1024);
+    private MockMusicServer mockMusicServer;
+
+    @Before
+    public void before() {
+        mockMusicServer = new MockMusicServer(List.of(new SampleSong(SONG_ID, songData)));
+    }
+
+    @After
+    public void tearDown() {
+        mockMusicServer.stop();
+    }
 
     @Test
     public void getSong() {
@@ -25,4 +64,89 @@ public class SongCacheTest {
     @Test
     public void joinPath() {
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStreamSongServesRangesWhileDownloading() throws Exception {
+        mockMusicServer.setRangeRequests(true);
+        var songCache = newSongCache();
+        try {
+            var streamed = songCache.streamSong(cacheSong());
+            assertThat(streamed.playbackUri().getScheme()).isEqualTo("http");
+
+            // a seek near the end, like GStreamer does it
+            int offset = songData.length - 100_000;
+            var res = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(streamed.playbackUri()).header("Range", "bytes=%d-".formatted(offset)).build(),
+                    HttpResponse.BodyHandlers.ofByteArray()
+            );
+            assertThat(res.statusCode()).isEqualTo(206);
+            assertThat(res.headers().firstValue("Content-Range")).contains("bytes %d-%d/%d".formatted(offset, songData.length - 1, songData.length));
+            assertThat(res.body()).isEqualTo(Arrays.copyOfRange(songData, offset, songData.length));
+
+            var cached = streamed.completed().get(30, TimeUnit.SECONDS);
+            assertThat(cached.result()).isEqualTo(CacheResult.MISS);
+            assertThat(Files.readAllBytes(Path.of(cached.uri()))).isEqualTo(songData);
+
+            // cached now
+            var again = songCache.streamSong(cacheSong());
+            assertThat(again.playbackUri()).isEqualTo(cached.uri());
+            assertThat(again.completed().getNow(null).result()).isEqualTo(CacheResult.HIT);
+        } finally {
+            songCache.close();
+        }
+    }
+
+    @Test
+    public void testStreamSongWithoutRangesDownloadsWhole() throws Exception {
+        mockMusicServer.setRangeRequests(false);
+        var songCache = newSongCache();
+        try {
+            var streamed = songCache.streamSong(cacheSong());
+            assertThat(streamed.completed()).isDone();
+            assertThat(streamed.playbackUri().getScheme()).isEqualTo("file");
+            assertThat(Files.readAllBytes(Path.of(streamed.playbackUri()))).isEqualTo(songData);
+        } finally {
+            songCache.close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testServerErrorsReleaseTheStream() throws Exception {
+        var songCache = newSongCache();
+        try {
+            // more failures than streams may be open at once
+            mockMusicServer.failNext(4);
+            for (int i = 0; i < 4; i++) {
+                assertThatThrownBy(() -> songCache.getSong(cacheSong())).hasMessageContaining("statusCode=500");
+            }
+
+            var result = songCache.getSong(cacheSong());
+            assertThat(result.result()).isEqualTo(CacheResult.MISS);
+            assertThat(Files.readAllBytes(Path.of(result.uri()))).isEqualTo(songData);
+        } finally {
+            songCache.close();
+        }
+    }
+
+    private SongCache newSongCache() throws Exception {
+        var dataDir = folder.newFolder("data").toPath();
+        return new SongCache(dataDir, transcodeInfo -> mockMusicServer.getTranscodeStream(transcodeInfo.songId()));
+    }
+
+    private CacheSong cacheSong() {
+        return new CacheSong(
+                "server-1",
+                SONG_ID,
+                new TranscodeInfo(SONG_ID, Optional.empty(), 320, Duration.ofMinutes(90), "mp3"),
+                "mp3",
+                songData.length,
+                (total, count) -> {}
+        );
+    }
+
+    private static byte[] randomBytes(int length) {
+        var data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,95 @@
+package org.subsound.persistence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SparseCacheFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testExtentsMerge() throws Exception {
+        try (var file = new SparseCacheFile(folder.newFile("song.part").toPath(), 100)) {
+            assertThat(file.firstMissing(0)).isEqualTo(OptionalLong.of(0));
+
+            file.write(50, bytes(10, 50));
+            assertThat(file.downloadedBytes()).isEqualTo(10);
+            assertThat(file.availableUntil(50)).isEqualTo(60);
+            assertThat(file.availableUntil(60)).isEqualTo(60);
+            assertThat(file.firstMissing(50)).isEqualTo(OptionalLong.of(60));
+
+            // overlaps the start of the extent at 50
+            file.write(40, bytes(15, 40));
+            assertThat(file.downloadedBytes()).isEqualTo(20);
+            assertThat(file.availableUntil(40)).isEqualTo(60);
+
+            file.write(60, bytes(40, 60));
+            assertThat(file.firstMissing(70)).isEqualTo(OptionalLong.of(0));
+
+            file.write(0, bytes(40, 0));
+            assertThat(file.isComplete()).isTrue();
+            assertThat(file.firstMissing(0)).isEmpty();
+
+            var all = ByteBuffer.allocate(100);
+            while (all.hasRemaining()) {
+                assertThat(file.read(all.position(), all, Duration.ZERO)).isPositive();
+            }
+            assertThat(all.array()).isEqualTo(bytes(100, 0).array());
+            assertThat(file.read(100, ByteBuffer.allocate(1), Duration.ZERO)).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void testReadWaitsForTheDownload() throws Exception {
+        try (var file = new SparseCacheFile(folder.newFile("song.part").toPath(), 100)) {
+            var dst = ByteBuffer.allocate(100);
+            var read = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return file.read(30, dst, Duration.ofSeconds(10));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(50);
+            assertThat(read).isNotDone();
+
+            file.write(30, bytes(20, 30));
+            // only up to the end of the downloaded extent
+            assertThat(read.get(5, TimeUnit.SECONDS)).isEqualTo(20);
+            assertThat(dst.position()).isEqualTo(20);
+            assertThat(dst.get(0)).isEqualTo((byte) 30);
+        }
+    }
+
+    @Test
+    public void testReadFailsWhenTheDownloadFails() throws Exception {
+        try (var file = new SparseCacheFile(folder.newFile("song.part").toPath(), 100)) {
+            file.fail(new IOException("connection reset"));
+            assertThatThrownBy(() -> file.read(0, ByteBuffer.allocate(10), Duration.ofSeconds(10)))
+                    .isInstanceOf(IOException.class)
+                    .hasRootCauseMessage("connection reset");
+            assertThatThrownBy(() -> file.read(0, ByteBuffer.allocate(10), Duration.ZERO))
+                    .isInstanceOf(IOException.class);
+        }
+    }
+
+    // the byte at each offset is the offset, so misplaced writes show up
+    private static ByteBuffer bytes(int length, int offset) {
+        var data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (offset + i);
+        }
+        return ByteBuffer.wrap(data);
+    }
+}
@@ -0,0 +1,96 @@
+package org.subsound.persistence.database;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_ALBUMS_BY_ADDED_AT_PAGE_SQL;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_ALBUMS_BY_ADDED_AT_SQL;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_ALBUMS_BY_ARTIST_SQL;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_ALBUMS_BY_YEAR_SQL;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_ARTISTS_PAGE_SQL;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_DOWNLOAD_QUEUE_PAGE_SQL;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_DOWNLOAD_QUEUE_SQL;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_PLAYLIST_SONG_IDS_SQL;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_SONGS_BY_ALBUM_SQL;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_SONGS_BY_STARRED_AT_PAGE_SQL;
+import static org.subsound.persistence.database.DatabaseServerService.LIST_SONGS_BY_STARRED_AT_SQL;
+
+/**
+ * Every hot query in {@link DatabaseServerService} is answered from an index: no table scan, no sorting.
+ */
+public class DatabaseIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Database db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new Database("jdbc:sqlite:" + folder.newFile("test_indexes.db").getAbsolutePath());
+    }
+
+    @Test
+    public void testAlbumQueriesUseIndexes() throws Exception {
+        assertThat(plan(LIST_ALBUMS_BY_ARTIST_SQL, "server", "artist")).containsExactly(
+                "SEARCH albums USING INDEX idx_albums_server_artist (server_id=? AND artist_id=?)");
+        assertThat(plan(LIST_ALBUMS_BY_ADDED_AT_SQL, "server")).containsExactly(
+                "SEARCH albums USING INDEX idx_albums_server_added_at (server_id=?)");
+        assertThat(plan(LIST_ALBUMS_BY_YEAR_SQL, "server", 10)).containsExactly(
+                "SEARCH albums USING INDEX idx_albums_server_year (server_id=? AND year>?)");
+    }
+
+    @Test
+    public void testSongQueriesUseIndexes() throws Exception {
+        assertThat(plan(LIST_SONGS_BY_ALBUM_SQL, "server", "album")).containsExactly(
+                "SEARCH songs USING INDEX idx_songs_server_album (server_id=? AND album_id=?)");
+        assertThat(plan(LIST_SONGS_BY_STARRED_AT_SQL, "server")).containsExactly(
+                "SEARCH songs USING INDEX idx_songs_server_starred_at (server_id=? AND starred_at_ms>?)");
+    }
+
+    @Test
+    public void testPlaylistAndDownloadQueriesUseIndexes() throws Exception {
+        assertThat(plan(LIST_PLAYLIST_SONG_IDS_SQL, "playlist", "server")).containsExactly(
+                "SEARCH playlist_songs USING COVERING INDEX idx_playlist_songs_server_playlist (server_id=? AND playlist_id=?)");
+        assertThat(plan(LIST_DOWNLOAD_QUEUE_SQL.formatted("?,?"), "server", "PENDING", "FAILED")).containsExactly(
+                "SEARCH download_queue USING INDEX idx_download_queue_server_status (server_id=? AND status=?)");
+    }
+
+    @Test
+    public void testPageQueriesSeekToTheCursor() throws Exception {
+        assertThat(plan(LIST_ARTISTS_PAGE_SQL, "server", "abba", "abba", "artist", 50)).containsExactly(
+                "SEARCH artists USING INDEX idx_artists_server_name (server_id=? AND name>?)");
+        assertThat(plan(LIST_ALBUMS_BY_ADDED_AT_PAGE_SQL, "server", 1L, "album", 50)).containsExactly(
+                "SEARCH albums USING INDEX idx_albums_server_added_at (server_id=? AND (added_at_ms,id)<(?,?))");
+        assertThat(plan(LIST_SONGS_BY_STARRED_AT_PAGE_SQL, "server", 1L, "song", 50)).containsExactly(
+                "SEARCH songs USING INDEX idx_songs_server_starred_at (server_id=? AND starred_at_ms>? AND (starred_at_ms,id)<(?,?))");
+        assertThat(plan(LIST_DOWNLOAD_QUEUE_PAGE_SQL.formatted("?,?"), "server", "PENDING", "FAILED", 1L, "song", 50)).containsExactly(
+                "SEARCH download_queue USING INDEX idx_download_queue_server_added_at (server_id=? AND (added_at,song_id)<(?,?))");
+    }
+
+    private List<String> plan(String sql, Object... params) throws SQLException {
+        List<String> details = new ArrayList<>();
+        try (Connection conn = db.openReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    details.add(rs.getString("detail"));
+                }
+            }
+        }
+        return details;
+    }
+}
@@ -15,6 +15,7 @@ import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -397,4 +398,282 @@ public class DatabaseServerServiceTest {
         queue = service.listDownloadQueue();
         Assertions.assertThat(queue).isEmpty();
     }
+
+    @Test
+    public void testAppendPlaylistSongs() throws Exception {
+        File dbFile = folder.newFile("test_playlist_append.db");
+        Database db = new Database("jdbc:sqlite:" + dbFile.getAbsolutePath());
+
+        UUID serverId = UUID.randomUUID();
+        DatabaseServerService service = new DatabaseServerService(serverId, db);
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        String playlistId = "playlist-append";
+        service.upsertPlaylist(new PlaylistRow(playlistId, serverId, "Mix", 1, Duration.ZERO, Optional.empty(), now, now));
+        service.insertPlaylistSong(playlistId, "song-a", 0);
+
+        service.appendPlaylistSongs(playlistId, List.of("song-b", "song-a"));
+
+        Assertions.assertThat(service.listPlaylistSongIds(playlistId))
+                .containsExactly("song-a", "song-b", "song-a");
+        Assertions.assertThat(service.getPlaylistById(playlistId).orElseThrow().songCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testPendingMutationsLastWriterWins() throws Exception {
+        File dbFile = folder.newFile("test_pending_mutations.db");
+        Database db = new Database("jdbc:sqlite:" + dbFile.getAbsolutePath());
+
+        UUID serverId = UUID.randomUUID();
+        DatabaseServerService service = new DatabaseServerService(serverId, db);
+
+        Assertions.assertThat(service.hasPendingMutations()).isFalse();
+
+        service.enqueueMutation(PendingMutation.MutationKind.STAR, "song-1", "");
+        service.enqueueMutation(PendingMutation.MutationKind.PLAYLIST_ADD, "playlist-1", "{}");
+        service.enqueueMutation(PendingMutation.MutationKind.UNSTAR, "song-1", "");
+        service.enqueueMutation(PendingMutation.MutationKind.PLAYLIST_ADD, "playlist-1", "{}");
+
+        var pending = service.listPendingMutations(10);
+        // the STAR was superseded by the UNSTAR, playlist adds are kept in order
+        Assertions.assertThat(pending)
+                .extracting(PendingMutation::kind)
+                .containsExactly(
+                        PendingMutation.MutationKind.PLAYLIST_ADD,
+                        PendingMutation.MutationKind.UNSTAR,
+                        PendingMutation.MutationKind.PLAYLIST_ADD
+                );
+        Assertions.assertThat(service.hasPendingMutations("playlist-1")).isTrue();
+        Assertions.assertThat(service.hasPendingMutations("song-2")).isFalse();
+
+        service.markMutationFailed(pending.get(0).id(), "boom");
+        Assertions.assertThat(service.listPendingMutations(1).getFirst().attempts()).isEqualTo(1);
+
+        service.deleteMutations(pending.stream().map(PendingMutation::id).toList());
+        Assertions.assertThat(service.hasPendingMutations()).isFalse();
+    }
+
+    @Test
+    public void testSetStarredAt() throws Exception {
+        File dbFile = folder.newFile("test_starred_at.db");
+        Database db = new Database("jdbc:sqlite:" + dbFile.getAbsolutePath());
+
+        UUID serverId = UUID.randomUUID();
+        DatabaseServerService service = new DatabaseServerService(serverId, db);
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        service.insert(searchSong(serverId, "song-1", "Hoppípolla"));
+        service.insert(new Album(
+                "album-1", serverId, "artist-1", "Takk...", 11, Optional.of(2005), "Sigur Rós",
+                Duration.ofMinutes(65), Optional.empty(), Optional.empty(), now, Optional.empty()
+        ));
+        service.insert(new Artist("artist-1", serverId, "Sigur Rós", 1, Optional.empty(), Optional.empty(), Optional.empty()));
+
+        for (String id : List.of("song-1", "album-1", "artist-1")) {
+            service.setStarredAt(id, Optional.of(now));
+        }
+        Assertions.assertThat(service.getSongById("song-1").orElseThrow().starredAt()).contains(now);
+        Assertions.assertThat(service.getAlbumById("album-1").orElseThrow().starredAt()).contains(now);
+        Assertions.assertThat(service.getArtistById("artist-1").orElseThrow().starredAt()).contains(now);
+
+        for (String id : List.of("song-1", "album-1", "artist-1")) {
+            service.setStarredAt(id, Optional.empty());
+        }
+        Assertions.assertThat(service.getSongById("song-1").orElseThrow().starredAt()).isEmpty();
+        Assertions.assertThat(service.getAlbumById("album-1").orElseThrow().starredAt()).isEmpty();
+        Assertions.assertThat(service.getArtistById("artist-1").orElseThrow().starredAt()).isEmpty();
+    }
+
+    @Test
+    public void testSwapStagedLibraryKeepsPendingStars() throws Exception {
+        File dbFile = folder.newFile("test_swap_pending_stars.db");
+        Database db = new Database("jdbc:sqlite:" + dbFile.getAbsolutePath());
+
+        UUID serverId = UUID.randomUUID();
+        DatabaseServerService service = new DatabaseServerService(serverId, db);
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        var artist = new Artist("artist-1", serverId, "Sigur Rós", 1, Optional.empty(), Optional.empty(), Optional.empty());
+        var songs = List.of(searchSong(serverId, "song-1", "Hoppípolla"), searchSong(serverId, "song-2", "Glósóli"));
+        service.insert(artist);
+        songs.forEach(service::insert);
+        // starred locally, song-1 and the artist are still waiting for the server
+        for (String id : List.of("song-1", "song-2", "artist-1")) {
+            service.setStarredAt(id, Optional.of(now));
+        }
+        service.enqueueMutation(PendingMutation.MutationKind.STAR, "song-1", "");
+        service.enqueueMutation(PendingMutation.MutationKind.STAR, "artist-1", "");
+
+        // the server does not know about any of the stars
+        service.beginStagedSync(Duration.ofDays(1));
+        service.ingestBatch(
+                DatabaseServerService.LibraryTables.STAGING,
+                List.of(artist),
+                List.of(new AlbumBatch(
+                        new Album("album-1", serverId, "artist-1", "Takk...", 2, Optional.of(2005), "Sigur Rós",
+                                Duration.ofMinutes(65), Optional.empty(), Optional.empty(), now, Optional.empty()),
+                        songs,
+                        Optional.empty()
+                )),
+                List.of("artist-1")
+        );
+        service.swapStagedLibrary();
+
+        Assertions.assertThat(service.getSongById("song-1").orElseThrow().starredAt()).contains(now);
+        Assertions.assertThat(service.getArtistById("artist-1").orElseThrow().starredAt()).contains(now);
+        Assertions.assertThat(service.getSongById("song-2").orElseThrow().starredAt()).isEmpty();
+    }
+
+    @Test
+    public void testPendingMutationsByKind() throws Exception {
+        File dbFile = folder.newFile("test_pending_mutations_kind.db");
+        Database db = new Database("jdbc:sqlite:" + dbFile.getAbsolutePath());
+
+        UUID serverId = UUID.randomUUID();
+        DatabaseServerService service = new DatabaseServerService(serverId, db);
+        var stars = List.of(PendingMutation.MutationKind.STAR, PendingMutation.MutationKind.UNSTAR);
+
+        service.enqueueMutation(PendingMutation.MutationKind.PLAYLIST_ADD, "playlist-1", "{}");
+        Assertions.assertThat(service.hasPendingMutations(stars)).isFalse();
+
+        service.enqueueMutation(PendingMutation.MutationKind.UNSTAR, "song-1", "");
+        Assertions.assertThat(service.hasPendingMutations(stars)).isTrue();
+    }
+
+    @Test
+    public void testReplacePlaylistSongs() throws Exception {
+        File dbFile = folder.newFile("test_playlist_replace.db");
+        Database db = new Database("jdbc:sqlite:" + dbFile.getAbsolutePath());
+
+        UUID serverId = UUID.randomUUID();
+        DatabaseServerService service = new DatabaseServerService(serverId, db);
+
+        String playlistId = "playlist-1";
+
+        Assertions.assertThat(service.replacePlaylistSongs(playlistId, List.of("song-a", "song-b", "song-c"))).isEqualTo(3);
+        Assertions.assertThat(service.listPlaylistSongIds(playlistId)).containsExactly("song-a", "song-b", "song-c");
+
+        // unchanged: nothing written
+        Assertions.assertThat(service.replacePlaylistSongs(playlistId, List.of("song-a", "song-b", "song-c"))).isEqualTo(0);
+
+        // appended: only the new position is written
+        Assertions.assertThat(service.replacePlaylistSongs(playlistId, List.of("song-a", "song-b", "song-c", "song-a"))).isEqualTo(1);
+        Assertions.assertThat(service.listPlaylistSongIds(playlistId)).containsExactly("song-a", "song-b", "song-c", "song-a");
+
+        // shrunk and reordered: trailing positions are removed
+        service.replacePlaylistSongs(playlistId, List.of("song-c", "song-b"));
+        Assertions.assertThat(service.listPlaylistSongIds(playlistId)).containsExactly("song-c", "song-b");
+
+        service.replacePlaylistSongs(playlistId, List.of());
+        Assertions.assertThat(service.listPlaylistSongIds(playlistId)).isEmpty();
+    }
+
+    @Test
+    public void testLocalSearch() throws Exception {
+        File dbFile = folder.newFile("test_local_search.db");
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        Database db = new Database(url);
+
+        UUID serverId = UUID.randomUUID();
+        DatabaseServerService service = new DatabaseServerService(serverId, db);
+        UUID otherServerId = UUID.randomUUID();
+        DatabaseServerService otherServer = new DatabaseServerService(otherServerId, db);
+
+        service.insert(new Artist("artist-1", serverId, "Sigur Rós", 1, Optional.empty(), Optional.empty(), Optional.empty()));
+        service.insert(searchSong(serverId, "song-1", "Hoppípolla"));
+        service.insert(searchSong(serverId, "song-2", "Glósóli"));
+        otherServer.insert(searchSong(otherServerId, "song-1", "Hoppípolla"));
+
+        // prefix and accent insensitive, only this server's rows
+        Assertions.assertThat(service.searchSongs("hoppi", 10)).extracting(Song::name).containsExactly("Hoppípolla");
+        Assertions.assertThat(service.searchSongs("sigur ros", 10)).extracting(Song::id).containsExactlyInAnyOrder("song-1", "song-2");
+        Assertions.assertThat(service.searchArtists("ros", 10)).extracting(Artist::id).containsExactly("artist-1");
+        // punctuation never reaches the FTS5 query parser
+        Assertions.assertThat(service.searchSongs("(glósóli\"*)", 10)).extracting(Song::id).containsExactly("song-2");
+        Assertions.assertThat(service.searchSongs("  -- ", 10)).isEmpty();
+
+        // the index follows replaced and deleted rows
+        service.insert(searchSong(serverId, "song-1", "Svefn-g-englar"));
+        Assertions.assertThat(service.searchSongs("hoppipolla", 10)).isEmpty();
+        Assertions.assertThat(service.searchSongs("svefn englar", 10)).extracting(Song::id).containsExactly("song-1");
+        service.deleteAllSongs();
+        Assertions.assertThat(service.searchSongs("svefn", 10)).isEmpty();
+        Assertions.assertThat(otherServer.searchSongs("hoppipolla", 10)).hasSize(1);
+    }
+
+    @Test
+    public void testListPages() throws Exception {
+        File dbFile = folder.newFile("test_list_pages.db");
+        Database db = new Database("jdbc:sqlite:" + dbFile.getAbsolutePath());
+
+        UUID serverId = UUID.randomUUID();
+        DatabaseServerService service = new DatabaseServerService(serverId, db);
+
+        // artists page by name ignoring case, ties broken by id
+        for (var artist : List.of("artist-1:beta", "artist-2:Alpha", "artist-3:alpha", "artist-4:Gamma", "artist-5:delta")) {
+            var parts = artist.split(":");
+            service.insert(new Artist(parts[0], serverId, parts[1], 1, Optional.empty(), Optional.empty(), Optional.empty()));
+        }
+        var firstArtists = service.listArtists(2);
+        Assertions.assertThat(firstArtists.items()).extracting(Artist::name).containsExactly("Alpha", "alpha");
+        Assertions.assertThat(allPages(firstArtists)).extracting(Artist::id)
+                .containsExactly("artist-2", "artist-3", "artist-1", "artist-5", "artist-4");
+
+        // starred songs page newest first, songs starred at the same instant are neither skipped nor repeated
+        var starredAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        for (int i = 1; i <= 5; i++) {
+            var song = searchSong(serverId, "song-" + i, "Song " + i);
+            service.insert(song);
+            service.setStarredAt(song.id(), Optional.of(i == 5 ? starredAt.plusSeconds(1) : starredAt));
+        }
+        service.insert(searchSong(serverId, "song-unstarred", "Unstarred"));
+        Assertions.assertThat(allPages(service.listSongsByStarredAt(2))).extracting(Song::id)
+                .containsExactly("song-5", "song-4", "song-3", "song-2", "song-1");
+
+        // the download queue pages newest first
+        for (int i = 1; i <= 5; i++) {
+            var songId = "song-" + i;
+            service.addToDownloadQueue(ServerClientSongInfoBuilder.builder()
+                    .id(songId)
+                    .title("Song " + i)
+                    .artistId("artist-1")
+                    .artist("Artist Name")
+                    .albumId("album-1")
+                    .album("Album Name")
+                    .duration(Duration.ofMinutes(3))
+                    .size(1000L)
+                    .suffix("mp3")
+                    .transcodeInfo(new TranscodeInfo(songId, Optional.of(320), 128, Duration.ofMinutes(3), "mp3"))
+                    .downloadUri(URI.create("http://example.com/download"))
+                    .build());
+        }
+        var downloads = service.listDownloadQueue(List.of(DownloadQueueItem.DownloadStatus.PENDING), 2);
+        Assertions.assertThat(downloads.items()).hasSize(2);
+        Assertions.assertThat(allPages(downloads)).extracting(DownloadQueueItem::songId)
+                .containsExactly("song-5", "song-4", "song-3", "song-2", "song-1");
+        Assertions.assertThat(service.listDownloadQueue(List.of(DownloadQueueItem.DownloadStatus.COMPLETED), 2).items()).isEmpty();
+    }
+
+    private static <T> List<T> allPages(Page<T> page) {
+        List<T> items = new ArrayList<>(page.items());
+        while (page.hasMore()) {
+            page = page.next().get().get();
+            items.addAll(page.items());
+        }
+        return items;
+    }
+
+    @Test
+    public void testToFtsQuery() {
+        Assertions.assertThat(DatabaseServerService.toFtsQuery("AC/DC back-in")).contains("\"AC\"* \"DC\"* \"back\"* \"in\"*");
+        Assertions.assertThat(DatabaseServerService.toFtsQuery("\"*()")).isEmpty();
+    }
+
+    private static Song searchSong(UUID serverId, String id, String name) {
+        return new Song(
+                id, serverId, "album-1", "Ágætis byrjun", name, Optional.of(1999),
+                "artist-1", "Sigur Rós", Duration.ofMinutes(6), Optional.empty(), Optional.empty(),
+                Instant.now(), Optional.of(1), Optional.of(1), Optional.of(320), 7_000_000L, "Post-rock", "mp3"
+        );
+    }
 }
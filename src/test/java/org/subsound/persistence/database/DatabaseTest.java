@@ -8,7 +8,9 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.UUID;
 
@@ -24,7 +26,7 @@ public class DatabaseTest {
 
         Database db = new Database(url);
 
-        try (Connection conn = db.openConnection();
+        try (Connection conn = db.openWriteConnection();
              Statement stmt = conn.createStatement()) {
 
             // Check if schema_version table exists
@@ -40,7 +42,7 @@ public class DatabaseTest {
             // Check version
             try (ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
                 Assertions.assertThat(rs.next()).isTrue();
-                Assertions.assertThat(rs.getInt(1)).isEqualTo(11);
+                Assertions.assertThat(rs.getInt(1)).isEqualTo(20);
             }
 
             // Check if artists table exists
@@ -111,7 +113,7 @@ public class DatabaseTest {
         String coverArtId = "cover-1";
         String biography = "{\"original\":\"Long bio\",\"cleaned\":\"Short bio\",\"link\":\"http://link\"}";
 
-        try (Connection conn = db.openConnection();
+        try (Connection conn = db.openWriteConnection();
              Statement stmt = conn.createStatement()) {
             stmt.executeUpdate(String.format(
                 "INSERT INTO artists (id, server_id, name, album_count, starred_at, cover_art_id, biography) VALUES ('%s', '%s', '%s', %d, %d, '%s', '%s')",
@@ -119,7 +121,7 @@ public class DatabaseTest {
             ));
         }
 
-        try (Connection conn = db.openConnection();
+        try (Connection conn = db.openWriteConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery("SELECT * FROM artists WHERE id = '" + id + "'")) {
             Assertions.assertThat(rs.next()).isTrue();
@@ -143,7 +145,7 @@ public class DatabaseTest {
         String serverUrl = "http://localhost:4040";
         String username = "user";
 
-        try (Connection conn = db.openConnection();
+        try (Connection conn = db.openWriteConnection();
              Statement stmt = conn.createStatement()) {
             stmt.executeUpdate(String.format(
                 "INSERT INTO servers (id, is_primary, server_type, server_url, username) VALUES ('%s', %d, '%s', '%s', '%s')",
@@ -151,7 +153,7 @@ public class DatabaseTest {
             ));
         }
 
-        try (Connection conn = db.openConnection();
+        try (Connection conn = db.openWriteConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery("SELECT * FROM servers WHERE id = '" + id + "'")) {
             Assertions.assertThat(rs.next()).isTrue();
@@ -160,4 +162,89 @@ public class DatabaseTest {
             Assertions.assertThat(rs.getString("username")).isEqualTo(username);
         }
     }
+
+    @Test
+    public void testReadConnectionsAreReadOnly() throws Exception {
+        File dbFile = folder.newFile("test_read_pool.db");
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        Database db = new Database(url);
+
+        String id = UUID.randomUUID().toString();
+        try (Connection writer = db.openWriteConnection();
+             Statement stmt = writer.createStatement()) {
+            writer.setAutoCommit(false);
+            stmt.executeUpdate("INSERT INTO servers (id, is_primary, server_type, server_url, username) VALUES ('%s', 1, 'subsonic', 'http://localhost:4040', 'user')".formatted(id));
+
+            // readers are not blocked by the open write transaction, and only see committed rows
+            try (Connection reader = db.openReadConnection();
+                 Statement readStmt = reader.createStatement();
+                 ResultSet rs = readStmt.executeQuery("SELECT COUNT(*) FROM servers WHERE id = '" + id + "'")) {
+                Assertions.assertThat(rs.next()).isTrue();
+                Assertions.assertThat(rs.getInt(1)).isEqualTo(0);
+            }
+            writer.commit();
+        }
+
+        try (Connection reader = db.openReadConnection();
+             Statement stmt = reader.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM servers WHERE id = '" + id + "'")) {
+                Assertions.assertThat(rs.next()).isTrue();
+                Assertions.assertThat(rs.getInt(1)).isEqualTo(1);
+            }
+            Assertions.assertThatThrownBy(() -> stmt.executeUpdate("DELETE FROM servers"))
+                    .isInstanceOf(SQLException.class);
+        }
+    }
+
+    @Test
+    public void testMaintenanceShrinksTheFileAndKeepsTheSearchIndex() throws Exception {
+        File dbFile = folder.newFile("test_maintenance.db");
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        Database db = new Database(url, Database.DEFAULT_READ_POOL_SIZE, Database.Tuning.SMALL);
+
+        String padding = " padding".repeat(40);
+        try (Connection conn = db.openWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement("INSERT INTO artists (id, server_id, name, album_count) VALUES (?, 'server', ?, 1)")) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < 2000; i++) {
+                pstmt.setString(1, "artist-" + i);
+                pstmt.setString(2, "Artist" + i + padding);
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        try (Connection conn = db.openWriteConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM artists WHERE id NOT IN ('artist-7', 'artist-1999')");
+        }
+
+        // first run converts the file to incremental vacuum with a full VACUUM
+        var first = db.runMaintenance();
+        Assertions.assertThat(first.vacuumed()).isTrue();
+        Assertions.assertThat(first.sizeAfterBytes()).isLessThan(first.sizeBeforeBytes());
+        Assertions.assertThat(first.freePagesAfter()).isEqualTo(0);
+
+        var second = db.runMaintenance();
+        Assertions.assertThat(second.vacuumed()).isFalse();
+        Assertions.assertThat(second.freePagesAfter()).isEqualTo(0);
+
+        try (Connection conn = db.openReadConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA auto_vacuum")) {
+                Assertions.assertThat(rs.next()).isTrue();
+                Assertions.assertThat(rs.getInt(1)).isEqualTo(2);
+            }
+            // the search index still points at the right rows after the VACUUM
+            try (ResultSet rs = stmt.executeQuery("SELECT a.id FROM artists_fts f JOIN artists a ON a.rowid = f.rowid WHERE artists_fts MATCH 'artist1999'")) {
+                Assertions.assertThat(rs.next()).isTrue();
+                Assertions.assertThat(rs.getString(1)).isEqualTo("artist-1999");
+                Assertions.assertThat(rs.next()).isFalse();
+            }
+            try (ResultSet rs = stmt.executeQuery("PRAGMA cache_size")) {
+                Assertions.assertThat(rs.next()).isTrue();
+                Assertions.assertThat(rs.getInt(1)).isEqualTo(-Database.Tuning.SMALL.cacheSizeKiB());
+            }
+        }
+    }
 }
@@ -0,0 +1,131 @@
+package org.subsound.persistence.database;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlayQueueServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEmptyQueue() throws Exception {
+        var service = new PlayQueueService(UUID.randomUUID(), createDb("test_empty.db"));
+
+        var saved = service.load();
+        assertThat(saved.items()).isEmpty();
+        assertThat(saved.state()).isEmpty();
+    }
+
+    @Test
+    public void testIncrementalWrites() throws Exception {
+        var service = new PlayQueueService(UUID.randomUUID(), createDb("test_incremental.db"));
+        service.replaceAll(List.of(row(1, "a", 0), row(2, "b", 1), row(3, "c", 2)));
+
+        // inserted between a and b
+        service.insert(row(4, "d", PlayQueueService.sortKeyBetween(0, 1).orElseThrow()));
+        service.remove(3);
+        // b moved to the front
+        service.updateOrder(List.of(row(2, "b", -1)));
+
+        var songIds = service.load().items().stream().map(PlayQueueRow::songId).toList();
+        assertThat(songIds).containsExactly("b", "a", "d");
+    }
+
+    @Test
+    public void testReplaceAll() throws Exception {
+        var service = new PlayQueueService(UUID.randomUUID(), createDb("test_replace.db"));
+        service.replaceAll(List.of(row(1, "a", 0), row(2, "b", 1)));
+        service.replaceAll(List.of(row(3, "c", 0)));
+
+        var items = service.load().items();
+        assertThat(items).containsExactly(row(3, "c", 0));
+    }
+
+    @Test
+    public void testSaveState() throws Exception {
+        var service = new PlayQueueService(UUID.randomUUID(), createDb("test_state.db"));
+        var state = new PlayQueueStateRow(Optional.of(3), "SHUFFLE", Optional.of("playlist"), Optional.of("playlist-1"));
+        service.saveState(state);
+        assertThat(service.load().state()).contains(state);
+
+        var nothingPlaying = new PlayQueueStateRow(Optional.empty(), "NORMAL", Optional.empty(), Optional.empty());
+        service.saveState(nothingPlaying);
+        assertThat(service.load().state()).contains(nothingPlaying);
+    }
+
+    @Test
+    public void testSaveShuffleOrder() throws Exception {
+        var service = new PlayQueueService(UUID.randomUUID(), createDb("test_shuffle_order.db"));
+        service.replaceAll(List.of(row(1, "a", 0), row(2, "b", 1), row(3, "c", 2)));
+        assertThat(service.load().shuffleOrder()).isNull();
+
+        service.saveShuffleOrder(new int[]{2, 0, 1});
+        var state = new PlayQueueStateRow(Optional.of(0), "SHUFFLE", Optional.empty(), Optional.empty());
+        service.saveState(state);
+        var saved = service.load();
+        // the entries stay in their unshuffled order
+        assertThat(saved.items()).extracting(PlayQueueRow::songId).containsExactly("a", "b", "c");
+        assertThat(saved.shuffleOrder()).containsExactly(2, 0, 1);
+        assertThat(saved.state()).contains(state);
+
+        service.saveShuffleOrder(null);
+        assertThat(service.load().shuffleOrder()).isNull();
+    }
+
+    @Test
+    public void testQueuesOfServersAreSeparate() throws Exception {
+        var db = createDb("test_servers.db");
+        var service = new PlayQueueService(UUID.randomUUID(), db);
+        var other = new PlayQueueService(UUID.randomUUID(), db);
+        service.replaceAll(List.of(row(1, "a", 0), row(2, "b", 1)));
+        service.saveState(new PlayQueueStateRow(Optional.of(1), "NORMAL", Optional.empty(), Optional.empty()));
+        other.replaceAll(List.of(row(1, "c", 0)));
+        other.remove(2);
+
+        assertThat(service.load().items()).extracting(PlayQueueRow::songId).containsExactly("a", "b");
+        assertThat(other.load().items()).extracting(PlayQueueRow::songId).containsExactly("c");
+        assertThat(other.load().state()).isEmpty();
+    }
+
+    @Test
+    public void testSortKeyBetween() {
+        assertThat(PlayQueueService.sortKeyBetween(1, 2)).contains(1.5);
+        // keeps halving the gap until there is no double left between the two
+        double before = 0;
+        double after = 1;
+        int inserts = 0;
+        for (var key = PlayQueueService.sortKeyBetween(before, after); key.isPresent(); key = PlayQueueService.sortKeyBetween(before, after)) {
+            after = key.get();
+            inserts++;
+        }
+        assertThat(inserts).isGreaterThan(1000);
+    }
+
+    @Test
+    public void testLoadLargeQueue() throws Exception {
+        var service = new PlayQueueService(UUID.randomUUID(), createDb("test_large.db"));
+        var rows = IntStream.range(0, 10_000).mapToObj(i -> row(i + 1, "song-" + i, i)).toList();
+        service.replaceAll(rows);
+
+        assertThat(service.load().items()).isEqualTo(rows);
+    }
+
+    private static PlayQueueRow row(long entryId, String songId, double sortKey) {
+        return new PlayQueueRow(entryId, "item-" + entryId, songId, sortKey, false);
+    }
+
+    private Database createDb(String name) throws Exception {
+        File dbFile = folder.newFile(name);
+        return new Database("jdbc:sqlite:" + dbFile.getAbsolutePath());
+    }
+}
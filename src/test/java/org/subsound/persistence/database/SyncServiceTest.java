@@ -3,11 +3,13 @@ package org.subsound.persistence.database;
 import org.subsound.persistence.ThumbnailCache;
 import org.subsound.integration.ServerClient;
 import org.subsound.integration.ServerClient.AlbumInfo;
+import org.subsound.integration.ServerClient.AlbumListEntry;
 import org.subsound.integration.ServerClient.ArtistAlbumInfo;
 import org.subsound.integration.ServerClient.ArtistEntry;
 import org.subsound.integration.ServerClient.ArtistInfo;
 import org.subsound.integration.ServerClient.Biography;
 import org.subsound.integration.ServerClient.ListArtists;
+import org.subsound.integration.ServerClient.ListStarred;
 import org.subsound.integration.ServerClient.SongInfo;
 import org.junit.Before;
 import org.junit.Rule;
@@ -16,12 +18,18 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SyncServiceTest {
@@ -84,4 +92,157 @@ public class SyncServiceTest {
         assertThat(databaseServerService.listSongsByAlbumId("album-1")).hasSize(1);
         assertThat(databaseServerService.getSongById("song-1")).isPresent();
     }
+
+    @Test
+    public void testSyncSkipsUnchangedPlaylists() {
+        when(serverClient.getArtists()).thenReturn(new ListArtists(List.of()));
+        var changedAt = Instant.parse("2024-05-01T10:00:00.123Z");
+        var created = Instant.parse("2024-01-01T10:00:00Z");
+        var simple = new ServerClient.PlaylistSimple("pl-1", "Mix", ServerClient.PlaylistKind.NORMAL, Optional.empty(), 0, changedAt, created);
+        var gone = new ServerClient.PlaylistSimple("pl-gone", "Old", ServerClient.PlaylistKind.NORMAL, Optional.empty(), 0, changedAt, created);
+        when(serverClient.getPlaylists()).thenReturn(new ServerClient.ListPlaylists(List.of(simple, gone)));
+        when(serverClient.getPlaylist("pl-1")).thenReturn(new ServerClient.Playlist("pl-1", "Mix", ServerClient.PlaylistKind.NORMAL, Optional.empty(), 0, changedAt, created, List.of()));
+        when(serverClient.getPlaylist("pl-gone")).thenReturn(new ServerClient.Playlist("pl-gone", "Old", ServerClient.PlaylistKind.NORMAL, Optional.empty(), 0, changedAt, created, List.of()));
+
+        var first = syncService.syncAll();
+        assertThat(first.playlists()).isEqualTo(2);
+        assertThat(first.playlistsSkipped()).isEqualTo(0);
+
+        // second sync: pl-1 unchanged, pl-gone deleted on the server
+        when(serverClient.getPlaylists()).thenReturn(new ServerClient.ListPlaylists(List.of(simple)));
+        var second = new SyncService(serverClient, databaseServerService, serverId, mock(ThumbnailCache.class), query -> true).syncAll();
+        assertThat(second.playlists()).isEqualTo(0);
+        assertThat(second.playlistsSkipped()).isEqualTo(1);
+        verify(serverClient, times(1)).getPlaylist("pl-1");
+        assertThat(databaseServerService.listPlaylists()).extracting(PlaylistRow::id).containsExactly("pl-1");
+    }
+
+    @Test
+    public void testIncrementalSyncOnlyFetchesChangedAlbums() {
+        var artist = new ArtistEntry("artist-1", "Artist One", 2, Optional.empty(), Optional.empty());
+        var keep = album("album-1", Instant.parse("2024-01-01T00:00:00Z"));
+        var old = album("album-old", Instant.parse("2024-01-02T00:00:00Z"));
+        when(serverClient.getArtists()).thenReturn(new ListArtists(List.of(artist), Optional.of(Instant.ofEpochMilli(1000))));
+        when(serverClient.getArtistWithAlbums("artist-1")).thenReturn(
+                new ArtistInfo("artist-1", "Artist One", 2, Optional.empty(), Optional.empty(), List.of(keep.album(), old.album()), new Biography("", "", "")));
+        when(serverClient.listNewestAlbums(anyInt(), anyInt())).thenReturn(List.of(old, keep));
+        var keepInfo = albumInfo("album-1", "song-1");
+        when(serverClient.getAlbumInfo("album-1")).thenReturn(keepInfo);
+        var oldInfo = albumInfo("album-old", "song-old");
+        when(serverClient.getAlbumInfo("album-old")).thenReturn(oldInfo);
+        when(serverClient.getPlaylists()).thenReturn(new ServerClient.ListPlaylists(List.of()));
+        when(serverClient.getStarred()).thenReturn(new ListStarred(List.of()));
+
+        syncService.syncAll();
+        assertThat(databaseServerService.getSyncState()).isPresent();
+
+        // the server rescanned: album-old is gone and album-2 was added
+        var added = album("album-2", Instant.parse("2024-02-01T00:00:00Z"));
+        when(serverClient.getArtists()).thenReturn(new ListArtists(List.of(artist), Optional.of(Instant.ofEpochMilli(2000))));
+        when(serverClient.listNewestAlbums(anyInt(), anyInt())).thenReturn(List.of(added, keep));
+        var addedInfo = albumInfo("album-2", "song-2");
+        when(serverClient.getAlbumInfo("album-2")).thenReturn(addedInfo);
+
+        var stats = newSyncService().syncIncremental();
+        assertThat(stats.albums()).isEqualTo(1);
+        assertThat(stats.songs()).isEqualTo(1);
+        verify(serverClient, times(1)).getAlbumInfo("album-1");
+        verify(serverClient, times(1)).getAlbumInfo("album-2");
+        assertThat(databaseServerService.getAlbumById("album-2")).isPresent();
+        assertThat(databaseServerService.getAlbumById("album-old")).isEmpty();
+        assertThat(databaseServerService.getSongById("song-old")).isEmpty();
+        assertThat(databaseServerService.getSongById("song-1")).isPresent();
+
+        // nothing changed on the server: the album list is not even fetched
+        newSyncService().syncIncremental();
+        verify(serverClient, times(2)).listNewestAlbums(anyInt(), anyInt());
+        verify(serverClient, never()).getAlbumInfo("album-old");
+    }
+
+    @Test
+    public void testFailedFullSyncKeepsLiveLibrary() {
+        var artist1 = new ArtistEntry("artist-1", "Artist One", 1, Optional.empty(), Optional.empty());
+        var artist2 = new ArtistEntry("artist-2", "Artist Two", 1, Optional.empty(), Optional.empty());
+        var album1 = album("album-1", Instant.parse("2024-01-01T00:00:00Z"));
+        when(serverClient.getArtists()).thenReturn(new ListArtists(List.of(artist1)));
+        when(serverClient.getArtistWithAlbums("artist-1")).thenReturn(
+                new ArtistInfo("artist-1", "Artist One", 1, Optional.empty(), Optional.empty(), List.of(album1.album()), new Biography("", "", "")));
+        var info1 = albumInfo("album-1", "song-1");
+        when(serverClient.getAlbumInfo("album-1")).thenReturn(info1);
+        when(serverClient.getPlaylists()).thenReturn(new ServerClient.ListPlaylists(List.of()));
+        when(serverClient.getStarred()).thenReturn(new ListStarred(List.of()));
+        syncService.syncAll();
+
+        // the server drops the connection halfway through the next full sync
+        when(serverClient.getArtists()).thenReturn(new ListArtists(List.of(artist1, artist2)));
+        when(serverClient.getArtistWithAlbums("artist-2")).thenThrow(new RuntimeException("connection reset"));
+        assertThatThrownBy(() -> newSyncService().syncAll()).isInstanceOf(RuntimeException.class);
+
+        assertThat(databaseServerService.hasStagedSync()).isTrue();
+        assertThat(databaseServerService.listArtists()).extracting(Artist::id).containsExactly("artist-1");
+        assertThat(databaseServerService.getSongById("song-1")).isPresent();
+    }
+
+    @Test
+    public void testFullSyncResumesFromCheckpoints() {
+        var artist1 = new ArtistEntry("artist-1", "Artist One", 1, Optional.empty(), Optional.empty());
+        var artist2 = new ArtistEntry("artist-2", "Artist Two", 1, Optional.empty(), Optional.empty());
+        var album2 = album("album-2", Instant.parse("2024-01-01T00:00:00Z"));
+        when(serverClient.getArtists()).thenReturn(new ListArtists(List.of(artist1, artist2)));
+        when(serverClient.getArtistWithAlbums("artist-2")).thenReturn(
+                new ArtistInfo("artist-2", "Artist Two", 1, Optional.empty(), Optional.empty(), List.of(album2.album()), new Biography("", "", "")));
+        var info2 = albumInfo("album-2", "song-2");
+        when(serverClient.getAlbumInfo("album-2")).thenReturn(info2);
+        when(serverClient.getPlaylists()).thenReturn(new ServerClient.ListPlaylists(List.of()));
+
+        // an earlier run staged and checkpointed artist-1 before it was interrupted
+        var now = Instant.now();
+        databaseServerService.beginStagedSync(Duration.ofDays(1));
+        databaseServerService.ingestBatch(
+                DatabaseServerService.LibraryTables.STAGING,
+                List.of(new Artist("artist-1", serverId, "Artist One", 1, Optional.empty(), Optional.empty(), Optional.empty())),
+                List.of(new AlbumBatch(
+                        new Album("album-1", serverId, "artist-1", "Album One", 1, Optional.empty(), "Artist One", Duration.ofMinutes(3), Optional.empty(), Optional.empty(), now, Optional.empty()),
+                        List.of(new Song("song-1", serverId, "album-1", "Album One", "Song One", Optional.empty(), "artist-1", "Artist One", Duration.ofMinutes(3),
+                                Optional.empty(), Optional.empty(), now, Optional.empty(), Optional.empty(), Optional.empty(), 0L, "", "mp3")),
+                        Optional.empty()
+                )),
+                List.of("artist-1")
+        );
+        assertThat(databaseServerService.listArtists()).isEmpty();
+
+        var stats = newSyncService().syncIncremental();
+
+        assertThat(stats.artists()).isEqualTo(1);
+        verify(serverClient, never()).getArtistWithAlbums("artist-1");
+        assertThat(databaseServerService.hasStagedSync()).isFalse();
+        assertThat(databaseServerService.listArtists()).extracting(Artist::id).containsExactlyInAnyOrder("artist-1", "artist-2");
+        assertThat(databaseServerService.getSongById("song-1")).isPresent();
+        assertThat(databaseServerService.getSongById("song-2")).isPresent();
+    }
+
+    private SyncService newSyncService() {
+        // a SyncService shuts down its executor after a sync
+        return new SyncService(serverClient, databaseServerService, serverId, mock(ThumbnailCache.class), query -> true);
+    }
+
+    private static AlbumListEntry album(String id, Instant changed) {
+        var info = new ArtistAlbumInfo(id, "Album " + id, 1, "artist-1", "Artist One", Duration.ofMinutes(3), Optional.empty(), Optional.of(2023), Optional.empty(), Optional.empty());
+        return new AlbumListEntry(info, Optional.of(changed), Optional.of(changed));
+    }
+
+    private static AlbumInfo albumInfo(String albumId, String songId) {
+        SongInfo songInfo = mock(SongInfo.class);
+        when(songInfo.id()).thenReturn(songId);
+        when(songInfo.title()).thenReturn("Song " + songId);
+        when(songInfo.albumId()).thenReturn(albumId);
+        when(songInfo.album()).thenReturn("Album " + albumId);
+        when(songInfo.artistId()).thenReturn("artist-1");
+        when(songInfo.artist()).thenReturn("Artist One");
+        when(songInfo.duration()).thenReturn(Duration.ofMinutes(3));
+        when(songInfo.year()).thenReturn(Optional.of(2023));
+        when(songInfo.starred()).thenReturn(Optional.empty());
+        when(songInfo.coverArt()).thenReturn(Optional.empty());
+        return new AlbumInfo(albumId, "Album " + albumId, 1, Optional.of(2023), "artist-1", "Artist One", Duration.ofMinutes(3), Optional.empty(), Optional.empty(), List.of(songInfo));
+    }
 }
@@ -0,0 +1,104 @@
+package org.subsound.ui.models;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GQueueListModelTest {
+
+    @Test
+    public void testShuffledOrder() {
+        var order = GQueueListModel.shuffledOrder(100, 42, new Random(1));
+        assertThat(order[0]).isEqualTo(42);
+        assertThat(Arrays.stream(order).sorted().toArray()).isEqualTo(IntStream.range(0, 100).toArray());
+
+        assertThat(GQueueListModel.shuffledOrder(0, -1, new Random(1))).isEmpty();
+        assertThat(GQueueListModel.shuffledOrder(1, 0, new Random(1))).containsExactly(0);
+    }
+
+    @Test
+    public void testShuffleAndUnshuffleKeepTheEntries() {
+        var model = GQueueListModel.newInstance();
+        var items = items(5);
+        model.setItems(items);
+        model.setOrder(new int[]{3, 0, 4, 1, 2});
+
+        assertThat(model.isShuffled()).isTrue();
+        assertThat(songIds(model)).containsExactly("song-3", "song-0", "song-4", "song-1", "song-2");
+        assertThat(model.getItem(2)).isSameAs(items[4]);
+        assertThat(model.unshuffledPosition(2)).isEqualTo(4);
+        assertThat(model.unshuffledPosition(-1)).isEqualTo(-1);
+        assertThat(model.getItem(5)).isNull();
+
+        model.setOrder(null);
+        assertThat(model.isShuffled()).isFalse();
+        assertThat(songIds(model)).containsExactly("song-0", "song-1", "song-2", "song-3", "song-4");
+        assertThat(model.getItem(4)).isSameAs(items[4]);
+
+        assertThatThrownBy(() -> model.setOrder(new int[]{0, 1}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testInsertAndRemoveWhileShuffled() {
+        var model = GQueueListModel.newInstance();
+        model.setItems(items(4), new int[]{2, 0, 3, 1});
+
+        // after song-0, which is unshuffled after song-0 too
+        model.insert(2, item(10));
+        assertThat(songIds(model)).containsExactly("song-2", "song-0", "song-10", "song-3", "song-1");
+        model.insert(0, item(11));
+        assertThat(songIds(model)).containsExactly("song-11", "song-2", "song-0", "song-10", "song-3", "song-1");
+
+        model.removeAt(4);
+        assertThat(songIds(model)).containsExactly("song-11", "song-2", "song-0", "song-10", "song-1");
+
+        model.setOrder(null);
+        assertThat(songIds(model)).containsExactly("song-11", "song-0", "song-10", "song-1", "song-2");
+    }
+
+    @Test
+    public void testGetOrderAndUnshuffledItem() {
+        var items = items(4);
+        var model = GQueueListModel.newInstance();
+        model.setItems(items, new int[]{2, 0, 3, 1});
+
+        var order = model.getOrder();
+        assertThat(order).containsExactly(2, 0, 3, 1);
+        // a copy, changing it does not reorder the model
+        order[0] = 0;
+        assertThat(songIds(model)).containsExactly("song-2", "song-0", "song-3", "song-1");
+        assertThat(model.getUnshuffledItem(1)).isSameAs(items[1]);
+        assertThat(model.getUnshuffledItem(-1)).isNull();
+        assertThat(model.getUnshuffledItem(4)).isNull();
+
+        model.setOrder(null);
+        assertThat(model.getOrder()).isNull();
+        assertThat(model.getUnshuffledItem(1)).isSameAs(items[1]);
+    }
+
+    private static List<String> songIds(GQueueListModel model) {
+        var songIds = new ArrayList<String>();
+        for (int i = 0; i < model.getNItems(); i++) {
+            songIds.add(model.getItem(i).getId());
+        }
+        return songIds;
+    }
+
+    private static GQueueItem[] items(int count) {
+        return IntStream.range(0, count).mapToObj(GQueueListModelTest::item).toArray(GQueueItem[]::new);
+    }
+
+    private static GQueueItem item(int i) {
+        return GQueueItem.newLazy(i, "item-" + i, "song-" + i, GQueueItem.QueueKind.AUTOMATIC, i, songId -> {
+            throw new AssertionError("not loaded in these tests");
+        });
+    }
+}
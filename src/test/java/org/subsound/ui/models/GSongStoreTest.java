@@ -0,0 +1,75 @@
+package org.subsound.ui.models;
+
+import org.junit.Test;
+import org.subsound.integration.SongInfoFactory;
+import org.subsound.ui.models.GSongInfo.GSongStore;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GSongStoreTest {
+    private final SongInfoFactory songInfoFactory = new SongInfoFactory();
+
+    @Test
+    public void testSameInstancePerSong() {
+        var store = new GSongStore(songInfoFactory::getSongById, key -> Optional.empty());
+        var song = songInfoFactory.newRandomSongInfo();
+
+        var first = store.newInstance(song);
+        assertThat(store.newInstance(song)).isSameAs(first);
+        assertThat(store.getSongById(song.id())).isSameAs(first);
+        assertThat(store.getExisting(song.id())).containsSame(first);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testIdentityWhileReferencedPastTheRecentCapacity() {
+        var store = new GSongStore(songInfoFactory::getSongById, key -> Optional.empty(), 1);
+        var song = songInfoFactory.newRandomSongInfo();
+        // held like a ListStore holds the songs it displays
+        var displayed = store.newInstance(song);
+        for (int i = 0; i < 10; i++) {
+            store.newInstance(songInfoFactory.newRandomSongInfo());
+        }
+        System.gc();
+
+        assertThat(store.getExisting(song.id())).containsSame(displayed);
+        assertThat(store.newInstance(song)).isSameAs(displayed);
+    }
+
+    @Test
+    public void testEvictsUnreferencedSongsPastTheRecentCapacity() throws InterruptedException {
+        var store = new GSongStore(songInfoFactory::getSongById, key -> Optional.empty(), 1);
+        var song = songInfoFactory.newRandomSongInfo();
+        var first = new WeakReference<>(store.newInstance(song));
+        for (int i = 0; i < 10; i++) {
+            store.newInstance(songInfoFactory.newRandomSongInfo());
+        }
+
+        // only the song used last is still held, by the recent songs
+        var deadline = Instant.now().plus(Duration.ofSeconds(10));
+        while (store.size() > 1 && Instant.now().isBefore(deadline)) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(first.get()).isNull();
+        assertThat(store.getExisting(song.id())).isEmpty();
+        assertThat(store.newInstance(song).getId()).isEqualTo(song.id());
+    }
+
+    @Test
+    public void testUpdatesTheSongInfo() {
+        var store = new GSongStore(songInfoFactory::getSongById, key -> Optional.empty());
+        var song = songInfoFactory.newRandomSongInfo();
+        var gSong = store.newInstance(song);
+
+        var renamed = song.withTitle("renamed");
+        assertThat(store.newInstance(renamed)).isSameAs(gSong);
+        assertThat(gSong.getTitle()).isEqualTo("renamed");
+    }
+}
@@ -0,0 +1,62 @@
+package org.subsound.utils;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveLimiterTest {
+
+    @Test
+    public void growsToCeilingWhileFast() throws InterruptedException {
+        var limiter = new AdaptiveLimiter(AdaptiveLimiter.Settings.withCeiling(8));
+        assertThat(limiter.limit()).isEqualTo(2);
+        for (int round = 0; round < 100; round++) {
+            runRound(limiter, Duration.ofMillis(10), false);
+        }
+        assertThat(limiter.limit()).isEqualTo(8);
+        assertThat(limiter.snapshot().inFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void halvesOnErrors() throws InterruptedException {
+        var limiter = new AdaptiveLimiter(AdaptiveLimiter.Settings.withCeiling(8));
+        for (int round = 0; round < 100; round++) {
+            runRound(limiter, Duration.ofMillis(10), false);
+        }
+        runRound(limiter, Duration.ofMillis(10), true);
+        // only the first failure of the round counts, the others were already in flight
+        assertThat(limiter.limit()).isEqualTo(4);
+        assertThat(limiter.snapshot().errors()).isEqualTo(8);
+
+        for (int round = 0; round < 10; round++) {
+            runRound(limiter, Duration.ofMillis(10), true);
+        }
+        assertThat(limiter.limit()).isEqualTo(1);
+    }
+
+    @Test
+    public void backsOffWhenLatencyRises() throws InterruptedException {
+        var limiter = new AdaptiveLimiter(AdaptiveLimiter.Settings.withCeiling(8));
+        for (int round = 0; round < 100; round++) {
+            runRound(limiter, Duration.ofMillis(10), false);
+        }
+        for (int round = 0; round < 5; round++) {
+            runRound(limiter, Duration.ofMillis(500), false);
+        }
+        assertThat(limiter.limit()).isLessThan(8);
+        assertThat(limiter.snapshot().latencyMillis()).isGreaterThan(limiter.snapshot().baselineMillis());
+    }
+
+    // fill the limit, then complete every request
+    private static void runRound(AdaptiveLimiter limiter, Duration latency, boolean dropped) throws InterruptedException {
+        int n = limiter.limit();
+        for (int i = 0; i < n; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < n; i++) {
+            limiter.release(latency, dropped);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.subsound.utils;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        var histogram = new Histogram();
+        assertThat(histogram.percentile(0.5)).isEqualTo(0);
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertThat(histogram.count()).isEqualTo(100);
+        assertThat(histogram.mean()).isEqualTo(50);
+        assertThat(histogram.max()).isEqualTo(100);
+        // buckets are powers of two, so percentiles are upper bounds of the bucket
+        assertThat(histogram.percentile(0.5)).isEqualTo(63);
+        assertThat(histogram.percentile(0.99)).isEqualTo(100);
+    }
+
+    @Test
+    public void testZeroAndNegativeValues() {
+        var histogram = new Histogram();
+        histogram.record(0);
+        histogram.record(-5);
+        assertThat(histogram.count()).isEqualTo(2);
+        assertThat(histogram.bucketCounts()[0]).isEqualTo(2);
+        assertThat(histogram.percentile(1.0)).isEqualTo(0);
+    }
+}
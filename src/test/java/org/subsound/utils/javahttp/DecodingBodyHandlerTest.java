@@ -0,0 +1,103 @@
+package org.subsound.utils.javahttp;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DecodingBodyHandlerTest {
+    private static final String BODY = "{\"subsonic-response\":{\"status\":\"ok\"}}".repeat(200);
+
+    private HttpServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/gzip", exchange -> respond(exchange, "gzip", gzip(BODY)));
+        server.createContext("/deflate", exchange -> respond(exchange, "deflate", deflate(BODY, false)));
+        server.createContext("/raw-deflate", exchange -> respond(exchange, "deflate", deflate(BODY, true)));
+        server.createContext("/identity", exchange -> respond(exchange, null, BODY.getBytes(StandardCharsets.UTF_8)));
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void decodesAllEncodings() throws Exception {
+        for (var path : new String[]{"/gzip", "/deflate", "/raw-deflate", "/identity"}) {
+            assertThat(fetch(path)).as(path).isEqualTo(BODY);
+        }
+    }
+
+    @Test
+    public void countsWireAndDecodedBytes() throws Exception {
+        var req = request("/gzip");
+        var res = client.send(req, DecodingBodyHandler.forRequest(req));
+        try (var body = res.body()) {
+            var decoded = body.readAllBytes();
+            var stream = (DecodingBodyHandler.DecodedInputStream) body;
+            assertThat(decoded).hasSize(BODY.length());
+            assertThat(stream.wireBytes()).isEqualTo(gzip(BODY).length);
+            assertThat(stream.wireBytes()).isLessThan(decoded.length);
+        }
+    }
+
+    private String fetch(String path) throws Exception {
+        var req = request(path);
+        var res = client.send(req, DecodingBodyHandler.forRequest(req));
+        try (InputStream body = res.body()) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path))
+                .header(DecodingBodyHandler.ACCEPT_ENCODING_HEADER, DecodingBodyHandler.ACCEPT_ENCODING)
+                .build();
+    }
+
+    private static void respond(com.sun.net.httpserver.HttpExchange exchange, String encoding, byte[] body) throws IOException {
+        if (encoding != null) {
+            exchange.getResponseHeaders().add("Content-Encoding", encoding);
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (var os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static byte[] gzip(String s) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gz = new GZIPOutputStream(out)) {
+            gz.write(s.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(String s, boolean raw) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var df = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            df.write(s.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+}
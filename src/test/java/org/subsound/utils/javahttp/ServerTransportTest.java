@@ -0,0 +1,84 @@
+package org.subsound.utils.javahttp;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.subsound.utils.javahttp.ServerTransport.RequestClass;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServerTransportTest {
+    private HttpServer server;
+    private URI uri;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/rest/stream", exchange -> {
+            // larger than the socket buffers, so the body stays open until the client reads or closes it
+            var chunk = new byte[64 * 1024];
+            exchange.sendResponseHeaders(200, 0);
+            try (var out = exchange.getResponseBody()) {
+                for (int i = 0; i < 256; i++) {
+                    out.write(chunk);
+                }
+            } catch (Exception e) {
+                // the client closed the stream
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        uri = URI.create("http://127.0.0.1:%d/rest/stream".formatted(server.getAddress().getPort()));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testStreamHoldsItsPermitUntilTheBodyIsClosed() throws Exception {
+        var transport = ServerTransport.forUri(uri);
+        List<HttpResponse<InputStream>> open = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            open.add(stream(transport));
+        }
+
+        var waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return stream(transport);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(200);
+        assertThat(waiting).isNotDone();
+
+        open.getFirst().body().close();
+        var next = waiting.get(5, TimeUnit.SECONDS);
+        assertThat(next.statusCode()).isEqualTo(200);
+
+        next.body().close();
+        for (var res : open) {
+            res.body().close();
+        }
+        assertThat(transport.stats().get("STREAM /stream").errors()).isZero();
+    }
+
+    private HttpResponse<InputStream> stream(ServerTransport transport) throws Exception {
+        var req = HttpRequest.newBuilder(uri).GET().build();
+        return transport.send(RequestClass.STREAM, req, HttpResponse.BodyHandlers.ofInputStream());
+    }
+}